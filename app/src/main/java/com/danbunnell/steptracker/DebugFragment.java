@@ -2,89 +2,214 @@ package com.danbunnell.steptracker;
 
 import android.graphics.Color;
 import android.os.Bundle;
-import android.os.Handler;
+import android.os.SystemClock;
 import android.support.v4.app.Fragment;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
 import android.widget.TextView;
 
+import com.danbunnell.steptracker.common.DecimatingSeries;
+import com.danbunnell.steptracker.common.HistoryPyramid;
 import com.danbunnell.steptracker.stepservice.AccelerometerListener;
 import com.danbunnell.steptracker.stepservice.StepListener;
+import com.danbunnell.steptracker.stepservice.StepEngine;
 import com.danbunnell.steptracker.stepservice.StepService;
+import com.danbunnell.steptracker.stepservice.TraceListener;
+import com.danbunnell.steptracker.trace.TraceFormat;
+import com.danbunnell.steptracker.trace.TraceHistory;
+import com.danbunnell.steptracker.trace.TraceRecorder;
+import com.danbunnell.steptracker.trace.TraceWriter;
 import com.jjoe64.graphview.GraphView;
-import com.jjoe64.graphview.series.DataPoint;
 import com.jjoe64.graphview.series.LineGraphSeries;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
 import static android.util.Log.d;
+import static android.util.Log.e;
 
 /**
  * A {@link Fragment} which displays debugging information.
+ *
+ * <p>Every accelerometer sample is kept in a {@link DecimatingSeries} holding the graph window, and
+ * each frame the window is reduced to the lowest and highest sample per pixel.  Memory is constant
+ * and the graph shows the full sensor rate, including peaks between frames.</p>
+ *
+ * <p>The whole session is also kept in {@link HistoryPyramid}s and drawn by a {@link HistoryGraph},
+ * which can be scrolled and zoomed.</p>
+ *
+ * <p>Redrawn only when the {@link UiStateStore} reports new samples or step counts, at most once per
+ * display frame.</p>
+ *
+ * <p>A button records the raw accelerometer samples to a trace in the app's external files
+ * directory, for replaying through the detector with the engine module's {@code ReplayTool}.
+ * While the fragment is shown the last thirty seconds of samples are also kept in a
+ * {@link TraceHistory}, and another button saves them, for catching a miscount after it
+ * happened.</p>
  */
-public class DebugFragment extends Fragment {
+public class DebugFragment extends Fragment implements StepServiceClient, UiStateStore.Observer {
 
     private static final String TAG = "DebugFragment";
 
+    /**
+     * the identifier the trace listener is registered under
+     */
+    private static final String TRACE_LISTENER_ID = TAG + "Trace";
+
+    /**
+     * the identifier the recent trace listener is registered under
+     */
+    private static final String RECENT_TRACE_LISTENER_ID = TAG + "RecentTrace";
+
+    /**
+     * how much recent raw data is kept for saving after the fact
+     */
+    private static final long RECENT_TRACE_DURATION_MS = 30000;
+
     /**
      * the accelerometer data graph width in seconds
      */
     private static final float GRAPH_WIDTH_S = 2f;
 
     /**
-     * the user interface update interval
+     * how often the pipeline metrics are redrawn
+     */
+    private static final long METRICS_UPDATE_INTERVAL_MS = 1000;
+
+    /**
+     * the number of samples summarised by the finest session history bucket
+     */
+    private static final int HISTORY_SAMPLES_PER_BUCKET = 8;
+
+    /**
+     * the number of buckets kept at each session history level
+     */
+    private static final int HISTORY_BUCKETS_PER_LEVEL = 4096;
+
+    /**
+     * the number of session history levels, enough for well over a day at full rate
+     */
+    private static final int HISTORY_LEVELS = 6;
+
+    /**
+     * the number of steps kept in the session history
+     */
+    private static final int HISTORY_STEP_CAPACITY = 16384;
+
+    /**
+     * raw acceleration magnitudes for the graph window, written on the sensor thread
+     */
+    private volatile DecimatingSeries rawSamples;
+
+    /**
+     * filtered acceleration magnitudes for the graph window, written on the sensor thread
+     */
+    private volatile DecimatingSeries filteredSamples;
+
+    /**
+     * raw acceleration magnitudes for the session, written on the sensor thread
+     */
+    private volatile HistoryPyramid rawHistory;
+
+    /**
+     * filtered acceleration magnitudes and steps for the session, written on the sensor and
+     * detection threads
+     */
+    private volatile HistoryPyramid filteredHistory;
+
+    /**
+     * the state store
      */
-    private static final int UI_UPDATE_INTERVAL_MS = 50;
+    private UiStateStore uiStateStore;
 
     /**
-     * latest raw acceleration magnitude
+     * the engine the step service counts steps with, once bound
      */
-    private float rawAcceleration = 0L;
+    private StepEngine stepEngine;
 
     /**
-     * latest filtered acceleration magnitude
+     * the sample count the graph was last drawn at
      */
-    private float filteredAcceleration = 0L;
+    private long drawnSampleCount = -1;
 
     /**
-     * the current step count
+     * the step count last drawn
      */
-    private int currentStepCount = 0;
+    private long drawnStepCount = -1;
 
     /**
-     * the current step count from the step sensor
+     * the step sensor step count last drawn
      */
-    private int currentStepSensorStepCount = 0;
+    private long drawnStepSensorStepCount = -1;
+
+    /**
+     * the step engine last drawn
+     */
+    private StepEngine drawnStepEngine;
+
+    /**
+     * when the pipeline metrics were last drawn, from {@link SystemClock#uptimeMillis()}
+     */
+    private long drawnMetricsTimeMs = 0;
 
     /**
      * series holding raw acceleration data to be displayed via the graph
      */
-    private LineGraphSeries<DataPoint> rawSeries = DebugFragment.createSeries(Color.RED);
+    private LineGraphSeries<MutableDataPoint> rawSeries = DebugFragment.createSeries(Color.RED);
 
     /**
      * series holding filtered acceleration data to be displayed via the graph
      */
-    private LineGraphSeries<DataPoint> filteredSeries = DebugFragment.createSeries(Color.BLACK);
+    private LineGraphSeries<MutableDataPoint> filteredSeries = DebugFragment.createSeries(Color.BLACK);
+
+    /**
+     * the graph width in pixels the decimation buffers are sized for
+     */
+    private int graphWidthPx = 0;
 
     /**
-     * a thread scheduler
+     * the time of each decimated bucket
      */
-    private final Handler handler = new Handler();
+    private float[] bucketTimes;
 
     /**
-     * timer that controls user interface update intervals
+     * the lowest sample in each decimated bucket
      */
-    private Runnable interfaceUpdateTimer;
+    private float[] bucketMin;
 
     /**
-     * the time in seconds since the epoch
+     * the highest sample in each decimated bucket
      */
-    private float timeInSeconds = 0f;
+    private float[] bucketMax;
+
+    /**
+     * the points drawn for the raw series, two per bucket
+     */
+    private MutableDataPoint[] rawPoints;
+
+    /**
+     * the points drawn for the filtered series, two per bucket
+     */
+    private MutableDataPoint[] filteredPoints;
 
     /**
      * the accelerometer data graph view
      */
     private GraphView graphView;
 
+    /**
+     * the session history graph view
+     */
+    private GraphView historyGraphView;
+
+    /**
+     * draws the session history, once there is one
+     */
+    private HistoryGraph historyGraph;
+
     /**
      * displays the current step count
      */
@@ -95,6 +220,31 @@ public class DebugFragment extends Fragment {
      */
     private TextView tvStepSensorStepCount;
 
+    /**
+     * displays the pipeline metrics
+     */
+    private TextView tvPipelineMetrics;
+
+    /**
+     * starts and stops trace recording
+     */
+    private Button btnRecordTrace;
+
+    /**
+     * records raw samples to a trace, or null if not recording
+     */
+    private TraceRecorder traceRecorder;
+
+    /**
+     * saves the recent raw samples
+     */
+    private Button btnSaveRecentTrace;
+
+    /**
+     * the recent raw samples, once bound
+     */
+    private TraceHistory recentTrace;
+
     /**
      * Initializes a new instance of the {@link DebugFragment} class.
      *
@@ -126,21 +276,180 @@ public class DebugFragment extends Fragment {
 
         this.tvCurrentStepCount = super.getActivity().findViewById(R.id.tvCurrentStepCount);
         this.tvStepSensorStepCount = super.getActivity().findViewById(R.id.tvStepSensorStepCount);
+        this.tvPipelineMetrics = super.getActivity().findViewById(R.id.tvPipelineMetrics);
+        this.btnRecordTrace = super.getActivity().findViewById(R.id.btnRecordTrace);
+        this.btnRecordTrace.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                if (traceRecorder == null) {
+                    startTrace();
+                } else {
+                    stopTrace();
+                }
+            }
+        });
+        this.btnRecordTrace.setText(this.getString(R.string.record_trace));
+        this.btnSaveRecentTrace = super.getActivity().findViewById(R.id.btnSaveRecentTrace);
+        this.btnSaveRecentTrace.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                saveRecentTrace();
+            }
+        });
         this.graphView= this.createGraphView(
                 R.id.graph1,
                 "Accelerometer Data (Raw (red), Filtered (black))",
                 "m/s^2");
         this.graphView.addSeries(this.rawSeries);
         this.graphView.addSeries(this.filteredSeries);
+        this.historyGraphView = super.getActivity().findViewById(R.id.graph2);
+        this.historyGraph = null;
+
+        MainActivity activity = (MainActivity) this.getActivity();
+        this.uiStateStore = activity.getUiStateStore();
+        this.uiStateStore.addObserver(this);
+        activity.addStepServiceClient(this);
+
+        // The views may have been recreated, so draw everything once
+        this.drawnSampleCount = -1;
+        this.drawnStepCount = -1;
+        this.drawnStepSensorStepCount = -1;
+        this.drawnMetricsTimeMs = 0;
+        this.updateUserInterface();
+    }
+
+    /**
+     * Called when the fragment is stopped.
+     */
+    @Override
+    public void onStop() {
+        super.onStop();
+
+        this.stopTrace();
+
+        MainActivity activity = (MainActivity) this.getActivity();
+        activity.removeStepServiceClient(this);
+        this.uiStateStore.removeObserver(this);
+
+        StepService stepService = activity.getStepService();
+        if (stepService != null) {
+            stepService.unregisterAccelerometerListener(DebugFragment.TAG);
+            stepService.unregisterAccelerometerListener(RECENT_TRACE_LISTENER_ID);
+            stepService.unregisterStepDetectorSensorListener(DebugFragment.TAG);
+            stepService.unregisterStepListener(DebugFragment.TAG);
+            stepService.setMetricsEnabled(false);
+        }
+    }
 
-        StepService stepService = MainActivity.getStepService();
+    /**
+     * Starts recording raw accelerometer samples to a new trace file.
+     */
+    private void startTrace() {
+        StepService stepService = ((MainActivity) this.getActivity()).getStepService();
+        File directory = this.getActivity().getExternalFilesDir(null);
+        if (stepService == null || directory == null) {
+            return;
+        }
+
+        File file = new File(directory, "trace-" + System.currentTimeMillis() + TraceFormat.FILE_EXTENSION);
+        try {
+            this.traceRecorder = new TraceRecorder(new TraceWriter(new FileOutputStream(file).getChannel()));
+        } catch (IOException ex) {
+            e(TAG, "Could not create trace " + file, ex);
+            return;
+        }
+
+        this.traceRecorder.start();
+        stepService.registerAccelerometerListener(TRACE_LISTENER_ID, new TraceListener(this.traceRecorder, null));
+        this.btnRecordTrace.setText(this.getString(R.string.stop_trace));
+        d(TAG, "Recording trace to " + file);
+    }
+
+    /**
+     * Stops recording the trace, if one is being recorded, and writes out the rest of it.
+     */
+    private void stopTrace() {
+        if (this.traceRecorder == null) {
+            return;
+        }
+
+        StepService stepService = ((MainActivity) this.getActivity()).getStepService();
+        if (stepService != null) {
+            stepService.unregisterAccelerometerListener(TRACE_LISTENER_ID);
+        }
+
+        TraceRecorder recorder = this.traceRecorder;
+        this.traceRecorder = null;
+        this.btnRecordTrace.setText(this.getString(R.string.record_trace));
+
+        try {
+            recorder.close();
+            d(TAG, "Trace recorded, " + recorder.getDroppedCount() + " samples dropped");
+        } catch (IOException ex) {
+            e(TAG, "Could not write trace", ex);
+        }
+    }
+
+    /**
+     * Saves the recent raw samples to a new trace file, on a background thread so that the user
+     * interface does not wait for the disk.
+     */
+    private void saveRecentTrace() {
+        final TraceHistory recentTrace = this.recentTrace;
+        File directory = this.getActivity().getExternalFilesDir(null);
+        if (recentTrace == null || directory == null) {
+            return;
+        }
+
+        final File file = new File(directory, "recent-" + System.currentTimeMillis() + TraceFormat.FILE_EXTENSION);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int samples = recentTrace.dump(new FileOutputStream(file).getChannel());
+                    d(TAG, "Saved " + samples + " recent samples to " + file);
+                } catch (IOException ex) {
+                    e(TAG, "Could not save recent samples to " + file, ex);
+                }
+            }
+        }, TAG + "SaveRecentTrace").start();
+    }
+
+    /**
+     * Called once the step service is bound.
+     *
+     * @param stepService the step service
+     */
+    @Override
+    public void onStepServiceConnected(StepService stepService) {
+        if (this.rawSamples == null) {
+            float samplePeriodS = stepService.getSampleRateMs() / 1000f;
+            int capacity = Math.round(GRAPH_WIDTH_S / samplePeriodS);
+            this.rawSamples = new DecimatingSeries(capacity, samplePeriodS);
+            this.filteredSamples = new DecimatingSeries(capacity, samplePeriodS);
+            this.rawHistory = DebugFragment.createHistory(samplePeriodS);
+            this.filteredHistory = DebugFragment.createHistory(samplePeriodS);
+            this.recentTrace = new TraceHistory(RECENT_TRACE_DURATION_MS, stepService.getSampleRateMs());
+        }
+
+        this.stepEngine = stepService.getStepEngine();
+        stepService.setMetricsEnabled(true);
+
+        final DecimatingSeries rawSamples = this.rawSamples;
+        final DecimatingSeries filteredSamples = this.filteredSamples;
+        final HistoryPyramid rawHistory = this.rawHistory;
+        final HistoryPyramid filteredHistory = this.filteredHistory;
+        final UiStateStore uiStateStore = this.uiStateStore;
         stepService.registerAccelerometerListener(
                 DebugFragment.TAG,
                 new AccelerometerListener() {
                     @Override
-                    public void onAccelerometerData(float magnitude, float filteredMagnitude) {
-                        rawAcceleration = magnitude;
-                        filteredAcceleration = filteredMagnitude;
+                    public void onAccelerometerData(long timestampNs, float magnitude, float filteredMagnitude) {
+                        rawSamples.add(magnitude);
+                        filteredSamples.add(filteredMagnitude);
+                        rawHistory.add(magnitude);
+                        filteredHistory.add(filteredMagnitude);
+                        uiStateStore.addSamples(1);
                     }
                 });
 
@@ -149,7 +458,9 @@ public class DebugFragment extends Fragment {
                 new StepListener() {
                     @Override
                     public void onSteps(int stepCount) {
-                        currentStepCount += stepCount;
+                        for (int i = 0; i < stepCount; i++) {
+                            filteredHistory.markStep();
+                        }
                     }
                 });
 
@@ -158,39 +469,34 @@ public class DebugFragment extends Fragment {
                 new StepListener() {
                     @Override
                     public void onSteps(int stepCount) {
-                        currentStepSensorStepCount += stepCount;
+                        uiStateStore.addStepSensorSteps(stepCount);
                     }
                 }
         );
 
-        this.updateUserInterface();
+        stepService.registerAccelerometerListener(RECENT_TRACE_LISTENER_ID, new TraceListener(null, this.recentTrace));
 
-        this.interfaceUpdateTimer = new Runnable() {
-            /**
-             * Runs the user interface update procedure.
-             */
-            @Override
-            public void run() {
-                updateUserInterface();
-                handler.postDelayed(interfaceUpdateTimer, UI_UPDATE_INTERVAL_MS);
-            }
-        };
-
-        handler.postDelayed(this.interfaceUpdateTimer, UI_UPDATE_INTERVAL_MS);
+        this.updateUserInterface();
     }
 
     /**
-     * Called when the fragment is stopped.
+     * Called when the step service is lost.  Its listeners went with it, so any trace is finished.
      */
     @Override
-    public void onStop() {
-        super.onStop();
-
-        this.handler.removeCallbacks(this.interfaceUpdateTimer);
+    public void onStepServiceDisconnected() {
+        this.stopTrace();
+        this.stepEngine = null;
+        this.updateUserInterface();
+    }
 
-        StepService stepService = MainActivity.getStepService();
-        stepService.unregisterStepListener(DebugFragment.TAG);
-        stepService.unregisterAccelerometerListener(DebugFragment.TAG);
+    /**
+     * Called when the user interface state changes.
+     *
+     * @param store the state store
+     */
+    @Override
+    public void onStateChanged(UiStateStore store) {
+        this.updateUserInterface();
     }
 
     /**
@@ -199,9 +505,9 @@ public class DebugFragment extends Fragment {
      * @param color a color for the series when graphed
      * @return      a series of data points
      */
-    private static LineGraphSeries<DataPoint> createSeries(int color) {
-        DataPoint[] points = { new DataPoint(0,0) };
-        LineGraphSeries<DataPoint> series = new LineGraphSeries<DataPoint>(points);
+    private static LineGraphSeries<MutableDataPoint> createSeries(int color) {
+        MutableDataPoint[] points = { new MutableDataPoint() };
+        LineGraphSeries<MutableDataPoint> series = new LineGraphSeries<MutableDataPoint>(points);
         series.setColor(color);
         return series;
     }
@@ -229,11 +535,114 @@ public class DebugFragment extends Fragment {
      * Updates the user interface
      */
     private void updateUserInterface() {
-        timeInSeconds += UI_UPDATE_INTERVAL_MS / 1000f;
-        int graphWidthDataPoints = Math.round(GRAPH_WIDTH_S / (UI_UPDATE_INTERVAL_MS / 1000));
-        rawSeries.appendData(new DataPoint(timeInSeconds, rawAcceleration), true, graphWidthDataPoints);
-        filteredSeries.appendData(new DataPoint(timeInSeconds, filteredAcceleration), true, graphWidthDataPoints);
-        tvCurrentStepCount.setText("Accelerometer-based steps: " + currentStepCount);
-        tvStepSensorStepCount.setText("Step Sensor steps: " + currentStepSensorStepCount);
+        long sampleCount = this.uiStateStore.getSampleCount();
+        int widthPx = this.graphView.getGraphContentWidth();
+        if (this.rawSamples != null
+                && widthPx > 0
+                && (sampleCount != this.drawnSampleCount || widthPx != this.graphWidthPx)) {
+            if (widthPx != this.graphWidthPx) {
+                this.allocateGraphBuffers(widthPx);
+            }
+
+            this.drawnSampleCount = sampleCount;
+            this.updateSeries(this.rawSamples, this.rawSeries, this.rawPoints);
+            this.updateSeries(this.filteredSamples, this.filteredSeries, this.filteredPoints);
+        }
+
+        if (this.historyGraph == null && this.rawHistory != null) {
+            this.historyGraph = new HistoryGraph(this.historyGraphView, this.rawHistory, this.filteredHistory);
+        }
+
+        if (this.historyGraph != null) {
+            this.historyGraph.update();
+        }
+
+        long stepCount = this.uiStateStore.getStepCount();
+        if (stepCount != this.drawnStepCount || this.stepEngine != this.drawnStepEngine) {
+            this.drawnStepCount = stepCount;
+            this.drawnStepEngine = this.stepEngine;
+            this.tvCurrentStepCount.setText(
+                    "Counted steps" + (this.stepEngine != null ? " (" + this.stepEngine + ")" : "") + ": " + stepCount);
+        }
+
+        long stepSensorStepCount = this.uiStateStore.getStepSensorStepCount();
+        if (stepSensorStepCount != this.drawnStepSensorStepCount) {
+            this.drawnStepSensorStepCount = stepSensorStepCount;
+            this.tvStepSensorStepCount.setText("Step Sensor steps: " + stepSensorStepCount);
+        }
+
+        long nowMs = SystemClock.uptimeMillis();
+        StepService stepService = ((MainActivity) this.getActivity()).getStepService();
+        if (stepService != null && nowMs - this.drawnMetricsTimeMs >= METRICS_UPDATE_INTERVAL_MS) {
+            this.drawnMetricsTimeMs = nowMs;
+            this.tvPipelineMetrics.setText(
+                    stepService.getGaitSnapshot().toString()
+                            + stepService.getSensorTimingSnapshot()
+                            + stepService.getMetricsSnapshot());
+        }
+    }
+
+    /**
+     * Sizes the decimation buffers and graph points for a graph width.
+     *
+     * @param widthPx the graph width in pixels
+     */
+    private void allocateGraphBuffers(int widthPx) {
+        this.graphWidthPx = widthPx;
+        this.bucketTimes = new float[widthPx];
+        this.bucketMin = new float[widthPx];
+        this.bucketMax = new float[widthPx];
+        this.rawPoints = MutableDataPoint.createArray(2 * widthPx);
+        this.filteredPoints = MutableDataPoint.createArray(2 * widthPx);
+    }
+
+    /**
+     * Redraws a graph series from the decimated samples, as a vertical stroke from the lowest to
+     * the highest sample in each pixel, and scrolls the graph to the newest sample.
+     *
+     * @param samples the samples
+     * @param series  the graph series
+     * @param points  the points to draw with, two per pixel
+     */
+    private void updateSeries(
+            DecimatingSeries samples,
+            LineGraphSeries<MutableDataPoint> series,
+            MutableDataPoint[] points) {
+
+        int buckets = samples.decimate(this.graphWidthPx, this.bucketTimes, this.bucketMin, this.bucketMax);
+        if (buckets == 0) {
+            return;
+        }
+
+        for (int i = 0; i < buckets; i++) {
+            points[2 * i].set(this.bucketTimes[i], this.bucketMin[i]);
+            points[2 * i + 1].set(this.bucketTimes[i], this.bucketMax[i]);
+        }
+
+        // Points past the last bucket repeat it, so the same array is drawn on every frame
+        float lastTime = this.bucketTimes[buckets - 1];
+        float lastValue = this.bucketMax[buckets - 1];
+        for (int i = 2 * buckets; i < points.length; i++) {
+            points[i].set(lastTime, lastValue);
+        }
+
+        series.resetData(points);
+        this.graphView.getViewport().setMinX(lastTime - GRAPH_WIDTH_S);
+        this.graphView.getViewport().setMaxX(lastTime);
+    }
+
+    /**
+     * Creates a session history.
+     *
+     * @param samplePeriodS the time between samples in seconds
+     * @return              the session history
+     */
+    private static HistoryPyramid createHistory(float samplePeriodS) {
+        return new HistoryPyramid(
+                samplePeriodS,
+                HISTORY_SAMPLES_PER_BUCKET,
+                HISTORY_BUCKETS_PER_LEVEL,
+                HISTORY_LEVELS,
+                HISTORY_STEP_CAPACITY);
     }
 }
@@ -0,0 +1,314 @@
+package com.danbunnell.steptracker;
+
+import android.graphics.Color;
+
+import com.danbunnell.steptracker.common.HistoryPyramid;
+import com.jjoe64.graphview.GraphView;
+import com.jjoe64.graphview.Viewport;
+import com.jjoe64.graphview.series.LineGraphSeries;
+import com.jjoe64.graphview.series.PointsGraphSeries;
+
+/**
+ * Draws a whole session of acceleration and detected steps from {@link HistoryPyramid}s onto a
+ * scrollable, zoomable graph.
+ *
+ * <p>The raw magnitude is drawn as its min/max envelope, the filtered magnitude as its mean, and
+ * each step as a marker along the top.  Every redraw reads about one bucket per pixel whatever the
+ * zoom.  While the right edge of the graph is at the newest sample it follows the recording; once
+ * the user scrolls back it stays put until they scroll to the end again.</p>
+ */
+class HistoryGraph implements Viewport.OnXAxisBoundsChangedListener {
+
+    private static final String TAG = "HistoryGraph";
+
+    /**
+     * the time shown when the graph is first drawn in seconds
+     */
+    private static final float INITIAL_WIDTH_S = 60f;
+
+    /**
+     * draws nothing
+     */
+    private static final MutableDataPoint[] NO_POINTS = {};
+
+    /**
+     * the graph view
+     */
+    private final GraphView graphView;
+
+    /**
+     * the raw magnitude history
+     */
+    private final HistoryPyramid rawHistory;
+
+    /**
+     * the filtered magnitude history, which also holds the steps
+     */
+    private final HistoryPyramid filteredHistory;
+
+    /**
+     * the raw magnitude envelope
+     */
+    private final LineGraphSeries<MutableDataPoint> rawSeries;
+
+    /**
+     * the filtered magnitude mean
+     */
+    private final LineGraphSeries<MutableDataPoint> filteredSeries;
+
+    /**
+     * the step markers
+     */
+    private final PointsGraphSeries<MutableDataPoint> stepSeries;
+
+    /**
+     * the graph width in pixels the buffers are sized for
+     */
+    private int widthPx = 0;
+
+    /**
+     * the start time of each bucket
+     */
+    private float[] times;
+
+    /**
+     * the lowest sample in each bucket
+     */
+    private float[] min;
+
+    /**
+     * the highest sample in each bucket
+     */
+    private float[] max;
+
+    /**
+     * the mean sample in each bucket
+     */
+    private float[] mean;
+
+    /**
+     * the time of each step marker
+     */
+    private float[] stepTimes;
+
+    /**
+     * the points drawn for the raw envelope, two per bucket
+     */
+    private MutableDataPoint[] rawPoints;
+
+    /**
+     * the points drawn for the filtered mean, one per bucket
+     */
+    private MutableDataPoint[] filteredPoints;
+
+    /**
+     * the points drawn for the step markers
+     */
+    private MutableDataPoint[] stepPoints;
+
+    /**
+     * the start of the time shown in seconds
+     */
+    private float fromS = 0f;
+
+    /**
+     * the end of the time shown in seconds
+     */
+    private float toS = INITIAL_WIDTH_S;
+
+    /**
+     * whether the graph follows the newest sample
+     */
+    private boolean following = true;
+
+    /**
+     * the recorded duration when the graph was last drawn, or -1 to force a redraw
+     */
+    private float drawnDurationS = -1f;
+
+    /**
+     * Initializes a new instance of the {@link HistoryGraph} class.
+     *
+     * @param graphView       the graph view
+     * @param rawHistory      the raw magnitude history
+     * @param filteredHistory the filtered magnitude history, which also holds the steps
+     */
+    HistoryGraph(GraphView graphView, HistoryPyramid rawHistory, HistoryPyramid filteredHistory) {
+        this.graphView = graphView;
+        this.rawHistory = rawHistory;
+        this.filteredHistory = filteredHistory;
+
+        this.rawSeries = new LineGraphSeries<>(NO_POINTS);
+        this.rawSeries.setColor(Color.RED);
+        this.filteredSeries = new LineGraphSeries<>(NO_POINTS);
+        this.filteredSeries.setColor(Color.BLACK);
+        this.stepSeries = new PointsGraphSeries<>(NO_POINTS);
+        this.stepSeries.setColor(Color.BLUE);
+        this.stepSeries.setSize(4f);
+
+        graphView.setTitle("Session (Raw range (red), Filtered mean (black), Steps (blue))");
+        graphView.addSeries(this.rawSeries);
+        graphView.addSeries(this.filteredSeries);
+        graphView.addSeries(this.stepSeries);
+
+        Viewport viewport = graphView.getViewport();
+        viewport.setXAxisBoundsManual(true);
+        viewport.setMinX(this.fromS);
+        viewport.setMaxX(this.toS);
+        viewport.setScalable(true);
+        viewport.setScrollable(true);
+        viewport.setOnXAxisBoundsChangedListener(this);
+    }
+
+    /**
+     * Redraws the graph if there is new history to show.  Called on the main thread.
+     */
+    void update() {
+        int widthPx = this.graphView.getGraphContentWidth();
+        if (widthPx <= 0) {
+            return;
+        }
+
+        if (widthPx != this.widthPx) {
+            this.allocate(widthPx);
+        }
+
+        float durationS = this.filteredHistory.getDurationS();
+        if (this.following) {
+            float widthS = this.toS - this.fromS;
+            this.toS = Math.max(durationS, widthS);
+            this.fromS = this.toS - widthS;
+        }
+
+        // Skip the redraw until the newest sample has moved by at least a pixel
+        float pixelS = (this.toS - this.fromS) / widthPx;
+        if (this.drawnDurationS >= 0
+                && (!this.following || durationS - this.drawnDurationS < pixelS)) {
+            return;
+        }
+
+        this.drawnDurationS = durationS;
+        this.draw(pixelS);
+    }
+
+    /**
+     * Called when the user scrolls or zooms the graph.
+     *
+     * @param minX   the new start of the time shown
+     * @param maxX   the new end of the time shown
+     * @param reason why the bounds changed
+     */
+    @Override
+    public void onXAxisBoundsChanged(double minX, double maxX, Reason reason) {
+        this.fromS = (float) minX;
+        this.toS = (float) maxX;
+        this.following = maxX >= this.filteredHistory.getDurationS();
+        this.drawnDurationS = -1f;
+        this.update();
+    }
+
+    /**
+     * Draws the time shown.
+     *
+     * @param pixelS the time covered by a pixel in seconds
+     */
+    private void draw(float pixelS) {
+        int buckets = this.rawHistory.query(
+                this.fromS, this.toS, this.widthPx, this.times, this.min, this.max, this.mean);
+        for (int i = 0; i < buckets; i++) {
+            this.rawPoints[2 * i].set(this.times[i], this.min[i]);
+            this.rawPoints[2 * i + 1].set(this.times[i], this.max[i]);
+        }
+        HistoryGraph.resetData(this.rawSeries, this.rawPoints, 2 * buckets);
+
+        float top = 0f;
+        for (int i = 0; i < buckets; i++) {
+            top = Math.max(top, this.max[i]);
+        }
+
+        buckets = this.filteredHistory.query(
+                this.fromS, this.toS, this.widthPx, this.times, this.min, this.max, this.mean);
+        for (int i = 0; i < buckets; i++) {
+            this.filteredPoints[i].set(this.times[i], this.mean[i]);
+            top = Math.max(top, this.max[i]);
+        }
+        HistoryGraph.resetData(this.filteredSeries, this.filteredPoints, buckets);
+
+        int steps = this.filteredHistory.querySteps(this.fromS, this.toS, pixelS, this.stepTimes);
+        for (int i = 0; i < steps; i++) {
+            this.stepPoints[i].set(this.stepTimes[i], top);
+        }
+        HistoryGraph.resetData(this.stepSeries, this.stepPoints, steps);
+
+        Viewport viewport = this.graphView.getViewport();
+        viewport.setMinX(this.fromS);
+        viewport.setMaxX(this.toS);
+    }
+
+    /**
+     * Sizes the buffers and points for a graph width.
+     *
+     * @param widthPx the graph width in pixels
+     */
+    private void allocate(int widthPx) {
+        this.widthPx = widthPx;
+        this.times = new float[widthPx];
+        this.min = new float[widthPx];
+        this.max = new float[widthPx];
+        this.mean = new float[widthPx];
+        this.stepTimes = new float[widthPx];
+        this.rawPoints = MutableDataPoint.createArray(2 * widthPx);
+        this.filteredPoints = MutableDataPoint.createArray(widthPx);
+        this.stepPoints = MutableDataPoint.createArray(widthPx);
+        this.drawnDurationS = -1f;
+    }
+
+    /**
+     * Replaces the points of a line series.  Points past {@code length} repeat the last one, so
+     * the same array is drawn on every frame.
+     *
+     * @param series the series
+     * @param points the points
+     * @param length the number of points in use
+     */
+    private static void resetData(LineGraphSeries<MutableDataPoint> series, MutableDataPoint[] points, int length) {
+        if (length == 0) {
+            series.resetData(NO_POINTS);
+            return;
+        }
+
+        HistoryGraph.padPoints(points, length);
+        series.resetData(points);
+    }
+
+    /**
+     * Replaces the points of a point series.  Points past {@code length} repeat the last one, so
+     * the same array is drawn on every frame.
+     *
+     * @param series the series
+     * @param points the points
+     * @param length the number of points in use
+     */
+    private static void resetData(PointsGraphSeries<MutableDataPoint> series, MutableDataPoint[] points, int length) {
+        if (length == 0) {
+            series.resetData(NO_POINTS);
+            return;
+        }
+
+        HistoryGraph.padPoints(points, length);
+        series.resetData(points);
+    }
+
+    /**
+     * Moves the unused points onto the last used one.
+     *
+     * @param points the points
+     * @param length the number of points in use
+     */
+    private static void padPoints(MutableDataPoint[] points, int length) {
+        MutableDataPoint last = points[length - 1];
+        for (int i = length; i < points.length; i++) {
+            points[i].set(last.getX(), last.getY());
+        }
+    }
+}
@@ -1,42 +1,84 @@
 package com.danbunnell.steptracker;
 
+import android.content.ComponentName;
 import android.content.Context;
-import android.hardware.SensorManager;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
 import android.support.design.widget.TabLayout;
 import android.support.v4.view.ViewPager;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 
-import com.danbunnell.steptracker.common.MovingAverageFilter;
-import com.danbunnell.steptracker.common.SignalFilter;
+import com.danbunnell.steptracker.stepservice.StepListener;
 import com.danbunnell.steptracker.stepservice.StepService;
+import com.danbunnell.steptracker.stepservice.StepTrackingService;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The main activity
+ *
+ * <p>Steps are counted by the {@link StepTrackingService}, which keeps running while the activity
+ * is hidden.  The activity binds to it while started and hands the {@link StepService} to its
+ * fragments through {@link StepServiceClient}.</p>
+ *
+ * <p>While bound it feeds the step count into a {@link UiStateStore}, which fragments observe
+ * instead of polling.</p>
  */
 public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "MainActivity";
 
     /**
-     * the moving average window size
+     * the step service, while bound
      */
-    private static final int MOVING_AVERAGE_WINDOW_SIZE = 30;
+    private StepService stepService;
 
     /**
-     * the accelerometer sampling rate in milliseconds
+     * the state shown by the user interface
      */
-    private static final long SAMPLE_RATE_MS = 5;
+    private final UiStateStore uiStateStore = new UiStateStore();
 
     /**
-     * the step detection window in seconds
+     * components waiting for or using the step service
      */
-    private static long STEP_DETECTION_WINDOW_MS = 2000;
+    private final List<StepServiceClient> stepServiceClients = new ArrayList<>();
 
     /**
-     * provides step-related data services
+     * receives the step service when the activity binds to it
      */
-    private static StepService stepService;
+    private final ServiceConnection stepServiceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            stepService = ((StepTrackingService.LocalBinder) service).getStepService();
+
+            final StepService boundStepService = stepService;
+            boundStepService.registerStepListener(
+                    MainActivity.TAG,
+                    new StepListener() {
+                        @Override
+                        public void onSteps(int steps) {
+                            uiStateStore.setStepCount(boundStepService.getStepCount());
+                        }
+                    });
+            uiStateStore.setStepCount(boundStepService.getStepCount());
+
+            for (StepServiceClient client : new ArrayList<>(stepServiceClients)) {
+                client.onStepServiceConnected(stepService);
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            stepService = null;
+
+            for (StepServiceClient client : new ArrayList<>(stepServiceClients)) {
+                client.onStepServiceDisconnected();
+            }
+        }
+    };
 
     /**
      * Called when the activity is created.
@@ -63,20 +105,8 @@ public class MainActivity extends AppCompatActivity {
         TabLayout tabLayout = findViewById(R.id.sliding_tabs);
         tabLayout.setupWithViewPager(viewPager);
 
-        this.initializeStepService();
-    }
-
-    /**
-     * Initialize the step service.
-     */
-    private void initializeStepService() {
-        SignalFilter accelerometerFilter = new MovingAverageFilter(MOVING_AVERAGE_WINDOW_SIZE);
-
-        this.stepService = new StepService(
-                (SensorManager) getSystemService(Context.SENSOR_SERVICE),
-                MainActivity.SAMPLE_RATE_MS,
-                accelerometerFilter,
-                MainActivity.STEP_DETECTION_WINDOW_MS);
+        // Started as well as bound, so counting continues once the activity unbinds
+        StepTrackingService.start(this);
     }
 
     /**
@@ -85,7 +115,10 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public void onStart() {
         super.onStart();
-        this.stepService.onStart();
+        this.bindService(
+                new Intent(this, StepTrackingService.class),
+                this.stepServiceConnection,
+                Context.BIND_AUTO_CREATE);
     }
 
     /**
@@ -94,15 +127,52 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public void onStop() {
         super.onStop();
-        this.stepService.onStop();
+
+        if (this.stepService != null) {
+            this.stepService.unregisterStepListener(MainActivity.TAG);
+        }
+
+        this.unbindService(this.stepServiceConnection);
+        this.stepService = null;
+    }
+
+    /**
+     * Registers a component to receive the step service, immediately if it is already bound.
+     *
+     * @param client the component
+     */
+    public void addStepServiceClient(StepServiceClient client) {
+        this.stepServiceClients.add(client);
+
+        if (this.stepService != null) {
+            client.onStepServiceConnected(this.stepService);
+        }
+    }
+
+    /**
+     * Unregisters a component from receiving the step service.
+     *
+     * @param client the component
+     */
+    public void removeStepServiceClient(StepServiceClient client) {
+        this.stepServiceClients.remove(client);
+    }
+
+    /**
+     * Returns the step service.
+     *
+     * @return the step service, or null if it is not bound
+     */
+    public StepService getStepService() {
+        return this.stepService;
     }
 
     /**
-     * Returns the activity's step service.
+     * Returns the state shown by the user interface.
      *
-     * @return a step service
+     * @return the user interface state
      */
-    public static StepService getStepService() {
-        return MainActivity.stepService;
+    public UiStateStore getUiStateStore() {
+        return this.uiStateStore;
     }
 }
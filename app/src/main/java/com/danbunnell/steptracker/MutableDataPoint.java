@@ -0,0 +1,66 @@
+package com.danbunnell.steptracker;
+
+import com.jjoe64.graphview.series.DataPointInterface;
+
+/**
+ * A graph data point that can be moved, so a series can be redrawn every frame without allocating
+ * new points.
+ */
+class MutableDataPoint implements DataPointInterface {
+
+    /**
+     * the x value
+     */
+    private double x;
+
+    /**
+     * the y value
+     */
+    private double y;
+
+    /**
+     * Creates points.
+     *
+     * @param count the number of points
+     * @return      the points
+     */
+    static MutableDataPoint[] createArray(int count) {
+        MutableDataPoint[] points = new MutableDataPoint[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = new MutableDataPoint();
+        }
+
+        return points;
+    }
+
+    /**
+     * Moves the point.
+     *
+     * @param x the x value
+     * @param y the y value
+     */
+    void set(double x, double y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Gets the x value.
+     *
+     * @return the x value
+     */
+    @Override
+    public double getX() {
+        return this.x;
+    }
+
+    /**
+     * Gets the y value.
+     *
+     * @return the y value
+     */
+    @Override
+    public double getY() {
+        return this.y;
+    }
+}
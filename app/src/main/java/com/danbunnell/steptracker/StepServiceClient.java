@@ -0,0 +1,24 @@
+package com.danbunnell.steptracker;
+
+import com.danbunnell.steptracker.stepservice.StepService;
+
+/**
+ * A user interface component that uses the {@link StepService} once {@link MainActivity} has bound
+ * to it.
+ */
+public interface StepServiceClient {
+    /**
+     * Called once the step service is available.  Called immediately on registering with the
+     * activity if the service is already bound.
+     *
+     * @param stepService the step service
+     */
+    void onStepServiceConnected(StepService stepService);
+
+    /**
+     * Called when the step service is lost unexpectedly, such as when its process dies.  The
+     * service passed to {@link #onStepServiceConnected(StepService)} must no longer be used; that
+     * method is called again if the service comes back.
+     */
+    void onStepServiceDisconnected();
+}
@@ -3,7 +3,6 @@ package com.danbunnell.steptracker;
 
 import android.content.Context;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.v4.app.Fragment;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -14,35 +13,21 @@ import android.widget.GridView;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 
-import com.danbunnell.steptracker.stepservice.StepListener;
-
 /**
  * A simple {@link Fragment} subclass.
+ *
+ * <p>Redrawn only when the {@link UiStateStore} reports a new step count, and then only the views
+ * whose values changed.</p>
  */
-public class StepTrackerFragment extends Fragment {
+public class StepTrackerFragment extends Fragment implements UiStateStore.Observer {
 
     private static final String TAG = "StepTrackerFragment";
 
-    /**
-     * the user interface update interval in milliseconds
-     */
-    private static final long UI_UPDATE_INTERVAL_MS = 2000;
-
     /**
      * the number of steps it requires to earn a heart
      */
     private static final int STEPS_PER_HEART = 30;
 
-    /**
-     * a thread scheduler
-     */
-    private final Handler handler = new Handler();
-
-    /**
-     * timer that controls user interface update intervals
-     */
-    private Runnable interfaceUpdateTimer;
-
     /**
      * the health bar
      */
@@ -63,6 +48,22 @@ public class StepTrackerFragment extends Fragment {
      */
     private int currentStepCount = 0;
 
+    /**
+     * the state store
+     */
+    private UiStateStore uiStateStore;
+
+    /**
+     * the step service's total at the last interface update.  Steps taken while the fragment was
+     * hidden are picked up on the next update
+     */
+    private long lastServiceStepCount = 0;
+
+    /**
+     * the health bar weight last drawn, or -1 if it has not been drawn
+     */
+    private float drawnHealthBarWeight = -1f;
+
     /**
      * Holds the current number of hearts
      */
@@ -108,6 +109,9 @@ public class StepTrackerFragment extends Fragment {
         this.btnResetHealth.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
+                if (uiStateStore != null) {
+                    lastServiceStepCount = uiStateStore.getStepCount();
+                }
                 currentStepCount = 0;
                 hearts = 0;
                 updateInterface();
@@ -122,28 +126,9 @@ public class StepTrackerFragment extends Fragment {
     public void onStart() {
         super.onStart();
 
+        this.uiStateStore = ((MainActivity) this.getActivity()).getUiStateStore();
+        this.uiStateStore.addObserver(this);
         this.updateInterface();
-
-        this.interfaceUpdateTimer = new Runnable() {
-            @Override
-            public void run() {
-                updateInterface();
-                handler.postDelayed(interfaceUpdateTimer, StepTrackerFragment.UI_UPDATE_INTERVAL_MS);
-            }
-        };
-
-        MainActivity.getStepService().registerStepListener(StepTrackerFragment.TAG, new StepListener() {
-            @Override
-            public void onSteps(int stepCount) {
-                if ((currentStepCount % STEPS_PER_HEART) + stepCount >= STEPS_PER_HEART) {
-                    hearts++;
-                }
-
-                currentStepCount += stepCount;
-            }
-        });
-
-        handler.postDelayed(this.interfaceUpdateTimer, StepTrackerFragment.UI_UPDATE_INTERVAL_MS);
     }
 
     /**
@@ -152,14 +137,30 @@ public class StepTrackerFragment extends Fragment {
     @Override
     public void onStop() {
         super.onStop();
-        MainActivity.getStepService().unregisterStepListener(StepTrackerFragment.TAG);
-        this.handler.removeCallbacks(this.interfaceUpdateTimer);
+        this.uiStateStore.removeObserver(this);
+    }
+
+    /**
+     * Called when the user interface state changes.
+     *
+     * @param store the state store
+     */
+    @Override
+    public void onStateChanged(UiStateStore store) {
+        this.updateInterface();
     }
 
     /**
      * Updates the user interface.
      */
     private void updateInterface() {
+        long serviceStepCount = this.uiStateStore.getStepCount();
+        int stepCount = (int) (serviceStepCount - this.lastServiceStepCount);
+        this.lastServiceStepCount = serviceStepCount;
+
+        this.hearts += ((this.currentStepCount % STEPS_PER_HEART) + stepCount) / STEPS_PER_HEART;
+        this.currentStepCount += stepCount;
+
         this.updateHealthBar();
         this.updateHeartContainer();
     }
@@ -168,8 +169,15 @@ public class StepTrackerFragment extends Fragment {
      * Updates the health bar UI element
      */
     private void updateHealthBar() {
+        float weight = (this.currentStepCount % STEPS_PER_HEART) / (float)STEPS_PER_HEART;
+        if (weight == this.drawnHealthBarWeight) {
+            return;
+        }
+
+        // Setting layout parameters requests a layout pass, so only do it when the bar moves
+        this.drawnHealthBarWeight = weight;
         LinearLayout.LayoutParams healthBarParams = (LinearLayout.LayoutParams) this.llHealthBar.getLayoutParams();
-        healthBarParams.weight = (this.currentStepCount % STEPS_PER_HEART) / (float)STEPS_PER_HEART;
+        healthBarParams.weight = weight;
         this.llHealthBar.setLayoutParams(healthBarParams);
     }
 
@@ -257,12 +265,17 @@ public class StepTrackerFragment extends Fragment {
         }
 
         /**
-         * Sets the heart count.
+         * Sets the heart count, redrawing the grid if it changed.
          *
          * @param heartCount the heart count
          */
         public void setHeartCount(int heartCount) {
+            if (heartCount == this.heartCount) {
+                return;
+            }
+
             this.heartCount = heartCount;
+            this.notifyDataSetChanged();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,240 @@
+package com.danbunnell.steptracker;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the state the user interface shows and tells observers when it changes.
+ *
+ * <p>The state is written from the step service's background threads as events arrive.  A write
+ * that changes a value schedules one notification for the next display frame, using
+ * {@link Choreographer} where available and a frame-length delay on older devices, so any number of
+ * writes within a frame cost a single redraw.  Nothing is scheduled while nothing changes, so the
+ * user interface is idle while the user is still.</p>
+ *
+ * <p>Observers are called on the main thread and should only touch views whose values differ
+ * from what they last drew.</p>
+ */
+public class UiStateStore {
+
+    private static final String TAG = "UiStateStore";
+
+    /**
+     * the frame interval used where {@link Choreographer} is unavailable
+     */
+    private static final long FALLBACK_FRAME_INTERVAL_MS = 16;
+
+    /**
+     * Receives state changes.
+     */
+    public interface Observer {
+        /**
+         * Called on the main thread, at most once per frame, after the state has changed.
+         *
+         * @param store the store
+         */
+        void onStateChanged(UiStateStore store);
+    }
+
+    /**
+     * the total number of steps counted by the step service
+     */
+    private final AtomicLong stepCount = new AtomicLong();
+
+    /**
+     * the number of steps reported by the step detector sensor
+     */
+    private final AtomicLong stepSensorStepCount = new AtomicLong();
+
+    /**
+     * the number of accelerometer samples recorded for display
+     */
+    private final AtomicLong sampleCount = new AtomicLong();
+
+    /**
+     * the registered observers, only touched on the main thread
+     */
+    private final List<Observer> observers = new ArrayList<>();
+
+    /**
+     * posts work to the main thread
+     */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * whether a notification has been scheduled and not yet delivered
+     */
+    private final AtomicBoolean framePending = new AtomicBoolean();
+
+    /**
+     * schedules the next frame, run on the main thread
+     */
+    private final Runnable scheduleFrameTask = new Runnable() {
+        @Override
+        public void run() {
+            scheduleFrame();
+        }
+    };
+
+    /**
+     * delivers the notification on devices without {@link Choreographer}
+     */
+    private final Runnable fallbackFrameTask = new Runnable() {
+        @Override
+        public void run() {
+            onFrame();
+        }
+    };
+
+    /**
+     * delivers the notification on the next display frame, created on first use
+     */
+    private Object frameCallback;
+
+    /**
+     * Registers an observer.  Must be called on the main thread.
+     *
+     * @param observer the observer
+     */
+    public void addObserver(Observer observer) {
+        this.observers.add(observer);
+    }
+
+    /**
+     * Unregisters an observer.  Must be called on the main thread.
+     *
+     * @param observer the observer
+     */
+    public void removeObserver(Observer observer) {
+        this.observers.remove(observer);
+    }
+
+    /**
+     * Gets the total number of steps counted by the step service.
+     *
+     * @return the step count
+     */
+    public long getStepCount() {
+        return this.stepCount.get();
+    }
+
+    /**
+     * Sets the total number of steps counted by the step service.  May be called on any thread.
+     *
+     * @param stepCount the step count
+     */
+    public void setStepCount(long stepCount) {
+        if (this.stepCount.getAndSet(stepCount) != stepCount) {
+            this.invalidate();
+        }
+    }
+
+    /**
+     * Gets the number of steps reported by the step detector sensor.
+     *
+     * @return the step count
+     */
+    public long getStepSensorStepCount() {
+        return this.stepSensorStepCount.get();
+    }
+
+    /**
+     * Adds steps reported by the step detector sensor.  May be called on any thread.
+     *
+     * @param steps the number of steps
+     */
+    public void addStepSensorSteps(int steps) {
+        if (steps != 0) {
+            this.stepSensorStepCount.addAndGet(steps);
+            this.invalidate();
+        }
+    }
+
+    /**
+     * Gets the number of accelerometer samples recorded for display.
+     *
+     * @return the sample count
+     */
+    public long getSampleCount() {
+        return this.sampleCount.get();
+    }
+
+    /**
+     * Records that accelerometer samples have been added to a displayed series.  May be called on
+     * any thread.
+     *
+     * @param samples the number of samples
+     */
+    public void addSamples(int samples) {
+        if (samples != 0) {
+            this.sampleCount.addAndGet(samples);
+            this.invalidate();
+        }
+    }
+
+    /**
+     * Schedules a notification for the next frame unless one is already pending.
+     */
+    private void invalidate() {
+        if (!this.framePending.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            this.scheduleFrame();
+        } else {
+            this.mainHandler.post(this.scheduleFrameTask);
+        }
+    }
+
+    /**
+     * Asks for a callback on the next frame.  Must be called on the main thread.
+     */
+    private void scheduleFrame() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            Choreographer.getInstance().postFrameCallback(this.getFrameCallback());
+        } else {
+            this.mainHandler.postDelayed(this.fallbackFrameTask, FALLBACK_FRAME_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Gets the frame callback, creating it on first use so that older devices never load
+     * {@link Choreographer}.
+     *
+     * @return the frame callback
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Choreographer.FrameCallback getFrameCallback() {
+        if (this.frameCallback == null) {
+            this.frameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onFrame();
+                }
+            };
+        }
+
+        return (Choreographer.FrameCallback) this.frameCallback;
+    }
+
+    /**
+     * Notifies the observers.  Called on the main thread.
+     */
+    private void onFrame() {
+        // Cleared first so a write made while observers run schedules another frame
+        this.framePending.set(false);
+
+        for (int i = 0; i < this.observers.size(); i++) {
+            this.observers.get(i).onStateChanged(this);
+        }
+    }
+}
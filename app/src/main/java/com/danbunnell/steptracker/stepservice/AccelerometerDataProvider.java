@@ -4,14 +4,34 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
 
+import com.danbunnell.steptracker.common.ListenerRegistry;
 import com.danbunnell.steptracker.common.SignalFilter;
-
-import java.util.HashMap;
-import java.util.Map;
+import com.danbunnell.steptracker.engine.SampleSink;
+import com.danbunnell.steptracker.engine.SamplePipeline;
+import com.danbunnell.steptracker.metrics.PipelineMetrics;
+import com.danbunnell.steptracker.metrics.SensorTimingMonitor;
+import com.danbunnell.steptracker.metrics.SensorTimingSnapshot;
+import com.danbunnell.steptracker.stream.SampleSubscription;
 
 import static android.util.Log.*;
 
+/**
+ * Provides filtered accelerometer data.
+ *
+ * <p>Sensor events are collected into a batch and processed together once the sensor thread has
+ * finished delivering them.  In batching mode the sensor hub holds samples in its hardware FIFO and
+ * flushes them in bursts, so the application processor wakes once per burst instead of once per
+ * sample, and each burst is processed in a single pass.</p>
+ *
+ * <p>Android rarely delivers exactly the requested rate, so the {@link SamplePipeline} resamples
+ * the magnitude of each event by its {@link SensorEvent#timestamp} onto a fixed grid at the sample
+ * rate before filtering, and everything downstream can rely on samples being evenly spaced.  How
+ * far the timestamps are from the requested rate is tracked by a {@link SensorTimingMonitor}.</p>
+ */
 class AccelerometerDataProvider implements SensorEventListener {
 
     private static final String TAG = "AccelerometerDataProvider";
@@ -26,20 +46,77 @@ class AccelerometerDataProvider implements SensorEventListener {
      */
     private Sensor accelerometer;
 
+    /**
+     * the wake-up variant of the accelerometer, or null if there is none
+     */
+    private Sensor wakeUpAccelerometer;
+
     /**
      * the registered callbacks
      */
-    private Map<String, AccelerometerListener> callbacks;
+    private final ListenerRegistry<AccelerometerListener> callbacks;
+
+    /**
+     * the registered callbacks for unprocessed samples
+     */
+    private final ListenerRegistry<RawAccelerometerListener> rawCallbacks;
 
     /**
-     * used to filter raw accelerometer data
+     * the subscriptions, which buffer samples for subscribers on their own executors
      */
-    private SignalFilter filter;
+    private final ListenerRegistry<SampleSubscription> subscriptions;
 
     /**
-     * sensor sample rate in hertz (Hz)
+     * the period requested from the sensor in milliseconds, which may be longer than the grid
+     * period to save power
      */
-    private long sampleRateMs;
+    private long sensorSampleRateMs;
+
+    /**
+     * how long the sensor hub may hold samples before delivering them, or zero to deliver each
+     * sample as it is taken
+     */
+    private long maxReportLatencyMs;
+
+    /**
+     * whether the provider is listening to the accelerometer
+     */
+    private boolean started;
+
+    /**
+     * a handler for the thread that receives sensor events
+     */
+    private Handler handler;
+
+    /**
+     * computes, resamples and filters magnitudes
+     */
+    private final SamplePipeline pipeline;
+
+    /**
+     * hands filtered magnitudes to the callbacks
+     */
+    private final SampleSink sink;
+
+    /**
+     * times the sensor delivery and sample processing stages
+     */
+    private final PipelineMetrics metrics;
+
+    /**
+     * tracks how evenly the accelerometer delivers samples
+     */
+    private final SensorTimingMonitor timingMonitor;
+
+    /**
+     * whether the batch task has been posted
+     */
+    private boolean batchPending;
+
+    /**
+     * processes the current batch once the sensor thread has delivered it
+     */
+    private final Runnable batchTask;
 
     /**
      * Initializes a new instance of the {@link AccelerometerDataProvider} class.
@@ -47,13 +124,75 @@ class AccelerometerDataProvider implements SensorEventListener {
      * @param sensorManager the sensor manager
      * @param sampleRateMs  the sample rate in milliseconds
      * @param filter        the signal filter
+     * @param handler       a handler for the thread that receives sensor events
+     * @param metrics       times the sensor delivery and sample processing stages
      */
-    AccelerometerDataProvider(SensorManager sensorManager, long sampleRateMs, SignalFilter filter) {
+    AccelerometerDataProvider(
+            SensorManager sensorManager,
+            long sampleRateMs,
+            SignalFilter filter,
+            Handler handler,
+            PipelineMetrics metrics) {
         this.sensorManager = sensorManager;
         this.accelerometer = this.sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-        this.callbacks = new HashMap<>();
-        this.sampleRateMs = sampleRateMs;
-        this.filter = filter;
+        this.wakeUpAccelerometer = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                ? this.sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER, true)
+                : null;
+        this.callbacks = new ListenerRegistry<>(AccelerometerListener.class);
+        this.rawCallbacks = new ListenerRegistry<>(RawAccelerometerListener.class);
+        this.subscriptions = new ListenerRegistry<>(SampleSubscription.class);
+        this.sensorSampleRateMs = sampleRateMs;
+        this.maxReportLatencyMs = 0;
+        this.started = false;
+        this.handler = handler;
+        this.metrics = metrics;
+        this.timingMonitor = new SensorTimingMonitor();
+
+        this.pipeline = new SamplePipeline(sampleRateMs, filter);
+        this.sink = new SampleSink() {
+            @Override
+            public void onSamples(long[] timestampsNs, float[] magnitudes, float[] filteredMagnitudes, int length) {
+                AccelerometerDataProvider.this.metrics.increment(PipelineMetrics.Counter.SAMPLES, length);
+
+                AccelerometerListener[] callbacks = AccelerometerDataProvider.this.callbacks.getListeners();
+                for (int c = 0; c < callbacks.length; c++) {
+                    AccelerometerListener callback = callbacks[c];
+                    for (int i = 0; i < length; i++) {
+                        callback.onAccelerometerData(timestampsNs[i], magnitudes[i], filteredMagnitudes[i]);
+                    }
+                }
+
+                SampleSubscription[] subscriptions = AccelerometerDataProvider.this.subscriptions.getListeners();
+                for (int s = 0; s < subscriptions.length; s++) {
+                    subscriptions[s].offer(timestampsNs, magnitudes, filteredMagnitudes, length);
+                }
+            }
+        };
+        this.batchPending = false;
+        this.batchTask = new Runnable() {
+            @Override
+            public void run() {
+                processBatch();
+            }
+        };
+    }
+
+    /**
+     * Returns whether any callbacks are registered.
+     *
+     * @return true if there is at least one callback of any kind or subscription
+     */
+    public boolean hasCallbacks() {
+        return !this.callbacks.isEmpty() || !this.rawCallbacks.isEmpty() || !this.subscriptions.isEmpty();
+    }
+
+    /**
+     * Copies the delivery timing statistics for the current sensor rate.
+     *
+     * @return the statistics
+     */
+    public SensorTimingSnapshot getTimingSnapshot() {
+        return this.timingMonitor.snapshot();
     }
 
     /**
@@ -63,30 +202,127 @@ class AccelerometerDataProvider implements SensorEventListener {
      * @param callback a callback
      */
     public void registerCallback(String identifier, AccelerometerListener callback) {
-        this.callbacks.put(identifier, callback);
+        this.callbacks.register(identifier, callback);
+    }
+
+    /**
+     * Registers a callback for the onRawAccelerometerData event.
+     *
+     * @param identifier an identifier for the callback
+     * @param callback   a callback
+     */
+    public void registerCallback(String identifier, RawAccelerometerListener callback) {
+        this.rawCallbacks.register(identifier, callback);
     }
 
     /**
-     * Unregisters a callback for the onAccelerometerData event.
+     * Subscribes to filtered samples, closing any subscription with the same identifier.
+     *
+     * @param identifier   an identifier for the subscription
+     * @param subscription the subscription
+     */
+    public void subscribe(String identifier, SampleSubscription subscription) {
+        // Swapped under the registry's lock, so a racing subscribe cannot leave one unclosed
+        SampleSubscription replaced = this.subscriptions.register(identifier, subscription);
+
+        if (replaced != null) {
+            replaced.close();
+        }
+    }
+
+    /**
+     * Closes and removes a subscription.  Does nothing if no subscription has the identifier.
+     *
+     * @param identifier the subscription identifier
+     */
+    public void unsubscribe(String identifier) {
+        SampleSubscription subscription = this.subscriptions.unregister(identifier);
+
+        if (subscription != null) {
+            subscription.close();
+        }
+    }
+
+    /**
+     * Unregisters a callback for the onAccelerometerData or onRawAccelerometerData event.
      *
      * @param identifier the callback identifier
      */
     public void unregisterCallback(String identifier) {
-        this.callbacks.remove(identifier);
+        this.callbacks.unregister(identifier);
+        this.rawCallbacks.unregister(identifier);
+    }
+
+    /**
+     * Sets how long the sensor hub may batch samples before delivering them.  Takes effect
+     * immediately if the provider is listening.
+     *
+     * <p>Where the device has a wake-up accelerometer with a FIFO, it is used while batching.  A
+     * wake-up sensor wakes the processor to deliver its FIFO before it overflows, so samples keep
+     * flowing with the screen off without holding a wakelock.  A non-wakeup sensor would drop
+     * samples while the processor sleeps.</p>
+     *
+     * <p>Has no effect on devices without a hardware FIFO for the accelerometer, which deliver each
+     * sample as it is taken.</p>
+     *
+     * @param maxReportLatencyMs the maximum report latency in milliseconds, or zero to disable
+     *                           batching
+     */
+    public synchronized void setMaxReportLatencyMs(long maxReportLatencyMs) {
+        this.maxReportLatencyMs = maxReportLatencyMs;
+
+        if (this.started) {
+            this.sensorManager.unregisterListener(this);
+            this.register();
+        }
+    }
+
+    /**
+     * Sets the rate requested from the sensor.  Takes effect immediately if the provider is
+     * listening.
+     *
+     * <p>Samples are still produced at the sample rate given to the constructor, interpolated from
+     * whatever the sensor delivers, so filter and detector state carry across the change.</p>
+     *
+     * @param sensorSampleRateMs the sensor sampling period in milliseconds
+     */
+    public synchronized void setSensorSampleRateMs(long sensorSampleRateMs) {
+        if (sensorSampleRateMs == this.sensorSampleRateMs) {
+            return;
+        }
+
+        this.sensorSampleRateMs = sensorSampleRateMs;
+
+        if (this.started) {
+            this.sensorManager.unregisterListener(this);
+            this.register();
+        }
+    }
+
+    /**
+     * Asks the sensor hub to deliver any batched samples now.
+     */
+    public synchronized void flush() {
+        if (this.started && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            this.sensorManager.flush(this);
+        }
     }
 
     /**
      * Starts listening to the accelerometer.
      */
-    public void onStart() {
-        this.sensorManager.registerListener(this, this.accelerometer, this.convertMsToMicroseconds(this.sampleRateMs));
+    public synchronized void onStart() {
+        this.started = true;
+        this.register();
     }
 
     /**
      * Stops listening to the accelerometer.
      */
-    public void onStop() {
+    public synchronized void onStop() {
+        this.started = false;
         this.sensorManager.unregisterListener(this);
+        this.timingMonitor.restart();
     }
 
     /**
@@ -96,12 +332,34 @@ class AccelerometerDataProvider implements SensorEventListener {
      */
     @Override
     public void onSensorChanged(SensorEvent sensorEvent) {
-        float magnitude = this.getMagnitude(sensorEvent);
-        float filteredMagnitude = this.filter.filter(magnitude);
+        if (!this.batchPending) {
+            // Events that arrive together are delivered in one pass of the sensor looper, so this
+            // runs once they have all been added
+            this.batchPending = true;
+            this.handler.post(this.batchTask);
+        }
+
+        long timestampNs = sensorEvent.timestamp;
 
-        for(AccelerometerListener callback : callbacks.values()) {
-            callback.onAccelerometerData(magnitude, filteredMagnitude);
+        this.timingMonitor.add(timestampNs);
+        this.metrics.increment(PipelineMetrics.Counter.SENSOR_EVENTS, 1);
+        if (this.metrics.isEnabled() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            // Sensor timestamps share the elapsed realtime clock on current devices
+            this.metrics.record(
+                    PipelineMetrics.Stage.SENSOR_DELIVERY,
+                    SystemClock.elapsedRealtimeNanos() - timestampNs);
         }
+
+        float x = sensorEvent.values[0];
+        float y = sensorEvent.values[1];
+        float z = sensorEvent.values[2];
+
+        RawAccelerometerListener[] rawCallbacks = this.rawCallbacks.getListeners();
+        for (int c = 0; c < rawCallbacks.length; c++) {
+            rawCallbacks[c].onRawAccelerometerData(timestampNs, x, y, z);
+        }
+
+        this.pipeline.add(timestampNs, x, y, z, this.sink);
     }
 
     /**
@@ -115,13 +373,48 @@ class AccelerometerDataProvider implements SensorEventListener {
     }
 
     /**
-     * Gets the magnitude of a sensor event.
-     *
-     * @param sensorEvent the sensor event
-     * @return            a magnitude
+     * Registers with the sensor manager, batching if requested and supported.
      */
-    private float getMagnitude(SensorEvent sensorEvent) {
-        return sensorEvent.values[0] + sensorEvent.values[1] + sensorEvent.values[2] - SensorManager.GRAVITY_EARTH;
+    private void register() {
+        int samplingPeriodUs = this.convertMsToMicroseconds(this.sensorSampleRateMs);
+        this.timingMonitor.setExpectedPeriodNs(samplingPeriodUs * 1000L);
+
+        if (this.maxReportLatencyMs > 0
+                && this.wakeUpAccelerometer != null
+                && this.wakeUpAccelerometer.getFifoMaxEventCount() > 0) {
+            this.sensorManager.registerListener(
+                    this,
+                    this.wakeUpAccelerometer,
+                    samplingPeriodUs,
+                    this.convertMsToMicroseconds(this.maxReportLatencyMs),
+                    this.handler);
+        } else if (this.maxReportLatencyMs > 0
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                && this.accelerometer.getFifoMaxEventCount() > 0) {
+            this.sensorManager.registerListener(
+                    this,
+                    this.accelerometer,
+                    samplingPeriodUs,
+                    this.convertMsToMicroseconds(this.maxReportLatencyMs),
+                    this.handler);
+        } else {
+            if (this.maxReportLatencyMs > 0) {
+                d(TAG, "Accelerometer batching is not supported, delivering samples individually");
+            }
+
+            this.sensorManager.registerListener(this, this.accelerometer, samplingPeriodUs, this.handler);
+        }
+    }
+
+    /**
+     * Processes the current batch in one pass.
+     */
+    private void processBatch() {
+        this.batchPending = false;
+
+        long startNs = this.metrics.startTimer();
+        this.pipeline.flush(this.sink);
+        this.metrics.stopTimer(PipelineMetrics.Stage.SAMPLE_PROCESSING, startNs);
     }
 
     /**
@@ -133,4 +426,4 @@ class AccelerometerDataProvider implements SensorEventListener {
     private int convertMsToMicroseconds(long ms) {
         return (int) ms * 1000;
     }
-}
\ No newline at end of file
+}
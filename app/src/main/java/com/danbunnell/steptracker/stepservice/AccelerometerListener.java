@@ -7,8 +7,10 @@ public interface AccelerometerListener {
     /**
      * Called when accelerometer data has been received.
      *
+     * @param timestampNs       the time of the sample on the evenly spaced grid, in the sensor's
+     *                          nanoseconds
      * @param magnitude         raw accelerometer vector magnitude
      * @param filteredMagnitude filtered accelerometer vector magnitude
      */
-    void onAccelerometerData(float magnitude, float filteredMagnitude);
+    void onAccelerometerData(long timestampNs, float magnitude, float filteredMagnitude);
 }
@@ -0,0 +1,110 @@
+package com.danbunnell.steptracker.stepservice;
+
+/**
+ * Decides whether the device is moving from the variance of the filtered acceleration magnitude.
+ *
+ * <p>The variance is exponentially weighted, so it costs O(1) per sample and constant memory.  The
+ * device is considered still once the variance has stayed below a low threshold for a while, and
+ * moving again as soon as it rises above a higher one.</p>
+ */
+class MotionStateMonitor {
+    private static final String TAG = "MotionStateMonitor";
+
+    /**
+     * variance below which the device may be still, in (m/s^2)^2
+     */
+    private static final float STILL_VARIANCE_THRESHOLD = 0.05f;
+
+    /**
+     * variance above which the device is moving, in (m/s^2)^2
+     */
+    private static final float MOVING_VARIANCE_THRESHOLD = 0.2f;
+
+    /**
+     * how long the variance must stay low before the device is considered still
+     */
+    private static final long STILL_DURATION_MS = 10000;
+
+    /**
+     * the time constant of the exponentially weighted statistics
+     */
+    private static final long TIME_CONSTANT_MS = 500;
+
+    /**
+     * the weight of each new sample
+     */
+    private final float alpha;
+
+    /**
+     * the number of consecutive low-variance samples needed to become still
+     */
+    private final int stillSamples;
+
+    private float mean;
+
+    private float variance;
+
+    /**
+     * the number of consecutive samples with low variance
+     */
+    private int quietSamples;
+
+    private boolean moving;
+
+    /**
+     * Initializes a new instance of the {@link MotionStateMonitor} class.
+     *
+     * @param sampleRateMs the sample rate in milliseconds
+     */
+    MotionStateMonitor(long sampleRateMs) {
+        this.alpha = Math.min(1f, sampleRateMs / (float) TIME_CONSTANT_MS);
+        this.stillSamples = Math.round(STILL_DURATION_MS / (float) sampleRateMs);
+        this.reset();
+    }
+
+    /**
+     * Adds a filtered magnitude.
+     *
+     * @param vector a filtered acceleration magnitude
+     * @return       true if the motion state changed
+     */
+    boolean add(float vector) {
+        float delta = vector - this.mean;
+        this.mean += this.alpha * delta;
+        this.variance = (1 - this.alpha) * (this.variance + this.alpha * delta * delta);
+
+        if (this.moving) {
+            this.quietSamples = this.variance < STILL_VARIANCE_THRESHOLD ? this.quietSamples + 1 : 0;
+
+            if (this.quietSamples >= this.stillSamples) {
+                this.moving = false;
+                return true;
+            }
+        } else if (this.variance > MOVING_VARIANCE_THRESHOLD) {
+            this.moving = true;
+            this.quietSamples = 0;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns whether the device is moving.
+     *
+     * @return true if moving, false if still
+     */
+    boolean isMoving() {
+        return this.moving;
+    }
+
+    /**
+     * Forgets all history and assumes the device is moving.
+     */
+    void reset() {
+        this.mean = 0;
+        this.variance = 0;
+        this.quietSamples = 0;
+        this.moving = true;
+    }
+}
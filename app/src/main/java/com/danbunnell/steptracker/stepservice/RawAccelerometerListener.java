@@ -0,0 +1,16 @@
+package com.danbunnell.steptracker.stepservice;
+
+/**
+ * A callback to register with the {@link AccelerometerDataProvider} for unprocessed samples
+ */
+public interface RawAccelerometerListener {
+    /**
+     * Called for each accelerometer sample as the sensor delivers it, on the sensor thread.
+     *
+     * @param timestampNs the sensor event timestamp in nanoseconds
+     * @param x           the x axis in m/s^2
+     * @param y           the y axis in m/s^2
+     * @param z           the z axis in m/s^2
+     */
+    void onRawAccelerometerData(long timestampNs, float x, float y, float z);
+}
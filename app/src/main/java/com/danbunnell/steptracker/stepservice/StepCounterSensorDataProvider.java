@@ -0,0 +1,280 @@
+package com.danbunnell.steptracker.stepservice;
+
+import android.content.SharedPreferences;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.danbunnell.steptracker.common.ListenerRegistry;
+import com.danbunnell.steptracker.engine.StepCounterReconciler;
+import com.danbunnell.steptracker.gait.GaitTracker;
+
+/**
+ * Provides steps from the cumulative hardware step counter.
+ *
+ * <p>The sensor hub counts steps itself, so the application processor only wakes to collect the
+ * total.  Every reading is saved as soon as it is taken, and the first reading after the process
+ * or the device restarts is reconciled against it by a {@link StepCounterReconciler}, so steps taken
+ * while the app was not running are delivered as one backfilled batch, and steps already delivered
+ * before the process was killed are not delivered again.</p>
+ *
+ * <p>Readings only carry a total, not the time of each step, so they only advance a
+ * {@link GaitTracker}'s clock, letting a pause end the current walking bout.</p>
+ */
+class StepCounterSensorDataProvider implements SensorEventListener {
+
+    private static final String TAG = "StepCounterSensorDataProvider";
+
+    /**
+     * the preference holding the last counter reading
+     */
+    private static final String KEY_COUNTER_VALUE = "stepCounter.counterValue";
+
+    /**
+     * the preference holding the uptime at the last reading
+     */
+    private static final String KEY_ELAPSED_REALTIME_MS = "stepCounter.elapsedRealtimeMs";
+
+    /**
+     * the preference holding the boot count at the last reading
+     */
+    private static final String KEY_BOOT_COUNT = "stepCounter.bootCount";
+
+    /**
+     * manages sensors
+     */
+    private final SensorManager sensorManager;
+
+    /**
+     * the step counter sensor, or null if there is none
+     */
+    private final Sensor stepCounterSensor;
+
+    /**
+     * the registered callbacks
+     */
+    private final ListenerRegistry<StepListener> callbacks;
+
+    /**
+     * a handler for the thread that receives sensor events
+     */
+    private final Handler handler;
+
+    /**
+     * holds the last reading across restarts
+     */
+    private final SharedPreferences preferences;
+
+    /**
+     * converts readings into steps
+     */
+    private final StepCounterReconciler reconciler;
+
+    /**
+     * has its clock advanced by each reading
+     */
+    private final GaitTracker gaitTracker;
+
+    /**
+     * the number of times the device has booted, or {@link StepCounterReconciler#UNKNOWN}
+     */
+    private final long bootCount;
+
+    /**
+     * how long the sensor hub may hold readings before delivering them
+     */
+    private long maxReportLatencyMs;
+
+    /**
+     * whether the provider is listening to the step counter
+     */
+    private boolean started;
+
+    /**
+     * Initializes a new instance of the {@link StepCounterSensorDataProvider} class.
+     *
+     * @param sensorManager the sensor manager
+     * @param handler       a handler for the thread that receives sensor events
+     * @param preferences   holds the last reading across restarts
+     * @param gaitTracker   has its clock advanced by each reading
+     * @param bootCount     the number of times the device has booted, or
+     *                      {@link StepCounterReconciler#UNKNOWN} where the system does not report it
+     */
+    StepCounterSensorDataProvider(
+            SensorManager sensorManager,
+            Handler handler,
+            SharedPreferences preferences,
+            GaitTracker gaitTracker,
+            long bootCount) {
+        this.sensorManager = sensorManager;
+        this.stepCounterSensor = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                ? this.sensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER)
+                : null;
+        this.callbacks = new ListenerRegistry<>(StepListener.class);
+        this.handler = handler;
+        this.preferences = preferences;
+        this.gaitTracker = gaitTracker;
+        this.bootCount = bootCount;
+        this.reconciler = new StepCounterReconciler(
+                preferences.getLong(KEY_COUNTER_VALUE, StepCounterReconciler.UNKNOWN),
+                preferences.getLong(KEY_ELAPSED_REALTIME_MS, 0),
+                preferences.getLong(KEY_BOOT_COUNT, StepCounterReconciler.UNKNOWN));
+        this.maxReportLatencyMs = 0;
+        this.started = false;
+    }
+
+    /**
+     * Returns whether the device has a step counter.
+     *
+     * @return true if the step counter is available
+     */
+    public boolean isAvailable() {
+        return this.stepCounterSensor != null;
+    }
+
+    /**
+     * Registers a callback for the onSteps event.
+     *
+     * @param identifier an identifier for the callback
+     * @param callback   a callback
+     */
+    public void registerCallback(String identifier, StepListener callback) {
+        this.callbacks.register(identifier, callback);
+    }
+
+    /**
+     * Unregisters a callback for the onSteps event.
+     *
+     * @param identifier the callback identifier
+     */
+    public void unregisterCallback(String identifier) {
+        this.callbacks.unregister(identifier);
+    }
+
+    /**
+     * Sets how long the sensor hub may hold readings before delivering them.  Takes effect
+     * immediately if the provider is listening.
+     *
+     * @param maxReportLatencyMs the maximum report latency in milliseconds, or zero to deliver
+     *                           each reading as it is taken
+     */
+    public synchronized void setMaxReportLatencyMs(long maxReportLatencyMs) {
+        this.maxReportLatencyMs = maxReportLatencyMs;
+
+        if (this.started) {
+            this.sensorManager.unregisterListener(this);
+            this.register();
+        }
+    }
+
+    /**
+     * Asks the sensor hub to deliver the current reading now.
+     */
+    public synchronized void flush() {
+        if (this.started) {
+            this.sensorManager.flush(this);
+        }
+    }
+
+    /**
+     * Starts listening to the step counter.
+     */
+    public synchronized void onStart() {
+        if (this.stepCounterSensor == null) {
+            return;
+        }
+
+        this.started = true;
+        this.register();
+    }
+
+    /**
+     * Stops listening to the step counter and saves the last reading.
+     */
+    public synchronized void onStop() {
+        if (!this.started) {
+            return;
+        }
+
+        this.started = false;
+        this.sensorManager.unregisterListener(this);
+
+        // Readings are handled on the sensor thread, so save after any that are still queued
+        this.handler.post(new Runnable() {
+            @Override
+            public void run() {
+                save();
+            }
+        });
+    }
+
+    /**
+     * Called when the registered sensor changes value.
+     *
+     * @param sensorEvent Sensor event data
+     */
+    @Override
+    public void onSensorChanged(SensorEvent sensorEvent) {
+        this.gaitTracker.advanceTo(sensorEvent.timestamp);
+
+        long steps = this.reconciler.onReading(
+                (long) sensorEvent.values[0],
+                SystemClock.elapsedRealtime(),
+                this.bootCount);
+
+        // The counter only reports changes, so this is at most once per step or batch, and apply()
+        // writes to disk in the background
+        this.save();
+
+        if (steps <= 0) {
+            return;
+        }
+
+        int stepCount = (int) Math.min(steps, Integer.MAX_VALUE);
+        StepListener[] callbacks = this.callbacks.getListeners();
+        for (int i = 0; i < callbacks.length; i++) {
+            callbacks[i].onSteps(stepCount);
+        }
+    }
+
+    /**
+     * Called when the sensor accuracy changes.
+     *
+     * @param sensor the sensor whose accuracy changed
+     * @param i      the accuracy value
+     */
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int i) {
+    }
+
+    /**
+     * Registers with the sensor manager.
+     */
+    private void register() {
+        this.sensorManager.registerListener(
+                this,
+                this.stepCounterSensor,
+                SensorManager.SENSOR_DELAY_NORMAL,
+                (int) this.maxReportLatencyMs * 1000,
+                this.handler);
+    }
+
+    /**
+     * Saves the last reading.  Only called on the sensor thread.
+     */
+    private void save() {
+        if (this.reconciler.getLastCounterValue() == StepCounterReconciler.UNKNOWN) {
+            return;
+        }
+
+        this.preferences.edit()
+                .putLong(KEY_COUNTER_VALUE, this.reconciler.getLastCounterValue())
+                .putLong(KEY_ELAPSED_REALTIME_MS, this.reconciler.getLastElapsedRealtimeMs())
+                .putLong(KEY_BOOT_COUNT, this.reconciler.getLastBootCount())
+                .apply();
+    }
+}
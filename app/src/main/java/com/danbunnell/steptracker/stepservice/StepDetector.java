@@ -2,78 +2,145 @@ package com.danbunnell.steptracker.stepservice;
 
 import android.os.Handler;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import com.danbunnell.steptracker.common.ListenerRegistry;
+import com.danbunnell.steptracker.common.SpscSequencer;
+import com.danbunnell.steptracker.engine.StepDetectionEngine;
+import com.danbunnell.steptracker.gait.GaitTracker;
+import com.danbunnell.steptracker.metrics.PipelineMetrics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Classifies steps based on acceleration data.
+ *
+ * <p>Vectors are added from the sensor thread into a lock-free ring, with their grid times, and
+ * drained on the detection handler's thread, where they are handed to a {@link StepDetectionEngine} in
+ * arrival order.  Listeners are notified on the detection thread as soon as the engine confirms a
+ * step.</p>
+ *
+ * <p>Each step is timed by the grid time of the vector that confirmed it, rather than by when its
+ * batch happened to be drained, and handed to a {@link GaitTracker}.  Grid times follow the sensor
+ * timestamps, so pauses, rate changes and dropped vectors do not distort step intervals.</p>
  */
 class StepDetector {
     private static final String TAG = "StepDetector";
 
-    private static final float PEAK_TO_MEAN_CUTOFF_RATIO = 0.6f;
+    /**
+     * the number of vectors that can be waiting for detection, about 20 s at 200 Hz
+     */
+    private static final int RING_CAPACITY = 4096;
 
-    private static final float MIN_PEAK_TO_MEAN_BASE = 2.8f;
+    /**
+     * the number of vectors drained from the ring at a time
+     */
+    private static final int DRAIN_BATCH_SIZE = 256;
+
+    /**
+     * classifies steps from the incoming vectors
+     */
+    private final StepDetectionEngine engine;
+
+    /**
+     * hands ring slots from the sensor thread to the detection thread
+     */
+    private final SpscSequencer sequencer;
+
+    /**
+     * the vectors in the ring
+     */
+    private final float[] vectors;
 
-    private float[] buffer;
+    /**
+     * the grid time of each vector in the ring, in nanoseconds
+     */
+    private final long[] timestampsNs;
 
-    private int bufferIndex;
+    /**
+     * scratch storage for drained vectors, only touched on the detection thread
+     */
+    private final float[] drainVectors;
 
     /**
-     * the detection window size in milliseconds
+     * scratch storage for the grid times of drained vectors, only touched on the detection thread
      */
-    private long detectionWindowMs;
+    private final long[] drainTimestampsNs;
 
     /**
-     * a thread scheduler
+     * schedules detection on the detection thread
      */
-    private final Handler handler = new Handler();
+    private final Handler handler;
 
     /**
-     * timer that controls when we look to detect new steps
+     * whether a drain has been posted and has not yet started
      */
-    private Runnable stepDetectionTimer;
+    private final AtomicBoolean drainPending;
 
-    private Map<String, StepListener> stepListeners;
+    /**
+     * drains the ring through the engine
+     */
+    private final Runnable drainTask;
 
-    public StepDetector(long sampleRateMs, long detectionWindowMs) {
-        this.detectionWindowMs = detectionWindowMs;
-        int bufferSize = Math.round(detectionWindowMs / (float) sampleRateMs);
+    private final ListenerRegistry<StepListener> stepListeners;
 
-        this.buffer = new float[bufferSize];
-        this.bufferIndex = 0;
+    /**
+     * times the detection queue and step detection stages
+     */
+    private final PipelineMetrics metrics;
 
-        this.stepListeners = new HashMap<>();
-    }
+    /**
+     * derives cadence and walking bouts from step times
+     */
+    private final GaitTracker gaitTracker;
 
     /**
-     * Called when the detector is started.
+     * when the pending drain was posted, or {@link PipelineMetrics#DISABLED}
      */
-    public void onStart() {
-        this.stepDetectionTimer = new Runnable() {
+    private volatile long drainPostedNs;
+
+    /**
+     * Initializes a new instance of the {@link StepDetector} class.
+     *
+     * @param engine      the step classification engine
+     * @param handler     a handler for the thread that runs detection
+     * @param metrics     times the detection queue and step detection stages
+     * @param gaitTracker receives the time of each step
+     */
+    public StepDetector(
+            StepDetectionEngine engine,
+            Handler handler,
+            PipelineMetrics metrics,
+            GaitTracker gaitTracker) {
+        this.engine = engine;
+        this.handler = handler;
+        this.sequencer = new SpscSequencer(RING_CAPACITY);
+        this.vectors = new float[this.sequencer.capacity()];
+        this.timestampsNs = new long[this.sequencer.capacity()];
+        this.drainVectors = new float[DRAIN_BATCH_SIZE];
+        this.drainTimestampsNs = new long[DRAIN_BATCH_SIZE];
+        this.drainPending = new AtomicBoolean(false);
+        this.drainTask = new Runnable() {
             /**
-             * Runs the user interface update procedure.
+             * Runs the detection procedure.
              */
             @Override
             public void run() {
-                int stepCountSample = getStepCount();
-                for(StepListener listener : stepListeners.values()) {
-                    listener.onSteps(stepCountSample);
-                }
-
-                handler.postDelayed(stepDetectionTimer, detectionWindowMs);
+                drain();
             }
         };
-
-        handler.postDelayed(this.stepDetectionTimer, detectionWindowMs);
+        this.stepListeners = new ListenerRegistry<>(StepListener.class);
+        this.metrics = metrics;
+        this.gaitTracker = gaitTracker;
+        this.drainPostedNs = PipelineMetrics.DISABLED;
     }
 
     /**
-     * Called when the detector is stopped.
+     * Called when the detector is stopped.  Ends the current walking bout, since the time spent
+     * stopped is not seen.
      */
     public void onStop() {
-        this.handler.removeCallbacks(this.stepDetectionTimer);
+        this.handler.removeCallbacks(this.drainTask);
+        this.drainPending.set(false);
+        this.gaitTracker.endBout();
     }
 
     /**
@@ -83,7 +150,7 @@ class StepDetector {
      * @param listener   the listener
      */
     public void registerStepListener(String identifier, StepListener listener) {
-        this.stepListeners.put(identifier, listener);
+        this.stepListeners.register(identifier, listener);
     }
 
     /**
@@ -92,80 +159,94 @@ class StepDetector {
      * @param identifier the listener identifier
      */
     public void unregisterStepListener(String identifier) {
-        this.stepListeners.remove(identifier);
+        this.stepListeners.unregister(identifier);
     }
 
     /**
-     * Adds a vector to the buffer.
+     * Adds a vector to the detector.  Must always be called from the same thread.
+     *
+     * <p>If detection has fallen a full ring behind, the vector is dropped.</p>
      *
-     * @param vector a vector
+     * @param timestampNs the grid time of the vector in nanoseconds
+     * @param vector      a vector
      */
-    public void add(float vector) {
-        this.buffer[this.bufferIndex] = vector;
-
-        if (this.bufferIndex + 1 < this.buffer.length) {
-            this.bufferIndex++;
+    public void add(long timestampNs, float vector) {
+        long sequence = this.sequencer.claim();
+        if (sequence < 0) {
+            this.metrics.increment(PipelineMetrics.Counter.DROPPED_SAMPLES, 1);
         } else {
-            this.bufferIndex = 0;
+            int index = this.sequencer.index(sequence);
+            this.vectors[index] = vector;
+            this.timestampsNs[index] = timestampNs;
+            this.sequencer.publish(sequence);
+        }
+
+        if (this.drainPending.compareAndSet(false, true)) {
+            this.drainPostedNs = this.metrics.startTimer();
+            this.handler.post(this.drainTask);
         }
     }
 
     /**
-     * Gets the step count from the current buffer.
-     *
-     * @return a step count
+     * Feeds every waiting vector through the engine, notifying listeners of any steps.
      */
-    private int getStepCount() {
-        float[] bufferCopy = this.getBufferCopy();
-
-        int peakCount = 0;
-        int valleyCount = 0;
-        float peakTotal = 0;
-        float valleyTotal = 0;
-
-        ArrayList<Float> peaks = new ArrayList<>();
+    private void drain() {
+        // Clear the flag first, so a vector added after the ring is emptied schedules another drain
+        this.metrics.stopTimer(PipelineMetrics.Stage.DETECTION_QUEUE, this.drainPostedNs);
+        this.drainPending.set(false);
 
-        for (int i = 0; i < bufferCopy.length; i++) {
-            float current = bufferCopy[i];
-            float prev = (i != 0) ? bufferCopy[i - 1] : bufferCopy[bufferCopy.length - 1];
-            float next = (i != bufferCopy.length - 1) ? bufferCopy[i + 1] : bufferCopy[0];
-
-            float forwardSlope = next - current;
-            float backwardSlope = current - prev;
-
-            if (forwardSlope < 0 && backwardSlope > 0) {
-                peakCount++;
-                peakTotal += current;
-                peaks.add(current);
-            } else if (forwardSlope > 0 && backwardSlope < 0) {
-                valleyCount++;
-                valleyTotal += current;
+        long startNs = this.metrics.startTimer();
+        int stepCount = 0;
+        long lastTimestampNs = Long.MIN_VALUE;
+        int length;
+        while ((length = this.drainRing()) > 0) {
+            for (int i = 0; i < length; i++) {
+                int steps = this.engine.add(this.drainVectors[i]);
+
+                if (steps > 0) {
+                    stepCount += steps;
+                    for (int s = 0; s < steps; s++) {
+                        this.gaitTracker.addStep(this.drainTimestampsNs[i]);
+                    }
+                }
             }
-        }
 
-        float peakMean = peakTotal / peakCount;
-        float valleyMean = valleyTotal / valleyCount;
+            lastTimestampNs = this.drainTimestampsNs[length - 1];
+        }
 
-        int stepCount = 0;
+        if (lastTimestampNs != Long.MIN_VALUE) {
+            this.gaitTracker.advanceTo(lastTimestampNs);
+        }
+        this.metrics.stopTimer(PipelineMetrics.Stage.STEP_DETECTION, startNs);
 
-        for(float peak : peaks) {
-            if ((peak > PEAK_TO_MEAN_CUTOFF_RATIO * peakMean)
-                    && (peak - valleyMean > MIN_PEAK_TO_MEAN_BASE)) {
-                stepCount++;
+        if (stepCount > 0) {
+            StepListener[] listeners = this.stepListeners.getListeners();
+            for (int i = 0; i < listeners.length; i++) {
+                listeners[i].onSteps(stepCount);
             }
         }
-
-        return stepCount;
     }
 
     /**
-     * Copies the current buffer.  This is to help avoid concurrency issues.
+     * Removes a batch of vectors and their grid times from the ring into the drain buffers.
      *
-     * @return a copy of the current buffer
+     * @return the number of vectors removed
      */
-    private float[] getBufferCopy() {
-        float[] copy = new float[buffer.length];
-        System.arraycopy(this.buffer, 0, copy, 0, this.buffer.length);
-        return copy;
+    private int drainRing() {
+        int length = this.sequencer.available(DRAIN_BATCH_SIZE);
+        if (length == 0) {
+            return 0;
+        }
+
+        long sequence = this.sequencer.readSequence();
+        int start = this.sequencer.index(sequence);
+        int firstPart = this.sequencer.firstPart(sequence, length);
+        System.arraycopy(this.vectors, start, this.drainVectors, 0, firstPart);
+        System.arraycopy(this.vectors, 0, this.drainVectors, firstPart, length - firstPart);
+        System.arraycopy(this.timestampsNs, start, this.drainTimestampsNs, 0, firstPart);
+        System.arraycopy(this.timestampsNs, 0, this.drainTimestampsNs, firstPart, length - firstPart);
+
+        this.sequencer.release(length);
+        return length;
     }
 }
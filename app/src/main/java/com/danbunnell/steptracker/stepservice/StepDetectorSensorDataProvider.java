@@ -4,10 +4,16 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Handler;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.danbunnell.steptracker.common.ListenerRegistry;
+import com.danbunnell.steptracker.gait.GaitTracker;
 
+/**
+ * Provides steps from the hardware step detector, one event per step.
+ *
+ * <p>Each event carries the time of its step, which is handed to a {@link GaitTracker}.</p>
+ */
 class StepDetectorSensorDataProvider implements SensorEventListener {
 
     private static final String TAG = "StepDetectorSensorDataProvider";
@@ -18,25 +24,68 @@ class StepDetectorSensorDataProvider implements SensorEventListener {
     private SensorManager sensorManager;
 
     /**
-     * the accelerometer sensor
+     * the step detector sensor
      */
     private Sensor stepDetectorSensor;
 
     /**
      * the registered callbacks
      */
-    private Map<String, StepListener> callbacks;
+    private final ListenerRegistry<StepListener> callbacks;
 
+    /**
+     * a handler for the thread that receives sensor events
+     */
+    private Handler handler;
+
+    /**
+     * receives the time of each step
+     */
+    private final GaitTracker gaitTracker;
+
+    /**
+     * how long the sensor hub may hold steps before delivering them
+     */
+    private long maxReportLatencyMs;
+
+    /**
+     * whether the provider is listening to the step detector
+     */
+    private boolean started;
 
     /**
      * Initializes a new instance of the {@link StepDetectorSensorDataProvider} class.
      *
      * @param sensorManager the sensor manager
+     * @param handler       a handler for the thread that receives sensor events
+     * @param gaitTracker   receives the time of each step
      */
-    StepDetectorSensorDataProvider(SensorManager sensorManager) {
+    StepDetectorSensorDataProvider(SensorManager sensorManager, Handler handler, GaitTracker gaitTracker) {
         this.sensorManager = sensorManager;
         this.stepDetectorSensor = this.sensorManager.getDefaultSensor(Sensor.TYPE_STEP_DETECTOR);
-        this.callbacks = new HashMap<>();
+        this.callbacks = new ListenerRegistry<>(StepListener.class);
+        this.handler = handler;
+        this.gaitTracker = gaitTracker;
+        this.maxReportLatencyMs = 0;
+        this.started = false;
+    }
+
+    /**
+     * Returns whether the device has a step detector.
+     *
+     * @return true if the step detector is available
+     */
+    public boolean isAvailable() {
+        return this.stepDetectorSensor != null;
+    }
+
+    /**
+     * Returns whether any callbacks are registered.
+     *
+     * @return true if there is at least one callback
+     */
+    public boolean hasCallbacks() {
+        return !this.callbacks.isEmpty();
     }
 
     /**
@@ -46,7 +95,7 @@ class StepDetectorSensorDataProvider implements SensorEventListener {
      * @param callback a callback
      */
     public void registerCallback(String identifier, StepListener callback) {
-        this.callbacks.put(identifier, callback);
+        this.callbacks.register(identifier, callback);
     }
 
     /**
@@ -55,20 +104,48 @@ class StepDetectorSensorDataProvider implements SensorEventListener {
      * @param identifier the callback identifier
      */
     public void unregisterCallback(String identifier) {
-        this.callbacks.remove(identifier);
+        this.callbacks.unregister(identifier);
+    }
+
+    /**
+     * Sets how long the sensor hub may hold steps before delivering them.  Each step keeps its own
+     * timestamp, so batching costs no timing accuracy.  Takes effect immediately if the provider is
+     * listening.
+     *
+     * @param maxReportLatencyMs the maximum report latency in milliseconds, or zero to deliver
+     *                           each step as it is detected
+     */
+    public synchronized void setMaxReportLatencyMs(long maxReportLatencyMs) {
+        this.maxReportLatencyMs = maxReportLatencyMs;
+
+        if (this.started) {
+            this.sensorManager.unregisterListener(this);
+            this.register();
+        }
     }
 
     /**
-     * Starts listening to the accelerometer.
+     * Asks the sensor hub to deliver any held steps now.
      */
-    public void onStart() {
-        this.sensorManager.registerListener(this, this.stepDetectorSensor, SensorManager.SENSOR_DELAY_NORMAL);
+    public synchronized void flush() {
+        if (this.started) {
+            this.sensorManager.flush(this);
+        }
     }
 
     /**
-     * Stops listening to the accelerometer.
+     * Starts listening to the step detector.
      */
-    public void onStop() {
+    public synchronized void onStart() {
+        this.started = true;
+        this.register();
+    }
+
+    /**
+     * Stops listening to the step detector.
+     */
+    public synchronized void onStop() {
+        this.started = false;
         this.sensorManager.unregisterListener(this);
     }
 
@@ -79,8 +156,11 @@ class StepDetectorSensorDataProvider implements SensorEventListener {
      */
     @Override
     public void onSensorChanged(SensorEvent sensorEvent) {
-        for(StepListener callback : callbacks.values()) {
-            callback.onSteps(1);
+        this.gaitTracker.addStep(sensorEvent.timestamp);
+
+        StepListener[] callbacks = this.callbacks.getListeners();
+        for (int i = 0; i < callbacks.length; i++) {
+            callbacks[i].onSteps(1);
         }
     }
 
@@ -93,4 +173,16 @@ class StepDetectorSensorDataProvider implements SensorEventListener {
     @Override
     public void onAccuracyChanged(Sensor sensor, int i) {
     }
+
+    /**
+     * Registers with the sensor manager.
+     */
+    private void register() {
+        this.sensorManager.registerListener(
+                this,
+                this.stepDetectorSensor,
+                SensorManager.SENSOR_DELAY_NORMAL,
+                (int) this.maxReportLatencyMs * 1000,
+                this.handler);
+    }
 }
\ No newline at end of file
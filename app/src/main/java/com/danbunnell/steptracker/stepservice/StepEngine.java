@@ -0,0 +1,21 @@
+package com.danbunnell.steptracker.stepservice;
+
+/**
+ * The ways {@link StepService} can count steps, cheapest first.
+ */
+public enum StepEngine {
+    /**
+     * the cumulative hardware step counter, which counts in the sensor hub
+     */
+    STEP_COUNTER,
+
+    /**
+     * the hardware step detector, which wakes the processor for each step
+     */
+    STEP_DETECTOR,
+
+    /**
+     * the software detector, which processes the accelerometer at the full sample rate
+     */
+    ACCELEROMETER
+}
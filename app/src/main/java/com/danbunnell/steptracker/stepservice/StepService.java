@@ -1,13 +1,85 @@
 package com.danbunnell.steptracker.stepservice;
 
+import android.content.SharedPreferences;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 
+import com.danbunnell.steptracker.common.ListenerRegistry;
 import com.danbunnell.steptracker.common.SignalFilter;
+import com.danbunnell.steptracker.engine.DetectorConfiguration;
+import com.danbunnell.steptracker.engine.StepCounterReconciler;
+import com.danbunnell.steptracker.engine.StreamingStepDetector;
+import com.danbunnell.steptracker.gait.GaitSnapshot;
+import com.danbunnell.steptracker.gait.GaitTracker;
+import com.danbunnell.steptracker.metrics.MetricsSnapshot;
+import com.danbunnell.steptracker.metrics.PipelineMetrics;
+import com.danbunnell.steptracker.metrics.SensorTimingSnapshot;
+import com.danbunnell.steptracker.stream.OverflowPolicy;
+import com.danbunnell.steptracker.stream.SampleSubscriber;
+import com.danbunnell.steptracker.stream.SampleSubscription;
+import com.danbunnell.steptracker.stream.StepSubscriber;
+import com.danbunnell.steptracker.stream.StepSubscription;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Provides step-related data services.
+ *
+ * <p>Steps are counted by the cheapest engine the device has (see {@link StepEngine}): the hardware
+ * step counter, then the hardware step detector, then the software detector on the accelerometer.
+ * Sensors are only listened to while something needs them, so with a hardware engine the
+ * accelerometer is off unless an accelerometer listener is registered.</p>
+ *
+ * <p>While the device is still, the accelerometer is dropped to a low rate and ramped back up as
+ * soon as movement starts.</p>
+ *
+ * <p>Sensor callbacks, filtering and accelerometer listeners run on a background sensor thread,
+ * and step detection and step listeners run on a background detection thread, so listeners must
+ * not touch views directly.  The user interface should record what it needs and read it back at
+ * its own update rate.</p>
+ *
+ * <p>Listeners are called synchronously, so a slow one holds up the pipeline for everyone.
+ * Consumers that do real work, such as recorders and analytics, should subscribe instead: each
+ * subscription buffers samples or steps in its own bounded queue and delivers them in batches on
+ * its own executor, with an {@link OverflowPolicy} for when the consumer falls behind.</p>
+ */
 public class StepService {
 
     private static String TAG = "StepService";
 
+    /**
+     * the accelerometer sampling period while the device is still
+     */
+    private static final long IDLE_SAMPLE_RATE_MS = 100;
+
+    /**
+     * the number of most recent step intervals cadence and variability are measured over
+     */
+    private static final int GAIT_WINDOW_STEPS = 32;
+
+    /**
+     * the longest pause between steps of the same walking bout, 2 s
+     */
+    private static final long GAIT_MAX_STEP_INTERVAL_NS = 2000000000L;
+
+    /**
+     * the number of steps a bout needs to count as walking
+     */
+    private static final int GAIT_MIN_BOUT_STEPS = 10;
+
+    /**
+     * processes sensor events
+     */
+    private final HandlerThread sensorThread;
+
+    /**
+     * runs step detection
+     */
+    private final HandlerThread detectionThread;
+
     /**
      * the accelerometer listener
      */
@@ -18,58 +90,308 @@ public class StepService {
      */
     private final StepDetector stepDetector;
 
+    /**
+     * the hardware step detector
+     */
     private final StepDetectorSensorDataProvider stepDetectorSensorDataProvider;
 
+    /**
+     * the hardware step counter
+     */
+    private final StepCounterSensorDataProvider stepCounterSensorDataProvider;
+
+    /**
+     * the engine steps are counted with
+     */
+    private final StepEngine stepEngine;
+
+    /**
+     * the registered step listeners
+     */
+    private final ListenerRegistry<StepListener> stepListeners;
+
+    /**
+     * the step subscriptions
+     */
+    private final ListenerRegistry<StepSubscription> stepSubscriptions;
+
+    /**
+     * times each stage of the pipeline while enabled
+     */
+    private final PipelineMetrics metrics;
+
+    /**
+     * derives cadence and walking bouts from the hardware step detector, or else the software one
+     */
+    private final GaitTracker gaitTracker;
+
+    /**
+     * decides when the accelerometer rate can be lowered
+     */
+    private final MotionStateMonitor motionStateMonitor;
+
+    /**
+     * the accelerometer sampling period while the device is moving
+     */
+    private final long sampleRateInMs;
+
+    /**
+     * the number of steps detected since the service was created, written on the detection thread
+     */
+    private final AtomicLong stepCount = new AtomicLong();
+
+    /**
+     * whether the service has been started
+     */
+    private boolean started;
+
+    /**
+     * whether the accelerometer is being listened to
+     */
+    private boolean accelerometerRunning;
+
+    /**
+     * whether the step detector sensor is being listened to
+     */
+    private boolean stepDetectorSensorRunning;
+
     /**
      * Initialize a new instance of the {@link StepService} class.
      *
      * @param sensorManager           the sensor manager
      * @param sampleRateInMs          sample rate in milliseconds
      * @param filter                  accelerometer data filter
-     * @param stepDetectionWindowMs   the step detection window size in milliseconds
+     * @param detectorConfiguration   the step detection window and criteria
+     * @param preferences             holds hardware step counter state across restarts
+     * @param bootCount               the number of times the device has booted, or
+     *                                {@link StepCounterReconciler#UNKNOWN} where the system does not
+     *                                report it
      */
     public StepService(
             SensorManager sensorManager,
             long sampleRateInMs,
             SignalFilter filter,
-            long stepDetectionWindowMs) {
+            DetectorConfiguration detectorConfiguration,
+            SharedPreferences preferences,
+            long bootCount) {
+
+        this.sensorThread = new HandlerThread(StepService.TAG + "Sensors", Process.THREAD_PRIORITY_DEFAULT);
+        this.sensorThread.start();
+        Handler sensorHandler = new Handler(this.sensorThread.getLooper());
+
+        this.detectionThread = new HandlerThread(StepService.TAG + "Detection", Process.THREAD_PRIORITY_DEFAULT);
+        this.detectionThread.start();
+
+        this.metrics = new PipelineMetrics();
+        this.gaitTracker = new GaitTracker(GAIT_WINDOW_STEPS, GAIT_MAX_STEP_INTERVAL_NS, GAIT_MIN_BOUT_STEPS);
 
         // Initialize and start accelerometer listening
         this.accelerometerDataProvider = new AccelerometerDataProvider(
                 sensorManager,
                 sampleRateInMs,
-                filter);
+                filter,
+                sensorHandler,
+                this.metrics);
+
+        this.stepDetector = new StepDetector(
+                new StreamingStepDetector(sampleRateInMs, detectorConfiguration),
+                new Handler(this.detectionThread.getLooper()),
+                this.metrics,
+                this.gaitTracker);
+        this.stepDetectorSensorDataProvider = new StepDetectorSensorDataProvider(
+                sensorManager,
+                sensorHandler,
+                this.gaitTracker);
+        this.stepCounterSensorDataProvider = new StepCounterSensorDataProvider(
+                sensorManager,
+                sensorHandler,
+                preferences,
+                this.gaitTracker,
+                bootCount);
+
+        if (this.stepCounterSensorDataProvider.isAvailable()) {
+            this.stepEngine = StepEngine.STEP_COUNTER;
+        } else if (this.stepDetectorSensorDataProvider.isAvailable()) {
+            this.stepEngine = StepEngine.STEP_DETECTOR;
+        } else {
+            this.stepEngine = StepEngine.ACCELEROMETER;
+        }
 
-        this.stepDetector = new StepDetector(sampleRateInMs, stepDetectionWindowMs);
-        this.stepDetectorSensorDataProvider = new StepDetectorSensorDataProvider(sensorManager);
+        this.stepListeners = new ListenerRegistry<>(StepListener.class);
+        this.stepSubscriptions = new ListenerRegistry<>(StepSubscription.class);
+        this.sampleRateInMs = sampleRateInMs;
+        this.motionStateMonitor = new MotionStateMonitor(sampleRateInMs);
+        this.started = false;
+        this.accelerometerRunning = false;
+        this.stepDetectorSensorRunning = false;
     }
 
     /**
      * Called when the service is started.
      */
-    public void onStart() {
-        this.registerAccelerometerListener(
-                StepService.TAG,
-                new AccelerometerListener(){
-                    @Override
-                    public void onAccelerometerData(float raw, float filtered) {
-                        stepDetector.add(filtered);
-                    }
-                });
+    public synchronized void onStart() {
+        StepListener engineListener = new StepListener() {
+            @Override
+            public void onSteps(int steps) {
+                onEngineSteps(steps);
+            }
+        };
 
-        this.accelerometerDataProvider.onStart();
-        this.stepDetector.onStart();
-        this.stepDetectorSensorDataProvider.onStart();
+        switch (this.stepEngine) {
+            case STEP_COUNTER:
+                this.stepCounterSensorDataProvider.registerCallback(StepService.TAG, engineListener);
+                this.stepCounterSensorDataProvider.onStart();
+                break;
+
+            case STEP_DETECTOR:
+                this.stepDetectorSensorDataProvider.registerCallback(StepService.TAG, engineListener);
+                break;
+
+            case ACCELEROMETER:
+                this.stepDetector.registerStepListener(StepService.TAG, engineListener);
+                this.accelerometerDataProvider.registerCallback(
+                        StepService.TAG,
+                        new AccelerometerListener(){
+                            @Override
+                            public void onAccelerometerData(long timestampNs, float raw, float filtered) {
+                                stepDetector.add(timestampNs, filtered);
+
+                                if (motionStateMonitor.add(filtered)) {
+                                    accelerometerDataProvider.setSensorSampleRateMs(
+                                            motionStateMonitor.isMoving() ? sampleRateInMs : IDLE_SAMPLE_RATE_MS);
+                                }
+                            }
+                        });
+                break;
+        }
+
+        this.started = true;
+        this.updateSensors();
     }
 
     /**
      * Called when the service is stopped.
      */
-    public void onStop() {
-        this.unregisterAccelerometerListener(StepService.TAG);
+    public synchronized void onStop() {
+        this.started = false;
+
+        this.accelerometerDataProvider.unregisterCallback(StepService.TAG);
+        this.stepDetector.unregisterStepListener(StepService.TAG);
+        this.stepDetectorSensorDataProvider.unregisterCallback(StepService.TAG);
+        this.stepCounterSensorDataProvider.unregisterCallback(StepService.TAG);
+
         this.stepDetector.onStop();
-        this.stepDetectorSensorDataProvider.onStop();
-        this.accelerometerDataProvider.onStop();
+        this.stepCounterSensorDataProvider.onStop();
+        this.updateSensors();
+    }
+
+    /**
+     * Called when the service is no longer needed.  Stops its background threads.
+     */
+    public void onDestroy() {
+        this.sensorThread.quit();
+        this.detectionThread.quit();
+    }
+
+    /**
+     * Gets the period of the evenly spaced samples delivered to accelerometer listeners.
+     *
+     * @return the sample rate in milliseconds
+     */
+    public long getSampleRateMs() {
+        return this.sampleRateInMs;
+    }
+
+    /**
+     * Gets the engine steps are counted with.
+     *
+     * @return the step engine
+     */
+    public StepEngine getStepEngine() {
+        return this.stepEngine;
+    }
+
+    /**
+     * Gets the number of steps detected since the service was created, including any taken while
+     * no listener was registered.  With the hardware step counter this includes steps backfilled
+     * from while the app was not running.
+     *
+     * @return the step count
+     */
+    public long getStepCount() {
+        return this.stepCount.get();
+    }
+
+    /**
+     * Copies the live gait statistics: cadence and step interval variability over the most recent
+     * steps, and walking bouts.  Steps are timed by the hardware step detector where there is one,
+     * whichever engine counts them, and otherwise by the software detector, which is then the
+     * engine.
+     *
+     * @return the gait statistics
+     */
+    public GaitSnapshot getGaitSnapshot() {
+        return this.gaitTracker.snapshot();
+    }
+
+    /**
+     * Starts or stops timing the pipeline.  Disabled by default; while disabled each stage costs a
+     * single flag check per batch.
+     *
+     * @param enabled whether to record metrics
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        this.metrics.setEnabled(enabled);
+    }
+
+    /**
+     * Copies the pipeline metrics recorded since they were enabled or reset.
+     *
+     * @return the metrics
+     */
+    public MetricsSnapshot getMetricsSnapshot() {
+        return this.metrics.snapshot();
+    }
+
+    /**
+     * Copies how evenly the accelerometer has delivered samples at its current rate: the effective
+     * rate, jitter, gaps and estimated sample loss.  Useful for seeing when the system throttles
+     * the sensor, and whether a device would keep up at a lower requested rate.
+     *
+     * @return the accelerometer timing statistics
+     */
+    public SensorTimingSnapshot getSensorTimingSnapshot() {
+        return this.accelerometerDataProvider.getTimingSnapshot();
+    }
+
+    /**
+     * Discards the recorded pipeline metrics.
+     */
+    public void resetMetrics() {
+        this.metrics.reset();
+    }
+
+    /**
+     * Lets the accelerometer, step counter and step detector batch in the sensor hub, trading
+     * latency for fewer wakeups.
+     *
+     * @param maxReportLatencyMs how long samples may be held before delivery, or zero to deliver
+     *                           each sample as it is taken
+     */
+    public void setSensorBatchingLatencyMs(long maxReportLatencyMs) {
+        this.accelerometerDataProvider.setMaxReportLatencyMs(maxReportLatencyMs);
+        this.stepCounterSensorDataProvider.setMaxReportLatencyMs(maxReportLatencyMs);
+        this.stepDetectorSensorDataProvider.setMaxReportLatencyMs(maxReportLatencyMs);
+    }
+
+    /**
+     * Asks the sensor hub to deliver anything batched now, for example when the user interface
+     * becomes visible.
+     */
+    public void flushSensors() {
+        this.accelerometerDataProvider.flush();
+        this.stepCounterSensorDataProvider.flush();
+        this.stepDetectorSensorDataProvider.flush();
     }
 
     /**
@@ -80,15 +402,30 @@ public class StepService {
      */
     public void registerAccelerometerListener(String identifier, AccelerometerListener listener) {
         this.accelerometerDataProvider.registerCallback(identifier, listener);
+        this.updateSensors();
+    }
+
+    /**
+     * Registers a new listener to receive unprocessed accelerometer samples, for example a
+     * {@link TraceListener} to record them.  The listener is called on the sensor thread for every
+     * sample, so it must return quickly.
+     *
+     * @param identifier the listener identifier
+     * @param listener   the listener
+     */
+    public void registerAccelerometerListener(String identifier, RawAccelerometerListener listener) {
+        this.accelerometerDataProvider.registerCallback(identifier, listener);
+        this.updateSensors();
     }
 
     /**
-     * Unregisters a listener from accelerometer events.
+     * Unregisters a listener from accelerometer events or unprocessed accelerometer samples.
      *
      * @param identifier the listener identifier
      */
     public void unregisterAccelerometerListener(String identifier) {
         this.accelerometerDataProvider.unregisterCallback(identifier);
+        this.updateSensors();
     }
 
     /**
@@ -99,6 +436,7 @@ public class StepService {
      */
     public void registerStepDetectorSensorListener(String identifier, StepListener listener) {
         this.stepDetectorSensorDataProvider.registerCallback(identifier, listener);
+        this.updateSensors();
     }
 
     /**
@@ -107,16 +445,18 @@ public class StepService {
      */
     public void unregisterStepDetectorSensorListener(String identifier) {
         this.stepDetectorSensorDataProvider.unregisterCallback(identifier);
+        this.updateSensors();
     }
 
     /**
-     * Registers a new listener to receive step events.
+     * Registers a new listener to receive step events from the step engine.  The listener is
+     * called on a background thread.
      *
      * @param identifier the listener identifier
      * @param listener  the listener
      */
     public void registerStepListener(String identifier, StepListener listener) {
-        this.stepDetector.registerStepListener(identifier, listener);
+        this.stepListeners.register(identifier, listener);
     }
 
     /**
@@ -125,6 +465,141 @@ public class StepService {
      * @param identifier the listener identifier
      */
     public void unregisterStepListener(String identifier) {
-        this.stepDetector.unregisterStepListener(identifier);
+        this.stepListeners.unregister(identifier);
+    }
+
+    /**
+     * Subscribes to accelerometer samples.  The sensor thread only copies each batch into the
+     * subscription's buffer; the subscriber runs on {@code executor}, receiving everything buffered
+     * since its last call in one batch.  Replaces any sample subscription with the same identifier.
+     *
+     * @param identifier the subscription identifier
+     * @param subscriber the subscriber
+     * @param capacity   the number of samples to buffer
+     * @param policy     what to do when the buffer is full; {@link OverflowPolicy#BLOCK} stalls the
+     *                   sensor thread until the subscriber catches up
+     * @param executor   runs the subscriber, for example a single thread executor or a handler
+     * @return           the subscription, for its overflow and delivery counts
+     */
+    public SampleSubscription subscribeSamples(
+            String identifier,
+            SampleSubscriber subscriber,
+            int capacity,
+            OverflowPolicy policy,
+            Executor executor) {
+
+        SampleSubscription subscription = new SampleSubscription(subscriber, capacity, policy, executor);
+        this.accelerometerDataProvider.subscribe(identifier, subscription);
+        this.updateSensors();
+        return subscription;
+    }
+
+    /**
+     * Closes a sample subscription.  Samples still buffered are discarded.
+     *
+     * @param identifier the subscription identifier
+     */
+    public void unsubscribeSamples(String identifier) {
+        this.accelerometerDataProvider.unsubscribe(identifier);
+        this.updateSensors();
+    }
+
+    /**
+     * Subscribes to step events from the step engine.  The detection thread only copies each report
+     * into the subscription's buffer; the subscriber runs on {@code executor}.  Replaces any step
+     * subscription with the same identifier.
+     *
+     * @param identifier the subscription identifier
+     * @param subscriber the subscriber
+     * @param capacity   the number of step reports to buffer
+     * @param policy     what to do when the buffer is full; {@link OverflowPolicy#CONFLATE_LATEST}
+     *                   merges reports without losing steps
+     * @param executor   runs the subscriber
+     * @return           the subscription, for its overflow and delivery counts
+     */
+    public StepSubscription subscribeSteps(
+            String identifier,
+            StepSubscriber subscriber,
+            int capacity,
+            OverflowPolicy policy,
+            Executor executor) {
+
+        StepSubscription subscription = new StepSubscription(subscriber, capacity, policy, executor);
+        StepSubscription replaced = this.stepSubscriptions.register(identifier, subscription);
+
+        if (replaced != null) {
+            replaced.close();
+        }
+
+        return subscription;
+    }
+
+    /**
+     * Closes a step subscription.  Reports still buffered are discarded.
+     *
+     * @param identifier the subscription identifier
+     */
+    public void unsubscribeSteps(String identifier) {
+        StepSubscription subscription = this.stepSubscriptions.unregister(identifier);
+
+        if (subscription != null) {
+            subscription.close();
+        }
+    }
+
+    /**
+     * Called on a background thread when the step engine counts steps.
+     *
+     * @param steps the number of steps
+     */
+    private void onEngineSteps(int steps) {
+        this.stepCount.addAndGet(steps);
+        this.metrics.increment(PipelineMetrics.Counter.STEPS, steps);
+
+        long startNs = this.metrics.startTimer();
+        StepListener[] listeners = this.stepListeners.getListeners();
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onSteps(steps);
+        }
+
+        StepSubscription[] subscriptions = this.stepSubscriptions.getListeners();
+        for (int i = 0; i < subscriptions.length; i++) {
+            subscriptions[i].offer(steps);
+        }
+        this.metrics.stopTimer(PipelineMetrics.Stage.STEP_DISPATCH, startNs);
+    }
+
+    /**
+     * Listens to the accelerometer only while the service is started and it has callbacks.  The
+     * step detector, where there is one, is listened to whenever the service is started, since it
+     * times the steps for gait tracking; it is batched with the same latency as the other sensors,
+     * so in the background it does not wake the processor for every step.
+     */
+    private synchronized void updateSensors() {
+        boolean accelerometerNeeded = this.started && this.accelerometerDataProvider.hasCallbacks();
+        if (accelerometerNeeded != this.accelerometerRunning) {
+            this.accelerometerRunning = accelerometerNeeded;
+
+            if (accelerometerNeeded) {
+                this.motionStateMonitor.reset();
+                this.accelerometerDataProvider.setSensorSampleRateMs(this.sampleRateInMs);
+                this.accelerometerDataProvider.onStart();
+            } else {
+                this.accelerometerDataProvider.onStop();
+            }
+        }
+
+        boolean stepDetectorSensorNeeded = this.started
+                && (this.stepDetectorSensorDataProvider.isAvailable()
+                        || this.stepDetectorSensorDataProvider.hasCallbacks());
+        if (stepDetectorSensorNeeded != this.stepDetectorSensorRunning) {
+            this.stepDetectorSensorRunning = stepDetectorSensorNeeded;
+
+            if (stepDetectorSensorNeeded) {
+                this.stepDetectorSensorDataProvider.onStart();
+            } else {
+                this.stepDetectorSensorDataProvider.onStop();
+            }
+        }
     }
 }
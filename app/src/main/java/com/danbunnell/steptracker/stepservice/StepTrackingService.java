@@ -0,0 +1,258 @@
+package com.danbunnell.steptracker.stepservice;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.hardware.SensorManager;
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.provider.Settings;
+import android.support.v4.app.NotificationCompat;
+
+import com.danbunnell.steptracker.R;
+import com.danbunnell.steptracker.common.MovingAverageFilter;
+import com.danbunnell.steptracker.engine.DetectorConfiguration;
+import com.danbunnell.steptracker.engine.StepCounterReconciler;
+
+/**
+ * Runs the {@link StepService} in the background as a foreground service, so that steps keep
+ * being counted while the user interface is hidden or the screen is off.
+ *
+ * <p>User interface components bind to the service and get the {@link StepService} from the
+ * {@link LocalBinder}.  While nothing is bound, nobody needs fresh samples, so the accelerometer
+ * is batched in the sensor hub's FIFO and the processor is woken only once per batch.  No
+ * wakelock is held.  As soon as a client binds, batching is turned off and the FIFO is
+ * flushed.</p>
+ *
+ * <p>The notification's stop action takes the service out of the foreground and stops it, after
+ * which it only runs for as long as a client stays bound.</p>
+ */
+public class StepTrackingService extends Service {
+
+    private static final String TAG = "StepTrackingService";
+
+    /**
+     * the start intent action that stops the service
+     */
+    private static final String ACTION_STOP = "com.danbunnell.steptracker.action.STOP_TRACKING";
+
+    /**
+     * the accelerometer sampling rate in milliseconds
+     */
+    private static final long SAMPLE_RATE_MS = 5;
+
+    /**
+     * the filter and step detection constants; run the engine module's tuner over recorded
+     * traces to choose new ones
+     */
+    private static final DetectorConfiguration DETECTOR_CONFIGURATION = DetectorConfiguration.DEFAULT;
+
+    /**
+     * how long the sensor hub may hold accelerometer samples while no client is bound
+     */
+    private static final long BACKGROUND_BATCHING_LATENCY_MS = 10000;
+
+    /**
+     * identifies the ongoing notification
+     */
+    private static final int NOTIFICATION_ID = 1;
+
+    /**
+     * the notification channel for the ongoing notification
+     */
+    private static final String NOTIFICATION_CHANNEL_ID = "step_tracking";
+
+    /**
+     * the preferences file the step service keeps its state in
+     */
+    private static final String PREFERENCES_NAME = "step_service";
+
+    /**
+     * provides step-related data services
+     */
+    private StepService stepService;
+
+    /**
+     * hands the step service to bound clients
+     */
+    private final IBinder binder = new LocalBinder();
+
+    /**
+     * Starts the service in the foreground, so that it keeps running without a bound client.
+     *
+     * @param context a context
+     */
+    public static void start(Context context) {
+        Intent intent = new Intent(context, StepTrackingService.class);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(intent);
+        } else {
+            context.startService(intent);
+        }
+    }
+
+    /**
+     * Called when the service is created.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        this.stepService = new StepService(
+                (SensorManager) getSystemService(Context.SENSOR_SERVICE),
+                SAMPLE_RATE_MS,
+                new MovingAverageFilter(DETECTOR_CONFIGURATION.getMovingAverageWindowSize()),
+                DETECTOR_CONFIGURATION,
+                getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE),
+                this.getBootCount());
+
+        this.startForeground(NOTIFICATION_ID, this.createNotification());
+
+        this.stepService.setSensorBatchingLatencyMs(BACKGROUND_BATCHING_LATENCY_MS);
+        this.stepService.onStart();
+    }
+
+    /**
+     * Called each time the service is started.
+     *
+     * @param intent  the start intent
+     * @param flags   additional data about the start request
+     * @param startId identifies the start request
+     * @return        how the system should restart the service if it is killed
+     */
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            this.stopForeground(true);
+            this.stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        return START_STICKY;
+    }
+
+    /**
+     * Called when the first client binds.
+     *
+     * @param intent the bind intent
+     * @return       the binder
+     */
+    @Override
+    public IBinder onBind(Intent intent) {
+        this.onForeground();
+        return this.binder;
+    }
+
+    /**
+     * Called when a client binds after all clients had unbound.
+     *
+     * @param intent the bind intent
+     */
+    @Override
+    public void onRebind(Intent intent) {
+        this.onForeground();
+    }
+
+    /**
+     * Called when the last client unbinds.
+     *
+     * @param intent the bind intent
+     * @return       true, so that {@link #onRebind(Intent)} is called for later clients
+     */
+    @Override
+    public boolean onUnbind(Intent intent) {
+        this.stepService.setSensorBatchingLatencyMs(BACKGROUND_BATCHING_LATENCY_MS);
+        return true;
+    }
+
+    /**
+     * Called when the service is destroyed.
+     */
+    @Override
+    public void onDestroy() {
+        this.stepService.onStop();
+        this.stepService.onDestroy();
+        this.stopForeground(true);
+        super.onDestroy();
+    }
+
+    /**
+     * Switches to live sensor delivery for a bound user interface.
+     */
+    private void onForeground() {
+        this.stepService.setSensorBatchingLatencyMs(0);
+        this.stepService.flushSensors();
+    }
+
+    /**
+     * Reads the number of times the device has booted, which tells a reboot apart from a clock
+     * change.
+     *
+     * @return the boot count, or {@link StepCounterReconciler#UNKNOWN} where the system does not
+     *         report it
+     */
+    private long getBootCount() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return StepCounterReconciler.UNKNOWN;
+        }
+
+        return Settings.Global.getInt(
+                getContentResolver(),
+                Settings.Global.BOOT_COUNT,
+                (int) StepCounterReconciler.UNKNOWN);
+    }
+
+    /**
+     * Creates the ongoing notification, creating its channel first where channels exist.
+     *
+     * @return the notification
+     */
+    private Notification createNotification() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(
+                    NOTIFICATION_CHANNEL_ID,
+                    getString(R.string.step_tracking_channel_name),
+                    NotificationManager.IMPORTANCE_LOW);
+            channel.setShowBadge(false);
+
+            NotificationManager notificationManager =
+                    (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            notificationManager.createNotificationChannel(channel);
+        }
+
+        Intent launchIntent = getPackageManager().getLaunchIntentForPackage(getPackageName());
+        Intent stopIntent = new Intent(this, StepTrackingService.class).setAction(ACTION_STOP);
+
+        return new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
+                .setContentTitle(getString(R.string.step_tracking_notification_title))
+                .setContentText(getString(R.string.step_tracking_notification_text))
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentIntent(PendingIntent.getActivity(this, 0, launchIntent, 0))
+                .addAction(0, getString(R.string.step_tracking_stop), PendingIntent.getService(this, 0, stopIntent, 0))
+                .setOngoing(true)
+                .setShowWhen(false)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+    }
+
+    /**
+     * Gives bound clients in the same process the step service.
+     */
+    public class LocalBinder extends Binder {
+
+        /**
+         * Gets the step service.
+         *
+         * @return the step service
+         */
+        public StepService getStepService() {
+            return StepTrackingService.this.stepService;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.danbunnell.steptracker.stepservice;
+
+import com.danbunnell.steptracker.trace.TraceHistory;
+import com.danbunnell.steptracker.trace.TraceRecorder;
+
+/**
+ * Feeds raw accelerometer samples to a trace recorder, an in-memory history, or both.  Register
+ * it with {@link StepService#registerAccelerometerListener(String, RawAccelerometerListener)}.
+ */
+public class TraceListener implements RawAccelerometerListener {
+
+    /**
+     * writes the samples to a trace, or null
+     */
+    private final TraceRecorder recorder;
+
+    /**
+     * keeps the last few seconds of samples, or null
+     */
+    private final TraceHistory history;
+
+    /**
+     * Initializes a new instance of the {@link TraceListener} class.
+     *
+     * @param recorder writes the samples to a trace, or null
+     * @param history  keeps the last few seconds of samples, or null
+     */
+    public TraceListener(TraceRecorder recorder, TraceHistory history) {
+        this.recorder = recorder;
+        this.history = history;
+    }
+
+    /**
+     * Called for each accelerometer sample.
+     *
+     * @param timestampNs the sensor event timestamp in nanoseconds
+     * @param x           the x axis in m/s^2
+     * @param y           the y axis in m/s^2
+     * @param z           the z axis in m/s^2
+     */
+    @Override
+    public void onRawAccelerometerData(long timestampNs, float x, float y, float z) {
+        if (this.recorder != null) {
+            this.recorder.record(timestampNs, x, y, z);
+        }
+
+        if (this.history != null) {
+            this.history.record(timestampNs, x, y, z);
+        }
+    }
+}
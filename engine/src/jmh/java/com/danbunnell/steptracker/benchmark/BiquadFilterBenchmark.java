@@ -0,0 +1,77 @@
+package com.danbunnell.steptracker.benchmark;
+
+import com.danbunnell.steptracker.common.BiquadFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the biquad filter, per sample and in bulk.  Its cost does not depend on any window, so
+ * it is kept apart from {@link FilterBenchmark}.  Results are in ns/sample.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BiquadFilterBenchmark {
+
+    /**
+     * the number of samples filtered per invocation
+     */
+    private static final int SAMPLES = 4096;
+
+    /**
+     * the sample rate in milliseconds
+     */
+    private static final long SAMPLE_RATE_MS = 5;
+
+    /**
+     * the filter under test
+     */
+    private BiquadFilter filter;
+
+    /**
+     * the input signal
+     */
+    private float[] in;
+
+    /**
+     * receives the filtered signal
+     */
+    private float[] out;
+
+    /**
+     * Creates the filter and the signal.
+     */
+    @Setup
+    public void setUp() {
+        this.filter = BiquadFilter.lowPass(SAMPLE_RATE_MS, 5);
+        this.in = new GaitSignal(SAMPLES, SAMPLE_RATE_MS).magnitudes;
+        this.out = new float[SAMPLES];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void lowPass(Blackhole blackhole) {
+        BiquadFilter filter = this.filter;
+        float[] in = this.in;
+        for (int i = 0; i < SAMPLES; i++) {
+            blackhole.consume(filter.filter(in[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float[] lowPassBulk() {
+        this.filter.filter(this.in, this.out, 0, SAMPLES);
+        return this.out;
+    }
+}
@@ -0,0 +1,110 @@
+package com.danbunnell.steptracker.benchmark;
+
+import com.danbunnell.steptracker.common.BiquadFilter;
+import com.danbunnell.steptracker.common.CompositeSignalFilter;
+import com.danbunnell.steptracker.common.MovingAverageFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the window-sized signal filters, per sample and in bulk.  Results are in ns/sample.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class FilterBenchmark {
+
+    /**
+     * the number of samples filtered per invocation
+     */
+    private static final int SAMPLES = 4096;
+
+    /**
+     * the sample rate in milliseconds
+     */
+    private static final long SAMPLE_RATE_MS = 5;
+
+    /**
+     * the moving average window in samples
+     */
+    @Param({"5", "30", "120", "480"})
+    public int windowSize;
+
+    /**
+     * the moving average filter under test
+     */
+    private MovingAverageFilter movingAverage;
+
+    /**
+     * a band pass followed by the moving average
+     */
+    private CompositeSignalFilter composite;
+
+    /**
+     * the input signal
+     */
+    private float[] in;
+
+    /**
+     * receives the filtered signal
+     */
+    private float[] out;
+
+    /**
+     * Creates the filters and the signal.
+     */
+    @Setup
+    public void setUp() {
+        this.movingAverage = new MovingAverageFilter(this.windowSize);
+        this.composite = new CompositeSignalFilter(
+                BiquadFilter.bandPass(SAMPLE_RATE_MS, 0.5, 5),
+                new MovingAverageFilter(this.windowSize));
+        this.in = new GaitSignal(SAMPLES, SAMPLE_RATE_MS).magnitudes;
+        this.out = new float[SAMPLES];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void movingAverage(Blackhole blackhole) {
+        MovingAverageFilter filter = this.movingAverage;
+        float[] in = this.in;
+        for (int i = 0; i < SAMPLES; i++) {
+            blackhole.consume(filter.filter(in[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float[] movingAverageBulk() {
+        this.movingAverage.filter(this.in, this.out, 0, SAMPLES);
+        return this.out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void composite(Blackhole blackhole) {
+        CompositeSignalFilter filter = this.composite;
+        float[] in = this.in;
+        for (int i = 0; i < SAMPLES; i++) {
+            blackhole.consume(filter.filter(in[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float[] compositeBulk() {
+        this.composite.filter(this.in, this.out, 0, SAMPLES);
+        return this.out;
+    }
+}
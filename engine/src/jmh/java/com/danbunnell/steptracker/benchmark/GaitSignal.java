@@ -0,0 +1,107 @@
+package com.danbunnell.steptracker.benchmark;
+
+import com.danbunnell.steptracker.engine.SamplePipeline;
+
+import java.util.Random;
+
+/**
+ * Synthetic walking data shared by the benchmarks.
+ *
+ * <p>A 2 Hz gait with a little noise, so that the detectors take the same branches they do on a
+ * real walk rather than a flat or perfectly periodic signal.  The data is seeded and generated once
+ * per trial, outside of the measured code.</p>
+ */
+final class GaitSignal {
+
+    /**
+     * the step frequency in Hz
+     */
+    private static final double STEP_FREQUENCY_HZ = 2;
+
+    /**
+     * the amplitude of the gait swing in m/s^2
+     */
+    private static final float SWING_AMPLITUDE = 4;
+
+    /**
+     * the seed for the noise
+     */
+    private static final long SEED = 7;
+
+    /**
+     * the timestamps of the raw samples, in nanoseconds
+     */
+    final long[] timestampsNs;
+
+    /**
+     * the raw x axis
+     */
+    final float[] x;
+
+    /**
+     * the raw y axis
+     */
+    final float[] y;
+
+    /**
+     * the raw z axis
+     */
+    final float[] z;
+
+    /**
+     * the magnitude less gravity, evenly spaced at the sample rate
+     */
+    final float[] magnitudes;
+
+    /**
+     * the time covered by the raw samples, in nanoseconds
+     */
+    final long durationNs;
+
+    /**
+     * Generates a walk.
+     *
+     * @param length       the number of samples
+     * @param sampleRateMs the nominal sample rate in milliseconds
+     */
+    GaitSignal(int length, long sampleRateMs) {
+        this.timestampsNs = new long[length];
+        this.x = new float[length];
+        this.y = new float[length];
+        this.z = new float[length];
+        this.magnitudes = new float[length];
+
+        Random random = new Random(SEED);
+        long periodNs = sampleRateMs * 1000000;
+        long timestampNs = 0;
+
+        for (int i = 0; i < length; i++) {
+            // Evenly spaced magnitudes for the filters and detectors
+            double t = i * sampleRateMs / 1000.0;
+            this.magnitudes[i] = swing(t) + (float) random.nextGaussian() * 0.2f;
+
+            // Raw samples on a tilted phone, delivered with the jitter Android typically shows
+            double rawT = timestampNs / 1e9;
+            float swing = swing(rawT);
+            float vertical = SamplePipeline.STANDARD_GRAVITY + swing;
+            this.timestampsNs[i] = timestampNs;
+            this.x[i] = 0.3f * vertical;
+            this.y[i] = 0.1f * swing;
+            this.z[i] = 0.95f * vertical;
+
+            timestampNs += periodNs - periodNs / 5 + (long) (random.nextDouble() * periodNs * 2 / 5);
+        }
+
+        this.durationNs = timestampNs;
+    }
+
+    /**
+     * Gets the gait swing at a point in time.
+     *
+     * @param t the time in seconds
+     * @return  the swing in m/s^2
+     */
+    private static float swing(double t) {
+        return (float) (SWING_AMPLITUDE * Math.sin(2 * Math.PI * STEP_FREQUENCY_HZ * t));
+    }
+}
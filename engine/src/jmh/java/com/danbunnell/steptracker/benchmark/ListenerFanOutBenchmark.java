@@ -0,0 +1,151 @@
+package com.danbunnell.steptracker.benchmark;
+
+import com.danbunnell.steptracker.common.ListenerRegistry;
+import com.danbunnell.steptracker.common.MovingAverageFilter;
+import com.danbunnell.steptracker.engine.SamplePipeline;
+import com.danbunnell.steptracker.engine.SampleSink;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the path from a sensor event to the accelerometer listeners, across listener counts.
+ *
+ * <p>This mirrors the accelerometer data provider, which cannot run off the device: each event is
+ * added to a {@link SamplePipeline}, the pipeline is flushed once per burst of events as the batch
+ * task does, and the sink hands each sample to every listener in a {@link ListenerRegistry}.
+ * Results are in ns per sensor event.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ListenerFanOutBenchmark {
+
+    /**
+     * the number of sensor events delivered per invocation
+     */
+    private static final int SAMPLES = 4096;
+
+    /**
+     * the number of events delivered in one pass of the sensor looper
+     */
+    private static final int BURST_SIZE = 32;
+
+    /**
+     * the sample rate in milliseconds
+     */
+    private static final long SAMPLE_RATE_MS = 5;
+
+    /**
+     * the moving average window in samples
+     */
+    private static final int MOVING_AVERAGE_WINDOW_SIZE = 30;
+
+    /**
+     * the number of registered listeners
+     */
+    @Param({"1", "2", "4", "8"})
+    public int listenerCount;
+
+    /**
+     * the registered listeners
+     */
+    private ListenerRegistry<MagnitudeListener> listeners;
+
+    /**
+     * computes, resamples and filters magnitudes
+     */
+    private SamplePipeline pipeline;
+
+    /**
+     * hands filtered magnitudes to the listeners
+     */
+    private SampleSink sink;
+
+    /**
+     * the input data
+     */
+    private GaitSignal signal;
+
+    /**
+     * shifts the timestamps of each invocation past those of the last
+     */
+    private long timestampOffsetNs;
+
+    /**
+     * Receives filtered magnitudes, as an accelerometer listener does.
+     */
+    interface MagnitudeListener {
+
+        /**
+         * Called for each sample.
+         *
+         * @param magnitude         the magnitude less gravity
+         * @param filteredMagnitude the filtered magnitude
+         */
+        void onMagnitude(float magnitude, float filteredMagnitude);
+    }
+
+    /**
+     * Registers the listeners and creates the pipeline and the signal.
+     *
+     * @param blackhole consumes the samples the listeners receive
+     */
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        this.listeners = new ListenerRegistry<>(MagnitudeListener.class);
+        for (int i = 0; i < this.listenerCount; i++) {
+            this.listeners.register("listener" + i, new MagnitudeListener() {
+                @Override
+                public void onMagnitude(float magnitude, float filteredMagnitude) {
+                    blackhole.consume(filteredMagnitude);
+                }
+            });
+        }
+
+        this.pipeline = new SamplePipeline(SAMPLE_RATE_MS, new MovingAverageFilter(MOVING_AVERAGE_WINDOW_SIZE));
+        this.sink = new SampleSink() {
+            @Override
+            public void onSamples(long[] timestampsNs, float[] magnitudes, float[] filteredMagnitudes, int length) {
+                MagnitudeListener[] listeners = ListenerFanOutBenchmark.this.listeners.getListeners();
+                for (int c = 0; c < listeners.length; c++) {
+                    MagnitudeListener listener = listeners[c];
+                    for (int i = 0; i < length; i++) {
+                        listener.onMagnitude(magnitudes[i], filteredMagnitudes[i]);
+                    }
+                }
+            }
+        };
+        this.signal = new GaitSignal(SAMPLES, SAMPLE_RATE_MS);
+        this.timestampOffsetNs = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void onSensorChanged() {
+        GaitSignal signal = this.signal;
+        SamplePipeline pipeline = this.pipeline;
+        SampleSink sink = this.sink;
+        long offsetNs = this.timestampOffsetNs;
+
+        for (int i = 0; i < SAMPLES; i++) {
+            pipeline.add(offsetNs + signal.timestampsNs[i], signal.x[i], signal.y[i], signal.z[i], sink);
+
+            if ((i + 1) % BURST_SIZE == 0) {
+                pipeline.flush(sink);
+            }
+        }
+
+        this.timestampOffsetNs = offsetNs + signal.durationNs;
+    }
+}
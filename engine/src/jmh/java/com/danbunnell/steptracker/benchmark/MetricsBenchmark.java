@@ -0,0 +1,102 @@
+package com.danbunnell.steptracker.benchmark;
+
+import com.danbunnell.steptracker.common.BiquadFilter;
+import com.danbunnell.steptracker.metrics.PipelineMetrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what {@link PipelineMetrics} adds to a stage, timed per burst as the pipeline does.
+ * Comparing {@code uninstrumented} with {@code instrumented} at {@code enabled=false} gives the
+ * disabled cost.  Results are in ns/burst.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+
+    /**
+     * the number of bursts per invocation
+     */
+    private static final int BURSTS = 128;
+
+    /**
+     * the number of samples in a burst
+     */
+    private static final int BURST_SIZE = 32;
+
+    /**
+     * the sample rate in milliseconds
+     */
+    private static final long SAMPLE_RATE_MS = 5;
+
+    /**
+     * whether metrics are recorded
+     */
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    /**
+     * the metrics under test
+     */
+    private PipelineMetrics metrics;
+
+    /**
+     * stands in for the work of a stage
+     */
+    private BiquadFilter filter;
+
+    /**
+     * the input signal
+     */
+    private float[] in;
+
+    /**
+     * receives the filtered signal
+     */
+    private float[] out;
+
+    /**
+     * Creates the metrics, the filter and the signal.
+     */
+    @Setup
+    public void setUp() {
+        this.metrics = new PipelineMetrics();
+        this.metrics.setEnabled(this.enabled);
+        this.filter = BiquadFilter.lowPass(SAMPLE_RATE_MS, 5);
+        this.in = new GaitSignal(BURSTS * BURST_SIZE, SAMPLE_RATE_MS).magnitudes;
+        this.out = new float[BURSTS * BURST_SIZE];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURSTS)
+    public float[] uninstrumented() {
+        for (int burst = 0; burst < BURSTS; burst++) {
+            this.filter.filter(this.in, this.out, burst * BURST_SIZE, BURST_SIZE);
+        }
+        return this.out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURSTS)
+    public float[] instrumented() {
+        PipelineMetrics metrics = this.metrics;
+        for (int burst = 0; burst < BURSTS; burst++) {
+            long startNs = metrics.startTimer();
+            this.filter.filter(this.in, this.out, burst * BURST_SIZE, BURST_SIZE);
+            metrics.stopTimer(PipelineMetrics.Stage.SAMPLE_PROCESSING, startNs);
+            metrics.increment(PipelineMetrics.Counter.SAMPLES, BURST_SIZE);
+        }
+        return this.out;
+    }
+}
@@ -0,0 +1,107 @@
+package com.danbunnell.steptracker.benchmark;
+
+import com.danbunnell.steptracker.common.MovingAverageFilter;
+import com.danbunnell.steptracker.engine.StepPipeline;
+import com.danbunnell.steptracker.engine.StreamingStepDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the streaming step detector on its own, and the whole pipeline from raw accelerometer
+ * samples to a step count.  Results are in ns/sample.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+
+    /**
+     * the number of samples processed per invocation
+     */
+    private static final int SAMPLES = 4096;
+
+    /**
+     * the sample rate in milliseconds
+     */
+    private static final long SAMPLE_RATE_MS = 5;
+
+    /**
+     * the detection window in milliseconds
+     */
+    private static final long DETECTION_WINDOW_MS = 2000;
+
+    /**
+     * the moving average window in samples
+     */
+    private static final int MOVING_AVERAGE_WINDOW_SIZE = 30;
+
+    /**
+     * the detector under test
+     */
+    private StreamingStepDetector detector;
+
+    /**
+     * the pipeline under test
+     */
+    private StepPipeline pipeline;
+
+    /**
+     * the input data
+     */
+    private GaitSignal signal;
+
+    /**
+     * shifts the raw timestamps of each invocation past those of the last, so the pipeline sees
+     * one continuous walk
+     */
+    private long timestampOffsetNs;
+
+    /**
+     * Creates the detector, the pipeline and the signal.
+     */
+    @Setup
+    public void setUp() {
+        this.detector = new StreamingStepDetector(SAMPLE_RATE_MS, DETECTION_WINDOW_MS);
+        this.pipeline = new StepPipeline(
+                SAMPLE_RATE_MS,
+                new MovingAverageFilter(MOVING_AVERAGE_WINDOW_SIZE),
+                new StreamingStepDetector(SAMPLE_RATE_MS, DETECTION_WINDOW_MS));
+        this.signal = new GaitSignal(SAMPLES, SAMPLE_RATE_MS);
+        this.timestampOffsetNs = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void streamingDetector(Blackhole blackhole) {
+        StreamingStepDetector detector = this.detector;
+        float[] magnitudes = this.signal.magnitudes;
+        for (int i = 0; i < SAMPLES; i++) {
+            blackhole.consume(detector.add(magnitudes[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long stepPipeline() {
+        GaitSignal signal = this.signal;
+        StepPipeline pipeline = this.pipeline;
+        long offsetNs = this.timestampOffsetNs;
+        for (int i = 0; i < SAMPLES; i++) {
+            pipeline.add(offsetNs + signal.timestampsNs[i], signal.x[i], signal.y[i], signal.z[i]);
+        }
+        pipeline.flush();
+
+        this.timestampOffsetNs = offsetNs + signal.durationNs;
+        return pipeline.getStepCount();
+    }
+}
@@ -0,0 +1,83 @@
+package com.danbunnell.steptracker.benchmark;
+
+import com.danbunnell.steptracker.engine.WindowStepCounter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the window step counter across buffer sizes.
+ *
+ * <p>{@link #getStepCount()} counts one full window, so it is reported in ns per window; divide by
+ * the buffer size for ns/sample.  {@link #add(Blackhole)} feeds a stream through the counter as the
+ * detection thread does and is reported in ns/sample.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class WindowStepCounterBenchmark {
+
+    /**
+     * the number of samples added per invocation
+     */
+    private static final int SAMPLES = 4096;
+
+    /**
+     * the sample rate in milliseconds
+     */
+    private static final long SAMPLE_RATE_MS = 5;
+
+    /**
+     * the window size in samples
+     */
+    @Param({"100", "400", "1600"})
+    public int bufferSize;
+
+    /**
+     * the counter under test
+     */
+    private WindowStepCounter counter;
+
+    /**
+     * the filtered magnitudes
+     */
+    private float[] magnitudes;
+
+    /**
+     * Creates the counter and fills its window.
+     */
+    @Setup
+    public void setUp() {
+        this.counter = new WindowStepCounter(this.bufferSize);
+        this.magnitudes = new GaitSignal(SAMPLES, SAMPLE_RATE_MS).magnitudes;
+
+        for (int i = 0; i < this.bufferSize - 1; i++) {
+            this.counter.add(this.magnitudes[i % SAMPLES]);
+        }
+    }
+
+    @Benchmark
+    public int getStepCount() {
+        return this.counter.getStepCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void add(Blackhole blackhole) {
+        WindowStepCounter counter = this.counter;
+        float[] magnitudes = this.magnitudes;
+        for (int i = 0; i < SAMPLES; i++) {
+            blackhole.consume(counter.add(magnitudes[i]));
+        }
+    }
+}
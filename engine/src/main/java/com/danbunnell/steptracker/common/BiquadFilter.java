@@ -0,0 +1,181 @@
+package com.danbunnell.steptracker.common;
+
+/**
+ * A second-order IIR (biquad) signal filtering strategy
+ *
+ * <p>Each sample costs five multiply-adds, using the transposed direct form II.  The state is kept
+ * in double precision so that filters with cutoffs far below the sample rate, such as gravity
+ * removal, stay stable and accurate.  Coefficients follow the RBJ audio EQ cookbook.</p>
+ */
+public class BiquadFilter implements SignalFilter {
+
+    /**
+     * the quality factor of a second-order Butterworth response
+     */
+    private static final double BUTTERWORTH_Q = 1 / Math.sqrt(2);
+
+    private final double b0;
+    private final double b1;
+    private final double b2;
+    private final double a1;
+    private final double a2;
+
+    private double z1;
+    private double z2;
+
+    /**
+     * Initializes an instance of the {@link BiquadFilter} class from normalized coefficients.
+     *
+     * @param b0 the current input coefficient
+     * @param b1 the previous input coefficient
+     * @param b2 the second previous input coefficient
+     * @param a1 the previous output coefficient
+     * @param a2 the second previous output coefficient
+     */
+    public BiquadFilter(double b0, double b1, double b2, double a1, double a2) {
+        this.b0 = b0;
+        this.b1 = b1;
+        this.b2 = b2;
+        this.a1 = a1;
+        this.a2 = a2;
+        this.z1 = 0;
+        this.z2 = 0;
+    }
+
+    /**
+     * Creates a second-order Butterworth low-pass filter.
+     *
+     * @param sampleRateMs the sample rate in milliseconds
+     * @param cutoffHz     the -3 dB cutoff frequency in hertz
+     * @return             a low-pass filter
+     */
+    public static BiquadFilter lowPass(long sampleRateMs, double cutoffHz) {
+        double w0 = BiquadFilter.angularFrequency(sampleRateMs, cutoffHz);
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * BUTTERWORTH_Q);
+
+        return BiquadFilter.normalized(
+                (1 - cos) / 2, 1 - cos, (1 - cos) / 2,
+                1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    /**
+     * Creates a second-order Butterworth high-pass filter.  At a low cutoff, this removes gravity
+     * and other slow drift.
+     *
+     * @param sampleRateMs the sample rate in milliseconds
+     * @param cutoffHz     the -3 dB cutoff frequency in hertz
+     * @return             a high-pass filter
+     */
+    public static BiquadFilter highPass(long sampleRateMs, double cutoffHz) {
+        double w0 = BiquadFilter.angularFrequency(sampleRateMs, cutoffHz);
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * BUTTERWORTH_Q);
+
+        return BiquadFilter.normalized(
+                (1 + cos) / 2, -(1 + cos), (1 + cos) / 2,
+                1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    /**
+     * Creates a second-order band-pass filter, the band-pass transform of a first-order
+     * Butterworth, with unity gain at the geometric center of the band.
+     *
+     * @param sampleRateMs the sample rate in milliseconds
+     * @param lowCutoffHz  the lower -3 dB frequency in hertz
+     * @param highCutoffHz the upper -3 dB frequency in hertz
+     * @return             a band-pass filter
+     */
+    public static BiquadFilter bandPass(long sampleRateMs, double lowCutoffHz, double highCutoffHz) {
+        if (lowCutoffHz <= 0 || highCutoffHz <= lowCutoffHz) {
+            throw new IllegalArgumentException("the band must have positive, increasing cutoffs");
+        }
+
+        double centerHz = Math.sqrt(lowCutoffHz * highCutoffHz);
+        double q = centerHz / (highCutoffHz - lowCutoffHz);
+
+        double w0 = BiquadFilter.angularFrequency(sampleRateMs, centerHz);
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+
+        return BiquadFilter.normalized(
+                alpha, 0, -alpha,
+                1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    /**
+     * Filters a signal
+     * @param vector the vector to filter
+     * @return       the filtered vector
+     */
+    public float filter(float vector) {
+        double y = this.b0 * vector + this.z1;
+        this.z1 = this.b1 * vector - this.a1 * y + this.z2;
+        this.z2 = this.b2 * vector - this.a2 * y;
+        return (float) y;
+    }
+
+    /**
+     * Filters a run of consecutive samples.
+     *
+     * @param in     the samples to filter
+     * @param out    receives the filtered samples at the same positions
+     * @param offset the index of the first sample
+     * @param length the number of samples
+     */
+    public void filter(float[] in, float[] out, int offset, int length) {
+        double b0 = this.b0, b1 = this.b1, b2 = this.b2, a1 = this.a1, a2 = this.a2;
+        double z1 = this.z1;
+        double z2 = this.z2;
+
+        for (int i = offset, end = offset + length; i < end; i++) {
+            double x = in[i];
+            double y = b0 * x + z1;
+            z1 = b1 * x - a1 * y + z2;
+            z2 = b2 * x - a2 * y;
+            out[i] = (float) y;
+        }
+
+        this.z1 = z1;
+        this.z2 = z2;
+    }
+
+    /**
+     * Forgets every sample filtered so far, as if the filter were newly created.
+     */
+    public void reset() {
+        this.z1 = 0;
+        this.z2 = 0;
+    }
+
+    /**
+     * Converts a frequency to radians per sample.
+     *
+     * @param sampleRateMs the sample rate in milliseconds
+     * @param frequencyHz  the frequency in hertz
+     * @return             the angular frequency in radians per sample
+     */
+    private static double angularFrequency(long sampleRateMs, double frequencyHz) {
+        double nyquistHz = 500.0 / sampleRateMs;
+        if (frequencyHz <= 0 || frequencyHz >= nyquistHz) {
+            throw new IllegalArgumentException("frequency must be between zero and the Nyquist frequency");
+        }
+
+        return 2 * Math.PI * frequencyHz * sampleRateMs / 1000.0;
+    }
+
+    /**
+     * Creates a filter, dividing every coefficient by a0.
+     *
+     * @param b0 the current input coefficient
+     * @param b1 the previous input coefficient
+     * @param b2 the second previous input coefficient
+     * @param a0 the current output coefficient
+     * @param a1 the previous output coefficient
+     * @param a2 the second previous output coefficient
+     * @return   a filter with normalized coefficients
+     */
+    private static BiquadFilter normalized(double b0, double b1, double b2, double a0, double a1, double a2) {
+        return new BiquadFilter(b0 / a0, b1 / a0, b2 / a0, a1 / a0, a2 / a0);
+    }
+}
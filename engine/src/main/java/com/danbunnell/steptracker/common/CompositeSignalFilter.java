@@ -0,0 +1,69 @@
+package com.danbunnell.steptracker.common;
+
+/**
+ * A signal filtering strategy that runs a chain of filters as a single filter
+ *
+ * <p>Each sample passes through every stage in one call, and bulk filtering runs each stage in
+ * place over the output array, so no intermediate arrays are needed.  For example, a high-pass stage
+ * to remove gravity followed by a low-pass stage to smooth the signal.</p>
+ */
+public class CompositeSignalFilter implements SignalFilter {
+
+    /**
+     * the stages, in the order they are applied
+     */
+    private final SignalFilter[] stages;
+
+    /**
+     * Initializes an instance of the {@link CompositeSignalFilter} class
+     *
+     * @param stages the filters to apply, in order
+     */
+    public CompositeSignalFilter(SignalFilter... stages) {
+        if (stages.length == 0) {
+            throw new IllegalArgumentException("at least one stage is required");
+        }
+
+        this.stages = stages.clone();
+    }
+
+    /**
+     * Filters a signal
+     * @param vector the vector to filter
+     * @return       the filtered vector
+     */
+    public float filter(float vector) {
+        SignalFilter[] stages = this.stages;
+        for (int i = 0; i < stages.length; i++) {
+            vector = stages[i].filter(vector);
+        }
+
+        return vector;
+    }
+
+    /**
+     * Filters a run of consecutive samples.
+     *
+     * @param in     the samples to filter
+     * @param out    receives the filtered samples at the same positions
+     * @param offset the index of the first sample
+     * @param length the number of samples
+     */
+    public void filter(float[] in, float[] out, int offset, int length) {
+        SignalFilter[] stages = this.stages;
+
+        stages[0].filter(in, out, offset, length);
+        for (int i = 1; i < stages.length; i++) {
+            stages[i].filter(out, out, offset, length);
+        }
+    }
+
+    /**
+     * Forgets every sample filtered so far by resetting each stage.
+     */
+    public void reset() {
+        for (SignalFilter stage : this.stages) {
+            stage.reset();
+        }
+    }
+}
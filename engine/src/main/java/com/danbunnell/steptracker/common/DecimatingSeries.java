@@ -0,0 +1,139 @@
+package com.danbunnell.steptracker.common;
+
+/**
+ * A fixed-capacity series of evenly spaced samples that can be drawn at any width by min/max
+ * decimation.
+ *
+ * <p>Every sample is kept in a primitive ring, so memory is constant however long the series
+ * runs.  {@link #decimate} reduces the window to one bucket per pixel and reports the lowest and
+ * highest sample in each, so peaks survive at any sample rate instead of being lost between
+ * points.  Buckets are aligned to absolute sample numbers rather than to the start of the window,
+ * so a bucket holds the same samples on every frame and the trace does not shimmer as it
+ * scrolls.</p>
+ *
+ * <p>Samples may be added on one thread and decimated on another.</p>
+ */
+public class DecimatingSeries {
+
+    /**
+     * the sample storage
+     */
+    private final float[] values;
+
+    /**
+     * the time between samples in seconds
+     */
+    private final float samplePeriodS;
+
+    /**
+     * the number of samples added since the series was created or cleared
+     */
+    private long count;
+
+    /**
+     * Initializes a new instance of the {@link DecimatingSeries} class.
+     *
+     * @param capacity      the number of most recent samples to keep
+     * @param samplePeriodS the time between samples in seconds
+     */
+    public DecimatingSeries(int capacity, float samplePeriodS) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        if (samplePeriodS <= 0) {
+            throw new IllegalArgumentException("samplePeriodS must be positive");
+        }
+
+        this.values = new float[capacity];
+        this.samplePeriodS = samplePeriodS;
+        this.count = 0;
+    }
+
+    /**
+     * Adds a sample, replacing the oldest once the series is full.
+     *
+     * @param value the sample
+     */
+    public synchronized void add(float value) {
+        this.values[(int) (this.count % this.values.length)] = value;
+        this.count++;
+    }
+
+    /**
+     * Removes all samples.
+     */
+    public synchronized void clear() {
+        this.count = 0;
+    }
+
+    /**
+     * Returns the number of samples added since the series was created or cleared.
+     *
+     * @return the sample count
+     */
+    public synchronized long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the number of samples the series keeps.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.values.length;
+    }
+
+    /**
+     * Reduces the stored samples to at most {@code maxBuckets} buckets, oldest first.  Each bucket
+     * covers {@code ceil(capacity / maxBuckets)} samples; the newest may be partly filled, and a
+     * bucket only partly still in the ring is left out.
+     *
+     * @param maxBuckets the maximum number of buckets, usually the width in pixels
+     * @param times      receives the time in seconds of the first sample in each bucket, measured
+     *                   from the first sample added
+     * @param min        receives the lowest sample in each bucket
+     * @param max        receives the highest sample in each bucket
+     * @return           the number of buckets written
+     */
+    public synchronized int decimate(int maxBuckets, float[] times, float[] min, float[] max) {
+        if (maxBuckets < 1) {
+            throw new IllegalArgumentException("maxBuckets must be positive");
+        }
+
+        int capacity = this.values.length;
+        int samplesPerBucket = (capacity + maxBuckets - 1) / maxBuckets;
+        long oldest = Math.max(0, this.count - capacity);
+
+        int buckets = 0;
+        for (long start = (oldest + samplesPerBucket - 1) / samplesPerBucket * samplesPerBucket;
+                start < this.count;
+                start += samplesPerBucket) {
+            long end = Math.min(start + samplesPerBucket, this.count);
+
+            int index = (int) (start % capacity);
+            float low = this.values[index];
+            float high = low;
+            for (long i = start + 1; i < end; i++) {
+                if (++index == capacity) {
+                    index = 0;
+                }
+
+                float value = this.values[index];
+                if (value < low) {
+                    low = value;
+                } else if (value > high) {
+                    high = value;
+                }
+            }
+
+            times[buckets] = start * this.samplePeriodS;
+            min[buckets] = low;
+            max[buckets] = high;
+            buckets++;
+        }
+
+        return buckets;
+    }
+}
@@ -0,0 +1,416 @@
+package com.danbunnell.steptracker.common;
+
+/**
+ * A multi-level summary of a long stream of evenly spaced samples, for drawing any stretch of it at
+ * any zoom.
+ *
+ * <p>Level 0 summarises each run of {@code samplesPerBucket} samples by its minimum, maximum and
+ * mean, and each level above summarises {@link #FANOUT} buckets of the level below, so a bucket at
+ * level {@code k} covers {@code samplesPerBucket * FANOUT^k} samples.  Buckets are completed as
+ * samples arrive, so adding a sample costs O(1) amortised and nothing is ever rebuilt.  A query
+ * picks the finest level with no more buckets than pixels and reads only those, so drawing an hour
+ * costs the same as drawing a minute.</p>
+ *
+ * <p>Each level keeps its newest {@code bucketsPerLevel} buckets in a ring, so memory is fixed and
+ * the coarser levels reach further back: old history stays visible, at lower resolution.  Detected
+ * steps are kept alongside as sample positions, in a ring of the same kind.</p>
+ *
+ * <p>Samples and steps may be added on one thread and queried on another.</p>
+ */
+public class HistoryPyramid {
+
+    /**
+     * the number of buckets at one level summarised by one bucket at the next
+     */
+    public static final int FANOUT = 4;
+
+    /**
+     * the time between samples in seconds
+     */
+    private final float samplePeriodS;
+
+    /**
+     * the number of samples summarised by a level 0 bucket
+     */
+    private final int samplesPerBucket;
+
+    /**
+     * the number of buckets kept at each level
+     */
+    private final int bucketsPerLevel;
+
+    /**
+     * the lowest sample in each bucket, by level
+     */
+    private final float[][] min;
+
+    /**
+     * the highest sample in each bucket, by level
+     */
+    private final float[][] max;
+
+    /**
+     * the mean sample in each bucket, by level
+     */
+    private final float[][] mean;
+
+    /**
+     * the number of buckets completed at each level
+     */
+    private final long[] bucketCounts;
+
+    /**
+     * the lowest value in the bucket being built at each level
+     */
+    private final float[] pendingMin;
+
+    /**
+     * the highest value in the bucket being built at each level
+     */
+    private final float[] pendingMax;
+
+    /**
+     * the sum of the samples in the bucket being built at each level
+     */
+    private final double[] pendingSum;
+
+    /**
+     * the number of samples in the bucket being built at each level
+     */
+    private final long[] pendingSamples;
+
+    /**
+     * the sample positions of detected steps
+     */
+    private final long[] steps;
+
+    /**
+     * the number of steps marked
+     */
+    private long stepCount;
+
+    /**
+     * the number of samples added
+     */
+    private long sampleCount;
+
+    /**
+     * Initializes a new instance of the {@link HistoryPyramid} class.
+     *
+     * @param samplePeriodS    the time between samples in seconds
+     * @param samplesPerBucket the number of samples summarised by a level 0 bucket
+     * @param bucketsPerLevel  the number of buckets kept at each level
+     * @param levels           the number of levels
+     * @param stepCapacity     the number of most recent steps to keep
+     */
+    public HistoryPyramid(
+            float samplePeriodS,
+            int samplesPerBucket,
+            int bucketsPerLevel,
+            int levels,
+            int stepCapacity) {
+
+        if (samplePeriodS <= 0) {
+            throw new IllegalArgumentException("samplePeriodS must be positive");
+        }
+
+        if (samplesPerBucket < 1 || bucketsPerLevel < 1 || levels < 1 || stepCapacity < 1) {
+            throw new IllegalArgumentException("sizes must be positive");
+        }
+
+        this.samplePeriodS = samplePeriodS;
+        this.samplesPerBucket = samplesPerBucket;
+        this.bucketsPerLevel = bucketsPerLevel;
+        this.min = new float[levels][bucketsPerLevel];
+        this.max = new float[levels][bucketsPerLevel];
+        this.mean = new float[levels][bucketsPerLevel];
+        this.bucketCounts = new long[levels];
+        this.pendingMin = new float[levels];
+        this.pendingMax = new float[levels];
+        this.pendingSum = new double[levels];
+        this.pendingSamples = new long[levels];
+        this.steps = new long[stepCapacity];
+        this.clear();
+    }
+
+    /**
+     * Adds a sample.
+     *
+     * @param value the sample
+     */
+    public synchronized void add(float value) {
+        this.sampleCount++;
+        this.accumulate(0, value, value, value, 1);
+
+        if (this.pendingSamples[0] == this.samplesPerBucket) {
+            this.completeBucket(0);
+        }
+    }
+
+    /**
+     * Marks a detected step at the newest sample.
+     */
+    public synchronized void markStep() {
+        this.steps[(int) (this.stepCount % this.steps.length)] = this.sampleCount;
+        this.stepCount++;
+    }
+
+    /**
+     * Removes all samples and steps.
+     */
+    public synchronized void clear() {
+        for (int level = 0; level < this.bucketCounts.length; level++) {
+            this.bucketCounts[level] = 0;
+            this.resetPending(level);
+        }
+
+        this.sampleCount = 0;
+        this.stepCount = 0;
+    }
+
+    /**
+     * Returns the time from the first sample to the newest.
+     *
+     * @return the recorded duration in seconds
+     */
+    public synchronized float getDurationS() {
+        return this.sampleCount * this.samplePeriodS;
+    }
+
+    /**
+     * Returns the time covered by a bucket at a level.
+     *
+     * @param level the level
+     * @return      the bucket duration in seconds
+     */
+    public float getBucketDurationS(int level) {
+        return this.bucketSamples(level) * this.samplePeriodS;
+    }
+
+    /**
+     * Summarises a stretch of the history in at most {@code maxBuckets} buckets, oldest first,
+     * from the finest level that both fits and still holds the start of the stretch.  The newest
+     * bucket may be partly filled.  Times are measured from the first sample added.
+     *
+     * @param fromS      the start of the stretch in seconds
+     * @param toS        the end of the stretch in seconds
+     * @param maxBuckets the maximum number of buckets, usually the width in pixels
+     * @param times      receives the start time of each bucket in seconds
+     * @param min        receives the lowest sample in each bucket
+     * @param max        receives the highest sample in each bucket
+     * @param mean       receives the mean sample in each bucket
+     * @return           the number of buckets written
+     */
+    public synchronized int query(
+            float fromS,
+            float toS,
+            int maxBuckets,
+            float[] times,
+            float[] min,
+            float[] max,
+            float[] mean) {
+
+        if (maxBuckets < 1) {
+            throw new IllegalArgumentException("maxBuckets must be positive");
+        }
+
+        long from = Math.max(0, (long) Math.floor(fromS / this.samplePeriodS));
+        long to = Math.min(this.sampleCount, (long) Math.ceil(toS / this.samplePeriodS));
+        if (from >= to) {
+            return 0;
+        }
+
+        int level = 0;
+        long first = 0;
+        long last = 0;
+        for (; level < this.bucketCounts.length; level++) {
+            long bucketSamples = this.bucketSamples(level);
+            first = Math.max(from / bucketSamples, this.bucketCounts[level] - this.bucketsPerLevel);
+            last = (to - 1) / bucketSamples;
+
+            if (last - first < maxBuckets && first * bucketSamples <= from) {
+                break;
+            }
+        }
+
+        if (level == this.bucketCounts.length) {
+            // Even the coarsest level is too fine or too short, so show its newest buckets
+            level = this.bucketCounts.length - 1;
+            first = Math.max(first, last - maxBuckets + 1);
+        }
+
+        long bucketSamples = this.bucketSamples(level);
+        int buckets = 0;
+        for (long bucket = first; bucket <= last; bucket++) {
+            times[buckets] = bucket * bucketSamples * this.samplePeriodS;
+
+            if (bucket < this.bucketCounts[level]) {
+                int index = (int) (bucket % this.bucketsPerLevel);
+                min[buckets] = this.min[level][index];
+                max[buckets] = this.max[level][index];
+                mean[buckets] = this.mean[level][index];
+            } else if (!this.summarisePending(level, buckets, min, max, mean)) {
+                break;
+            }
+
+            buckets++;
+        }
+
+        return buckets;
+    }
+
+    /**
+     * Finds the steps in a stretch of the history, keeping at most one per {@code resolutionS} so
+     * that a zoomed out view draws no more markers than pixels.
+     *
+     * @param fromS       the start of the stretch in seconds
+     * @param toS         the end of the stretch in seconds
+     * @param resolutionS the minimum time between returned steps in seconds
+     * @param times       receives the time of each step in seconds
+     * @return            the number of steps written, at most {@code times.length}
+     */
+    public synchronized int querySteps(float fromS, float toS, float resolutionS, float[] times) {
+        long oldest = Math.max(0, this.stepCount - this.steps.length);
+
+        // Step positions only increase, so binary search for the first at or after the start
+        long low = oldest;
+        long high = this.stepCount;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (this.steps[(int) (middle % this.steps.length)] * this.samplePeriodS < fromS) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int count = 0;
+        float lastTime = Float.NEGATIVE_INFINITY;
+        for (long step = low; step < this.stepCount && count < times.length; step++) {
+            float time = this.steps[(int) (step % this.steps.length)] * this.samplePeriodS;
+            if (time > toS) {
+                break;
+            }
+
+            if (time - lastTime >= resolutionS) {
+                times[count++] = time;
+                lastTime = time;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Adds values to the bucket being built at a level.
+     *
+     * @param level   the level
+     * @param low     the lowest value
+     * @param high    the highest value
+     * @param sum     the sum of the samples
+     * @param samples the number of samples
+     */
+    private void accumulate(int level, float low, float high, double sum, long samples) {
+        if (low < this.pendingMin[level]) {
+            this.pendingMin[level] = low;
+        }
+
+        if (high > this.pendingMax[level]) {
+            this.pendingMax[level] = high;
+        }
+
+        this.pendingSum[level] += sum;
+        this.pendingSamples[level] += samples;
+    }
+
+    /**
+     * Stores the bucket being built at a level and adds it to the level above, completing that
+     * one too if it is full.
+     *
+     * @param level the level
+     */
+    private void completeBucket(int level) {
+        float low = this.pendingMin[level];
+        float high = this.pendingMax[level];
+        double sum = this.pendingSum[level];
+        long samples = this.pendingSamples[level];
+
+        int index = (int) (this.bucketCounts[level] % this.bucketsPerLevel);
+        this.min[level][index] = low;
+        this.max[level][index] = high;
+        this.mean[level][index] = (float) (sum / samples);
+        this.bucketCounts[level]++;
+        this.resetPending(level);
+
+        if (level + 1 < this.bucketCounts.length) {
+            this.accumulate(level + 1, low, high, sum, samples);
+
+            if (this.bucketCounts[level] % FANOUT == 0) {
+                this.completeBucket(level + 1);
+            }
+        }
+    }
+
+    /**
+     * Summarises the samples not yet in a completed bucket at a level, which are spread over the
+     * buckets being built at that level and every level below.
+     *
+     * @param level  the level
+     * @param bucket the output index
+     * @param min    receives the lowest sample
+     * @param max    receives the highest sample
+     * @param mean   receives the mean sample
+     * @return       false if there are no such samples
+     */
+    private boolean summarisePending(int level, int bucket, float[] min, float[] max, float[] mean) {
+        float low = Float.POSITIVE_INFINITY;
+        float high = Float.NEGATIVE_INFINITY;
+        double sum = 0;
+        long samples = 0;
+
+        for (int i = 0; i <= level; i++) {
+            if (this.pendingSamples[i] > 0) {
+                low = Math.min(low, this.pendingMin[i]);
+                high = Math.max(high, this.pendingMax[i]);
+                sum += this.pendingSum[i];
+                samples += this.pendingSamples[i];
+            }
+        }
+
+        if (samples == 0) {
+            return false;
+        }
+
+        min[bucket] = low;
+        max[bucket] = high;
+        mean[bucket] = (float) (sum / samples);
+        return true;
+    }
+
+    /**
+     * Empties the bucket being built at a level.
+     *
+     * @param level the level
+     */
+    private void resetPending(int level) {
+        this.pendingMin[level] = Float.POSITIVE_INFINITY;
+        this.pendingMax[level] = Float.NEGATIVE_INFINITY;
+        this.pendingSum[level] = 0;
+        this.pendingSamples[level] = 0;
+    }
+
+    /**
+     * Returns the number of samples covered by a bucket at a level.
+     *
+     * @param level the level
+     * @return      the number of samples
+     */
+    private long bucketSamples(int level) {
+        long samples = this.samplesPerBucket;
+        for (int i = 0; i < level; i++) {
+            samples *= FANOUT;
+        }
+
+        return samples;
+    }
+}
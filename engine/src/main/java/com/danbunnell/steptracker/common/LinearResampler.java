@@ -0,0 +1,127 @@
+package com.danbunnell.steptracker.common;
+
+/**
+ * Resamples an irregularly timed signal onto a fixed time grid by linear interpolation.
+ *
+ * <p>Only the previous sample is kept, so memory is constant however long the stream runs.  Samples
+ * that do not advance time are ignored, and a gap longer than the maximum gap is not interpolated
+ * across; instead the grid restarts at the first sample after the gap.</p>
+ */
+public class LinearResampler {
+
+    /**
+     * the grid period in nanoseconds
+     */
+    private final long periodNs;
+
+    /**
+     * the longest gap between samples that is interpolated across, in nanoseconds
+     */
+    private final long maxGapNs;
+
+    /**
+     * whether a sample has been seen since the last reset
+     */
+    private boolean primed;
+
+    /**
+     * the timestamp of the previous sample in nanoseconds
+     */
+    private long lastTimestampNs;
+
+    /**
+     * the value of the previous sample
+     */
+    private float lastValue;
+
+    /**
+     * the timestamp of the next grid point in nanoseconds
+     */
+    private long nextGridTimestampNs;
+
+    /**
+     * Initializes a new instance of the {@link LinearResampler} class.
+     *
+     * @param periodNs the grid period in nanoseconds
+     * @param maxGapNs the longest gap between samples that is interpolated across, in nanoseconds
+     */
+    public LinearResampler(long periodNs, long maxGapNs) {
+        if (periodNs <= 0 || maxGapNs < periodNs) {
+            throw new IllegalArgumentException("period must be positive and no longer than the maximum gap");
+        }
+
+        this.periodNs = periodNs;
+        this.maxGapNs = maxGapNs;
+        this.reset();
+    }
+
+    /**
+     * Returns the most grid points a single call to {@link #resample} can produce.
+     *
+     * @return the maximum output length
+     */
+    public int getMaxOutputLength() {
+        return (int) (this.maxGapNs / this.periodNs) + 1;
+    }
+
+    /**
+     * Returns the timestamp of the next grid point to be produced.
+     *
+     * @return a timestamp in nanoseconds
+     */
+    public long getNextGridTimestampNs() {
+        return this.nextGridTimestampNs;
+    }
+
+    /**
+     * Adds a sample, producing the values of every grid point up to and including its timestamp.
+     *
+     * @param timestampNs the sample timestamp in nanoseconds
+     * @param value       the sample value
+     * @param out         receives the grid point values
+     * @param offset      the index in {@code out} of the first grid point, which must leave room
+     *                    for {@link #getMaxOutputLength()} values
+     * @return            the number of grid points produced
+     */
+    public int resample(long timestampNs, float value, float[] out, int offset) {
+        if (this.primed && timestampNs <= this.lastTimestampNs) {
+            return 0;
+        }
+
+        if (!this.primed || timestampNs - this.lastTimestampNs > this.maxGapNs) {
+            this.primed = true;
+            this.lastTimestampNs = timestampNs;
+            this.lastValue = value;
+            this.nextGridTimestampNs = timestampNs + this.periodNs;
+
+            out[offset] = value;
+            return 1;
+        }
+
+        long startNs = this.lastTimestampNs;
+        float startValue = this.lastValue;
+        float slope = (value - startValue) / (timestampNs - startNs);
+
+        int count = 0;
+        long gridNs = this.nextGridTimestampNs;
+        while (gridNs <= timestampNs) {
+            out[offset + count++] = startValue + slope * (gridNs - startNs);
+            gridNs += this.periodNs;
+        }
+
+        this.nextGridTimestampNs = gridNs;
+        this.lastTimestampNs = timestampNs;
+        this.lastValue = value;
+        return count;
+    }
+
+    /**
+     * Forgets the previous sample, so the grid restarts at the next one.
+     */
+    public void reset() {
+        this.primed = false;
+        this.lastTimestampNs = 0;
+        this.lastValue = 0;
+        this.nextGridTimestampNs = 0;
+    }
+}
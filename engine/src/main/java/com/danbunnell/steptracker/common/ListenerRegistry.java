@@ -0,0 +1,155 @@
+package com.danbunnell.steptracker.common;
+
+import java.lang.reflect.Array;
+
+/**
+ * A copy-on-write registry of listeners keyed by identifier.
+ *
+ * <p>Every change publishes a new immutable array of listeners, so dispatching is a plain indexed
+ * loop over {@link #getListeners()} that never allocates or locks, and is safe while other threads
+ * register and unregister.  Changes are expected to be rare compared to dispatches.</p>
+ *
+ * @param <T> the listener type
+ */
+public class ListenerRegistry<T> {
+
+    /**
+     * the listener type, used to create listener arrays
+     */
+    private final Class<T> type;
+
+    /**
+     * guards changes to the registry
+     */
+    private final Object lock = new Object();
+
+    /**
+     * the listener identifiers, parallel to {@link #listeners}
+     */
+    private String[] identifiers;
+
+    /**
+     * the current listener snapshot
+     */
+    private volatile T[] listeners;
+
+    /**
+     * Initializes a new instance of the {@link ListenerRegistry} class.
+     *
+     * @param type the listener type
+     */
+    public ListenerRegistry(Class<T> type) {
+        this.type = type;
+        this.identifiers = new String[0];
+        this.listeners = this.newArray(0);
+    }
+
+    /**
+     * Registers a listener, replacing any listener with the same identifier.
+     *
+     * @param identifier the listener identifier
+     * @param listener   the listener
+     * @return           the listener replaced, or null if there was none
+     */
+    public T register(String identifier, T listener) {
+        synchronized (this.lock) {
+            T[] listeners = this.listeners;
+            int index = this.indexOf(identifier);
+
+            if (index >= 0) {
+                T[] replaced = this.newArray(listeners.length);
+                System.arraycopy(listeners, 0, replaced, 0, listeners.length);
+                replaced[index] = listener;
+                this.listeners = replaced;
+                return listeners[index];
+            }
+
+            String[] identifiers = new String[this.identifiers.length + 1];
+            System.arraycopy(this.identifiers, 0, identifiers, 0, this.identifiers.length);
+            identifiers[identifiers.length - 1] = identifier;
+
+            T[] added = this.newArray(listeners.length + 1);
+            System.arraycopy(listeners, 0, added, 0, listeners.length);
+            added[added.length - 1] = listener;
+
+            this.identifiers = identifiers;
+            this.listeners = added;
+            return null;
+        }
+    }
+
+    /**
+     * Unregisters a listener.  Does nothing if no listener has the identifier.
+     *
+     * @param identifier the listener identifier
+     * @return           the listener removed, or null if there was none
+     */
+    public T unregister(String identifier) {
+        synchronized (this.lock) {
+            int index = this.indexOf(identifier);
+            if (index < 0) {
+                return null;
+            }
+
+            T[] listeners = this.listeners;
+            int remaining = listeners.length - index - 1;
+
+            String[] identifiers = new String[this.identifiers.length - 1];
+            System.arraycopy(this.identifiers, 0, identifiers, 0, index);
+            System.arraycopy(this.identifiers, index + 1, identifiers, index, remaining);
+
+            T[] removed = this.newArray(listeners.length - 1);
+            System.arraycopy(listeners, 0, removed, 0, index);
+            System.arraycopy(listeners, index + 1, removed, index, remaining);
+
+            this.identifiers = identifiers;
+            this.listeners = removed;
+            return listeners[index];
+        }
+    }
+
+    /**
+     * Returns the current listeners.  The array is shared and must not be modified.
+     *
+     * @return a snapshot of the registered listeners
+     */
+    public T[] getListeners() {
+        return this.listeners;
+    }
+
+    /**
+     * Returns whether any listeners are registered.
+     *
+     * @return true if there are no listeners
+     */
+    public boolean isEmpty() {
+        return this.listeners.length == 0;
+    }
+
+    /**
+     * Finds the index of a listener identifier.  Must be called while holding the lock.
+     *
+     * @param identifier the listener identifier
+     * @return           the index, or -1 if not registered
+     */
+    private int indexOf(String identifier) {
+        for (int i = 0; i < this.identifiers.length; i++) {
+            if (this.identifiers[i].equals(identifier)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Creates a listener array.
+     *
+     * @param length the array length
+     * @return       a new array
+     */
+    @SuppressWarnings("unchecked")
+    private T[] newArray(int length) {
+        return (T[]) Array.newInstance(this.type, length);
+    }
+}
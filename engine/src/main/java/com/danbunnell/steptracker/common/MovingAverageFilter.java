@@ -0,0 +1,113 @@
+package com.danbunnell.steptracker.common;
+
+import java.util.Arrays;
+
+/**
+ * A moving-average signal filtering strategy
+ *
+ * <p>Keeps a running sum over a ring buffer, so each sample costs O(1) regardless of the window
+ * size.  The running sum uses Kahan compensation so that the rounding error of adding and
+ * evicting samples does not accumulate over long sessions.</p>
+ */
+public class MovingAverageFilter implements SignalFilter {
+    private int windowSize;
+    private float[] window;
+    private int nextIndex;
+    private float average;
+
+    /**
+     * the running sum of the window
+     */
+    private float sum;
+
+    /**
+     * the low-order bits lost from the running sum
+     */
+    private float compensation;
+
+    /**
+     * Initializes an instance of the {@link MovingAverageFilter} class
+     */
+    public MovingAverageFilter(int windowSize) {
+        this.windowSize = windowSize;
+        this.window = new float[windowSize];
+        this.nextIndex = 0;
+        this.average = 0;
+        this.sum = 0;
+        this.compensation = 0;
+    }
+
+    /**
+     * Filters a signal
+     * @param vector the vector to filter
+     * @return       the filtered vector
+     */
+    public float filter(float vector) {
+        float delta = vector - this.window[this.nextIndex];
+        this.window[this.nextIndex] = vector;
+
+        if (++this.nextIndex == this.windowSize) {
+            this.nextIndex = 0;
+        }
+
+        float y = delta - this.compensation;
+        float t = this.sum + y;
+        this.compensation = (t - this.sum) - y;
+        this.sum = t;
+
+        this.average = this.sum / this.windowSize;
+        return this.average;
+    }
+
+    /**
+     * Filters a run of consecutive samples.
+     *
+     * @param in     the samples to filter
+     * @param out    receives the filtered samples at the same positions
+     * @param offset the index of the first sample
+     * @param length the number of samples
+     */
+    public void filter(float[] in, float[] out, int offset, int length) {
+        float[] window = this.window;
+        int windowSize = this.windowSize;
+        int index = this.nextIndex;
+        float sum = this.sum;
+        float compensation = this.compensation;
+
+        for (int i = offset, end = offset + length; i < end; i++) {
+            float vector = in[i];
+            float delta = vector - window[index];
+            window[index] = vector;
+
+            if (++index == windowSize) {
+                index = 0;
+            }
+
+            float y = delta - compensation;
+            float t = sum + y;
+            compensation = (t - sum) - y;
+            sum = t;
+
+            out[i] = sum / windowSize;
+        }
+
+        this.nextIndex = index;
+        this.sum = sum;
+        this.compensation = compensation;
+
+        if (length > 0) {
+            this.average = out[offset + length - 1];
+        }
+    }
+
+    /**
+     * Forgets every sample filtered so far, as if the filter were newly created.
+     */
+    public void reset() {
+        Arrays.fill(this.window, 0);
+        this.nextIndex = 0;
+        this.average = 0;
+        this.sum = 0;
+        this.compensation = 0;
+    }
+}
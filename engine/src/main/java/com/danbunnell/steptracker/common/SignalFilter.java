@@ -0,0 +1,30 @@
+package com.danbunnell.steptracker.common;
+
+/**
+ * A signal filtering strategy
+ */
+public interface SignalFilter {
+    /**
+     * Filters a signal
+     * @param vector the vector to filter
+     * @return       the filtered vector
+     */
+    float filter(float vector);
+
+    /**
+     * Filters a run of consecutive samples, as if {@link #filter(float)} were called on each in turn.
+     *
+     * <p>{@code in} and {@code out} may be the same array.</p>
+     *
+     * @param in     the samples to filter
+     * @param out    receives the filtered samples at the same positions
+     * @param offset the index of the first sample
+     * @param length the number of samples
+     */
+    void filter(float[] in, float[] out, int offset, int length);
+
+    /**
+     * Forgets every sample filtered so far, as if the filter were newly created.
+     */
+    void reset();
+}
@@ -0,0 +1,91 @@
+package com.danbunnell.steptracker.common;
+
+/**
+ * A bounded, lock-free ring of floats for exactly one producer thread and one consumer thread.
+ *
+ * <p>Slots are handed over with the protocol of {@link SpscSequencer}, so a value is never read
+ * before it has been fully written, nor overwritten before it has been read.</p>
+ */
+public class SpscFloatRing {
+
+    /**
+     * the ring storage, sized to a power of two
+     */
+    private final float[] buffer;
+
+    /**
+     * hands slots between the producer and the consumer
+     */
+    private final SpscSequencer sequencer;
+
+    /**
+     * Initializes a new instance of the {@link SpscFloatRing} class.
+     *
+     * @param capacity the minimum capacity, rounded up to a power of two
+     */
+    public SpscFloatRing(int capacity) {
+        this.sequencer = new SpscSequencer(capacity);
+        this.buffer = new float[this.sequencer.capacity()];
+    }
+
+    /**
+     * Adds a value to the ring.  Must only be called from the producer thread.
+     *
+     * @param value the value
+     * @return      true if the value was added, false if the ring was full
+     */
+    public boolean offer(float value) {
+        long sequence = this.sequencer.claim();
+        if (sequence < 0) {
+            return false;
+        }
+
+        this.buffer[this.sequencer.index(sequence)] = value;
+        this.sequencer.publish(sequence);
+        return true;
+    }
+
+    /**
+     * Removes up to {@code maxLength} values from the ring, oldest first.  Must only be called
+     * from the consumer thread.
+     *
+     * @param out       receives the values
+     * @param offset    the index in {@code out} of the first value
+     * @param maxLength the maximum number of values to remove
+     * @return          the number of values removed
+     */
+    public int drain(float[] out, int offset, int maxLength) {
+        int length = this.sequencer.available(maxLength);
+        if (length == 0) {
+            return 0;
+        }
+
+        long sequence = this.sequencer.readSequence();
+        int start = this.sequencer.index(sequence);
+        int firstPart = this.sequencer.firstPart(sequence, length);
+        System.arraycopy(this.buffer, start, out, offset, firstPart);
+        System.arraycopy(this.buffer, 0, out, offset + firstPart, length - firstPart);
+
+        this.sequencer.release(length);
+        return length;
+    }
+
+    /**
+     * Returns the number of values waiting to be drained.  Only a snapshot when called while the
+     * other thread is active.
+     *
+     * @return the number of values in the ring
+     */
+    public int size() {
+        return this.sequencer.size();
+    }
+
+    /**
+     * Returns the ring capacity.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return this.sequencer.capacity();
+    }
+}
@@ -0,0 +1,173 @@
+package com.danbunnell.steptracker.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The sequence numbers of a bounded ring shared by exactly one producer thread and one consumer
+ * thread, without locks.  The ring's storage belongs to the caller, so one sequencer can guard any
+ * number of parallel arrays.
+ *
+ * <p>The producer claims the next slot, writes it, and then publishes it by advancing the tail
+ * sequence with an ordered write; the consumer reads slots up to the published tail and then
+ * releases them by advancing the head sequence the same way.  A slot is therefore never read before
+ * it has been fully written, nor overwritten before it has been read.  Each side caches the other
+ * side's sequence so that it only touches the shared counter when the cached value runs out.</p>
+ */
+public class SpscSequencer {
+
+    /**
+     * the number of slots, a power of two
+     */
+    private final int capacity;
+
+    /**
+     * maps a sequence number onto a slot index
+     */
+    private final int mask;
+
+    /**
+     * the sequence number of the next slot to read, advanced by the consumer
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * the sequence number of the next slot to write, advanced by the producer
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * the producer's last view of the head
+     */
+    private long cachedHead;
+
+    /**
+     * the consumer's last view of the tail
+     */
+    private long cachedTail;
+
+    /**
+     * Initializes a new instance of the {@link SpscSequencer} class.
+     *
+     * @param capacity the minimum number of slots, rounded up to a power of two
+     */
+    public SpscSequencer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.capacity = size;
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns the number of slots, which the caller's arrays must have.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Maps a sequence number onto a slot index.
+     *
+     * @param sequence the sequence number
+     * @return         the slot index
+     */
+    public int index(long sequence) {
+        return (int) sequence & this.mask;
+    }
+
+    /**
+     * Finds the next free slot.  Must only be called from the producer thread, and followed by
+     * {@link #publish(long)} once the slot is written.
+     *
+     * @return the sequence number of the slot, or -1 if the ring is full
+     */
+    public long claim() {
+        long tail = this.tail.get();
+
+        if (tail - this.cachedHead >= this.capacity) {
+            this.cachedHead = this.head.get();
+
+            if (tail - this.cachedHead >= this.capacity) {
+                return -1;
+            }
+        }
+
+        return tail;
+    }
+
+    /**
+     * Makes a written slot visible to the consumer.  Must only be called from the producer thread.
+     *
+     * @param sequence the sequence number returned by {@link #claim()}
+     */
+    public void publish(long sequence) {
+        this.tail.lazySet(sequence + 1);
+    }
+
+    /**
+     * Returns the sequence number of the oldest unread slot.  Must only be called from the consumer
+     * thread.
+     *
+     * @return the sequence number
+     */
+    public long readSequence() {
+        return this.head.get();
+    }
+
+    /**
+     * Counts the published slots the consumer may read, from {@link #readSequence()} on.  Must only
+     * be called from the consumer thread.
+     *
+     * @param maxLength the maximum number of slots wanted
+     * @return          the number of slots that may be read
+     */
+    public int available(int maxLength) {
+        long head = this.head.get();
+
+        if (this.cachedTail - head < maxLength) {
+            this.cachedTail = this.tail.get();
+        }
+
+        return (int) Math.max(0, Math.min(this.cachedTail - head, maxLength));
+    }
+
+    /**
+     * Returns read slots to the producer.  Must only be called from the consumer thread.
+     *
+     * @param length the number of slots read
+     */
+    public void release(int length) {
+        this.head.lazySet(this.head.get() + length);
+    }
+
+    /**
+     * Counts the slots from a sequence number up to the end of the storage, for copying a run of
+     * slots that may wrap around in two parts.
+     *
+     * @param sequence the sequence number of the first slot
+     * @param length   the number of slots
+     * @return         the number of slots before the run wraps
+     */
+    public int firstPart(long sequence, int length) {
+        return Math.min(length, this.capacity - this.index(sequence));
+    }
+
+    /**
+     * Returns the number of published, unread slots.  Only a snapshot when called while the other
+     * thread is active.
+     *
+     * @return the number of slots in use
+     */
+    public int size() {
+        long head = this.head.get();
+        return (int) (this.tail.get() - head);
+    }
+}
@@ -0,0 +1,86 @@
+package com.danbunnell.steptracker.common;
+
+/**
+ * Computes the magnitude (Euclidean norm) of three-axis vectors.
+ *
+ * <p>Threshold comparisons should use {@link #exceeds} or the squared norm, which avoid the square
+ * root.  The batch forms take the axes as separate arrays and run a simple counted loop with no
+ * branches, which the JIT and ART can unroll and vectorize when processing bursts or traces.</p>
+ */
+public final class VectorMagnitude {
+
+    /**
+     * Not instantiable.
+     */
+    private VectorMagnitude() {
+    }
+
+    /**
+     * Computes the magnitude of a vector.
+     *
+     * @param x the x component
+     * @param y the y component
+     * @param z the z component
+     * @return  the magnitude
+     */
+    public static float norm(float x, float y, float z) {
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
+
+    /**
+     * Computes the squared magnitude of a vector.
+     *
+     * @param x the x component
+     * @param y the y component
+     * @param z the z component
+     * @return  the squared magnitude
+     */
+    public static float normSquared(float x, float y, float z) {
+        return x * x + y * y + z * z;
+    }
+
+    /**
+     * Determines whether the magnitude of a vector exceeds a threshold, without a square root.
+     *
+     * @param x         the x component
+     * @param y         the y component
+     * @param z         the z component
+     * @param threshold a non-negative threshold
+     * @return          true if the magnitude is greater than the threshold
+     */
+    public static boolean exceeds(float x, float y, float z, float threshold) {
+        return x * x + y * y + z * z > threshold * threshold;
+    }
+
+    /**
+     * Computes the magnitudes of a run of vectors stored as separate axis arrays.
+     *
+     * @param x      the x components
+     * @param y      the y components
+     * @param z      the z components
+     * @param out    receives the magnitudes at the same positions
+     * @param offset the index of the first vector
+     * @param length the number of vectors
+     */
+    public static void norm(float[] x, float[] y, float[] z, float[] out, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            out[i] = (float) Math.sqrt(x[i] * x[i] + y[i] * y[i] + z[i] * z[i]);
+        }
+    }
+
+    /**
+     * Computes the squared magnitudes of a run of vectors stored as separate axis arrays.
+     *
+     * @param x      the x components
+     * @param y      the y components
+     * @param z      the z components
+     * @param out    receives the squared magnitudes at the same positions
+     * @param offset the index of the first vector
+     * @param length the number of vectors
+     */
+    public static void normSquared(float[] x, float[] y, float[] z, float[] out, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            out[i] = x[i] * x[i] + y[i] * y[i] + z[i] * z[i];
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.danbunnell.steptracker.engine;
+
+import java.util.Locale;
+
+/**
+ * The tunable constants of the step detection pipeline.  Immutable.
+ */
+public class DetectorConfiguration {
+
+    /**
+     * the hand-picked values the app has always shipped with
+     */
+    public static final DetectorConfiguration DEFAULT = new DetectorConfiguration(0.6f, 2.8f, 30, 2000, 0.5f, 250);
+
+    /**
+     * the fraction of the mean peak a peak must exceed to count as a step
+     */
+    private final float peakToMeanCutoffRatio;
+
+    /**
+     * how far a peak must rise above the mean valley to count as a step, in m/s^2
+     */
+    private final float minPeakToMeanBase;
+
+    /**
+     * the moving average window in samples
+     */
+    private final int movingAverageWindowSize;
+
+    /**
+     * the window over which peak and valley means are taken, in milliseconds
+     */
+    private final long stepDetectionWindowMs;
+
+    /**
+     * how far the signal must reverse before an extremum is confirmed, in m/s^2
+     */
+    private final float hysteresis;
+
+    /**
+     * the shortest time between two steps, in milliseconds
+     */
+    private final long minStepIntervalMs;
+
+    /**
+     * Initializes a new instance of the {@link DetectorConfiguration} class.
+     *
+     * @param peakToMeanCutoffRatio   the fraction of the mean peak a peak must exceed to count as
+     *                                a step
+     * @param minPeakToMeanBase       how far a peak must rise above the mean valley to count as a
+     *                                step, in m/s^2
+     * @param movingAverageWindowSize the moving average window in samples
+     * @param stepDetectionWindowMs   the window over which peak and valley means are taken, in
+     *                                milliseconds
+     * @param hysteresis              how far the signal must reverse before an extremum is
+     *                                confirmed, in m/s^2
+     * @param minStepIntervalMs       the shortest time between two steps, in milliseconds
+     */
+    public DetectorConfiguration(
+            float peakToMeanCutoffRatio,
+            float minPeakToMeanBase,
+            int movingAverageWindowSize,
+            long stepDetectionWindowMs,
+            float hysteresis,
+            long minStepIntervalMs) {
+        if (movingAverageWindowSize < 1 || stepDetectionWindowMs <= 0) {
+            throw new IllegalArgumentException("window sizes must be positive");
+        }
+
+        if (hysteresis < 0 || minStepIntervalMs < 0) {
+            throw new IllegalArgumentException("hysteresis and step interval must not be negative");
+        }
+
+        this.peakToMeanCutoffRatio = peakToMeanCutoffRatio;
+        this.minPeakToMeanBase = minPeakToMeanBase;
+        this.movingAverageWindowSize = movingAverageWindowSize;
+        this.stepDetectionWindowMs = stepDetectionWindowMs;
+        this.hysteresis = hysteresis;
+        this.minStepIntervalMs = minStepIntervalMs;
+    }
+
+    /**
+     * Gets the fraction of the mean peak a peak must exceed to count as a step.
+     *
+     * @return the cutoff ratio
+     */
+    public float getPeakToMeanCutoffRatio() {
+        return this.peakToMeanCutoffRatio;
+    }
+
+    /**
+     * Gets how far a peak must rise above the mean valley to count as a step.
+     *
+     * @return the minimum peak height in m/s^2
+     */
+    public float getMinPeakToMeanBase() {
+        return this.minPeakToMeanBase;
+    }
+
+    /**
+     * Gets the moving average window.
+     *
+     * @return the window size in samples
+     */
+    public int getMovingAverageWindowSize() {
+        return this.movingAverageWindowSize;
+    }
+
+    /**
+     * Gets the window over which peak and valley means are taken.
+     *
+     * @return the window in milliseconds
+     */
+    public long getStepDetectionWindowMs() {
+        return this.stepDetectionWindowMs;
+    }
+
+    /**
+     * Gets how far the signal must reverse before an extremum is confirmed.
+     *
+     * @return the hysteresis in m/s^2
+     */
+    public float getHysteresis() {
+        return this.hysteresis;
+    }
+
+    /**
+     * Gets the shortest time between two steps.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getMinStepIntervalMs() {
+        return this.minStepIntervalMs;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof DetectorConfiguration)) {
+            return false;
+        }
+
+        DetectorConfiguration other = (DetectorConfiguration) o;
+        return Float.compare(this.peakToMeanCutoffRatio, other.peakToMeanCutoffRatio) == 0
+                && Float.compare(this.minPeakToMeanBase, other.minPeakToMeanBase) == 0
+                && this.movingAverageWindowSize == other.movingAverageWindowSize
+                && this.stepDetectionWindowMs == other.stepDetectionWindowMs
+                && Float.compare(this.hysteresis, other.hysteresis) == 0
+                && this.minStepIntervalMs == other.minStepIntervalMs;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(this.peakToMeanCutoffRatio);
+        result = 31 * result + Float.floatToIntBits(this.minPeakToMeanBase);
+        result = 31 * result + this.movingAverageWindowSize;
+        result = 31 * result + (int) (this.stepDetectionWindowMs ^ (this.stepDetectionWindowMs >>> 32));
+        result = 31 * result + Float.floatToIntBits(this.hysteresis);
+        result = 31 * result + (int) (this.minStepIntervalMs ^ (this.minStepIntervalMs >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                Locale.US,
+                "peakToMeanCutoffRatio=%s, minPeakToMeanBase=%s, movingAverageWindowSize=%d, stepDetectionWindowMs=%d, "
+                        + "hysteresis=%s, minStepIntervalMs=%d",
+                this.peakToMeanCutoffRatio,
+                this.minPeakToMeanBase,
+                this.movingAverageWindowSize,
+                this.stepDetectionWindowMs,
+                this.hysteresis,
+                this.minStepIntervalMs);
+    }
+}
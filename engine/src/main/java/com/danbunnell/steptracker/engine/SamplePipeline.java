@@ -0,0 +1,226 @@
+package com.danbunnell.steptracker.engine;
+
+import com.danbunnell.steptracker.common.LinearResampler;
+import com.danbunnell.steptracker.common.SignalFilter;
+import com.danbunnell.steptracker.common.VectorMagnitude;
+
+/**
+ * Turns timestamped three-axis accelerometer samples into evenly spaced, filtered magnitudes.
+ *
+ * <p>Samples are collected into a batch.  Each batch is processed in one pass: the magnitudes are
+ * computed together, less gravity, then resampled by timestamp onto a fixed grid at the sample rate,
+ * then filtered, and handed to a {@link SampleSink} in chunks with the time of each grid point.  All storage is allocated up front.</p>
+ */
+public class SamplePipeline {
+
+    /**
+     * standard gravity in m/s^2
+     */
+    public static final float STANDARD_GRAVITY = 9.80665f;
+
+    /**
+     * the maximum number of input samples processed in one pass
+     */
+    private static final int EVENT_BATCH_CAPACITY = 256;
+
+    /**
+     * the maximum number of grid samples filtered in one pass
+     */
+    private static final int BATCH_CAPACITY = 512;
+
+    /**
+     * the longest delivery gap that is interpolated across rather than restarting the grid
+     */
+    private static final long MAX_INTERPOLATION_GAP_MS = 250;
+
+    /**
+     * used to filter the resampled magnitudes
+     */
+    private final SignalFilter filter;
+
+    /**
+     * places samples on the fixed sample grid
+     */
+    private final LinearResampler resampler;
+
+    /**
+     * the grid period in nanoseconds
+     */
+    private final long periodNs;
+
+    /**
+     * the timestamps of the current input batch, in nanoseconds
+     */
+    private final long[] eventTimestamps;
+
+    /**
+     * the x axis values of the current input batch
+     */
+    private final float[] eventX;
+
+    /**
+     * the y axis values of the current input batch
+     */
+    private final float[] eventY;
+
+    /**
+     * the z axis values of the current input batch
+     */
+    private final float[] eventZ;
+
+    /**
+     * the magnitudes of the current input batch
+     */
+    private final float[] eventMagnitudes;
+
+    /**
+     * the number of samples in the current input batch
+     */
+    private int eventBatchSize;
+
+    /**
+     * the grid times of the current grid batch, in nanoseconds
+     */
+    private final long[] batchTimestamps;
+
+    /**
+     * the raw magnitudes of the current grid batch
+     */
+    private final float[] batchMagnitudes;
+
+    /**
+     * the filtered magnitudes of the current grid batch
+     */
+    private final float[] batchFilteredMagnitudes;
+
+    /**
+     * the number of samples in the current grid batch
+     */
+    private int batchSize;
+
+    /**
+     * Initializes a new instance of the {@link SamplePipeline} class.
+     *
+     * @param sampleRateMs the grid sample rate in milliseconds
+     * @param filter       the signal filter
+     */
+    public SamplePipeline(long sampleRateMs, SignalFilter filter) {
+        this.filter = filter;
+        this.periodNs = sampleRateMs * 1000000;
+        this.resampler = new LinearResampler(this.periodNs, MAX_INTERPOLATION_GAP_MS * 1000000);
+
+        this.eventTimestamps = new long[EVENT_BATCH_CAPACITY];
+        this.eventX = new float[EVENT_BATCH_CAPACITY];
+        this.eventY = new float[EVENT_BATCH_CAPACITY];
+        this.eventZ = new float[EVENT_BATCH_CAPACITY];
+        this.eventMagnitudes = new float[EVENT_BATCH_CAPACITY];
+        this.eventBatchSize = 0;
+
+        this.batchTimestamps = new long[BATCH_CAPACITY];
+        this.batchMagnitudes = new float[BATCH_CAPACITY];
+        this.batchFilteredMagnitudes = new float[BATCH_CAPACITY];
+        this.batchSize = 0;
+    }
+
+    /**
+     * Adds a sample to the current batch, processing the batch if it is full.
+     *
+     * @param timestampNs the sample timestamp in nanoseconds
+     * @param x           the x axis acceleration in m/s^2
+     * @param y           the y axis acceleration in m/s^2
+     * @param z           the z axis acceleration in m/s^2
+     * @param sink        receives any grid samples produced
+     */
+    public void add(long timestampNs, float x, float y, float z, SampleSink sink) {
+        int i = this.eventBatchSize;
+        this.eventTimestamps[i] = timestampNs;
+        this.eventX[i] = x;
+        this.eventY[i] = y;
+        this.eventZ[i] = z;
+
+        if (++this.eventBatchSize == EVENT_BATCH_CAPACITY) {
+            this.flush(sink);
+        }
+    }
+
+    /**
+     * Adds a run of samples stored as separate arrays, processing each batch as it fills.
+     *
+     * @param timestampsNs the sample timestamps in nanoseconds
+     * @param x            the x axis accelerations in m/s^2
+     * @param y            the y axis accelerations in m/s^2
+     * @param z            the z axis accelerations in m/s^2
+     * @param offset       the index of the first sample
+     * @param length       the number of samples
+     * @param sink         receives any grid samples produced
+     */
+    public void add(long[] timestampsNs, float[] x, float[] y, float[] z, int offset, int length, SampleSink sink) {
+        while (length > 0) {
+            int count = Math.min(length, EVENT_BATCH_CAPACITY - this.eventBatchSize);
+
+            System.arraycopy(timestampsNs, offset, this.eventTimestamps, this.eventBatchSize, count);
+            System.arraycopy(x, offset, this.eventX, this.eventBatchSize, count);
+            System.arraycopy(y, offset, this.eventY, this.eventBatchSize, count);
+            System.arraycopy(z, offset, this.eventZ, this.eventBatchSize, count);
+
+            this.eventBatchSize += count;
+            offset += count;
+            length -= count;
+
+            if (this.eventBatchSize == EVENT_BATCH_CAPACITY) {
+                this.flush(sink);
+            }
+        }
+    }
+
+    /**
+     * Processes the current batch in one pass.
+     *
+     * @param sink receives any grid samples produced
+     */
+    public void flush(SampleSink sink) {
+        int eventCount = this.eventBatchSize;
+        VectorMagnitude.norm(this.eventX, this.eventY, this.eventZ, this.eventMagnitudes, 0, eventCount);
+
+        int maxResampledLength = this.resampler.getMaxOutputLength();
+        for (int i = 0; i < eventCount; i++) {
+            if (this.batchSize + maxResampledLength > BATCH_CAPACITY) {
+                this.processGridBatch(sink);
+            }
+
+            int count = this.resampler.resample(
+                    this.eventTimestamps[i],
+                    this.eventMagnitudes[i] - STANDARD_GRAVITY,
+                    this.batchMagnitudes,
+                    this.batchSize);
+
+            // The points produced end just before the next grid point
+            long gridNs = this.resampler.getNextGridTimestampNs() - count * this.periodNs;
+            for (int j = 0; j < count; j++) {
+                this.batchTimestamps[this.batchSize + j] = gridNs;
+                gridNs += this.periodNs;
+            }
+
+            this.batchSize += count;
+        }
+
+        this.eventBatchSize = 0;
+        this.processGridBatch(sink);
+    }
+
+    /**
+     * Filters the current grid batch in one pass and hands it to the sink.
+     *
+     * @param sink receives the grid samples
+     */
+    private void processGridBatch(SampleSink sink) {
+        int size = this.batchSize;
+        if (size == 0) {
+            return;
+        }
+
+        this.filter.filter(this.batchMagnitudes, this.batchFilteredMagnitudes, 0, size);
+        sink.onSamples(this.batchTimestamps, this.batchMagnitudes, this.batchFilteredMagnitudes, size);
+        this.batchSize = 0;
+    }
+}
@@ -0,0 +1,16 @@
+package com.danbunnell.steptracker.engine;
+
+/**
+ * Receives evenly spaced samples from a {@link SamplePipeline}.
+ */
+public interface SampleSink {
+    /**
+     * Called with a run of consecutive grid samples.  The arrays are reused once this returns.
+     *
+     * @param timestampsNs       the grid time of each sample, in the sensor's nanoseconds
+     * @param magnitudes         raw acceleration magnitudes, less gravity
+     * @param filteredMagnitudes filtered acceleration magnitudes
+     * @param length             the number of samples, starting at index zero
+     */
+    void onSamples(long[] timestampsNs, float[] magnitudes, float[] filteredMagnitudes, int length);
+}
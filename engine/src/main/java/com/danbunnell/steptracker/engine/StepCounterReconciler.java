@@ -0,0 +1,139 @@
+package com.danbunnell.steptracker.engine;
+
+/**
+ * Turns readings of a cumulative hardware step counter into step deltas, including the steps taken
+ * while nothing was listening.
+ *
+ * <p>A hardware step counter reports the total number of steps since the device booted.  Given the
+ * last reading from a previous run, the difference to the first new reading is the number of steps
+ * taken while the app was not running.  If the device has rebooted since, the counter started again
+ * from zero, so the whole new reading is new steps.  A reboot is recognized by the counter going
+ * backwards, by the uptime going backwards, or by the system's boot count changing where it is
+ * known.  The wall clock is never consulted, since the user or the network may change it by any
+ * amount; a reboot that none of these reveal is taken for the same boot, which can only undercount.
+ * Steps taken between the last saved reading and a shutdown cannot be recovered.</p>
+ *
+ * <p>A reboot always ends the process, so the uptime and boot count are only compared on the first
+ * reading after construction.  Later in the same run only the counter going backwards is taken for
+ * a reset.</p>
+ *
+ * <p>Not thread safe.</p>
+ */
+public class StepCounterReconciler {
+
+    /**
+     * the value of a reading that has never been taken
+     */
+    public static final long UNKNOWN = -1;
+
+    /**
+     * the last counter reading, or {@link #UNKNOWN}
+     */
+    private long lastCounterValue;
+
+    /**
+     * the uptime at the last reading, in milliseconds
+     */
+    private long lastElapsedRealtimeMs;
+
+    /**
+     * the boot count at the last reading, or {@link #UNKNOWN}
+     */
+    private long lastBootCount;
+
+    /**
+     * whether the next reading is the first since construction, the only one that can follow a
+     * reboot
+     */
+    private boolean firstReading;
+
+    /**
+     * Initializes a new instance of the {@link StepCounterReconciler} class with no history, so
+     * the first reading only sets the baseline.
+     */
+    public StepCounterReconciler() {
+        this(UNKNOWN, 0, UNKNOWN);
+    }
+
+    /**
+     * Initializes a new instance of the {@link StepCounterReconciler} class from a saved reading.
+     *
+     * @param lastCounterValue      the last counter reading, or {@link #UNKNOWN}
+     * @param lastElapsedRealtimeMs the uptime at the last reading, in milliseconds
+     * @param lastBootCount         the boot count at the last reading, or {@link #UNKNOWN}
+     */
+    public StepCounterReconciler(long lastCounterValue, long lastElapsedRealtimeMs, long lastBootCount) {
+        this.lastCounterValue = lastCounterValue;
+        this.lastElapsedRealtimeMs = lastElapsedRealtimeMs;
+        this.lastBootCount = lastBootCount;
+        this.firstReading = true;
+    }
+
+    /**
+     * Takes a counter reading.
+     *
+     * @param counterValue      the counter reading
+     * @param elapsedRealtimeMs the uptime, in milliseconds
+     * @param bootCount         the number of times the device has booted, or {@link #UNKNOWN} where
+     *                          the system does not report it
+     * @return                  the number of steps since the last reading
+     */
+    public long onReading(long counterValue, long elapsedRealtimeMs, long bootCount) {
+        long steps;
+
+        if (this.lastCounterValue == UNKNOWN || counterValue < 0) {
+            steps = 0;
+        } else if (counterValue < this.lastCounterValue
+                || (this.firstReading && this.hasRebooted(elapsedRealtimeMs, bootCount))) {
+            steps = counterValue;
+        } else {
+            steps = counterValue - this.lastCounterValue;
+        }
+
+        this.lastCounterValue = counterValue;
+        this.lastElapsedRealtimeMs = elapsedRealtimeMs;
+        this.lastBootCount = bootCount;
+        this.firstReading = false;
+        return steps;
+    }
+
+    /**
+     * Determines whether the device has booted since the last reading, from the uptime and boot
+     * count alone.
+     *
+     * @param elapsedRealtimeMs the uptime, in milliseconds
+     * @param bootCount         the boot count, or {@link #UNKNOWN}
+     * @return                  true if the device has rebooted
+     */
+    private boolean hasRebooted(long elapsedRealtimeMs, long bootCount) {
+        return elapsedRealtimeMs < this.lastElapsedRealtimeMs
+                || (bootCount != UNKNOWN && this.lastBootCount != UNKNOWN && bootCount != this.lastBootCount);
+    }
+
+    /**
+     * Gets the last counter reading, to be saved.
+     *
+     * @return the last reading, or {@link #UNKNOWN}
+     */
+    public long getLastCounterValue() {
+        return this.lastCounterValue;
+    }
+
+    /**
+     * Gets the uptime at the last reading, to be saved.
+     *
+     * @return the uptime in milliseconds
+     */
+    public long getLastElapsedRealtimeMs() {
+        return this.lastElapsedRealtimeMs;
+    }
+
+    /**
+     * Gets the boot count at the last reading, to be saved.
+     *
+     * @return the boot count, or {@link #UNKNOWN}
+     */
+    public long getLastBootCount() {
+        return this.lastBootCount;
+    }
+}
@@ -0,0 +1,14 @@
+package com.danbunnell.steptracker.engine;
+
+/**
+ * A step classification strategy fed one filtered acceleration magnitude at a time.
+ */
+public interface StepDetectionEngine {
+    /**
+     * Adds a vector to the engine.
+     *
+     * @param vector a filtered acceleration magnitude
+     * @return       the number of steps confirmed by this vector
+     */
+    int add(float vector);
+}
@@ -0,0 +1,116 @@
+package com.danbunnell.steptracker.engine;
+
+import com.danbunnell.steptracker.common.SignalFilter;
+
+/**
+ * Counts steps from timestamped three-axis accelerometer samples, with no platform dependencies.
+ *
+ * <p>Runs the same magnitude, resampling, filtering and detection stages as the app, so recorded
+ * sensor data can be processed as fast as the machine allows.  Not thread safe.</p>
+ */
+public class StepPipeline {
+
+    /**
+     * turns raw samples into filtered magnitudes
+     */
+    private final SamplePipeline samplePipeline;
+
+    /**
+     * classifies steps from the filtered magnitudes
+     */
+    private final StepDetectionEngine engine;
+
+    /**
+     * feeds filtered magnitudes to the engine
+     */
+    private final SampleSink sink;
+
+    /**
+     * the number of steps detected so far
+     */
+    private long stepCount;
+
+    /**
+     * the number of grid samples processed so far
+     */
+    private long sampleCount;
+
+    /**
+     * Initializes a new instance of the {@link StepPipeline} class.
+     *
+     * @param sampleRateMs the grid sample rate in milliseconds
+     * @param filter       the signal filter
+     * @param engine       the step classification engine
+     */
+    public StepPipeline(long sampleRateMs, SignalFilter filter, StepDetectionEngine engine) {
+        this.samplePipeline = new SamplePipeline(sampleRateMs, filter);
+        this.engine = engine;
+        this.stepCount = 0;
+        this.sampleCount = 0;
+        this.sink = new SampleSink() {
+            @Override
+            public void onSamples(long[] timestampsNs, float[] magnitudes, float[] filteredMagnitudes, int length) {
+                StepDetectionEngine engine = StepPipeline.this.engine;
+                int steps = 0;
+                for (int i = 0; i < length; i++) {
+                    steps += engine.add(filteredMagnitudes[i]);
+                }
+
+                stepCount += steps;
+                sampleCount += length;
+            }
+        };
+    }
+
+    /**
+     * Adds a sample.  Call {@link #flush()} before reading results.
+     *
+     * @param timestampNs the sample timestamp in nanoseconds
+     * @param x           the x axis acceleration in m/s^2
+     * @param y           the y axis acceleration in m/s^2
+     * @param z           the z axis acceleration in m/s^2
+     */
+    public void add(long timestampNs, float x, float y, float z) {
+        this.samplePipeline.add(timestampNs, x, y, z, this.sink);
+    }
+
+    /**
+     * Adds a run of samples stored as separate arrays.  Call {@link #flush()} before reading
+     * results.
+     *
+     * @param timestampsNs the sample timestamps in nanoseconds
+     * @param x            the x axis accelerations in m/s^2
+     * @param y            the y axis accelerations in m/s^2
+     * @param z            the z axis accelerations in m/s^2
+     * @param offset       the index of the first sample
+     * @param length       the number of samples
+     */
+    public void add(long[] timestampsNs, float[] x, float[] y, float[] z, int offset, int length) {
+        this.samplePipeline.add(timestampsNs, x, y, z, offset, length, this.sink);
+    }
+
+    /**
+     * Processes any buffered samples.
+     */
+    public void flush() {
+        this.samplePipeline.flush(this.sink);
+    }
+
+    /**
+     * Returns the number of steps detected so far.
+     *
+     * @return a step count
+     */
+    public long getStepCount() {
+        return this.stepCount;
+    }
+
+    /**
+     * Returns the number of evenly spaced samples processed so far.
+     *
+     * @return a sample count
+     */
+    public long getSampleCount() {
+        return this.sampleCount;
+    }
+}
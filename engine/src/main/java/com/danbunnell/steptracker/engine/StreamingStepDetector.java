@@ -0,0 +1,290 @@
+package com.danbunnell.steptracker.engine;
+
+/**
+ * Classifies steps one sample at a time by tracking running peak and valley state.
+ *
+ * <p>A peak is confirmed as soon as the signal falls a small hysteresis below it, and is counted as
+ * a step using the same criteria as {@link WindowStepCounter}: it must exceed a fraction of the
+ * mean of the recent peaks, and rise far enough above the mean of the recent valleys.  The means
+ * only cover extrema from the last detection window, and are kept in small fixed-size rings, so the
+ * per-sample cost is bounded and there are no window boundaries to miscount across.</p>
+ */
+public class StreamingStepDetector implements StepDetectionEngine {
+    /**
+     * the maximum number of extrema remembered per detection window
+     */
+    private static final int MAX_EXTREMA_PER_WINDOW = 32;
+
+    /**
+     * the fraction of the mean peak a peak must exceed to count as a step
+     */
+    private final float peakToMeanCutoffRatio;
+
+    /**
+     * how far a peak must rise above the mean valley to count as a step
+     */
+    private final float minPeakToMeanBase;
+
+    /**
+     * how far the signal must reverse before an extremum is confirmed
+     */
+    private final float hysteresis;
+
+    /**
+     * the detection window size in samples
+     */
+    private final int windowSamples;
+
+    /**
+     * the minimum number of samples between two steps
+     */
+    private final int minStepIntervalSamples;
+
+    /**
+     * the recent peaks
+     */
+    private final Extrema peaks;
+
+    /**
+     * the recent valleys
+     */
+    private final Extrema valleys;
+
+    /**
+     * whether the signal is currently rising towards a peak
+     */
+    private boolean rising;
+
+    /**
+     * the most extreme value since the last confirmed extremum
+     */
+    private float candidate;
+
+    /**
+     * the sample index of the candidate extremum
+     */
+    private long candidateIndex;
+
+    /**
+     * the value the signal started rising from towards the candidate peak
+     */
+    private float riseMinimum;
+
+    /**
+     * the sample index of the last step
+     */
+    private long lastStepIndex;
+
+    /**
+     * the index of the next sample
+     */
+    private long sampleIndex;
+
+    /**
+     * Initializes a new instance of the {@link StreamingStepDetector} class with the default step
+     * criteria.
+     *
+     * @param sampleRateMs      the sample rate in milliseconds
+     * @param detectionWindowMs the window over which peak and valley means are taken
+     */
+    public StreamingStepDetector(long sampleRateMs, long detectionWindowMs) {
+        this(
+                sampleRateMs,
+                detectionWindowMs,
+                DetectorConfiguration.DEFAULT.getPeakToMeanCutoffRatio(),
+                DetectorConfiguration.DEFAULT.getMinPeakToMeanBase(),
+                DetectorConfiguration.DEFAULT.getHysteresis(),
+                DetectorConfiguration.DEFAULT.getMinStepIntervalMs());
+    }
+
+    /**
+     * Initializes a new instance of the {@link StreamingStepDetector} class.
+     *
+     * @param sampleRateMs  the sample rate in milliseconds
+     * @param configuration the detection window and step criteria
+     */
+    public StreamingStepDetector(long sampleRateMs, DetectorConfiguration configuration) {
+        this(
+                sampleRateMs,
+                configuration.getStepDetectionWindowMs(),
+                configuration.getPeakToMeanCutoffRatio(),
+                configuration.getMinPeakToMeanBase(),
+                configuration.getHysteresis(),
+                configuration.getMinStepIntervalMs());
+    }
+
+    /**
+     * Initializes a new instance of the {@link StreamingStepDetector} class.
+     *
+     * @param sampleRateMs          the sample rate in milliseconds
+     * @param detectionWindowMs     the window over which peak and valley means are taken
+     * @param peakToMeanCutoffRatio the fraction of the mean peak a peak must exceed to count as a
+     *                              step
+     * @param minPeakToMeanBase     how far a peak must rise above the mean valley to count as a
+     *                              step
+     * @param hysteresis            how far the signal must reverse before an extremum is confirmed
+     * @param minStepIntervalMs     the shortest time between two steps, in milliseconds
+     */
+    public StreamingStepDetector(
+            long sampleRateMs,
+            long detectionWindowMs,
+            float peakToMeanCutoffRatio,
+            float minPeakToMeanBase,
+            float hysteresis,
+            long minStepIntervalMs) {
+        this.peakToMeanCutoffRatio = peakToMeanCutoffRatio;
+        this.minPeakToMeanBase = minPeakToMeanBase;
+        this.hysteresis = hysteresis;
+        this.windowSamples = Math.round(detectionWindowMs / (float) sampleRateMs);
+        this.minStepIntervalSamples = Math.round(minStepIntervalMs / (float) sampleRateMs);
+
+        int capacity = Math.min(
+                MAX_EXTREMA_PER_WINDOW,
+                this.windowSamples / Math.max(1, this.minStepIntervalSamples) + 2);
+        this.peaks = new Extrema(capacity);
+        this.valleys = new Extrema(capacity);
+
+        this.rising = true;
+        this.candidate = Float.NEGATIVE_INFINITY;
+        this.candidateIndex = 0;
+        this.riseMinimum = Float.POSITIVE_INFINITY;
+        this.lastStepIndex = Long.MIN_VALUE / 2;
+        this.sampleIndex = 0;
+    }
+
+    /**
+     * Adds a vector to the detector.
+     *
+     * @param vector a filtered acceleration magnitude
+     * @return       one if the vector confirmed a step, otherwise zero
+     */
+    @Override
+    public int add(float vector) {
+        long index = this.sampleIndex++;
+        int steps = 0;
+
+        if (this.rising) {
+            if (vector > this.candidate) {
+                this.riseMinimum = Math.min(this.riseMinimum, vector);
+                this.candidate = vector;
+                this.candidateIndex = index;
+            } else if (vector < this.candidate - this.hysteresis) {
+                steps = this.onPeak(this.candidate, this.candidateIndex);
+                this.rising = false;
+                this.candidate = vector;
+                this.candidateIndex = index;
+            }
+        } else {
+            if (vector < this.candidate) {
+                this.candidate = vector;
+                this.candidateIndex = index;
+            } else if (vector > this.candidate + this.hysteresis) {
+                this.valleys.add(this.candidate, this.candidateIndex, this.windowSamples);
+                this.riseMinimum = this.candidate;
+                this.rising = true;
+                this.candidate = vector;
+                this.candidateIndex = index;
+            }
+        }
+
+        return steps;
+    }
+
+    /**
+     * Called when a peak has been confirmed.
+     *
+     * <p>A peak with no valley in the window, such as the first one after the detector starts or
+     * after a pause, is measured from the value it rose from, so that the first step of a
+     * walk is counted just as {@link WindowStepCounter} counts it.</p>
+     *
+     * @param peak      the peak value
+     * @param peakIndex the sample index of the peak
+     * @return          one if the peak is a step, otherwise zero
+     */
+    private int onPeak(float peak, long peakIndex) {
+        this.peaks.add(peak, peakIndex, this.windowSamples);
+
+        if (peakIndex - this.lastStepIndex < this.minStepIntervalSamples) {
+            return 0;
+        }
+
+        float valleyMean = this.valleys.mean(peakIndex, this.windowSamples);
+        if (Float.isNaN(valleyMean)) {
+            valleyMean = this.riseMinimum;
+        }
+
+        if ((peak > this.peakToMeanCutoffRatio * this.peaks.mean(peakIndex, this.windowSamples))
+                && (peak - valleyMean > this.minPeakToMeanBase)) {
+            this.lastStepIndex = peakIndex;
+            return 1;
+        }
+
+        return 0;
+    }
+
+    /**
+     * A fixed-capacity ring of recent extrema.
+     */
+    private static class Extrema {
+        private final float[] values;
+
+        private final long[] indices;
+
+        private int head;
+
+        private int count;
+
+        Extrema(int capacity) {
+            this.values = new float[capacity];
+            this.indices = new long[capacity];
+            this.head = 0;
+            this.count = 0;
+        }
+
+        /**
+         * Adds an extremum, evicting the oldest one if the ring is full.
+         *
+         * @param value         the extremum value
+         * @param index         the extremum sample index
+         * @param windowSamples the window size in samples
+         */
+        void add(float value, long index, int windowSamples) {
+            this.expire(index, windowSamples);
+
+            int tail = (this.head + this.count) % this.values.length;
+            this.values[tail] = value;
+            this.indices[tail] = index;
+
+            if (this.count < this.values.length) {
+                this.count++;
+            } else {
+                this.head = (this.head + 1) % this.values.length;
+            }
+        }
+
+        /**
+         * Returns the mean of the extrema within the window ending at the given sample.
+         *
+         * @param index         the sample index at the end of the window
+         * @param windowSamples the window size in samples
+         * @return              the mean, or NaN if there are none
+         */
+        float mean(long index, int windowSamples) {
+            this.expire(index, windowSamples);
+
+            float total = 0;
+            for (int i = 0; i < this.count; i++) {
+                total += this.values[(this.head + i) % this.values.length];
+            }
+
+            return total / this.count;
+        }
+
+        private void expire(long index, int windowSamples) {
+            while (this.count > 0 && index - this.indices[this.head] >= windowSamples) {
+                this.head = (this.head + 1) % this.values.length;
+                this.count--;
+            }
+        }
+    }
+}
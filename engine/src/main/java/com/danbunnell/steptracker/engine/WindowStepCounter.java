@@ -0,0 +1,143 @@
+package com.danbunnell.steptracker.engine;
+
+/**
+ * Counts the steps in a fixed-size window of filtered acceleration magnitudes.
+ *
+ * <p>When used as a {@link StepDetectionEngine} the window is counted each time it fills, so
+ * steps are reported in window-sized chunks.  All scratch storage is allocated up front, so
+ * counting a window does not allocate.</p>
+ */
+public class WindowStepCounter implements StepDetectionEngine {
+    /**
+     * the fraction of the mean peak a peak must exceed to count as a step
+     */
+    private final float peakToMeanCutoffRatio;
+
+    /**
+     * how far a peak must rise above the mean valley to count as a step
+     */
+    private final float minPeakToMeanBase;
+
+    private final float[] buffer;
+
+    private int bufferIndex;
+
+    /**
+     * the number of vectors added since the window was last counted
+     */
+    private int samplesSinceCount;
+
+    /**
+     * scratch copy of the buffer taken at the start of each count
+     */
+    private final float[] snapshot;
+
+    /**
+     * scratch storage for the peaks found in the snapshot
+     */
+    private final float[] peaks;
+
+    /**
+     * Initializes a new instance of the {@link WindowStepCounter} class with the default step
+     * criteria.
+     *
+     * @param bufferSize the window size in samples
+     */
+    public WindowStepCounter(int bufferSize) {
+        this(
+                bufferSize,
+                DetectorConfiguration.DEFAULT.getPeakToMeanCutoffRatio(),
+                DetectorConfiguration.DEFAULT.getMinPeakToMeanBase());
+    }
+
+    /**
+     * Initializes a new instance of the {@link WindowStepCounter} class.
+     *
+     * @param bufferSize            the window size in samples
+     * @param peakToMeanCutoffRatio the fraction of the mean peak a peak must exceed to count as a
+     *                              step
+     * @param minPeakToMeanBase     how far a peak must rise above the mean valley to count as a
+     *                              step
+     */
+    public WindowStepCounter(int bufferSize, float peakToMeanCutoffRatio, float minPeakToMeanBase) {
+        this.peakToMeanCutoffRatio = peakToMeanCutoffRatio;
+        this.minPeakToMeanBase = minPeakToMeanBase;
+        this.buffer = new float[bufferSize];
+        this.bufferIndex = 0;
+        this.samplesSinceCount = 0;
+        this.snapshot = new float[bufferSize];
+        this.peaks = new float[bufferSize];
+    }
+
+    /**
+     * Adds a vector to the buffer, counting the window once it has filled.
+     *
+     * @param vector a vector
+     * @return       the step count of the window if it just filled, otherwise zero
+     */
+    @Override
+    public int add(float vector) {
+        this.buffer[this.bufferIndex] = vector;
+
+        if (this.bufferIndex + 1 < this.buffer.length) {
+            this.bufferIndex++;
+        } else {
+            this.bufferIndex = 0;
+        }
+
+        if (++this.samplesSinceCount < this.buffer.length) {
+            return 0;
+        }
+
+        this.samplesSinceCount = 0;
+        return this.getStepCount();
+    }
+
+    /**
+     * Gets the step count from the current buffer.
+     *
+     * @return a step count
+     */
+    public int getStepCount() {
+        float[] bufferCopy = this.snapshot;
+        System.arraycopy(this.buffer, 0, bufferCopy, 0, this.buffer.length);
+
+        float[] peaks = this.peaks;
+        int peakCount = 0;
+        int valleyCount = 0;
+        float peakTotal = 0;
+        float valleyTotal = 0;
+
+        for (int i = 0; i < bufferCopy.length; i++) {
+            float current = bufferCopy[i];
+            float prev = (i != 0) ? bufferCopy[i - 1] : bufferCopy[bufferCopy.length - 1];
+            float next = (i != bufferCopy.length - 1) ? bufferCopy[i + 1] : bufferCopy[0];
+
+            float forwardSlope = next - current;
+            float backwardSlope = current - prev;
+
+            if (forwardSlope < 0 && backwardSlope > 0) {
+                peaks[peakCount++] = current;
+                peakTotal += current;
+            } else if (forwardSlope > 0 && backwardSlope < 0) {
+                valleyCount++;
+                valleyTotal += current;
+            }
+        }
+
+        float peakMean = peakTotal / peakCount;
+        float valleyMean = valleyTotal / valleyCount;
+
+        int stepCount = 0;
+
+        for (int i = 0; i < peakCount; i++) {
+            float peak = peaks[i];
+            if ((peak > this.peakToMeanCutoffRatio * peakMean)
+                    && (peak - valleyMean > this.minPeakToMeanBase)) {
+                stepCount++;
+            }
+        }
+
+        return stepCount;
+    }
+}
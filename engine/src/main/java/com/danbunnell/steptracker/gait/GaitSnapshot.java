@@ -0,0 +1,222 @@
+package com.danbunnell.steptracker.gait;
+
+import java.util.Locale;
+
+/**
+ * A copy of {@link GaitTracker} statistics at one moment.  Walking bout figures include the
+ * current bout once it is long enough to count.
+ */
+public class GaitSnapshot {
+
+    /**
+     * the cadence over the window in steps per minute
+     */
+    private final double cadenceStepsPerMinute;
+
+    /**
+     * the mean step interval over the window in milliseconds
+     */
+    private final double meanStepIntervalMs;
+
+    /**
+     * the standard deviation of the step intervals over the window in milliseconds
+     */
+    private final double stepIntervalStdDevMs;
+
+    /**
+     * the number of intervals in the window
+     */
+    private final int intervalCount;
+
+    /**
+     * whether the current bout counts as walking
+     */
+    private final boolean walking;
+
+    /**
+     * the number of steps in the current bout
+     */
+    private final long boutSteps;
+
+    /**
+     * the duration of the current bout in seconds
+     */
+    private final double boutDurationS;
+
+    /**
+     * the number of walking bouts
+     */
+    private final long boutCount;
+
+    /**
+     * the time spent in walking bouts in seconds
+     */
+    private final double walkingTimeS;
+
+    /**
+     * the duration of the longest walking bout in seconds
+     */
+    private final double longestBoutS;
+
+    /**
+     * Initializes a new instance of the {@link GaitSnapshot} class.
+     *
+     * @param cadenceStepsPerMinute the cadence over the window in steps per minute
+     * @param meanStepIntervalMs    the mean step interval over the window in milliseconds
+     * @param stepIntervalStdDevMs  the standard deviation of the step intervals in milliseconds
+     * @param intervalCount         the number of intervals in the window
+     * @param walking               whether the current bout counts as walking
+     * @param boutSteps             the number of steps in the current bout
+     * @param boutDurationS         the duration of the current bout in seconds
+     * @param boutCount             the number of walking bouts
+     * @param walkingTimeS          the time spent in walking bouts in seconds
+     * @param longestBoutS          the duration of the longest walking bout in seconds
+     */
+    GaitSnapshot(
+            double cadenceStepsPerMinute,
+            double meanStepIntervalMs,
+            double stepIntervalStdDevMs,
+            int intervalCount,
+            boolean walking,
+            long boutSteps,
+            double boutDurationS,
+            long boutCount,
+            double walkingTimeS,
+            double longestBoutS) {
+
+        this.cadenceStepsPerMinute = cadenceStepsPerMinute;
+        this.meanStepIntervalMs = meanStepIntervalMs;
+        this.stepIntervalStdDevMs = stepIntervalStdDevMs;
+        this.intervalCount = intervalCount;
+        this.walking = walking;
+        this.boutSteps = boutSteps;
+        this.boutDurationS = boutDurationS;
+        this.boutCount = boutCount;
+        this.walkingTimeS = walkingTimeS;
+        this.longestBoutS = longestBoutS;
+    }
+
+    /**
+     * Gets the cadence over the most recent steps of the current bout.
+     *
+     * @return the cadence in steps per minute, or zero outside a bout
+     */
+    public double getCadenceStepsPerMinute() {
+        return this.cadenceStepsPerMinute;
+    }
+
+    /**
+     * Gets the mean interval between the most recent steps.
+     *
+     * @return the mean in milliseconds, or zero outside a bout
+     */
+    public double getMeanStepIntervalMs() {
+        return this.meanStepIntervalMs;
+    }
+
+    /**
+     * Gets the standard deviation of the intervals between the most recent steps.
+     *
+     * @return the standard deviation in milliseconds
+     */
+    public double getStepIntervalStdDevMs() {
+        return this.stepIntervalStdDevMs;
+    }
+
+    /**
+     * Gets the step interval variability as the coefficient of variation, which is comparable
+     * across walking speeds.
+     *
+     * @return the standard deviation over the mean, or zero outside a bout
+     */
+    public double getStepIntervalVariation() {
+        return this.meanStepIntervalMs > 0 ? this.stepIntervalStdDevMs / this.meanStepIntervalMs : 0;
+    }
+
+    /**
+     * Gets the number of step intervals the cadence and variability are measured over.
+     *
+     * @return the interval count
+     */
+    public int getIntervalCount() {
+        return this.intervalCount;
+    }
+
+    /**
+     * Gets whether the current bout is long enough to count as walking.
+     *
+     * @return true if walking
+     */
+    public boolean isWalking() {
+        return this.walking;
+    }
+
+    /**
+     * Gets the number of steps in the current bout.
+     *
+     * @return the step count
+     */
+    public long getBoutSteps() {
+        return this.boutSteps;
+    }
+
+    /**
+     * Gets the time from the first to the latest step of the current bout.
+     *
+     * @return the duration in seconds
+     */
+    public double getBoutDurationS() {
+        return this.boutDurationS;
+    }
+
+    /**
+     * Gets the number of walking bouts.
+     *
+     * @return the bout count
+     */
+    public long getBoutCount() {
+        return this.boutCount;
+    }
+
+    /**
+     * Gets the time spent in walking bouts.
+     *
+     * @return the walking time in seconds
+     */
+    public double getWalkingTimeS() {
+        return this.walkingTimeS;
+    }
+
+    /**
+     * Gets the duration of the longest walking bout.
+     *
+     * @return the duration in seconds
+     */
+    public double getLongestBoutS() {
+        return this.longestBoutS;
+    }
+
+    /**
+     * Formats the snapshot for display.
+     *
+     * @return the formatted snapshot
+     */
+    @Override
+    public String toString() {
+        return String.format(
+                Locale.US,
+                "cadence: %.1f steps/min, interval: mean=%.0f sd=%.0f ms (cv %.1f%%)%n"
+                        + "bout: %s, %d steps in %.1f s%n"
+                        + "walking: %d bouts, %.0f s, longest %.0f s%n",
+                this.cadenceStepsPerMinute,
+                this.meanStepIntervalMs,
+                this.stepIntervalStdDevMs,
+                this.getStepIntervalVariation() * 100,
+                this.walking ? "walking" : "idle",
+                this.boutSteps,
+                this.boutDurationS,
+                this.boutCount,
+                this.walkingTimeS,
+                this.longestBoutS);
+    }
+}
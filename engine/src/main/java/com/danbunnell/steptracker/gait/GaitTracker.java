@@ -0,0 +1,257 @@
+package com.danbunnell.steptracker.gait;
+
+/**
+ * Derives cadence, step interval variability and walking bouts from step times, in constant time
+ * and memory per step.
+ *
+ * <p>The intervals between the most recent steps are kept in a ring, with their sum and sum of
+ * squares updated as each interval enters and leaves, so the cadence and the spread of the
+ * intervals over the window cost O(1) per step.  Intervals are kept in whole microseconds and the
+ * sums as longs, so nothing drifts however long the stream runs.</p>
+ *
+ * <p>Consecutive steps no more than {@code maxStepIntervalNs} apart form a bout.  A longer pause,
+ * seen either at the next step or when time is advanced past it, ends the bout and empties the
+ * window, so cadence describes the current bout only.  Bouts of at least {@code minBoutSteps} steps
+ * count as walking; shorter ones, such as a few steps across a room, are ignored.</p>
+ *
+ * <p>Steps may be added on one thread and snapshots taken on another.</p>
+ */
+public class GaitTracker {
+
+    /**
+     * the interval ring, in microseconds
+     */
+    private final long[] intervalsUs;
+
+    /**
+     * the longest pause between steps of the same bout in nanoseconds
+     */
+    private final long maxStepIntervalNs;
+
+    /**
+     * the number of steps a bout needs to count as walking
+     */
+    private final int minBoutSteps;
+
+    /**
+     * the ring index of the oldest interval
+     */
+    private int head;
+
+    /**
+     * the number of intervals in the window
+     */
+    private int intervalCount;
+
+    /**
+     * the sum of the intervals in the window, in microseconds
+     */
+    private long intervalSumUs;
+
+    /**
+     * the sum of the squared intervals in the window, in square microseconds
+     */
+    private long intervalSquareSumUs;
+
+    /**
+     * the time of the newest step in nanoseconds, or {@link Long#MIN_VALUE} if there is no bout
+     */
+    private long lastStepNs;
+
+    /**
+     * the latest time seen in nanoseconds
+     */
+    private long nowNs;
+
+    /**
+     * the time of the first step of the current bout in nanoseconds
+     */
+    private long boutStartNs;
+
+    /**
+     * the number of steps in the current bout
+     */
+    private long boutSteps;
+
+    /**
+     * the number of completed walking bouts
+     */
+    private long boutCount;
+
+    /**
+     * the time spent in completed walking bouts in nanoseconds
+     */
+    private long walkingTimeNs;
+
+    /**
+     * the duration of the longest walking bout in nanoseconds
+     */
+    private long longestBoutNs;
+
+    /**
+     * Initializes a new instance of the {@link GaitTracker} class.
+     *
+     * @param windowSize        the number of most recent step intervals cadence and variability
+     *                          are measured over
+     * @param maxStepIntervalNs the longest pause between steps of the same bout in nanoseconds
+     * @param minBoutSteps      the number of steps a bout needs to count as walking
+     */
+    public GaitTracker(int windowSize, long maxStepIntervalNs, int minBoutSteps) {
+        if (windowSize < 1 || minBoutSteps < 1) {
+            throw new IllegalArgumentException("windowSize and minBoutSteps must be positive");
+        }
+
+        double maxIntervalUs = Math.ceil(maxStepIntervalNs / 1000.0);
+        if (maxStepIntervalNs <= 0 || windowSize * maxIntervalUs * maxIntervalUs >= Long.MAX_VALUE) {
+            throw new IllegalArgumentException("maxStepIntervalNs must be positive and small enough to square");
+        }
+
+        this.intervalsUs = new long[windowSize];
+        this.maxStepIntervalNs = maxStepIntervalNs;
+        this.minBoutSteps = minBoutSteps;
+        this.reset();
+    }
+
+    /**
+     * Adds a step.  Steps at the same time as the previous one count towards the bout but add no
+     * interval; steps earlier than the previous one are ignored.
+     *
+     * @param timeNs the time of the step in nanoseconds
+     */
+    public synchronized void addStep(long timeNs) {
+        this.advanceTo(timeNs);
+
+        if (this.lastStepNs == Long.MIN_VALUE) {
+            this.boutStartNs = timeNs;
+            this.boutSteps = 1;
+            this.lastStepNs = timeNs;
+            return;
+        }
+
+        long intervalNs = timeNs - this.lastStepNs;
+        if (intervalNs < 0) {
+            return;
+        }
+
+        if (intervalNs > 0) {
+            this.addInterval(intervalNs / 1000);
+        }
+
+        this.boutSteps++;
+        this.lastStepNs = timeNs;
+    }
+
+    /**
+     * Moves time forward without a step, ending the current bout once the pause since its last
+     * step is too long.
+     *
+     * @param timeNs the current time in nanoseconds
+     */
+    public synchronized void advanceTo(long timeNs) {
+        if (timeNs > this.nowNs) {
+            this.nowNs = timeNs;
+        }
+
+        if (this.lastStepNs != Long.MIN_VALUE && this.nowNs - this.lastStepNs > this.maxStepIntervalNs) {
+            this.endBout();
+        }
+    }
+
+    /**
+     * Ends the current bout, for example when the step source stops.
+     */
+    public synchronized void endBout() {
+        if (this.lastStepNs == Long.MIN_VALUE) {
+            return;
+        }
+
+        if (this.boutSteps >= this.minBoutSteps) {
+            long durationNs = this.lastStepNs - this.boutStartNs;
+            this.boutCount++;
+            this.walkingTimeNs += durationNs;
+            this.longestBoutNs = Math.max(this.longestBoutNs, durationNs);
+        }
+
+        this.clearBout();
+    }
+
+    /**
+     * Removes all steps and bouts.
+     */
+    public synchronized void reset() {
+        this.clearBout();
+        this.nowNs = Long.MIN_VALUE;
+        this.boutCount = 0;
+        this.walkingTimeNs = 0;
+        this.longestBoutNs = 0;
+    }
+
+    /**
+     * Copies the current gait statistics.
+     *
+     * @return the copy
+     */
+    public synchronized GaitSnapshot snapshot() {
+        double meanIntervalUs = 0;
+        double varianceUs = 0;
+        if (this.intervalCount > 0) {
+            meanIntervalUs = this.intervalSumUs / (double) this.intervalCount;
+        }
+
+        if (this.intervalCount > 1) {
+            double sum = this.intervalSumUs;
+            varianceUs = Math.max(
+                    0,
+                    (this.intervalSquareSumUs - sum * sum / this.intervalCount) / (this.intervalCount - 1));
+        }
+
+        boolean walking = this.boutSteps >= this.minBoutSteps;
+        long boutDurationNs = this.lastStepNs != Long.MIN_VALUE ? this.lastStepNs - this.boutStartNs : 0;
+
+        return new GaitSnapshot(
+                meanIntervalUs > 0 ? 60e6 / meanIntervalUs : 0,
+                meanIntervalUs / 1000,
+                Math.sqrt(varianceUs) / 1000,
+                this.intervalCount,
+                walking,
+                this.boutSteps,
+                boutDurationNs / 1e9,
+                this.boutCount + (walking ? 1 : 0),
+                (this.walkingTimeNs + (walking ? boutDurationNs : 0)) / 1e9,
+                Math.max(this.longestBoutNs, walking ? boutDurationNs : 0) / 1e9);
+    }
+
+    /**
+     * Forgets the current bout and empties the window.
+     */
+    private void clearBout() {
+        this.lastStepNs = Long.MIN_VALUE;
+        this.boutStartNs = 0;
+        this.boutSteps = 0;
+        this.head = 0;
+        this.intervalCount = 0;
+        this.intervalSumUs = 0;
+        this.intervalSquareSumUs = 0;
+    }
+
+    /**
+     * Adds an interval to the window, replacing the oldest once it is full.
+     *
+     * @param intervalUs the interval in microseconds, at most the maximum step interval
+     */
+    private void addInterval(long intervalUs) {
+        if (this.intervalCount == this.intervalsUs.length) {
+            long oldest = this.intervalsUs[this.head];
+            this.intervalSumUs -= oldest;
+            this.intervalSquareSumUs -= oldest * oldest;
+            this.intervalsUs[this.head] = intervalUs;
+            this.head = (this.head + 1) % this.intervalsUs.length;
+        } else {
+            this.intervalsUs[(this.head + this.intervalCount) % this.intervalsUs.length] = intervalUs;
+            this.intervalCount++;
+        }
+
+        this.intervalSumUs += intervalUs;
+        this.intervalSquareSumUs += intervalUs * intervalUs;
+    }
+}
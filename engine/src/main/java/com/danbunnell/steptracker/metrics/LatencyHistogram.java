@@ -0,0 +1,198 @@
+package com.danbunnell.steptracker.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of durations in nanoseconds, with one bucket per power of two.
+ *
+ * <p>Bucket {@code i} holds durations in {@code [2^i, 2^(i+1))} ns, so the buckets span 1 ns to
+ * about 18 minutes with a relative error under 2x, and recording is a bit scan and two atomic
+ * adds with nothing allocated.  Durations may be recorded from any thread and read from any other.
+ * A reader running at the same time as a writer may see a count one sample ahead of the total.</p>
+ */
+public class LatencyHistogram {
+
+    /**
+     * the number of buckets; the last also holds anything longer
+     */
+    public static final int BUCKET_COUNT = 40;
+
+    /**
+     * the number of durations in each bucket
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * the sum of all durations in nanoseconds
+     */
+    private final AtomicLong totalNs = new AtomicLong();
+
+    /**
+     * the longest duration in nanoseconds
+     */
+    private final AtomicLong maxNs = new AtomicLong();
+
+    /**
+     * Records a duration.  Negative durations, from clocks that disagree, count as zero.
+     *
+     * @param durationNs the duration in nanoseconds
+     */
+    public void record(long durationNs) {
+        if (durationNs < 0) {
+            durationNs = 0;
+        }
+
+        this.counts.incrementAndGet(LatencyHistogram.bucketOf(durationNs));
+        this.totalNs.addAndGet(durationNs);
+
+        long max = this.maxNs.get();
+        while (durationNs > max && !this.maxNs.compareAndSet(max, durationNs)) {
+            max = this.maxNs.get();
+        }
+    }
+
+    /**
+     * Removes all recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.counts.set(i, 0);
+        }
+
+        this.totalNs.set(0);
+        this.maxNs.set(0);
+    }
+
+    /**
+     * Copies the histogram.
+     *
+     * @return the copy
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = this.counts.get(i);
+        }
+
+        return new Snapshot(counts, this.totalNs.get(), this.maxNs.get());
+    }
+
+    /**
+     * Returns the bucket a duration falls in.
+     *
+     * @param durationNs the duration in nanoseconds, not negative
+     * @return           the bucket index
+     */
+    static int bucketOf(long durationNs) {
+        int bucket = 63 - Long.numberOfLeadingZeros(durationNs);
+        return Math.max(0, Math.min(bucket, BUCKET_COUNT - 1));
+    }
+
+    /**
+     * A copy of a {@link LatencyHistogram} at one moment.
+     */
+    public static class Snapshot {
+
+        /**
+         * the number of durations in each bucket
+         */
+        private final long[] counts;
+
+        /**
+         * the number of durations
+         */
+        private final long count;
+
+        /**
+         * the sum of all durations in nanoseconds
+         */
+        private final long totalNs;
+
+        /**
+         * the longest duration in nanoseconds
+         */
+        private final long maxNs;
+
+        /**
+         * Initializes a new instance of the {@link Snapshot} class.
+         *
+         * @param counts  the number of durations in each bucket
+         * @param totalNs the sum of all durations in nanoseconds
+         * @param maxNs   the longest duration in nanoseconds
+         */
+        Snapshot(long[] counts, long totalNs, long maxNs) {
+            long count = 0;
+            for (int i = 0; i < counts.length; i++) {
+                count += counts[i];
+            }
+
+            this.counts = counts;
+            this.count = count;
+            this.totalNs = totalNs;
+            this.maxNs = maxNs;
+        }
+
+        /**
+         * Gets the number of durations recorded.
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Gets the number of durations in a bucket.
+         *
+         * @param bucket the bucket index
+         * @return       the count
+         */
+        public long getBucketCount(int bucket) {
+            return this.counts[bucket];
+        }
+
+        /**
+         * Gets the mean duration.
+         *
+         * @return the mean in nanoseconds, or zero if nothing was recorded
+         */
+        public long getMeanNs() {
+            return this.count == 0 ? 0 : this.totalNs / this.count;
+        }
+
+        /**
+         * Gets the longest duration.
+         *
+         * @return the maximum in nanoseconds
+         */
+        public long getMaxNs() {
+            return this.maxNs;
+        }
+
+        /**
+         * Estimates a percentile as the upper bound of the bucket it falls in, capped at the
+         * maximum, so it is never an underestimate by more than the maximum allows.
+         *
+         * @param percentile the percentile, from 0 to 100
+         * @return           the duration in nanoseconds, or zero if nothing was recorded
+         */
+        public long getPercentileNs(double percentile) {
+            if (this.count == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(percentile / 100 * this.count);
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank && this.counts[i] > 0) {
+                    long upperBound = i == this.counts.length - 1 ? Long.MAX_VALUE : (2L << i) - 1;
+                    return Math.min(upperBound, this.maxNs);
+                }
+            }
+
+            return this.maxNs;
+        }
+    }
+}
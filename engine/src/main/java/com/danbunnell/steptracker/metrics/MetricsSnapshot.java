@@ -0,0 +1,110 @@
+package com.danbunnell.steptracker.metrics;
+
+import java.util.Locale;
+
+/**
+ * A copy of {@link PipelineMetrics} at one moment.
+ */
+public class MetricsSnapshot {
+
+    /**
+     * a histogram for each stage
+     */
+    private final LatencyHistogram.Snapshot[] histograms;
+
+    /**
+     * the value of each counter
+     */
+    private final long[] counters;
+
+    /**
+     * the time covered by the snapshot in nanoseconds
+     */
+    private final long elapsedNs;
+
+    /**
+     * Initializes a new instance of the {@link MetricsSnapshot} class.
+     *
+     * @param histograms a histogram for each stage
+     * @param counters   the value of each counter
+     * @param elapsedNs  the time covered by the snapshot in nanoseconds
+     */
+    MetricsSnapshot(LatencyHistogram.Snapshot[] histograms, long[] counters, long elapsedNs) {
+        this.histograms = histograms;
+        this.counters = counters;
+        this.elapsedNs = elapsedNs;
+    }
+
+    /**
+     * Gets the histogram for a stage.
+     *
+     * @param stage the stage
+     * @return      the histogram
+     */
+    public LatencyHistogram.Snapshot getHistogram(PipelineMetrics.Stage stage) {
+        return this.histograms[stage.ordinal()];
+    }
+
+    /**
+     * Gets the value of a counter.
+     *
+     * @param counter the counter
+     * @return        the value
+     */
+    public long getCount(PipelineMetrics.Counter counter) {
+        return this.counters[counter.ordinal()];
+    }
+
+    /**
+     * Gets the rate of a counter over the time covered.
+     *
+     * @param counter the counter
+     * @return        the value per second
+     */
+    public double getRatePerSecond(PipelineMetrics.Counter counter) {
+        return this.elapsedNs <= 0 ? 0 : this.getCount(counter) * 1e9 / this.elapsedNs;
+    }
+
+    /**
+     * Gets the time covered, since metrics were enabled or reset.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getElapsedNs() {
+        return this.elapsedNs;
+    }
+
+    /**
+     * Formats the snapshot as one line per counter and per stage, for display.
+     *
+     * @return the formatted snapshot
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        for (PipelineMetrics.Counter counter : PipelineMetrics.Counter.values()) {
+            builder.append(String.format(
+                    Locale.US,
+                    "%s: %d (%.1f/s)%n",
+                    counter,
+                    this.getCount(counter),
+                    this.getRatePerSecond(counter)));
+        }
+
+        for (PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+            LatencyHistogram.Snapshot histogram = this.getHistogram(stage);
+            builder.append(String.format(
+                    Locale.US,
+                    "%s: n=%d mean=%.3f p50<%.3f p99<%.3f max=%.3f ms%n",
+                    stage,
+                    histogram.getCount(),
+                    histogram.getMeanNs() / 1e6,
+                    histogram.getPercentileNs(50) / 1e6,
+                    histogram.getPercentileNs(99) / 1e6,
+                    histogram.getMaxNs() / 1e6));
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,222 @@
+package com.danbunnell.steptracker.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timers and counters for the path from a sensor event to the step listeners.
+ *
+ * <p>Timing is done per batch rather than per sample: a stage calls {@link #startTimer()} and
+ * passes the result to {@link #stopTimer}.  While metrics are disabled {@code startTimer} returns
+ * {@link #DISABLED} without reading the clock, and every other call returns after one check of a
+ * flag, so the disabled cost is a predictable branch per batch.  Nothing is allocated either
+ * way.</p>
+ *
+ * <p>Stages may be timed from any thread, and {@link #snapshot()} may be taken from any other.</p>
+ */
+public class PipelineMetrics {
+
+    /**
+     * returned by {@link #startTimer()} while metrics are disabled
+     */
+    public static final long DISABLED = Long.MIN_VALUE;
+
+    /**
+     * A timed stage of the pipeline.
+     */
+    public enum Stage {
+        /**
+         * from the sensor event timestamp to its delivery to the application
+         */
+        SENSOR_DELIVERY,
+
+        /**
+         * resampling, filtering and accelerometer listeners, per batch of sensor events
+         */
+        SAMPLE_PROCESSING,
+
+        /**
+         * from a batch being queued for detection to the detection thread picking it up
+         */
+        DETECTION_QUEUE,
+
+        /**
+         * step detection, per batch of samples
+         */
+        STEP_DETECTION,
+
+        /**
+         * step listeners, per report of steps
+         */
+        STEP_DISPATCH
+    }
+
+    /**
+     * A count kept by the pipeline.
+     */
+    public enum Counter {
+        /**
+         * sensor events delivered
+         */
+        SENSOR_EVENTS,
+
+        /**
+         * evenly spaced samples produced from the sensor events
+         */
+        SAMPLES,
+
+        /**
+         * samples dropped because detection fell behind
+         */
+        DROPPED_SAMPLES,
+
+        /**
+         * steps reported to listeners
+         */
+        STEPS
+    }
+
+    /**
+     * the stages, cached to avoid copying the array on each lookup
+     */
+    private static final Stage[] STAGES = Stage.values();
+
+    /**
+     * the counters, cached to avoid copying the array on each lookup
+     */
+    private static final Counter[] COUNTERS = Counter.values();
+
+    /**
+     * a histogram for each stage
+     */
+    private final LatencyHistogram[] histograms;
+
+    /**
+     * the value of each counter
+     */
+    private final AtomicLongArray counters;
+
+    /**
+     * whether metrics are being recorded
+     */
+    private volatile boolean enabled;
+
+    /**
+     * the time metrics were last enabled or reset, from {@link System#nanoTime()}
+     */
+    private volatile long sinceNs;
+
+    /**
+     * Initializes a new instance of the {@link PipelineMetrics} class, disabled.
+     */
+    public PipelineMetrics() {
+        this.histograms = new LatencyHistogram[STAGES.length];
+        for (int i = 0; i < STAGES.length; i++) {
+            this.histograms[i] = new LatencyHistogram();
+        }
+
+        this.counters = new AtomicLongArray(COUNTERS.length);
+        this.enabled = false;
+        this.sinceNs = System.nanoTime();
+    }
+
+    /**
+     * Returns whether metrics are being recorded.
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Starts or stops recording.  Recorded values are kept while disabled.
+     *
+     * @param enabled whether to record
+     */
+    public void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) {
+            this.sinceNs = System.nanoTime();
+        }
+
+        this.enabled = enabled;
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < this.histograms.length; i++) {
+            this.histograms[i].reset();
+        }
+
+        for (int i = 0; i < COUNTERS.length; i++) {
+            this.counters.set(i, 0);
+        }
+
+        this.sinceNs = System.nanoTime();
+    }
+
+    /**
+     * Starts timing a stage.
+     *
+     * @return the start time to pass to {@link #stopTimer}, or {@link #DISABLED}
+     */
+    public long startTimer() {
+        return this.enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Stops timing a stage and records its duration.
+     *
+     * @param stage   the stage
+     * @param startNs the value returned by {@link #startTimer()}
+     */
+    public void stopTimer(Stage stage, long startNs) {
+        if (startNs != DISABLED) {
+            this.histograms[stage.ordinal()].record(System.nanoTime() - startNs);
+        }
+    }
+
+    /**
+     * Records a duration measured by the caller, for stages that span threads or clocks.
+     *
+     * @param stage      the stage
+     * @param durationNs the duration in nanoseconds
+     */
+    public void record(Stage stage, long durationNs) {
+        if (this.enabled) {
+            this.histograms[stage.ordinal()].record(durationNs);
+        }
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param counter the counter
+     * @param amount  the amount to add
+     */
+    public void increment(Counter counter, long amount) {
+        if (this.enabled) {
+            this.counters.addAndGet(counter.ordinal(), amount);
+        }
+    }
+
+    /**
+     * Copies the recorded values.
+     *
+     * @return the copy
+     */
+    public MetricsSnapshot snapshot() {
+        LatencyHistogram.Snapshot[] histograms = new LatencyHistogram.Snapshot[this.histograms.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = this.histograms[i].snapshot();
+        }
+
+        long[] counters = new long[COUNTERS.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = this.counters.get(i);
+        }
+
+        return new MetricsSnapshot(histograms, counters, System.nanoTime() - this.sinceNs);
+    }
+}
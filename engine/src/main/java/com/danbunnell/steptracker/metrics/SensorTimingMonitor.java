@@ -0,0 +1,237 @@
+package com.danbunnell.steptracker.metrics;
+
+/**
+ * Tracks how evenly a sensor delivers samples, from their timestamps, in constant memory.
+ *
+ * <p>Android treats the requested sampling period as a hint, so the actual period can be shorter,
+ * longer or uneven, and samples can be dropped while the system is busy or throttling.  Each
+ * interval between timestamps is compared with the requested period: intervals are kept in a
+ * histogram of multiples of the period, and intervals of more than {@link #GAP_THRESHOLD} periods
+ * count as gaps, from which the number of lost samples is estimated.  Repeated and backwards
+ * timestamps are counted apart and left out of the intervals.</p>
+ *
+ * <p>Statistics are for the current requested period only, and start again when it changes.
+ * Timestamps may be added on one thread and snapshots taken on another.</p>
+ */
+public class SensorTimingMonitor {
+
+    /**
+     * the interval, in requested periods, beyond which samples are taken to have been lost
+     */
+    public static final double GAP_THRESHOLD = 1.5;
+
+    /**
+     * the width of a histogram bucket, in requested periods
+     */
+    static final double BUCKET_WIDTH = 0.1;
+
+    /**
+     * the number of histogram buckets; the last also holds every interval of four periods or more
+     */
+    static final int BUCKET_COUNT = 41;
+
+    /**
+     * the number of intervals in each bucket
+     */
+    private final long[] buckets = new long[BUCKET_COUNT];
+
+    /**
+     * the requested period in nanoseconds, or zero if none has been set
+     */
+    private long expectedPeriodNs;
+
+    /**
+     * the previous timestamp, or {@link Long#MIN_VALUE} if there is none
+     */
+    private long lastTimestampNs;
+
+    /**
+     * the number of intervals
+     */
+    private long intervals;
+
+    /**
+     * the mean interval in nanoseconds
+     */
+    private double meanIntervalNs;
+
+    /**
+     * the sum of squared differences from the mean interval, for the variance
+     */
+    private double squaredDeviationSum;
+
+    /**
+     * the shortest interval in nanoseconds
+     */
+    private long minIntervalNs;
+
+    /**
+     * the longest interval in nanoseconds
+     */
+    private long maxIntervalNs;
+
+    /**
+     * the number of timestamps equal to the previous one
+     */
+    private long duplicates;
+
+    /**
+     * the number of timestamps earlier than the previous one
+     */
+    private long outOfOrder;
+
+    /**
+     * the number of intervals longer than the gap threshold
+     */
+    private long gaps;
+
+    /**
+     * the estimated number of samples lost in gaps
+     */
+    private long lostSamples;
+
+    /**
+     * Initializes a new instance of the {@link SensorTimingMonitor} class.
+     */
+    public SensorTimingMonitor() {
+        this.reset();
+    }
+
+    /**
+     * Sets the period requested from the sensor.  Statistics start again if it changes.
+     *
+     * @param expectedPeriodNs the requested period in nanoseconds
+     */
+    public synchronized void setExpectedPeriodNs(long expectedPeriodNs) {
+        if (expectedPeriodNs <= 0) {
+            throw new IllegalArgumentException("expectedPeriodNs must be positive");
+        }
+
+        if (expectedPeriodNs != this.expectedPeriodNs) {
+            this.reset();
+            this.expectedPeriodNs = expectedPeriodNs;
+        }
+    }
+
+    /**
+     * Forgets the previous timestamp, so the next one does not form an interval with it, for
+     * example after the sensor has been stopped.
+     */
+    public synchronized void restart() {
+        this.lastTimestampNs = Long.MIN_VALUE;
+    }
+
+    /**
+     * Adds a sample timestamp.
+     *
+     * @param timestampNs the timestamp in nanoseconds
+     */
+    public synchronized void add(long timestampNs) {
+        if (this.lastTimestampNs == Long.MIN_VALUE) {
+            this.lastTimestampNs = timestampNs;
+            return;
+        }
+
+        long intervalNs = timestampNs - this.lastTimestampNs;
+        if (intervalNs == 0) {
+            this.duplicates++;
+            return;
+        }
+
+        if (intervalNs < 0) {
+            this.outOfOrder++;
+            return;
+        }
+
+        this.lastTimestampNs = timestampNs;
+        this.intervals++;
+
+        // Welford's running mean and variance
+        double delta = intervalNs - this.meanIntervalNs;
+        this.meanIntervalNs += delta / this.intervals;
+        this.squaredDeviationSum += delta * (intervalNs - this.meanIntervalNs);
+
+        this.minIntervalNs = Math.min(this.minIntervalNs, intervalNs);
+        this.maxIntervalNs = Math.max(this.maxIntervalNs, intervalNs);
+
+        if (this.expectedPeriodNs > 0) {
+            double periods = intervalNs / (double) this.expectedPeriodNs;
+            this.buckets[(int) Math.min(periods / BUCKET_WIDTH, BUCKET_COUNT - 1)]++;
+
+            if (periods > GAP_THRESHOLD) {
+                this.gaps++;
+                this.lostSamples += Math.round(periods) - 1;
+            }
+        }
+    }
+
+    /**
+     * Removes all statistics.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.buckets[i] = 0;
+        }
+
+        this.lastTimestampNs = Long.MIN_VALUE;
+        this.intervals = 0;
+        this.meanIntervalNs = 0;
+        this.squaredDeviationSum = 0;
+        this.minIntervalNs = Long.MAX_VALUE;
+        this.maxIntervalNs = 0;
+        this.duplicates = 0;
+        this.outOfOrder = 0;
+        this.gaps = 0;
+        this.lostSamples = 0;
+    }
+
+    /**
+     * Copies the statistics.
+     *
+     * @return the copy
+     */
+    public synchronized SensorTimingSnapshot snapshot() {
+        return new SensorTimingSnapshot(
+                this.expectedPeriodNs,
+                this.intervals,
+                this.meanIntervalNs,
+                this.intervals > 1 ? Math.sqrt(this.squaredDeviationSum / (this.intervals - 1)) : 0,
+                this.intervals > 0 ? this.minIntervalNs : 0,
+                this.maxIntervalNs,
+                this.percentilePeriods(50),
+                this.percentilePeriods(99),
+                this.duplicates,
+                this.outOfOrder,
+                this.gaps,
+                this.lostSamples);
+    }
+
+    /**
+     * Estimates a percentile of the intervals as the upper bound of the bucket it falls in.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return           the interval in requested periods, infinite if it is beyond the last
+     *                   bounded bucket, or zero if there are no intervals
+     */
+    private double percentilePeriods(double percentile) {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += this.buckets[i];
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile / 100 * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            seen += this.buckets[i];
+            if (seen >= rank && this.buckets[i] > 0) {
+                return (i + 1) * BUCKET_WIDTH;
+            }
+        }
+
+        return Double.POSITIVE_INFINITY;
+    }
+}
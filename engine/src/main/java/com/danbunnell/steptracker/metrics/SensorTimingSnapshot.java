@@ -0,0 +1,276 @@
+package com.danbunnell.steptracker.metrics;
+
+import java.util.Locale;
+
+/**
+ * A copy of {@link SensorTimingMonitor} statistics at one moment.
+ */
+public class SensorTimingSnapshot {
+
+    /**
+     * the requested period in nanoseconds
+     */
+    private final long expectedPeriodNs;
+
+    /**
+     * the number of intervals
+     */
+    private final long intervals;
+
+    /**
+     * the mean interval in nanoseconds
+     */
+    private final double meanIntervalNs;
+
+    /**
+     * the standard deviation of the intervals in nanoseconds
+     */
+    private final double jitterNs;
+
+    /**
+     * the shortest interval in nanoseconds
+     */
+    private final long minIntervalNs;
+
+    /**
+     * the longest interval in nanoseconds
+     */
+    private final long maxIntervalNs;
+
+    /**
+     * the median interval, in requested periods
+     */
+    private final double medianPeriods;
+
+    /**
+     * the 99th percentile interval, in requested periods
+     */
+    private final double p99Periods;
+
+    /**
+     * the number of repeated timestamps
+     */
+    private final long duplicates;
+
+    /**
+     * the number of backwards timestamps
+     */
+    private final long outOfOrder;
+
+    /**
+     * the number of gaps
+     */
+    private final long gaps;
+
+    /**
+     * the estimated number of samples lost in gaps
+     */
+    private final long lostSamples;
+
+    /**
+     * Initializes a new instance of the {@link SensorTimingSnapshot} class.
+     *
+     * @param expectedPeriodNs the requested period in nanoseconds
+     * @param intervals        the number of intervals
+     * @param meanIntervalNs   the mean interval in nanoseconds
+     * @param jitterNs         the standard deviation of the intervals in nanoseconds
+     * @param minIntervalNs    the shortest interval in nanoseconds
+     * @param maxIntervalNs    the longest interval in nanoseconds
+     * @param medianPeriods    the median interval, in requested periods
+     * @param p99Periods       the 99th percentile interval, in requested periods
+     * @param duplicates       the number of repeated timestamps
+     * @param outOfOrder       the number of backwards timestamps
+     * @param gaps             the number of gaps
+     * @param lostSamples      the estimated number of samples lost in gaps
+     */
+    SensorTimingSnapshot(
+            long expectedPeriodNs,
+            long intervals,
+            double meanIntervalNs,
+            double jitterNs,
+            long minIntervalNs,
+            long maxIntervalNs,
+            double medianPeriods,
+            double p99Periods,
+            long duplicates,
+            long outOfOrder,
+            long gaps,
+            long lostSamples) {
+
+        this.expectedPeriodNs = expectedPeriodNs;
+        this.intervals = intervals;
+        this.meanIntervalNs = meanIntervalNs;
+        this.jitterNs = jitterNs;
+        this.minIntervalNs = minIntervalNs;
+        this.maxIntervalNs = maxIntervalNs;
+        this.medianPeriods = medianPeriods;
+        this.p99Periods = p99Periods;
+        this.duplicates = duplicates;
+        this.outOfOrder = outOfOrder;
+        this.gaps = gaps;
+        this.lostSamples = lostSamples;
+    }
+
+    /**
+     * Gets the period requested from the sensor.
+     *
+     * @return the period in nanoseconds
+     */
+    public long getExpectedPeriodNs() {
+        return this.expectedPeriodNs;
+    }
+
+    /**
+     * Gets the number of intervals measured.
+     *
+     * @return the interval count
+     */
+    public long getIntervalCount() {
+        return this.intervals;
+    }
+
+    /**
+     * Gets the mean interval between samples.
+     *
+     * @return the mean in nanoseconds
+     */
+    public double getMeanIntervalNs() {
+        return this.meanIntervalNs;
+    }
+
+    /**
+     * Gets the standard deviation of the intervals between samples.
+     *
+     * @return the jitter in nanoseconds
+     */
+    public double getJitterNs() {
+        return this.jitterNs;
+    }
+
+    /**
+     * Gets the shortest interval between samples.
+     *
+     * @return the minimum in nanoseconds
+     */
+    public long getMinIntervalNs() {
+        return this.minIntervalNs;
+    }
+
+    /**
+     * Gets the longest interval between samples.
+     *
+     * @return the maximum in nanoseconds
+     */
+    public long getMaxIntervalNs() {
+        return this.maxIntervalNs;
+    }
+
+    /**
+     * Gets the median interval, to within a tenth of the requested period.
+     *
+     * @return the median in requested periods
+     */
+    public double getMedianPeriods() {
+        return this.medianPeriods;
+    }
+
+    /**
+     * Gets the 99th percentile interval, to within a tenth of the requested period.
+     *
+     * @return the percentile in requested periods, infinite beyond four periods
+     */
+    public double getP99Periods() {
+        return this.p99Periods;
+    }
+
+    /**
+     * Gets the rate samples actually arrive at.
+     *
+     * @return the rate in hertz, or zero if no intervals were measured
+     */
+    public double getEffectiveRateHz() {
+        return this.meanIntervalNs > 0 ? 1e9 / this.meanIntervalNs : 0;
+    }
+
+    /**
+     * Gets the rate that was requested.
+     *
+     * @return the rate in hertz, or zero if no period was set
+     */
+    public double getRequestedRateHz() {
+        return this.expectedPeriodNs > 0 ? 1e9 / this.expectedPeriodNs : 0;
+    }
+
+    /**
+     * Gets the number of timestamps equal to the one before.
+     *
+     * @return the duplicate count
+     */
+    public long getDuplicateCount() {
+        return this.duplicates;
+    }
+
+    /**
+     * Gets the number of timestamps earlier than the one before.
+     *
+     * @return the out of order count
+     */
+    public long getOutOfOrderCount() {
+        return this.outOfOrder;
+    }
+
+    /**
+     * Gets the number of intervals long enough that samples were lost.
+     *
+     * @return the gap count
+     */
+    public long getGapCount() {
+        return this.gaps;
+    }
+
+    /**
+     * Gets the estimated number of samples lost in gaps.
+     *
+     * @return the lost sample count
+     */
+    public long getLostSampleCount() {
+        return this.lostSamples;
+    }
+
+    /**
+     * Gets the estimated fraction of samples lost.
+     *
+     * @return the loss ratio, from 0 to 1
+     */
+    public double getLossRatio() {
+        long expected = this.intervals + this.lostSamples;
+        return expected > 0 ? this.lostSamples / (double) expected : 0;
+    }
+
+    /**
+     * Formats the snapshot for display.
+     *
+     * @return the formatted snapshot
+     */
+    @Override
+    public String toString() {
+        return String.format(
+                Locale.US,
+                "rate: %.1f Hz of %.1f Hz requested%n"
+                        + "interval: mean=%.3f jitter=%.3f min=%.3f max=%.3f ms, p50<%.1fT p99<%.1fT%n"
+                        + "gaps: %d, lost: %d (%.2f%%), duplicates: %d, out of order: %d%n",
+                this.getEffectiveRateHz(),
+                this.getRequestedRateHz(),
+                this.meanIntervalNs / 1e6,
+                this.jitterNs / 1e6,
+                this.minIntervalNs / 1e6,
+                this.maxIntervalNs / 1e6,
+                this.medianPeriods,
+                this.p99Periods,
+                this.gaps,
+                this.lostSamples,
+                this.getLossRatio() * 100,
+                this.duplicates,
+                this.outOfOrder);
+    }
+}
@@ -0,0 +1,52 @@
+package com.danbunnell.steptracker.replay;
+
+import com.danbunnell.steptracker.common.MovingAverageFilter;
+import com.danbunnell.steptracker.common.SignalFilter;
+import com.danbunnell.steptracker.engine.DetectorConfiguration;
+import com.danbunnell.steptracker.engine.StepPipeline;
+import com.danbunnell.steptracker.engine.StreamingStepDetector;
+
+/**
+ * Creates pipelines like the app's, a moving average followed by the streaming step detector, from
+ * a {@link DetectorConfiguration}.
+ */
+public class ConfiguredPipelineFactory implements StepPipelineFactory {
+
+    /**
+     * the grid sample rate in milliseconds
+     */
+    private final long sampleRateMs;
+
+    /**
+     * the filter and detector constants
+     */
+    private final DetectorConfiguration configuration;
+
+    /**
+     * Initializes a new instance of the {@link ConfiguredPipelineFactory} class.
+     *
+     * @param sampleRateMs  the grid sample rate in milliseconds
+     * @param configuration the filter and detector constants
+     */
+    public ConfiguredPipelineFactory(long sampleRateMs, DetectorConfiguration configuration) {
+        this.sampleRateMs = sampleRateMs;
+        this.configuration = configuration;
+    }
+
+    @Override
+    public StepPipeline newPipeline() {
+        return new StepPipeline(
+                this.sampleRateMs,
+                this.newFilter(),
+                new StreamingStepDetector(this.sampleRateMs, this.configuration));
+    }
+
+    /**
+     * Creates the filter stage of a pipeline, the same chain the app runs.
+     *
+     * @return a new filter
+     */
+    public SignalFilter newFilter() {
+        return new MovingAverageFilter(this.configuration.getMovingAverageWindowSize());
+    }
+}
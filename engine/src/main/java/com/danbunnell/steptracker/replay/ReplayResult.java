@@ -0,0 +1,130 @@
+package com.danbunnell.steptracker.replay;
+
+import java.io.IOException;
+
+/**
+ * The outcome of replaying one trace.
+ */
+public class ReplayResult {
+
+    /**
+     * identifies the trace, usually its path
+     */
+    private final String name;
+
+    /**
+     * the number of steps detected
+     */
+    private final long stepCount;
+
+    /**
+     * the number of raw samples read from the trace
+     */
+    private final long sampleCount;
+
+    /**
+     * the time between the first and last sample, in nanoseconds
+     */
+    private final long recordedNs;
+
+    /**
+     * the wall-clock time the replay took, in nanoseconds
+     */
+    private final long elapsedNs;
+
+    /**
+     * the error that stopped the replay, or null
+     */
+    private final IOException error;
+
+    /**
+     * Initializes a new instance of the {@link ReplayResult} class.
+     *
+     * @param name        identifies the trace
+     * @param stepCount   the number of steps detected
+     * @param sampleCount the number of raw samples read
+     * @param recordedNs  the time between the first and last sample, in nanoseconds
+     * @param elapsedNs   the wall-clock time the replay took, in nanoseconds
+     * @param error       the error that stopped the replay, or null
+     */
+    public ReplayResult(String name, long stepCount, long sampleCount, long recordedNs, long elapsedNs, IOException error) {
+        this.name = name;
+        this.stepCount = stepCount;
+        this.sampleCount = sampleCount;
+        this.recordedNs = recordedNs;
+        this.elapsedNs = elapsedNs;
+        this.error = error;
+    }
+
+    /**
+     * Gets the name of the trace.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the number of steps detected.
+     *
+     * @return the step count
+     */
+    public long getStepCount() {
+        return this.stepCount;
+    }
+
+    /**
+     * Gets the number of raw samples read from the trace.
+     *
+     * @return the sample count
+     */
+    public long getSampleCount() {
+        return this.sampleCount;
+    }
+
+    /**
+     * Gets the time between the first and last sample.
+     *
+     * @return the recorded duration in nanoseconds
+     */
+    public long getRecordedNs() {
+        return this.recordedNs;
+    }
+
+    /**
+     * Gets the wall-clock time the replay took.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long getElapsedNs() {
+        return this.elapsedNs;
+    }
+
+    /**
+     * Gets the replay throughput.
+     *
+     * @return raw samples processed per second
+     */
+    public double getSamplesPerSecond() {
+        return this.elapsedNs > 0 ? this.sampleCount * 1e9 / this.elapsedNs : 0;
+    }
+
+    /**
+     * Gets how much faster than real time the trace was replayed.
+     *
+     * @return the recorded duration divided by the elapsed time
+     */
+    public double getSpeedup() {
+        return this.elapsedNs > 0 ? (double) this.recordedNs / this.elapsedNs : 0;
+    }
+
+    /**
+     * Gets the error that stopped the replay.
+     *
+     * @return the error, or null if the whole trace was replayed
+     */
+    public IOException getError() {
+        return this.error;
+    }
+}
@@ -0,0 +1,119 @@
+package com.danbunnell.steptracker.replay;
+
+import com.danbunnell.steptracker.engine.DetectorConfiguration;
+import com.danbunnell.steptracker.trace.TraceFormat;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replays trace files through the same pipeline the app uses and prints the steps counted and the
+ * throughput of each, followed by the totals.
+ *
+ * <p>Usage: {@code ReplayTool <trace file or directory>...}.  Directories are searched recursively
+ * for files ending in {@value TraceFormat#FILE_EXTENSION}.</p>
+ */
+public class ReplayTool {
+
+    /**
+     * the grid sample rate in milliseconds, as used by the app
+     */
+    private static final long SAMPLE_RATE_MS = 5;
+
+    private ReplayTool() {
+    }
+
+    /**
+     * Runs the tool.
+     *
+     * @param args the trace files and directories
+     */
+    public static void main(String[] args) {
+        List<File> files = new ArrayList<>();
+        for (String arg : args) {
+            collect(new File(arg), files);
+        }
+
+        if (files.isEmpty()) {
+            System.err.println("usage: ReplayTool <trace file or directory>...");
+            System.exit(2);
+        }
+
+        TraceReplayer replayer = new TraceReplayer(
+                new ConfiguredPipelineFactory(SAMPLE_RATE_MS, DetectorConfiguration.DEFAULT));
+
+        long start = System.nanoTime();
+        List<ReplayResult> results = replayer.replayAll(files);
+        long elapsedNs = System.nanoTime() - start;
+
+        long steps = 0;
+        long samples = 0;
+        int failures = 0;
+
+        for (ReplayResult result : results) {
+            if (result.getError() != null) {
+                failures++;
+                System.out.printf(Locale.US, "%s\tFAILED\t%s%n", result.getName(), result.getError().getMessage());
+                continue;
+            }
+
+            steps += result.getStepCount();
+            samples += result.getSampleCount();
+            System.out.printf(
+                    Locale.US,
+                    "%s\t%d steps\t%d samples\t%.0f samples/s\t%.0fx real time%n",
+                    result.getName(),
+                    result.getStepCount(),
+                    result.getSampleCount(),
+                    result.getSamplesPerSecond(),
+                    result.getSpeedup());
+        }
+
+        System.out.printf(
+                Locale.US,
+                "%d traces, %d failed, %d steps, %d samples in %.2f s (%.0f samples/s)%n",
+                results.size(),
+                failures,
+                steps,
+                samples,
+                elapsedNs / 1e9,
+                elapsedNs > 0 ? samples * 1e9 / elapsedNs : 0);
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Adds a trace file, or the traces under a directory, in name order.
+     *
+     * @param file  a trace file or directory
+     * @param files receives the trace files
+     */
+    private static void collect(File file, List<File> files) {
+        if (!file.isDirectory()) {
+            files.add(file);
+            return;
+        }
+
+        File[] children = file.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File child) {
+                return child.isDirectory() || child.getName().endsWith(TraceFormat.FILE_EXTENSION);
+            }
+        });
+
+        if (children == null) {
+            return;
+        }
+
+        Arrays.sort(children);
+        for (File child : children) {
+            collect(child, files);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.danbunnell.steptracker.replay;
+
+import com.danbunnell.steptracker.engine.StepPipeline;
+
+/**
+ * Creates the pipeline each trace is replayed through.  Filters and detectors keep state, so every
+ * trace needs a pipeline of its own.
+ */
+public interface StepPipelineFactory {
+    /**
+     * Creates a new pipeline.
+     *
+     * @return a pipeline with fresh filter and detector state
+     */
+    StepPipeline newPipeline();
+}
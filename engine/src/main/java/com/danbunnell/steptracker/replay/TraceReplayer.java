@@ -0,0 +1,206 @@
+package com.danbunnell.steptracker.replay;
+
+import com.danbunnell.steptracker.engine.StepPipeline;
+import com.danbunnell.steptracker.trace.TraceReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Replays recorded traces through the step pipeline as fast as the machine allows.
+ *
+ * <p>Each trace is decoded in batches straight into its own {@link StepPipeline}.  A corpus of
+ * traces is split in halves on a {@link ForkJoinPool} until each task holds one trace, so idle
+ * workers steal the remaining traces and long traces do not hold up the rest.  A trace that cannot
+ * be read is reported in its result rather than stopping the corpus.</p>
+ */
+public class TraceReplayer {
+
+    /**
+     * the number of samples decoded and processed at a time
+     */
+    private static final int BATCH_SIZE = 512;
+
+    /**
+     * creates a pipeline for each trace
+     */
+    private final StepPipelineFactory pipelineFactory;
+
+    /**
+     * Initializes a new instance of the {@link TraceReplayer} class.
+     *
+     * @param pipelineFactory creates a pipeline for each trace
+     */
+    public TraceReplayer(StepPipelineFactory pipelineFactory) {
+        this.pipelineFactory = pipelineFactory;
+    }
+
+    /**
+     * Replays a trace file.
+     *
+     * @param file the trace
+     * @return     the result
+     */
+    public ReplayResult replay(File file) {
+        long start = System.nanoTime();
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            return this.replay(file.getPath(), input.getChannel(), start);
+        } catch (IOException e) {
+            return new ReplayResult(file.getPath(), 0, 0, 0, System.nanoTime() - start, e);
+        }
+    }
+
+    /**
+     * Replays a trace from a channel.  The channel is left open.
+     *
+     * @param name    identifies the trace in the result
+     * @param channel supplies the trace
+     * @return        the result
+     */
+    public ReplayResult replay(String name, ReadableByteChannel channel) {
+        long start = System.nanoTime();
+
+        try {
+            return this.replay(name, channel, start);
+        } catch (IOException e) {
+            return new ReplayResult(name, 0, 0, 0, System.nanoTime() - start, e);
+        }
+    }
+
+    /**
+     * Replays trace files in parallel, one worker per core.
+     *
+     * @param files the traces
+     * @return      the results, in the same order as the files
+     */
+    public List<ReplayResult> replayAll(List<File> files) {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return this.replayAll(files, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Replays trace files in parallel.
+     *
+     * @param files the traces
+     * @param pool  runs the replays
+     * @return      the results, in the same order as the files
+     */
+    public List<ReplayResult> replayAll(List<File> files, ForkJoinPool pool) {
+        File[] fileArray = files.toArray(new File[files.size()]);
+        ReplayResult[] results = new ReplayResult[fileArray.length];
+        pool.invoke(new ReplayTask(fileArray, results, 0, fileArray.length));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Replays a trace.
+     *
+     * @param name    identifies the trace in the result
+     * @param channel supplies the trace
+     * @param start   when the replay started, from {@link System#nanoTime()}
+     * @return        the result
+     * @throws IOException if the trace could not be read
+     */
+    private ReplayResult replay(String name, ReadableByteChannel channel, long start) throws IOException {
+        StepPipeline pipeline = this.pipelineFactory.newPipeline();
+        TraceReader reader = new TraceReader(channel);
+
+        long[] timestampsNs = new long[BATCH_SIZE];
+        float[] x = new float[BATCH_SIZE];
+        float[] y = new float[BATCH_SIZE];
+        float[] z = new float[BATCH_SIZE];
+
+        long sampleCount = 0;
+        long firstTimestampNs = 0;
+        long lastTimestampNs = 0;
+        int length;
+
+        while ((length = reader.read(timestampsNs, x, y, z, 0, BATCH_SIZE)) > 0) {
+            if (sampleCount == 0) {
+                firstTimestampNs = timestampsNs[0];
+            }
+
+            lastTimestampNs = timestampsNs[length - 1];
+            sampleCount += length;
+            pipeline.add(timestampsNs, x, y, z, 0, length);
+        }
+        pipeline.flush();
+
+        return new ReplayResult(
+                name,
+                pipeline.getStepCount(),
+                sampleCount,
+                lastTimestampNs - firstTimestampNs,
+                System.nanoTime() - start,
+                null);
+    }
+
+    /**
+     * Replays a range of files, splitting it until one file remains.
+     */
+    private class ReplayTask extends RecursiveAction {
+
+        /**
+         * the serialization version
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * all of the traces
+         */
+        private final File[] files;
+
+        /**
+         * receives the results, at the same positions as the traces
+         */
+        private final ReplayResult[] results;
+
+        /**
+         * the index of the first trace in the range
+         */
+        private final int from;
+
+        /**
+         * the index after the last trace in the range
+         */
+        private final int to;
+
+        /**
+         * Initializes a new instance of the {@link ReplayTask} class.
+         *
+         * @param files   all of the traces
+         * @param results receives the results
+         * @param from    the index of the first trace in the range
+         * @param to      the index after the last trace in the range
+         */
+        ReplayTask(File[] files, ReplayResult[] results, int from, int to) {
+            this.files = files;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from == 1) {
+                this.results[this.from] = replay(this.files[this.from]);
+            } else if (this.to > this.from) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(
+                        new ReplayTask(this.files, this.results, this.from, middle),
+                        new ReplayTask(this.files, this.results, middle, this.to));
+            }
+        }
+    }
+}
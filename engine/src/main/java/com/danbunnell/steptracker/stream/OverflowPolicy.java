@@ -0,0 +1,24 @@
+package com.danbunnell.steptracker.stream;
+
+/**
+ * What a {@link Subscription} does with a new item when its buffer is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * discard the oldest buffered item, so the subscriber sees the most recent stretch of the
+     * stream with a hole where it fell behind
+     */
+    DROP_OLDEST,
+
+    /**
+     * fold the new item into the newest buffered one, so the subscriber always ends on the latest
+     * value; samples are replaced, step counts are added together so no steps are lost
+     */
+    CONFLATE_LATEST,
+
+    /**
+     * wait for the subscriber to make room, so nothing is lost; the publishing thread, and every
+     * other subscriber behind it, is held up for as long as the subscriber is behind
+     */
+    BLOCK
+}
@@ -0,0 +1,19 @@
+package com.danbunnell.steptracker.stream;
+
+/**
+ * Receives accelerometer samples from a {@link SampleSubscription} in batches.
+ */
+public interface SampleSubscriber {
+    /**
+     * Called on the subscription's executor with every sample buffered since the last call, oldest
+     * first.  The arrays are reused, so values must be copied if they are kept.  Samples are on a
+     * regular grid, so a jump of more than one period between timestamps marks samples that were
+     * dropped, conflated or never taken.
+     *
+     * @param timestampsNs       the grid timestamps, in nanoseconds
+     * @param magnitudes         the raw acceleration magnitudes
+     * @param filteredMagnitudes the filtered acceleration magnitudes
+     * @param length             the number of samples
+     */
+    void onSamples(long[] timestampsNs, float[] magnitudes, float[] filteredMagnitudes, int length);
+}
@@ -0,0 +1,132 @@
+package com.danbunnell.steptracker.stream;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link Subscription} to accelerometer samples.  Conflating replaces the newest buffered sample.
+ *
+ * <p>Each sample keeps its grid timestamp through the buffer, so a subscriber can tell when the
+ * samples were taken and where any were dropped or conflated.</p>
+ */
+public class SampleSubscription extends Subscription {
+
+    /**
+     * the subscriber
+     */
+    private final SampleSubscriber subscriber;
+
+    /**
+     * the buffered grid timestamps, in nanoseconds
+     */
+    private final long[] timestampsNs;
+
+    /**
+     * the buffered raw magnitudes
+     */
+    private final float[] magnitudes;
+
+    /**
+     * the buffered filtered magnitudes
+     */
+    private final float[] filteredMagnitudes;
+
+    /**
+     * the grid timestamps being delivered
+     */
+    private final long[] batchTimestampsNs;
+
+    /**
+     * the raw magnitudes being delivered
+     */
+    private final float[] batchMagnitudes;
+
+    /**
+     * the filtered magnitudes being delivered
+     */
+    private final float[] batchFilteredMagnitudes;
+
+    /**
+     * Initializes a new instance of the {@link SampleSubscription} class.
+     *
+     * @param subscriber the subscriber
+     * @param capacity   the number of samples to buffer
+     * @param policy     what to do with a sample when the buffer is full
+     * @param executor   runs the subscriber
+     */
+    public SampleSubscription(
+            SampleSubscriber subscriber,
+            int capacity,
+            OverflowPolicy policy,
+            Executor executor) {
+
+        super(capacity, policy, executor);
+
+        if (subscriber == null) {
+            throw new IllegalArgumentException("subscriber is required");
+        }
+
+        this.subscriber = subscriber;
+        this.timestampsNs = new long[capacity];
+        this.magnitudes = new float[capacity];
+        this.filteredMagnitudes = new float[capacity];
+        this.batchTimestampsNs = new long[capacity];
+        this.batchMagnitudes = new float[capacity];
+        this.batchFilteredMagnitudes = new float[capacity];
+    }
+
+    /**
+     * Publishes a batch of samples.
+     *
+     * @param timestampsNs       the grid timestamps, in nanoseconds
+     * @param magnitudes         the raw magnitudes
+     * @param filteredMagnitudes the filtered magnitudes
+     * @param length             the number of samples
+     */
+    public void offer(long[] timestampsNs, float[] magnitudes, float[] filteredMagnitudes, int length) {
+        if (!this.beginOffer()) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < length; i++) {
+                int slot = this.nextSlot();
+                if (slot == NO_SLOT) {
+                    break;
+                }
+
+                this.timestampsNs[slot] = timestampsNs[i];
+                this.magnitudes[slot] = magnitudes[i];
+                this.filteredMagnitudes[slot] = filteredMagnitudes[i];
+            }
+        } finally {
+            this.endOffer();
+        }
+    }
+
+    /**
+     * Copies buffered samples into the delivery arrays.
+     *
+     * @param from   the ring index of the oldest sample
+     * @param length the number of samples
+     */
+    @Override
+    protected void copyOut(int from, int length) {
+        int first = Math.min(length, this.capacity - from);
+        System.arraycopy(this.timestampsNs, from, this.batchTimestampsNs, 0, first);
+        System.arraycopy(this.timestampsNs, 0, this.batchTimestampsNs, first, length - first);
+        System.arraycopy(this.magnitudes, from, this.batchMagnitudes, 0, first);
+        System.arraycopy(this.filteredMagnitudes, from, this.batchFilteredMagnitudes, 0, first);
+        System.arraycopy(this.magnitudes, 0, this.batchMagnitudes, first, length - first);
+        System.arraycopy(this.filteredMagnitudes, 0, this.batchFilteredMagnitudes, first, length - first);
+    }
+
+    /**
+     * Hands the delivery arrays to the subscriber.
+     *
+     * @param length the number of samples
+     */
+    @Override
+    protected void deliver(int length) {
+        this.subscriber.onSamples(this.batchTimestampsNs, this.batchMagnitudes, this.batchFilteredMagnitudes, length);
+    }
+}
@@ -0,0 +1,15 @@
+package com.danbunnell.steptracker.stream;
+
+/**
+ * Receives step reports from a {@link StepSubscription} in batches.
+ */
+public interface StepSubscriber {
+    /**
+     * Called on the subscription's executor with every step report buffered since the last call,
+     * oldest first.  The array is reused, so values must be copied if they are kept.
+     *
+     * @param stepCounts the number of steps in each report
+     * @param length     the number of reports
+     */
+    void onSteps(int[] stepCounts, int length);
+}
@@ -0,0 +1,95 @@
+package com.danbunnell.steptracker.stream;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link Subscription} to step reports.  Conflating adds the new steps to the newest buffered
+ * report, so step totals stay exact under every policy except {@link OverflowPolicy#DROP_OLDEST}.
+ */
+public class StepSubscription extends Subscription {
+
+    /**
+     * the subscriber
+     */
+    private final StepSubscriber subscriber;
+
+    /**
+     * the buffered step counts
+     */
+    private final int[] stepCounts;
+
+    /**
+     * the step counts being delivered
+     */
+    private final int[] batchStepCounts;
+
+    /**
+     * Initializes a new instance of the {@link StepSubscription} class.
+     *
+     * @param subscriber the subscriber
+     * @param capacity   the number of reports to buffer
+     * @param policy     what to do with a report when the buffer is full
+     * @param executor   runs the subscriber
+     */
+    public StepSubscription(
+            StepSubscriber subscriber,
+            int capacity,
+            OverflowPolicy policy,
+            Executor executor) {
+
+        super(capacity, policy, executor);
+
+        if (subscriber == null) {
+            throw new IllegalArgumentException("subscriber is required");
+        }
+
+        this.subscriber = subscriber;
+        this.stepCounts = new int[capacity];
+        this.batchStepCounts = new int[capacity];
+    }
+
+    /**
+     * Publishes a step report.
+     *
+     * @param stepCount the number of steps
+     */
+    public void offer(int stepCount) {
+        if (!this.beginOffer()) {
+            return;
+        }
+
+        try {
+            int slot = this.nextSlot();
+            if (slot != NO_SLOT) {
+                this.stepCounts[slot] = this.isConflating()
+                        ? this.stepCounts[slot] + stepCount
+                        : stepCount;
+            }
+        } finally {
+            this.endOffer();
+        }
+    }
+
+    /**
+     * Copies buffered step counts into the delivery array.
+     *
+     * @param from   the ring index of the oldest report
+     * @param length the number of reports
+     */
+    @Override
+    protected void copyOut(int from, int length) {
+        int first = Math.min(length, this.capacity - from);
+        System.arraycopy(this.stepCounts, from, this.batchStepCounts, 0, first);
+        System.arraycopy(this.stepCounts, 0, this.batchStepCounts, first, length - first);
+    }
+
+    /**
+     * Hands the delivery array to the subscriber.
+     *
+     * @param length the number of reports
+     */
+    @Override
+    protected void deliver(int length) {
+        this.subscriber.onSteps(this.batchStepCounts, length);
+    }
+}
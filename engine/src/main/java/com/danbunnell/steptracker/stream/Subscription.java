@@ -0,0 +1,358 @@
+package com.danbunnell.steptracker.stream;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A subscriber's own bounded buffer between a publisher and its executor.
+ *
+ * <p>The publisher only copies items into the ring and, when the ring was empty, hands one drain
+ * task to the executor; it never runs subscriber code.  The drain task takes everything buffered in
+ * one go and delivers it as a single batch, repeating until the ring is empty, so a subscriber that
+ * falls behind catches up in larger batches rather than more calls.  At most one drain task runs at a
+ * time, so batches arrive in order even on a thread pool.  When the ring is full the
+ * {@link OverflowPolicy} decides what is given up.</p>
+ *
+ * <p>Subclasses hold the ring's items and call {@link #beginOffer()}, {@link #nextSlot()} and
+ * {@link #endOffer()} to publish them.</p>
+ */
+public abstract class Subscription {
+
+    /**
+     * returned by {@link #nextSlot()} when the item must be discarded
+     */
+    protected static final int NO_SLOT = -1;
+
+    /**
+     * guards the ring and the state below
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * signalled when the drain task makes room or the subscription is closed
+     */
+    private final Condition notFull = this.lock.newCondition();
+
+    /**
+     * the number of items the ring holds
+     */
+    protected final int capacity;
+
+    /**
+     * what to do with an item when the ring is full
+     */
+    private final OverflowPolicy policy;
+
+    /**
+     * runs the drain task
+     */
+    private final Executor executor;
+
+    /**
+     * delivers the buffered items
+     */
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            Subscription.this.drain();
+        }
+    };
+
+    /**
+     * the ring index of the oldest item
+     */
+    private int head = 0;
+
+    /**
+     * the number of items in the ring
+     */
+    private int size = 0;
+
+    /**
+     * whether the drain task has been handed to the executor and not yet finished
+     */
+    private boolean drainScheduled = false;
+
+    /**
+     * whether the subscription has been closed
+     */
+    private boolean closed = false;
+
+    /**
+     * whether the slot last returned by {@link #nextSlot()} holds the newest item to be conflated
+     */
+    private boolean conflating = false;
+
+    /**
+     * the number of items dropped or conflated because the ring was full
+     */
+    private long overflowCount = 0;
+
+    /**
+     * the number of items delivered
+     */
+    private long deliveredCount = 0;
+
+    /**
+     * Initializes a new instance of the {@link Subscription} class.
+     *
+     * @param capacity the number of items to buffer
+     * @param policy   what to do with an item when the buffer is full
+     * @param executor runs the subscriber; for {@link OverflowPolicy#BLOCK} it must not run tasks
+     *                 on the publishing thread
+     */
+    protected Subscription(int capacity, OverflowPolicy policy, Executor executor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        if (policy == null || executor == null) {
+            throw new IllegalArgumentException("policy and executor are required");
+        }
+
+        this.capacity = capacity;
+        this.policy = policy;
+        this.executor = executor;
+    }
+
+    /**
+     * Stops delivery.  Buffered items are discarded and a blocked publisher is released.  A batch
+     * already being delivered still completes.
+     */
+    public void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.size = 0;
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Determines whether the subscription has been closed.
+     *
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        this.lock.lock();
+        try {
+            return this.closed;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the overflow policy.
+     *
+     * @return the policy
+     */
+    public OverflowPolicy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * Returns the number of items dropped or conflated because the buffer was full.
+     *
+     * @return the count
+     */
+    public long getOverflowCount() {
+        this.lock.lock();
+        try {
+            return this.overflowCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of items delivered to the subscriber.
+     *
+     * @return the count
+     */
+    public long getDeliveredCount() {
+        this.lock.lock();
+        try {
+            return this.deliveredCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Starts publishing one or more items.  On success the lock is held until
+     * {@link #endOffer()}.
+     *
+     * @return false, without the lock, if the subscription is closed
+     */
+    protected final boolean beginOffer() {
+        this.lock.lock();
+        if (this.closed) {
+            this.lock.unlock();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds the ring slot for the next item, applying the overflow policy if the ring is full.
+     * Must be called between {@link #beginOffer()} and {@link #endOffer()}.
+     *
+     * @return the slot, which for {@link OverflowPolicy#CONFLATE_LATEST} may already hold the
+     *         newest item (see {@link #isConflating()}), or {@link #NO_SLOT} if the item must be
+     *         discarded because the subscription was closed or the publisher interrupted
+     */
+    protected final int nextSlot() {
+        this.conflating = false;
+
+        if (this.size == this.capacity) {
+            switch (this.policy) {
+                case DROP_OLDEST:
+                    this.overflowCount++;
+                    this.head = (this.head + 1) % this.capacity;
+                    this.size--;
+                    break;
+
+                case CONFLATE_LATEST:
+                    this.overflowCount++;
+                    this.conflating = true;
+                    return (this.head + this.size - 1) % this.capacity;
+
+                case BLOCK:
+                    this.scheduleDrain();
+                    while (this.size == this.capacity && !this.closed) {
+                        try {
+                            this.notFull.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            this.overflowCount++;
+                            return NO_SLOT;
+                        }
+                    }
+
+                    if (this.closed) {
+                        return NO_SLOT;
+                    }
+                    break;
+            }
+        }
+
+        int slot = (this.head + this.size) % this.capacity;
+        this.size++;
+        return slot;
+    }
+
+    /**
+     * Determines whether the slot last returned by {@link #nextSlot()} already holds the newest
+     * item, which the new one is to be folded into.
+     *
+     * @return true if conflating
+     */
+    protected final boolean isConflating() {
+        return this.conflating;
+    }
+
+    /**
+     * Finishes publishing, handing the drain task to the executor if it is not already pending,
+     * and releases the lock.
+     */
+    protected final void endOffer() {
+        boolean schedule = false;
+        try {
+            if (this.size > 0 && !this.drainScheduled && !this.closed) {
+                this.drainScheduled = true;
+                schedule = true;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (schedule) {
+            this.execute();
+        }
+    }
+
+    /**
+     * Copies buffered items out of the ring for delivery.  Called with the lock held.
+     *
+     * @param from   the ring index of the oldest item
+     * @param length the number of items, which may wrap around the end of the ring
+     */
+    protected abstract void copyOut(int from, int length);
+
+    /**
+     * Delivers the items last copied out to the subscriber.  Called on the executor without the
+     * lock held.
+     *
+     * @param length the number of items
+     */
+    protected abstract void deliver(int length);
+
+    /**
+     * Hands the drain task to the executor while the lock is held, for a publisher about to wait
+     * for room.
+     */
+    private void scheduleDrain() {
+        if (!this.drainScheduled) {
+            this.drainScheduled = true;
+            this.execute();
+        }
+    }
+
+    /**
+     * Hands the drain task to the executor, closing the subscription if it refuses.
+     */
+    private void execute() {
+        try {
+            this.executor.execute(this.drainTask);
+        } catch (RejectedExecutionException e) {
+            this.close();
+        }
+    }
+
+    /**
+     * Delivers buffered items in batches until the ring is empty.
+     */
+    private void drain() {
+        while (true) {
+            int length;
+            this.lock.lock();
+            try {
+                length = this.size;
+                if (length == 0 || this.closed) {
+                    this.drainScheduled = false;
+                    return;
+                }
+
+                this.copyOut(this.head, length);
+                this.head = (this.head + length) % this.capacity;
+                this.size = 0;
+                this.deliveredCount += length;
+                this.notFull.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+
+            boolean delivered = false;
+            try {
+                this.deliver(length);
+                delivered = true;
+            } finally {
+                if (!delivered) {
+                    // Let the next offer schedule a new drain rather than stalling for good
+                    this.lock.lock();
+                    try {
+                        this.drainScheduled = false;
+                    } finally {
+                        this.lock.unlock();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.danbunnell.steptracker.trace;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The layout of a raw accelerometer trace.
+ *
+ * <p>A trace starts with a header: the magic number, the format version and the quantum, the size
+ * of one step of the quantized axis values in m/s^2.  Each sample follows as four variable-length
+ * integers: the change in timestamp in microseconds, then the change in each of the quantized x, y
+ * and z values.  The changes are zigzag encoded so that small negative changes stay small, and
+ * stored seven bits per byte with the high bit marking that another byte follows.  At 200 Hz most
+ * samples take five or six bytes.</p>
+ *
+ * <p>Trace files are named with {@link #FILE_EXTENSION}.  The rest of the layout is private to
+ * this package.</p>
+ */
+public final class TraceFormat {
+
+    /**
+     * the file name extension of trace files
+     */
+    public static final String FILE_EXTENSION = ".trace";
+
+    /**
+     * "STRC", identifies a trace
+     */
+    static final int MAGIC = 0x53545243;
+
+    /**
+     * the current format version
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * the size of the header in bytes
+     */
+    static final int HEADER_BYTES = 4 + 1 + 4;
+
+    /**
+     * the most bytes a single sample can take
+     */
+    static final int MAX_RECORD_BYTES = 4 * 10;
+
+    private TraceFormat() {
+    }
+
+    /**
+     * Writes a signed value as a zigzag variable-length integer.
+     *
+     * @param buffer the buffer to write to
+     * @param value  the value
+     */
+    static void putVarLong(ByteBuffer buffer, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+
+        buffer.put((byte) zigzag);
+    }
+
+    /**
+     * Reads a signed value written by {@link #putVarLong(ByteBuffer, long)}.
+     *
+     * @param buffer the buffer to read from
+     * @return       the value
+     * @throws java.nio.BufferUnderflowException if the buffer ends part way through the value
+     */
+    static long getVarLong(ByteBuffer buffer) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 64);
+
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -0,0 +1,177 @@
+package com.danbunnell.steptracker.trace;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Keeps the last few seconds of raw accelerometer samples in memory so that they can be saved
+ * after the fact, for example when a user reports a miscount.
+ *
+ * <p>Recording overwrites the oldest sample in a fixed ring, so it does not allocate.  A dump
+ * copies the ring under the lock and encodes the copy outside of it, so the recording thread is
+ * held up only for the copy.</p>
+ */
+public class TraceHistory {
+
+    /**
+     * how much of the history to keep, in nanoseconds
+     */
+    private final long durationNs;
+
+    /**
+     * the sample times in nanoseconds
+     */
+    private final long[] timestampsNs;
+
+    /**
+     * the x axis values
+     */
+    private final float[] x;
+
+    /**
+     * the y axis values
+     */
+    private final float[] y;
+
+    /**
+     * the z axis values
+     */
+    private final float[] z;
+
+    /**
+     * the index of the next slot to write
+     */
+    private int nextIndex;
+
+    /**
+     * the number of samples held
+     */
+    private int size;
+
+    /**
+     * Initializes a new instance of the {@link TraceHistory} class.
+     *
+     * @param durationMs   how much history to keep, in milliseconds
+     * @param sampleRateMs the sensor sampling period in milliseconds.  The ring has room for a
+     *                     quarter more samples than this implies, since sensors often deliver
+     *                     faster than requested
+     */
+    public TraceHistory(long durationMs, long sampleRateMs) {
+        if (durationMs <= 0 || sampleRateMs <= 0) {
+            throw new IllegalArgumentException("duration and sample rate must be positive");
+        }
+
+        long capacity = durationMs / sampleRateMs;
+        capacity += capacity / 4 + 1;
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("history is too long");
+        }
+
+        this.durationNs = durationMs * 1000000;
+        this.timestampsNs = new long[(int) capacity];
+        this.x = new float[(int) capacity];
+        this.y = new float[(int) capacity];
+        this.z = new float[(int) capacity];
+    }
+
+    /**
+     * Records a sample, replacing the oldest if the history is full.
+     *
+     * @param timestampNs the sample time in nanoseconds
+     * @param x           the x axis in m/s^2
+     * @param y           the y axis in m/s^2
+     * @param z           the z axis in m/s^2
+     */
+    public synchronized void record(long timestampNs, float x, float y, float z) {
+        int index = this.nextIndex;
+        this.timestampsNs[index] = timestampNs;
+        this.x[index] = x;
+        this.y[index] = y;
+        this.z[index] = z;
+
+        if (++this.nextIndex == this.timestampsNs.length) {
+            this.nextIndex = 0;
+        }
+
+        if (this.size < this.timestampsNs.length) {
+            this.size++;
+        }
+    }
+
+    /**
+     * Discards the history.
+     */
+    public synchronized void clear() {
+        this.nextIndex = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Writes the samples taken within the history duration of the newest as a trace.
+     *
+     * @param writer encodes the trace.  It is flushed but not closed
+     * @return       the number of samples written
+     * @throws IOException if the trace could not be written
+     */
+    public int dump(TraceWriter writer) throws IOException {
+        long[] timestampsNs;
+        float[] x;
+        float[] y;
+        float[] z;
+        int length;
+
+        synchronized (this) {
+            length = this.size;
+            timestampsNs = new long[length];
+            x = new float[length];
+            y = new float[length];
+            z = new float[length];
+
+            int start = this.nextIndex - length;
+            if (start < 0) {
+                start += this.timestampsNs.length;
+            }
+
+            int firstPart = Math.min(length, this.timestampsNs.length - start);
+            int secondPart = length - firstPart;
+
+            System.arraycopy(this.timestampsNs, start, timestampsNs, 0, firstPart);
+            System.arraycopy(this.timestampsNs, 0, timestampsNs, firstPart, secondPart);
+            System.arraycopy(this.x, start, x, 0, firstPart);
+            System.arraycopy(this.x, 0, x, firstPart, secondPart);
+            System.arraycopy(this.y, start, y, 0, firstPart);
+            System.arraycopy(this.y, 0, y, firstPart, secondPart);
+            System.arraycopy(this.z, start, z, 0, firstPart);
+            System.arraycopy(this.z, 0, z, firstPart, secondPart);
+        }
+
+        // Skip anything older than the duration, which the ring's slack may still hold
+        int first = 0;
+        if (length > 0) {
+            long oldestNs = timestampsNs[length - 1] - this.durationNs;
+            while (first < length && timestampsNs[first] < oldestNs) {
+                first++;
+            }
+        }
+
+        writer.write(timestampsNs, x, y, z, first, length - first);
+        writer.flush();
+        return length - first;
+    }
+
+    /**
+     * Writes the history as a complete trace and closes the channel.
+     *
+     * @param channel receives the trace
+     * @return        the number of samples written
+     * @throws IOException if the trace could not be written
+     */
+    public int dump(WritableByteChannel channel) throws IOException {
+        TraceWriter writer = new TraceWriter(channel);
+        try {
+            return this.dump(writer);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.danbunnell.steptracker.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Decodes a trace written by {@link TraceWriter}.
+ *
+ * <p>A trace that ends part way through a sample, as one does when the recorder was killed, is read
+ * up to the last complete sample.  Not thread-safe.</p>
+ */
+public class TraceReader implements Closeable {
+
+    /**
+     * the size of the read buffer in bytes
+     */
+    private static final int BUFFER_BYTES = 8192;
+
+    /**
+     * supplies the encoded trace
+     */
+    private final ReadableByteChannel channel;
+
+    /**
+     * holds bytes read from the channel but not yet decoded
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * the resolution of the stored axis values in m/s^2
+     */
+    private final float quantum;
+
+    /**
+     * whether the channel has no more bytes
+     */
+    private boolean endOfChannel;
+
+    /**
+     * the timestamp of the last sample, in microseconds
+     */
+    private long previousTimestampUs;
+
+    /**
+     * the quantized x value of the last sample
+     */
+    private long previousX;
+
+    /**
+     * the quantized y value of the last sample
+     */
+    private long previousY;
+
+    /**
+     * the quantized z value of the last sample
+     */
+    private long previousZ;
+
+    /**
+     * Initializes a new instance of the {@link TraceReader} class and reads the trace header.
+     *
+     * @param channel supplies the encoded trace
+     * @throws IOException if the channel could not be read or does not hold a trace
+     */
+    public TraceReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        this.buffer.flip();
+        this.fill();
+
+        if (this.buffer.remaining() < TraceFormat.HEADER_BYTES
+                || this.buffer.getInt() != TraceFormat.MAGIC) {
+            throw new IOException("Not a sensor trace");
+        }
+
+        byte version = this.buffer.get();
+        if (version != TraceFormat.VERSION) {
+            throw new IOException("Unsupported sensor trace version " + version);
+        }
+
+        this.quantum = this.buffer.getFloat();
+    }
+
+    /**
+     * Gets the resolution of the stored axis values.
+     *
+     * @return the quantum in m/s^2
+     */
+    public float getQuantum() {
+        return this.quantum;
+    }
+
+    /**
+     * Reads the next run of samples.
+     *
+     * @param timestampsNs receives the sample times in nanoseconds
+     * @param x            receives the x axis values in m/s^2
+     * @param y            receives the y axis values in m/s^2
+     * @param z            receives the z axis values in m/s^2
+     * @param offset       the index of the first sample to fill
+     * @param maxLength    the maximum number of samples to read
+     * @return             the number of samples read, or -1 at the end of the trace
+     * @throws IOException if the channel could not be read
+     */
+    public int read(long[] timestampsNs, float[] x, float[] y, float[] z, int offset, int maxLength)
+            throws IOException {
+        ByteBuffer buffer = this.buffer;
+        float quantum = this.quantum;
+        int length = 0;
+
+        while (length < maxLength) {
+            if (buffer.remaining() < TraceFormat.MAX_RECORD_BYTES && !this.endOfChannel) {
+                this.fill();
+            }
+
+            if (!buffer.hasRemaining()) {
+                break;
+            }
+
+            int start = buffer.position();
+            long timestampUs;
+            long qx;
+            long qy;
+            long qz;
+
+            try {
+                timestampUs = this.previousTimestampUs + TraceFormat.getVarLong(buffer);
+                qx = this.previousX + TraceFormat.getVarLong(buffer);
+                qy = this.previousY + TraceFormat.getVarLong(buffer);
+                qz = this.previousZ + TraceFormat.getVarLong(buffer);
+            } catch (BufferUnderflowException e) {
+                // Truncated final sample
+                buffer.position(start);
+                buffer.limit(start);
+                break;
+            }
+
+            int i = offset + length++;
+            timestampsNs[i] = timestampUs * 1000;
+            x[i] = qx * quantum;
+            y[i] = qy * quantum;
+            z[i] = qz * quantum;
+
+            this.previousTimestampUs = timestampUs;
+            this.previousX = qx;
+            this.previousY = qy;
+            this.previousZ = qz;
+        }
+
+        return (length == 0 && maxLength > 0) ? -1 : length;
+    }
+
+    /**
+     * Closes the channel.
+     *
+     * @throws IOException if the channel could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Tops up the buffer from the channel.
+     *
+     * @throws IOException if the channel could not be read
+     */
+    private void fill() throws IOException {
+        this.buffer.compact();
+
+        while (this.buffer.hasRemaining()) {
+            if (this.channel.read(this.buffer) < 0) {
+                this.endOfChannel = true;
+                break;
+            }
+        }
+
+        this.buffer.flip();
+    }
+}
@@ -0,0 +1,264 @@
+package com.danbunnell.steptracker.trace;
+
+import com.danbunnell.steptracker.common.SpscSequencer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records raw accelerometer samples to a trace without blocking the thread that delivers them.
+ *
+ * <p>{@link #record(long, float, float, float)} only copies the sample into a lock-free ring, whose
+ * slots are handed to the writer thread by an {@link SpscSequencer}.  A writer thread wakes a few times a
+ * second, or whenever another half of the ring has been recorded, drains the ring in batches and
+ * encodes them with a {@link TraceWriter}.  If the writer falls so far behind that the ring fills,
+ * new samples are dropped and counted rather than stalling the sensor thread.</p>
+ */
+public class TraceRecorder implements Closeable {
+
+    /**
+     * the default ring capacity, twenty seconds at 200 Hz
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * how long the writer thread sleeps when the ring is empty
+     */
+    private static final long DRAIN_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    /**
+     * the maximum number of samples encoded in one pass
+     */
+    private static final int DRAIN_BATCH_SIZE = 256;
+
+    /**
+     * encodes the trace
+     */
+    private final TraceWriter writer;
+
+    /**
+     * the sample times in nanoseconds
+     */
+    private final long[] timestampsNs;
+
+    /**
+     * the x axis values
+     */
+    private final float[] x;
+
+    /**
+     * the y axis values
+     */
+    private final float[] y;
+
+    /**
+     * the z axis values
+     */
+    private final float[] z;
+
+    /**
+     * hands slots from the recording thread to the writer thread
+     */
+    private final SpscSequencer sequencer;
+
+    /**
+     * the number of samples recorded between wakeups of the writer thread, minus one
+     */
+    private final int wakeMask;
+
+    /**
+     * the number of samples dropped because the ring was full
+     */
+    private volatile long droppedCount;
+
+    /**
+     * whether the recorder has been closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * the first error raised by the writer, if any
+     */
+    private volatile IOException error;
+
+    /**
+     * encodes samples off the recording thread
+     */
+    private final Thread writerThread;
+
+    /**
+     * Initializes a new instance of the {@link TraceRecorder} class with the default capacity.
+     *
+     * @param writer encodes the trace, and is closed with the recorder
+     */
+    public TraceRecorder(TraceWriter writer) {
+        this(writer, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes a new instance of the {@link TraceRecorder} class.
+     *
+     * @param writer   encodes the trace, and is closed with the recorder
+     * @param capacity the minimum number of samples the ring holds, rounded up to a power of two
+     */
+    public TraceRecorder(TraceWriter writer, int capacity) {
+        this.sequencer = new SpscSequencer(capacity);
+        int size = this.sequencer.capacity();
+
+        this.writer = writer;
+        this.timestampsNs = new long[size];
+        this.x = new float[size];
+        this.y = new float[size];
+        this.z = new float[size];
+        this.wakeMask = (size - 1) >> 1;
+
+        this.writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "TraceRecorder");
+        this.writerThread.setDaemon(true);
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public void start() {
+        this.writerThread.start();
+    }
+
+    /**
+     * Records a sample.  Must only be called from one thread at a time.
+     *
+     * @param timestampNs the sample time in nanoseconds
+     * @param x           the x axis in m/s^2
+     * @param y           the y axis in m/s^2
+     * @param z           the z axis in m/s^2
+     * @return            true if the sample was recorded, false if it was dropped
+     */
+    public boolean record(long timestampNs, float x, float y, float z) {
+        long sequence = this.sequencer.claim();
+        if (sequence < 0) {
+            this.droppedCount++;
+            return false;
+        }
+
+        int index = this.sequencer.index(sequence);
+        this.timestampsNs[index] = timestampNs;
+        this.x[index] = x;
+        this.y[index] = y;
+        this.z[index] = z;
+        this.sequencer.publish(sequence);
+
+        if (((sequence + 1) & this.wakeMask) == 0) {
+            LockSupport.unpark(this.writerThread);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of samples dropped because the writer fell behind.
+     *
+     * @return the number of dropped samples
+     */
+    public long getDroppedCount() {
+        return this.droppedCount;
+    }
+
+    /**
+     * Writes out the samples recorded so far, stops the writer thread and closes the trace.
+     * Samples recorded after this is called may be lost.
+     *
+     * @throws IOException if the trace could not be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        LockSupport.unpark(this.writerThread);
+
+        boolean interrupted = false;
+        while (this.writerThread.isAlive()) {
+            try {
+                this.writerThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (this.error != null) {
+            throw this.error;
+        }
+    }
+
+    /**
+     * Drains the ring into the writer until the recorder is closed.
+     */
+    private void writeLoop() {
+        long[] timestampsNs = new long[DRAIN_BATCH_SIZE];
+        float[] x = new float[DRAIN_BATCH_SIZE];
+        float[] y = new float[DRAIN_BATCH_SIZE];
+        float[] z = new float[DRAIN_BATCH_SIZE];
+
+        try {
+            try {
+                while (true) {
+                    // Read the flag first, so that a final drain follows the last record
+                    boolean closing = this.closed;
+                    int length = this.drain(timestampsNs, x, y, z);
+
+                    if (length > 0) {
+                        this.writer.write(timestampsNs, x, y, z, 0, length);
+                    } else if (closing) {
+                        break;
+                    } else {
+                        LockSupport.parkNanos(this, DRAIN_INTERVAL_NS);
+                    }
+                }
+            } finally {
+                this.writer.close();
+            }
+        } catch (IOException e) {
+            this.error = e;
+        }
+    }
+
+    /**
+     * Removes a batch of samples from the ring, oldest first.
+     *
+     * @param timestampsNs receives the sample times
+     * @param x            receives the x axis values
+     * @param y            receives the y axis values
+     * @param z            receives the z axis values
+     * @return             the number of samples removed
+     */
+    private int drain(long[] timestampsNs, float[] x, float[] y, float[] z) {
+        int length = this.sequencer.available(timestampsNs.length);
+        if (length == 0) {
+            return 0;
+        }
+
+        long sequence = this.sequencer.readSequence();
+        int start = this.sequencer.index(sequence);
+        int firstPart = this.sequencer.firstPart(sequence, length);
+        int secondPart = length - firstPart;
+
+        System.arraycopy(this.timestampsNs, start, timestampsNs, 0, firstPart);
+        System.arraycopy(this.timestampsNs, 0, timestampsNs, firstPart, secondPart);
+        System.arraycopy(this.x, start, x, 0, firstPart);
+        System.arraycopy(this.x, 0, x, firstPart, secondPart);
+        System.arraycopy(this.y, start, y, 0, firstPart);
+        System.arraycopy(this.y, 0, y, firstPart, secondPart);
+        System.arraycopy(this.z, start, z, 0, firstPart);
+        System.arraycopy(this.z, 0, z, firstPart, secondPart);
+
+        this.sequencer.release(length);
+        return length;
+    }
+}
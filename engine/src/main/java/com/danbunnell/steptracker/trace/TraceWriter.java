@@ -0,0 +1,168 @@
+package com.danbunnell.steptracker.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Encodes raw accelerometer samples into a trace.
+ *
+ * <p>Timestamps are kept to the microsecond and axis values are rounded to the quantum, and each
+ * sample is stored as its change from the one before (see {@link TraceFormat}).  Encoded samples
+ * collect in a buffer which is written to the channel whenever it fills, so the channel sees a
+ * few large writes rather than one per sample.  Not thread-safe.</p>
+ */
+public class TraceWriter implements Closeable {
+
+    /**
+     * the default quantum in m/s^2, finer than the noise of a phone accelerometer
+     */
+    public static final float DEFAULT_QUANTUM = 0.01f;
+
+    /**
+     * the size of the write buffer in bytes
+     */
+    private static final int BUFFER_BYTES = 8192;
+
+    /**
+     * receives the encoded trace
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * collects encoded samples between writes
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * the number of quanta per m/s^2
+     */
+    private final float scale;
+
+    /**
+     * the timestamp of the last sample, in microseconds
+     */
+    private long previousTimestampUs;
+
+    /**
+     * the quantized x value of the last sample
+     */
+    private long previousX;
+
+    /**
+     * the quantized y value of the last sample
+     */
+    private long previousY;
+
+    /**
+     * the quantized z value of the last sample
+     */
+    private long previousZ;
+
+    /**
+     * Initializes a new instance of the {@link TraceWriter} class with the default quantum.
+     *
+     * @param channel receives the encoded trace
+     */
+    public TraceWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_QUANTUM);
+    }
+
+    /**
+     * Initializes a new instance of the {@link TraceWriter} class.
+     *
+     * @param channel receives the encoded trace
+     * @param quantum the resolution of the stored axis values in m/s^2
+     */
+    public TraceWriter(WritableByteChannel channel, float quantum) {
+        if (!(quantum > 0)) {
+            throw new IllegalArgumentException("quantum must be positive");
+        }
+
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        this.scale = 1 / quantum;
+
+        this.buffer.putInt(TraceFormat.MAGIC);
+        this.buffer.put(TraceFormat.VERSION);
+        this.buffer.putFloat(quantum);
+    }
+
+    /**
+     * Adds a sample to the trace.
+     *
+     * @param timestampNs the sample time in nanoseconds
+     * @param x           the x axis in m/s^2
+     * @param y           the y axis in m/s^2
+     * @param z           the z axis in m/s^2
+     * @throws IOException if the channel could not be written
+     */
+    public void write(long timestampNs, float x, float y, float z) throws IOException {
+        if (this.buffer.remaining() < TraceFormat.MAX_RECORD_BYTES) {
+            this.flush();
+        }
+
+        long timestampUs = timestampNs / 1000;
+        long qx = Math.round(x * this.scale);
+        long qy = Math.round(y * this.scale);
+        long qz = Math.round(z * this.scale);
+
+        TraceFormat.putVarLong(this.buffer, timestampUs - this.previousTimestampUs);
+        TraceFormat.putVarLong(this.buffer, qx - this.previousX);
+        TraceFormat.putVarLong(this.buffer, qy - this.previousY);
+        TraceFormat.putVarLong(this.buffer, qz - this.previousZ);
+
+        this.previousTimestampUs = timestampUs;
+        this.previousX = qx;
+        this.previousY = qy;
+        this.previousZ = qz;
+    }
+
+    /**
+     * Adds a run of samples to the trace.
+     *
+     * @param timestampsNs the sample times in nanoseconds
+     * @param x            the x axis values in m/s^2
+     * @param y            the y axis values in m/s^2
+     * @param z            the z axis values in m/s^2
+     * @param offset       the index of the first sample
+     * @param length       the number of samples
+     * @throws IOException if the channel could not be written
+     */
+    public void write(long[] timestampsNs, float[] x, float[] y, float[] z, int offset, int length)
+            throws IOException {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            this.write(timestampsNs[i], x[i], y[i], z[i]);
+        }
+    }
+
+    /**
+     * Writes any buffered samples to the channel.
+     *
+     * @throws IOException if the channel could not be written
+     */
+    public void flush() throws IOException {
+        this.buffer.flip();
+
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+
+        this.buffer.clear();
+    }
+
+    /**
+     * Writes any buffered samples and closes the channel.
+     *
+     * @throws IOException if the channel could not be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+}
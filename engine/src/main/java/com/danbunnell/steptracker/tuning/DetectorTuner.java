@@ -0,0 +1,152 @@
+package com.danbunnell.steptracker.tuning;
+
+import com.danbunnell.steptracker.engine.DetectorConfiguration;
+import com.danbunnell.steptracker.replay.ConfiguredPipelineFactory;
+import com.danbunnell.steptracker.replay.StepPipelineFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Searches for the detector configuration that best counts the steps in a labeled corpus.
+ *
+ * <p>Candidates are split in halves on a {@link ForkJoinPool} until each task holds one, and each
+ * task replays every trace in the corpus through a pipeline built from its candidate.  The corpus
+ * is decoded once and shared read-only by all of the workers, so the cost of a candidate is just
+ * the filter and detector work.</p>
+ */
+public class DetectorTuner {
+
+    /**
+     * the labeled traces
+     */
+    private final TraceCorpus corpus;
+
+    /**
+     * the grid sample rate in milliseconds
+     */
+    private final long sampleRateMs;
+
+    /**
+     * Initializes a new instance of the {@link DetectorTuner} class.
+     *
+     * @param corpus       the labeled traces
+     * @param sampleRateMs the grid sample rate in milliseconds
+     */
+    public DetectorTuner(TraceCorpus corpus, long sampleRateMs) {
+        this.corpus = corpus;
+        this.sampleRateMs = sampleRateMs;
+    }
+
+    /**
+     * Evaluates a single configuration.
+     *
+     * @param configuration the configuration
+     * @return              how well it counted the corpus
+     */
+    public TuningResult evaluate(DetectorConfiguration configuration) {
+        StepPipelineFactory factory = new ConfiguredPipelineFactory(this.sampleRateMs, configuration);
+        long absoluteError = 0;
+
+        for (LabeledTrace trace : this.corpus.getTraces()) {
+            long steps = trace.replay(factory.newPipeline());
+            absoluteError += Math.abs(steps - trace.getExpectedSteps());
+        }
+
+        return new TuningResult(configuration, absoluteError, this.corpus.getExpectedSteps());
+    }
+
+    /**
+     * Evaluates configurations in parallel, one worker per core.
+     *
+     * @param candidates the configurations
+     * @return           the results, best first
+     */
+    public List<TuningResult> evaluateAll(List<DetectorConfiguration> candidates) {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return this.evaluateAll(candidates, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Evaluates configurations in parallel.
+     *
+     * @param candidates the configurations
+     * @param pool       runs the evaluations
+     * @return           the results, best first
+     */
+    public List<TuningResult> evaluateAll(List<DetectorConfiguration> candidates, ForkJoinPool pool) {
+        DetectorConfiguration[] candidateArray = candidates.toArray(new DetectorConfiguration[candidates.size()]);
+        TuningResult[] results = new TuningResult[candidateArray.length];
+        pool.invoke(new EvaluateTask(candidateArray, results, 0, candidateArray.length));
+
+        List<TuningResult> sorted = new ArrayList<>(results.length);
+        Collections.addAll(sorted, results);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Evaluates a range of candidates, splitting it until one candidate remains.
+     */
+    private class EvaluateTask extends RecursiveAction {
+
+        /**
+         * the serialization version
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * all of the candidates
+         */
+        private final DetectorConfiguration[] candidates;
+
+        /**
+         * receives the results, at the same positions as the candidates
+         */
+        private final TuningResult[] results;
+
+        /**
+         * the index of the first candidate in the range
+         */
+        private final int from;
+
+        /**
+         * the index after the last candidate in the range
+         */
+        private final int to;
+
+        /**
+         * Initializes a new instance of the {@link EvaluateTask} class.
+         *
+         * @param candidates all of the candidates
+         * @param results    receives the results
+         * @param from       the index of the first candidate in the range
+         * @param to         the index after the last candidate in the range
+         */
+        EvaluateTask(DetectorConfiguration[] candidates, TuningResult[] results, int from, int to) {
+            this.candidates = candidates;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from == 1) {
+                this.results[this.from] = evaluate(this.candidates[this.from]);
+            } else if (this.to > this.from) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(
+                        new EvaluateTask(this.candidates, this.results, this.from, middle),
+                        new EvaluateTask(this.candidates, this.results, middle, this.to));
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.danbunnell.steptracker.tuning;
+
+import com.danbunnell.steptracker.engine.StepPipeline;
+import com.danbunnell.steptracker.trace.TraceReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * A decoded trace and the number of steps actually taken in it.
+ *
+ * <p>The samples are decoded once and never modified afterwards, so a single copy can be replayed
+ * by any number of workers at the same time.</p>
+ */
+public class LabeledTrace {
+
+    /**
+     * the number of samples the arrays grow by while decoding
+     */
+    private static final int BATCH_SIZE = 4096;
+
+    /**
+     * identifies the trace, usually its path
+     */
+    private final String name;
+
+    /**
+     * the number of steps actually taken
+     */
+    private final long expectedSteps;
+
+    /**
+     * the sample times in nanoseconds
+     */
+    private final long[] timestampsNs;
+
+    /**
+     * the x axis values
+     */
+    private final float[] x;
+
+    /**
+     * the y axis values
+     */
+    private final float[] y;
+
+    /**
+     * the z axis values
+     */
+    private final float[] z;
+
+    /**
+     * Initializes a new instance of the {@link LabeledTrace} class.  The arrays are not copied and
+     * must not be modified afterwards.
+     *
+     * @param name          identifies the trace
+     * @param expectedSteps the number of steps actually taken
+     * @param timestampsNs  the sample times in nanoseconds
+     * @param x             the x axis values
+     * @param y             the y axis values
+     * @param z             the z axis values
+     */
+    public LabeledTrace(String name, long expectedSteps, long[] timestampsNs, float[] x, float[] y, float[] z) {
+        if (x.length != timestampsNs.length || y.length != timestampsNs.length || z.length != timestampsNs.length) {
+            throw new IllegalArgumentException("sample arrays must be the same length");
+        }
+
+        this.name = name;
+        this.expectedSteps = expectedSteps;
+        this.timestampsNs = timestampsNs;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Decodes a trace file.
+     *
+     * @param file          the trace
+     * @param expectedSteps the number of steps actually taken
+     * @return              the decoded trace
+     * @throws IOException if the trace could not be read
+     */
+    public static LabeledTrace decode(File file, long expectedSteps) throws IOException {
+        long[] timestampsNs = new long[BATCH_SIZE];
+        float[] x = new float[BATCH_SIZE];
+        float[] y = new float[BATCH_SIZE];
+        float[] z = new float[BATCH_SIZE];
+        int length = 0;
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            TraceReader reader = new TraceReader(input.getChannel());
+            int read;
+
+            while ((read = reader.read(timestampsNs, x, y, z, length, timestampsNs.length - length)) > 0) {
+                length += read;
+
+                if (length == timestampsNs.length) {
+                    int capacity = length * 2;
+                    timestampsNs = Arrays.copyOf(timestampsNs, capacity);
+                    x = Arrays.copyOf(x, capacity);
+                    y = Arrays.copyOf(y, capacity);
+                    z = Arrays.copyOf(z, capacity);
+                }
+            }
+        }
+
+        return new LabeledTrace(
+                file.getPath(),
+                expectedSteps,
+                Arrays.copyOf(timestampsNs, length),
+                Arrays.copyOf(x, length),
+                Arrays.copyOf(y, length),
+                Arrays.copyOf(z, length));
+    }
+
+    /**
+     * Gets the name of the trace.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the number of steps actually taken.
+     *
+     * @return the expected step count
+     */
+    public long getExpectedSteps() {
+        return this.expectedSteps;
+    }
+
+    /**
+     * Gets the number of samples.
+     *
+     * @return the sample count
+     */
+    public int getSampleCount() {
+        return this.timestampsNs.length;
+    }
+
+    /**
+     * Replays the trace through a pipeline.
+     *
+     * @param pipeline a pipeline with fresh state
+     * @return         the number of steps the pipeline detected
+     */
+    public long replay(StepPipeline pipeline) {
+        pipeline.add(this.timestampsNs, this.x, this.y, this.z, 0, this.timestampsNs.length);
+        pipeline.flush();
+        return pipeline.getStepCount();
+    }
+}
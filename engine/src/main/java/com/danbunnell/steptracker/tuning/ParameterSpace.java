@@ -0,0 +1,179 @@
+package com.danbunnell.steptracker.tuning;
+
+import com.danbunnell.steptracker.engine.DetectorConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The ranges the tuner searches for each detector constant.  Immutable.
+ */
+public class ParameterSpace {
+
+    /**
+     * a range around the default configuration wide enough to cover any plausible gait
+     */
+    public static final ParameterSpace DEFAULT = new ParameterSpace(
+            0.3f, 0.9f, 1.0f, 5.0f, 5, 60, 1000, 4000, 0.2f, 1.0f, 200, 400);
+
+    private final float minPeakToMeanCutoffRatio;
+
+    private final float maxPeakToMeanCutoffRatio;
+
+    private final float minMinPeakToMeanBase;
+
+    private final float maxMinPeakToMeanBase;
+
+    private final int minMovingAverageWindowSize;
+
+    private final int maxMovingAverageWindowSize;
+
+    private final long minStepDetectionWindowMs;
+
+    private final long maxStepDetectionWindowMs;
+
+    private final float minHysteresis;
+
+    private final float maxHysteresis;
+
+    private final long minMinStepIntervalMs;
+
+    private final long maxMinStepIntervalMs;
+
+    /**
+     * Initializes a new instance of the {@link ParameterSpace} class.  All ranges are inclusive.
+     *
+     * @param minPeakToMeanCutoffRatio   the lowest peak to mean cutoff ratio
+     * @param maxPeakToMeanCutoffRatio   the highest peak to mean cutoff ratio
+     * @param minMinPeakToMeanBase       the lowest minimum peak height, in m/s^2
+     * @param maxMinPeakToMeanBase       the highest minimum peak height, in m/s^2
+     * @param minMovingAverageWindowSize the smallest moving average window, in samples
+     * @param maxMovingAverageWindowSize the largest moving average window, in samples
+     * @param minStepDetectionWindowMs   the shortest step detection window, in milliseconds
+     * @param maxStepDetectionWindowMs   the longest step detection window, in milliseconds
+     * @param minHysteresis              the smallest extremum hysteresis, in m/s^2
+     * @param maxHysteresis              the largest extremum hysteresis, in m/s^2
+     * @param minMinStepIntervalMs       the shortest minimum step interval, in milliseconds
+     * @param maxMinStepIntervalMs       the longest minimum step interval, in milliseconds
+     */
+    public ParameterSpace(
+            float minPeakToMeanCutoffRatio,
+            float maxPeakToMeanCutoffRatio,
+            float minMinPeakToMeanBase,
+            float maxMinPeakToMeanBase,
+            int minMovingAverageWindowSize,
+            int maxMovingAverageWindowSize,
+            long minStepDetectionWindowMs,
+            long maxStepDetectionWindowMs,
+            float minHysteresis,
+            float maxHysteresis,
+            long minMinStepIntervalMs,
+            long maxMinStepIntervalMs) {
+        if (minPeakToMeanCutoffRatio > maxPeakToMeanCutoffRatio
+                || minMinPeakToMeanBase > maxMinPeakToMeanBase
+                || minMovingAverageWindowSize > maxMovingAverageWindowSize
+                || minStepDetectionWindowMs > maxStepDetectionWindowMs
+                || minHysteresis > maxHysteresis
+                || minMinStepIntervalMs > maxMinStepIntervalMs) {
+            throw new IllegalArgumentException("each range must not end before it starts");
+        }
+
+        this.minPeakToMeanCutoffRatio = minPeakToMeanCutoffRatio;
+        this.maxPeakToMeanCutoffRatio = maxPeakToMeanCutoffRatio;
+        this.minMinPeakToMeanBase = minMinPeakToMeanBase;
+        this.maxMinPeakToMeanBase = maxMinPeakToMeanBase;
+        this.minMovingAverageWindowSize = minMovingAverageWindowSize;
+        this.maxMovingAverageWindowSize = maxMovingAverageWindowSize;
+        this.minStepDetectionWindowMs = minStepDetectionWindowMs;
+        this.maxStepDetectionWindowMs = maxStepDetectionWindowMs;
+        this.minHysteresis = minHysteresis;
+        this.maxHysteresis = maxHysteresis;
+        this.minMinStepIntervalMs = minMinStepIntervalMs;
+        this.maxMinStepIntervalMs = maxMinStepIntervalMs;
+    }
+
+    /**
+     * Lists every combination of evenly spaced values across each range.
+     *
+     * @param pointsPerAxis the number of values taken from each range, at least one.  A single
+     *                      value is the middle of the range
+     * @return              pointsPerAxis^6 configurations
+     */
+    public List<DetectorConfiguration> grid(int pointsPerAxis) {
+        if (pointsPerAxis < 1) {
+            throw new IllegalArgumentException("pointsPerAxis must be positive");
+        }
+
+        List<DetectorConfiguration> configurations = new ArrayList<>();
+
+        for (int a = 0; a < pointsPerAxis; a++) {
+            float ratio = (float) interpolate(this.minPeakToMeanCutoffRatio, this.maxPeakToMeanCutoffRatio, a, pointsPerAxis);
+
+            for (int b = 0; b < pointsPerAxis; b++) {
+                float base = (float) interpolate(this.minMinPeakToMeanBase, this.maxMinPeakToMeanBase, b, pointsPerAxis);
+
+                for (int c = 0; c < pointsPerAxis; c++) {
+                    int window = (int) Math.round(interpolate(this.minMovingAverageWindowSize, this.maxMovingAverageWindowSize, c, pointsPerAxis));
+
+                    for (int d = 0; d < pointsPerAxis; d++) {
+                        long detectionWindowMs = Math.round(interpolate(this.minStepDetectionWindowMs, this.maxStepDetectionWindowMs, d, pointsPerAxis));
+
+                        for (int e = 0; e < pointsPerAxis; e++) {
+                            float hysteresis = (float) interpolate(this.minHysteresis, this.maxHysteresis, e, pointsPerAxis);
+
+                            for (int f = 0; f < pointsPerAxis; f++) {
+                                long minStepIntervalMs = Math.round(interpolate(this.minMinStepIntervalMs, this.maxMinStepIntervalMs, f, pointsPerAxis));
+                                configurations.add(new DetectorConfiguration(
+                                        ratio, base, window, detectionWindowMs, hysteresis, minStepIntervalMs));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return configurations;
+    }
+
+    /**
+     * Draws configurations uniformly from the ranges.
+     *
+     * @param count the number of configurations
+     * @param seed  seeds the draw, so that a search can be repeated
+     * @return      the configurations
+     */
+    public List<DetectorConfiguration> random(int count, long seed) {
+        Random random = new Random(seed);
+        List<DetectorConfiguration> configurations = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            configurations.add(new DetectorConfiguration(
+                    this.minPeakToMeanCutoffRatio + random.nextFloat() * (this.maxPeakToMeanCutoffRatio - this.minPeakToMeanCutoffRatio),
+                    this.minMinPeakToMeanBase + random.nextFloat() * (this.maxMinPeakToMeanBase - this.minMinPeakToMeanBase),
+                    this.minMovingAverageWindowSize + random.nextInt(this.maxMovingAverageWindowSize - this.minMovingAverageWindowSize + 1),
+                    this.minStepDetectionWindowMs + (long) (random.nextDouble() * (this.maxStepDetectionWindowMs - this.minStepDetectionWindowMs + 1)),
+                    this.minHysteresis + random.nextFloat() * (this.maxHysteresis - this.minHysteresis),
+                    this.minMinStepIntervalMs + (long) (random.nextDouble() * (this.maxMinStepIntervalMs - this.minMinStepIntervalMs + 1))));
+        }
+
+        return configurations;
+    }
+
+    /**
+     * Gets an evenly spaced value from a range.
+     *
+     * @param min   the start of the range
+     * @param max   the end of the range
+     * @param i     the index of the value
+     * @param count the number of values
+     * @return      the value
+     */
+    private static double interpolate(double min, double max, int i, int count) {
+        if (count == 1) {
+            return (min + max) / 2;
+        }
+
+        return min + (max - min) * i / (count - 1);
+    }
+}
@@ -0,0 +1,116 @@
+package com.danbunnell.steptracker.tuning;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of labeled traces, decoded into memory.
+ */
+public class TraceCorpus {
+
+    /**
+     * the traces
+     */
+    private final List<LabeledTrace> traces;
+
+    /**
+     * the total number of steps actually taken across the traces
+     */
+    private final long expectedSteps;
+
+    /**
+     * Initializes a new instance of the {@link TraceCorpus} class.
+     *
+     * @param traces the traces
+     */
+    public TraceCorpus(List<LabeledTrace> traces) {
+        this.traces = Collections.unmodifiableList(new ArrayList<>(traces));
+
+        long expectedSteps = 0;
+        for (LabeledTrace trace : traces) {
+            expectedSteps += trace.getExpectedSteps();
+        }
+        this.expectedSteps = expectedSteps;
+    }
+
+    /**
+     * Loads the traces listed in a manifest.
+     *
+     * <p>Each line of the manifest names a trace file and the number of steps actually taken in it,
+     * separated by whitespace, for example {@code walks/commute.trace 1184}.  Relative paths are
+     * resolved against the manifest's directory.  Blank lines and lines starting with {@code #}
+     * are ignored.</p>
+     *
+     * @param manifest the manifest file
+     * @return         the decoded corpus
+     * @throws IOException if the manifest or a trace could not be read, or a line is malformed
+     */
+    public static TraceCorpus load(File manifest) throws IOException {
+        File directory = manifest.getAbsoluteFile().getParentFile();
+        List<LabeledTrace> traces = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(manifest), "UTF-8"))) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                int separator = line.lastIndexOf(' ');
+                separator = Math.max(separator, line.lastIndexOf('\t'));
+
+                long expectedSteps = -1;
+                if (separator > 0) {
+                    try {
+                        expectedSteps = Long.parseLong(line.substring(separator + 1));
+                    } catch (NumberFormatException e) {
+                        expectedSteps = -1;
+                    }
+                }
+
+                if (expectedSteps < 0) {
+                    throw new IOException(manifest + ":" + lineNumber + ": expected <trace> <steps>");
+                }
+
+                File file = new File(line.substring(0, separator).trim());
+                if (!file.isAbsolute()) {
+                    file = new File(directory, file.getPath());
+                }
+
+                traces.add(LabeledTrace.decode(file, expectedSteps));
+            }
+        }
+
+        return new TraceCorpus(traces);
+    }
+
+    /**
+     * Gets the traces.
+     *
+     * @return the traces, which cannot be modified
+     */
+    public List<LabeledTrace> getTraces() {
+        return this.traces;
+    }
+
+    /**
+     * Gets the total number of steps actually taken across the traces.
+     *
+     * @return the expected step count
+     */
+    public long getExpectedSteps() {
+        return this.expectedSteps;
+    }
+}
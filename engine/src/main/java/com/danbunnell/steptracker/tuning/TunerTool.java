@@ -0,0 +1,114 @@
+package com.danbunnell.steptracker.tuning;
+
+import com.danbunnell.steptracker.engine.DetectorConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Searches for the detector configuration that best counts a labeled corpus, and prints the best
+ * candidates next to the current default.
+ *
+ * <p>Usage: {@code TunerTool <manifest> [grid <points per axis> | random <count> [seed]]}.  The
+ * manifest format is described in {@link TraceCorpus#load(File)}.  The default search is a grid of
+ * four points per axis.</p>
+ */
+public class TunerTool {
+
+    /**
+     * the grid sample rate in milliseconds, as used by the app
+     */
+    private static final long SAMPLE_RATE_MS = 5;
+
+    /**
+     * the number of results printed
+     */
+    private static final int TOP_RESULTS = 10;
+
+    private TunerTool() {
+    }
+
+    /**
+     * Runs the tool.
+     *
+     * @param args the manifest and search options
+     * @throws IOException if the corpus could not be loaded
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            usage();
+        }
+
+        List<DetectorConfiguration> candidates;
+        try {
+            if (args.length == 1) {
+                candidates = ParameterSpace.DEFAULT.grid(4);
+            } else if (args[1].equals("grid") && args.length == 3) {
+                candidates = ParameterSpace.DEFAULT.grid(Integer.parseInt(args[2]));
+            } else if (args[1].equals("random") && (args.length == 3 || args.length == 4)) {
+                long seed = args.length == 4 ? Long.parseLong(args[3]) : System.nanoTime();
+                candidates = ParameterSpace.DEFAULT.random(Integer.parseInt(args[2]), seed);
+            } else {
+                usage();
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            usage();
+            return;
+        }
+
+        long start = System.nanoTime();
+        TraceCorpus corpus = TraceCorpus.load(new File(args[0]));
+        System.out.printf(
+                Locale.US,
+                "Loaded %d traces, %d labeled steps in %.2f s%n",
+                corpus.getTraces().size(),
+                corpus.getExpectedSteps(),
+                (System.nanoTime() - start) / 1e9);
+
+        DetectorTuner tuner = new DetectorTuner(corpus, SAMPLE_RATE_MS);
+
+        start = System.nanoTime();
+        List<TuningResult> results = tuner.evaluateAll(candidates);
+        System.out.printf(
+                Locale.US,
+                "Evaluated %d candidates in %.2f s%n%n",
+                candidates.size(),
+                (System.nanoTime() - start) / 1e9);
+
+        print("default", tuner.evaluate(DetectorConfiguration.DEFAULT));
+        for (int i = 0; i < Math.min(TOP_RESULTS, results.size()); i++) {
+            print("#" + (i + 1), results.get(i));
+        }
+
+        if (!results.isEmpty()) {
+            System.out.printf("%nBest: %s%n", results.get(0).getConfiguration());
+        }
+    }
+
+    /**
+     * Prints a result.
+     *
+     * @param label  labels the result
+     * @param result the result
+     */
+    private static void print(String label, TuningResult result) {
+        System.out.printf(
+                Locale.US,
+                "%-8s %6.2f%% (%d steps off)  %s%n",
+                label,
+                result.getRelativeError() * 100,
+                result.getAbsoluteError(),
+                result.getConfiguration());
+    }
+
+    /**
+     * Prints the usage and exits.
+     */
+    private static void usage() {
+        System.err.println("usage: TunerTool <manifest> [grid <points per axis> | random <count> [seed]]");
+        System.exit(2);
+    }
+}
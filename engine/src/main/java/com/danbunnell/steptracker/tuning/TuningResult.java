@@ -0,0 +1,76 @@
+package com.danbunnell.steptracker.tuning;
+
+import com.danbunnell.steptracker.engine.DetectorConfiguration;
+
+/**
+ * How well a configuration counted the steps in a corpus.
+ */
+public class TuningResult implements Comparable<TuningResult> {
+
+    /**
+     * the configuration evaluated
+     */
+    private final DetectorConfiguration configuration;
+
+    /**
+     * the sum over the traces of the absolute difference between detected and actual steps
+     */
+    private final long absoluteError;
+
+    /**
+     * the total number of steps actually taken
+     */
+    private final long expectedSteps;
+
+    /**
+     * Initializes a new instance of the {@link TuningResult} class.
+     *
+     * @param configuration the configuration evaluated
+     * @param absoluteError the sum over the traces of the absolute step count error
+     * @param expectedSteps the total number of steps actually taken
+     */
+    public TuningResult(DetectorConfiguration configuration, long absoluteError, long expectedSteps) {
+        this.configuration = configuration;
+        this.absoluteError = absoluteError;
+        this.expectedSteps = expectedSteps;
+    }
+
+    /**
+     * Gets the configuration evaluated.
+     *
+     * @return the configuration
+     */
+    public DetectorConfiguration getConfiguration() {
+        return this.configuration;
+    }
+
+    /**
+     * Gets the sum over the traces of the absolute difference between detected and actual steps.
+     * Missed steps in one trace are not cancelled out by extra steps in another.
+     *
+     * @return the absolute error in steps
+     */
+    public long getAbsoluteError() {
+        return this.absoluteError;
+    }
+
+    /**
+     * Gets the absolute error as a fraction of the steps actually taken.
+     *
+     * @return the relative error
+     */
+    public double getRelativeError() {
+        return this.expectedSteps > 0 ? (double) this.absoluteError / this.expectedSteps : 0;
+    }
+
+    /**
+     * Orders results from the lowest error to the highest.
+     *
+     * @param other another result
+     * @return      a negative number if this result is better
+     */
+    @Override
+    public int compareTo(TuningResult other) {
+        return Long.compare(this.absoluteError, other.absoluteError);
+    }
+}
@@ -0,0 +1,168 @@
+package com.danbunnell.steptracker.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link BiquadFilter}.
+ */
+public class BiquadFilterTest {
+
+    /**
+     * 100 Hz, the rate the service samples at
+     */
+    private static final long SAMPLE_RATE_MS = 10;
+
+    @Test
+    public void lowPass_impulseResponseFollowsCookbookCoefficients() {
+        // RBJ cookbook coefficients for a 5 Hz Butterworth low-pass at 100 Hz, divided by a0
+        double b0 = 0.020083365564211256;
+        double b1 = 0.04016673112842251;
+        double b2 = 0.020083365564211256;
+        double a1 = -1.561018075800718;
+        double a2 = 0.6413515380575631;
+
+        assertImpulseResponse(BiquadFilter.lowPass(SAMPLE_RATE_MS, 5), b0, b1, b2, a1, a2);
+    }
+
+    @Test
+    public void highPass_impulseResponseFollowsCookbookCoefficients() {
+        // RBJ cookbook coefficients for a 0.5 Hz Butterworth high-pass at 100 Hz, divided by a0
+        double b0 = 0.9780304792065596;
+        double b1 = -1.9560609584131192;
+        double b2 = 0.9780304792065596;
+        double a1 = -1.9555782403150352;
+        double a2 = 0.9565436765112032;
+
+        assertImpulseResponse(BiquadFilter.highPass(SAMPLE_RATE_MS, 0.5), b0, b1, b2, a1, a2);
+    }
+
+    @Test
+    public void lowPass_hasUnityGainAtDc() {
+        BiquadFilter filter = BiquadFilter.lowPass(SAMPLE_RATE_MS, 5);
+
+        float y = 0;
+        for (int i = 0; i < 500; i++) {
+            y = filter.filter(9.81f);
+        }
+
+        assertEquals(9.81f, y, 1e-4f);
+    }
+
+    @Test
+    public void lowPass_rejectsTonesAboveCutoff() {
+        // An octave and a half above a 5 Hz cutoff, about -20 dB after bilinear warping
+        assertEquals(0.096, peakGain(BiquadFilter.lowPass(SAMPLE_RATE_MS, 5), 15), 0.01);
+        assertEquals(1, peakGain(BiquadFilter.lowPass(SAMPLE_RATE_MS, 5), 0.5), 0.01);
+    }
+
+    @Test
+    public void highPass_removesGravity() {
+        BiquadFilter filter = BiquadFilter.highPass(SAMPLE_RATE_MS, 0.5);
+
+        float y = 0;
+        for (int i = 0; i < 2000; i++) {
+            y = filter.filter(9.81f);
+        }
+
+        assertEquals(0, y, 1e-3f);
+    }
+
+    @Test
+    public void highPass_rejectsTonesBelowCutoffAndPassesTonesAbove() {
+        assertEquals(1, peakGain(BiquadFilter.highPass(SAMPLE_RATE_MS, 0.5), 2), 0.01);
+        assertEquals(0.062, peakGain(BiquadFilter.highPass(SAMPLE_RATE_MS, 0.5), 0.125), 0.01);
+    }
+
+    @Test
+    public void bandPass_hasUnityGainAtCenter() {
+        assertEquals(1, peakGain(BiquadFilter.bandPass(SAMPLE_RATE_MS, 0.5, 5), Math.sqrt(2.5)), 0.01);
+    }
+
+    @Test
+    public void filter_bulkMatchesSampleBySample() {
+        BiquadFilter single = BiquadFilter.bandPass(SAMPLE_RATE_MS, 0.5, 5);
+        BiquadFilter bulk = BiquadFilter.bandPass(SAMPLE_RATE_MS, 0.5, 5);
+
+        float[] samples = new float[256];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = 9.81f + (float) Math.sin(i * 0.2);
+        }
+
+        float[] out = new float[samples.length];
+        bulk.filter(samples, out, 0, 100);
+        bulk.filter(samples, out, 100, samples.length - 100);
+
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(single.filter(samples[i]), out[i], 0f);
+        }
+    }
+
+    @Test
+    public void reset_forgetsPastSamples() {
+        BiquadFilter filter = BiquadFilter.lowPass(SAMPLE_RATE_MS, 5);
+        BiquadFilter fresh = BiquadFilter.lowPass(SAMPLE_RATE_MS, 5);
+
+        for (int i = 0; i < 100; i++) {
+            filter.filter(9.81f);
+        }
+        filter.reset();
+
+        for (int i = 0; i < 50; i++) {
+            float x = i == 0 ? 1f : 0f;
+            assertEquals(fresh.filter(x), filter.filter(x), 0f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lowPass_rejectsCutoffAtNyquist() {
+        BiquadFilter.lowPass(SAMPLE_RATE_MS, 50);
+    }
+
+    /**
+     * Checks the first samples of a filter's impulse response against the difference equation.
+     *
+     * @param filter the filter to check
+     * @param b0     the expected current input coefficient
+     * @param b1     the expected previous input coefficient
+     * @param b2     the expected second previous input coefficient
+     * @param a1     the expected previous output coefficient
+     * @param a2     the expected second previous output coefficient
+     */
+    private static void assertImpulseResponse(
+            BiquadFilter filter, double b0, double b1, double b2, double a1, double a2) {
+        double y0 = b0;
+        double y1 = b1 - a1 * y0;
+        double y2 = b2 - a1 * y1 - a2 * y0;
+        double y3 = -a1 * y2 - a2 * y1;
+
+        assertEquals(y0, filter.filter(1f), 1e-6);
+        assertEquals(y1, filter.filter(0f), 1e-6);
+        assertEquals(y2, filter.filter(0f), 1e-6);
+        assertEquals(y3, filter.filter(0f), 1e-6);
+    }
+
+    /**
+     * Measures a filter's steady-state gain for a sine wave.
+     *
+     * @param filter      the filter to measure
+     * @param frequencyHz the frequency of the sine wave
+     * @return            the peak output amplitude over the last ten seconds of a minute
+     */
+    private static double peakGain(BiquadFilter filter, double frequencyHz) {
+        double peak = 0;
+        int samples = (int) (60 * 1000 / SAMPLE_RATE_MS);
+
+        for (int i = 0; i < samples; i++) {
+            double t = i * SAMPLE_RATE_MS / 1000.0;
+            float y = filter.filter((float) Math.sin(2 * Math.PI * frequencyHz * t));
+
+            if (i >= samples - 10 * 1000 / SAMPLE_RATE_MS) {
+                peak = Math.max(peak, Math.abs(y));
+            }
+        }
+
+        return peak;
+    }
+}
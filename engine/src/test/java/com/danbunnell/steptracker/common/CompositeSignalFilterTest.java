@@ -0,0 +1,135 @@
+package com.danbunnell.steptracker.common;
+
+import com.danbunnell.steptracker.engine.DetectorConfiguration;
+import com.danbunnell.steptracker.replay.ConfiguredPipelineFactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CompositeSignalFilter}.
+ */
+public class CompositeSignalFilterTest {
+
+    /**
+     * 100 Hz, the rate the service samples at
+     */
+    private static final long SAMPLE_RATE_MS = 10;
+
+    @Test
+    public void filter_appliesStagesInOrder() {
+        // Clamping is not linear, so swapping the stages would change the output
+        CompositeSignalFilter composite = new CompositeSignalFilter(
+                BiquadFilter.highPass(SAMPLE_RATE_MS, 0.5), new ClampFilter(1f));
+        BiquadFilter highPass = BiquadFilter.highPass(SAMPLE_RATE_MS, 0.5);
+        ClampFilter clamp = new ClampFilter(1f);
+
+        float[] samples = walkingSamples(500);
+        for (float sample : samples) {
+            assertEquals(clamp.filter(highPass.filter(sample)), composite.filter(sample), 0f);
+        }
+    }
+
+    @Test
+    public void filter_bulkMatchesSampleBySample() {
+        CompositeSignalFilter single = new CompositeSignalFilter(
+                BiquadFilter.bandPass(SAMPLE_RATE_MS, 0.5, 5), new MovingAverageFilter(7));
+        CompositeSignalFilter bulk = new CompositeSignalFilter(
+                BiquadFilter.bandPass(SAMPLE_RATE_MS, 0.5, 5), new MovingAverageFilter(7));
+
+        float[] samples = walkingSamples(500);
+        float[] out = new float[samples.length];
+        bulk.filter(samples, out, 0, 123);
+        bulk.filter(samples, out, 123, samples.length - 123);
+
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(single.filter(samples[i]), out[i], 0f);
+        }
+    }
+
+    @Test
+    public void filter_matchesConfiguredPipelineChain() {
+        // The factory builds the app's chain, which today is a single moving average stage
+        DetectorConfiguration configuration = DetectorConfiguration.DEFAULT;
+        SignalFilter configured = new ConfiguredPipelineFactory(SAMPLE_RATE_MS, configuration).newFilter();
+        CompositeSignalFilter composite = new CompositeSignalFilter(
+                new MovingAverageFilter(configuration.getMovingAverageWindowSize()));
+
+        for (float sample : walkingSamples(500)) {
+            assertEquals(configured.filter(sample), composite.filter(sample), 0f);
+        }
+    }
+
+    @Test
+    public void reset_resetsEveryStage() {
+        CompositeSignalFilter filter = new CompositeSignalFilter(
+                BiquadFilter.highPass(SAMPLE_RATE_MS, 0.5), new MovingAverageFilter(7));
+        CompositeSignalFilter fresh = new CompositeSignalFilter(
+                BiquadFilter.highPass(SAMPLE_RATE_MS, 0.5), new MovingAverageFilter(7));
+
+        float[] samples = walkingSamples(500);
+        filter.filter(samples, samples.clone(), 0, samples.length);
+        filter.reset();
+
+        for (float sample : samples) {
+            assertEquals(fresh.filter(sample), filter.filter(sample), 0f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_requiresAStage() {
+        new CompositeSignalFilter();
+    }
+
+    /**
+     * Creates samples like a walk at two steps per second on top of gravity.
+     *
+     * @param length the number of samples
+     * @return       the samples
+     */
+    private static float[] walkingSamples(int length) {
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = 9.81f + 3f * (float) Math.sin(2 * Math.PI * 2 * i * SAMPLE_RATE_MS / 1000.0);
+        }
+
+        return samples;
+    }
+
+    /**
+     * A filter that limits each sample to a range around zero.
+     */
+    private static class ClampFilter implements SignalFilter {
+
+        /**
+         * the largest magnitude let through
+         */
+        private final float limit;
+
+        /**
+         * Initializes a new instance of the {@link ClampFilter} class.
+         *
+         * @param limit the largest magnitude let through
+         */
+        ClampFilter(float limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public float filter(float vector) {
+            return Math.max(-this.limit, Math.min(this.limit, vector));
+        }
+
+        @Override
+        public void filter(float[] in, float[] out, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                out[i] = this.filter(in[i]);
+            }
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.danbunnell.steptracker.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link DecimatingSeries}.
+ */
+public class DecimatingSeriesTest {
+    @Test
+    public void decimate_keepsPeaksInEachBucket() {
+        DecimatingSeries series = new DecimatingSeries(8, 0.5f);
+        float[] samples = { 1, 9, 2, 3, -4, 5, 6, 7 };
+        for (float sample : samples) {
+            series.add(sample);
+        }
+
+        float[] times = new float[4];
+        float[] min = new float[4];
+        float[] max = new float[4];
+        assertEquals(4, series.decimate(4, times, min, max));
+
+        assertArrayEquals(new float[] { 0f, 1f, 2f, 3f }, times, 0f);
+        assertArrayEquals(new float[] { 1, 2, -4, 6 }, min, 0f);
+        assertArrayEquals(new float[] { 9, 3, 5, 7 }, max, 0f);
+    }
+
+    @Test
+    public void decimate_alignsBucketsAsTheRingWraps() {
+        DecimatingSeries series = new DecimatingSeries(6, 1f);
+        for (int i = 0; i < 9; i++) {
+            series.add(i);
+        }
+
+        // Samples 3..8 are kept; buckets of two start at even sample numbers, so the half bucket
+        // holding sample 3 is left out and the window is stable as it scrolls
+        float[] times = new float[3];
+        float[] min = new float[3];
+        float[] max = new float[3];
+        assertEquals(3, series.decimate(3, times, min, max));
+
+        assertArrayEquals(new float[] { 4f, 6f, 8f }, times, 0f);
+        assertArrayEquals(new float[] { 4, 6, 8 }, min, 0f);
+        assertArrayEquals(new float[] { 5, 7, 8 }, max, 0f);
+        assertEquals(9, series.getCount());
+    }
+
+    @Test
+    public void decimate_emptySeries_writesNothing() {
+        DecimatingSeries series = new DecimatingSeries(4, 1f);
+        assertEquals(0, series.decimate(10, new float[10], new float[10], new float[10]));
+
+        series.add(1);
+        series.clear();
+        assertEquals(0, series.decimate(10, new float[10], new float[10], new float[10]));
+    }
+}
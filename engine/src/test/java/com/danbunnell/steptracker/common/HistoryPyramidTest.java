@@ -0,0 +1,111 @@
+package com.danbunnell.steptracker.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link HistoryPyramid}.
+ */
+public class HistoryPyramidTest {
+    @Test
+    public void query_picksTheFinestLevelThatFits() {
+        HistoryPyramid pyramid = new HistoryPyramid(1f, 2, 64, 3, 16);
+        for (int i = 0; i < 32; i++) {
+            pyramid.add(i);
+        }
+
+        float[] times = new float[16];
+        float[] min = new float[16];
+        float[] max = new float[16];
+        float[] mean = new float[16];
+
+        // Sixteen level 0 buckets of two samples fit exactly
+        assertEquals(16, pyramid.query(0, 32, 16, times, min, max, mean));
+        assertEquals(2f, times[1], 0f);
+        assertEquals(2f, min[1], 0f);
+        assertEquals(3f, max[1], 0f);
+        assertEquals(2.5f, mean[1], 0f);
+
+        // Four buckets need level 1, covering eight samples each
+        assertEquals(4, pyramid.query(0, 32, 4, times, min, max, mean));
+        assertArrayEquals(new float[] { 0, 8, 16, 24 }, copy(times, 4), 0f);
+        assertArrayEquals(new float[] { 0, 8, 16, 24 }, copy(min, 4), 0f);
+        assertArrayEquals(new float[] { 7, 15, 23, 31 }, copy(max, 4), 0f);
+        assertArrayEquals(new float[] { 3.5f, 11.5f, 19.5f, 27.5f }, copy(mean, 4), 0f);
+    }
+
+    @Test
+    public void query_includesThePartlyFilledNewestBucket() {
+        HistoryPyramid pyramid = new HistoryPyramid(1f, 2, 64, 3, 16);
+        for (int i = 0; i < 11; i++) {
+            pyramid.add(i == 9 ? 100 : i);
+        }
+
+        float[] times = new float[2];
+        float[] min = new float[2];
+        float[] max = new float[2];
+        float[] mean = new float[2];
+
+        // Level 1 has one completed bucket; samples 8..10 are still pending at levels 0 and 1
+        assertEquals(2, pyramid.query(0, 11, 2, times, min, max, mean));
+        assertEquals(8f, times[1], 0f);
+        assertEquals(8f, min[1], 0f);
+        assertEquals(100f, max[1], 0f);
+        assertEquals((8 + 100 + 10) / 3f, mean[1], 1e-5f);
+    }
+
+    @Test
+    public void query_fallsBackToCoarserLevelsForOldHistory() {
+        HistoryPyramid pyramid = new HistoryPyramid(1f, 1, 4, 3, 16);
+        for (int i = 0; i < 64; i++) {
+            pyramid.add(i);
+        }
+
+        float[] times = new float[8];
+        float[] min = new float[8];
+        float[] max = new float[8];
+        float[] mean = new float[8];
+
+        // Level 0 only keeps samples 60..63 and level 1 only 48..63, so the start of the
+        // pyramid is read from level 2
+        assertEquals(1, pyramid.query(0, 8, 8, times, min, max, mean));
+        assertEquals(0f, min[0], 0f);
+        assertEquals(15f, max[0], 0f);
+
+        // Recent history is still read at full resolution
+        assertEquals(4, pyramid.query(60, 64, 8, times, min, max, mean));
+        assertArrayEquals(new float[] { 60, 61, 62, 63 }, copy(min, 4), 0f);
+    }
+
+    @Test
+    public void querySteps_thinsMarkersToTheResolution() {
+        HistoryPyramid pyramid = new HistoryPyramid(1f, 1, 16, 1, 4);
+        for (int i = 0; i < 10; i++) {
+            pyramid.add(0);
+            pyramid.markStep();
+        }
+
+        float[] times = new float[8];
+
+        // Only the last four steps are kept
+        assertEquals(4, pyramid.querySteps(0, 100, 0, times));
+        assertArrayEquals(new float[] { 7, 8, 9, 10 }, copy(times, 4), 0f);
+
+        assertEquals(2, pyramid.querySteps(7.5f, 100, 2, times));
+        assertArrayEquals(new float[] { 8, 10 }, copy(times, 2), 0f);
+    }
+
+    /**
+     * Copies the start of an array.
+     *
+     * @param values the array
+     * @param length the number of values
+     * @return       the copy
+     */
+    private static float[] copy(float[] values, int length) {
+        float[] result = new float[length];
+        System.arraycopy(values, 0, result, 0, length);
+        return result;
+    }
+}
@@ -0,0 +1,52 @@
+package com.danbunnell.steptracker.common;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LinearResampler}.
+ */
+public class LinearResamplerTest {
+    private static final long PERIOD_NS = 5000000;
+
+    @Test
+    public void resample_placesJitteredSamplesOnGrid() {
+        LinearResampler resampler = new LinearResampler(PERIOD_NS, 50 * PERIOD_NS);
+        float[] out = new float[resampler.getMaxOutputLength()];
+        Random random = new Random(6);
+
+        // A ramp of 1 per millisecond, delivered at a jittery 7-13 ms period
+        long timestampNs = 1000000000L;
+        int produced = 0;
+        for (int i = 0; i < 1000; i++) {
+            float value = (timestampNs - 1000000000L) / 1e6f;
+            int count = resampler.resample(timestampNs, value, out, 0);
+
+            for (int j = 0; j < count; j++) {
+                assertEquals(produced * 5f, out[j], 1e-2f);
+                produced++;
+            }
+
+            timestampNs += 7000000 + random.nextInt(6000000);
+        }
+
+        assertEquals((timestampNs - 1000000000L) / PERIOD_NS, produced, 3);
+    }
+
+    @Test
+    public void resample_restartsGridAfterLongGap() {
+        LinearResampler resampler = new LinearResampler(PERIOD_NS, 10 * PERIOD_NS);
+        float[] out = new float[resampler.getMaxOutputLength()];
+
+        assertEquals(1, resampler.resample(0, 1f, out, 0));
+        assertEquals(2, resampler.resample(2 * PERIOD_NS, 3f, out, 0));
+        assertEquals(0, resampler.resample(2 * PERIOD_NS, 5f, out, 0));
+
+        assertEquals(1, resampler.resample(100 * PERIOD_NS, 7f, out, 0));
+        assertEquals(7f, out[0], 0f);
+        assertEquals(101 * PERIOD_NS, resampler.getNextGridTimestampNs());
+    }
+}
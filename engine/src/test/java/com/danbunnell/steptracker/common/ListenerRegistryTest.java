@@ -0,0 +1,89 @@
+package com.danbunnell.steptracker.common;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ListenerRegistry}.
+ */
+public class ListenerRegistryTest {
+    @Test
+    public void register_returnsTheListenerReplaced() {
+        ListenerRegistry<Object> registry = new ListenerRegistry<>(Object.class);
+        Object first = new Object();
+        Object second = new Object();
+
+        assertNull(registry.register("a", first));
+        assertSame(first, registry.register("a", second));
+        assertArrayEquals(new Object[] { second }, registry.getListeners());
+    }
+
+    @Test
+    public void unregister_returnsTheListenerRemoved() {
+        ListenerRegistry<Object> registry = new ListenerRegistry<>(Object.class);
+        Object listener = new Object();
+        registry.register("a", listener);
+
+        assertSame(listener, registry.unregister("a"));
+        assertNull(registry.unregister("a"));
+        assertTrue(registry.isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void register_handsEachReplacedListenerToExactlyOneCaller() throws Exception {
+        final ListenerRegistry<Object> registry = new ListenerRegistry<>(Object.class);
+        final Set<Object> registered = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        final Set<Object> returned = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        Future<?>[] futures = new Future<?>[4];
+        for (int t = 0; t < futures.length; t++) {
+            futures[t] = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    for (int i = 0; i < 10000; i++) {
+                        Object listener = new Object();
+                        synchronized (registered) {
+                            registered.add(listener);
+                        }
+
+                        Object previous = registry.register("a", listener);
+                        if (previous != null) {
+                            synchronized (returned) {
+                                assertTrue(returned.add(previous));
+                            }
+                        }
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        // Every listener but the one still registered was handed back once, to be closed
+        returned.add(registry.unregister("a"));
+        assertEquals(registered, returned);
+    }
+}
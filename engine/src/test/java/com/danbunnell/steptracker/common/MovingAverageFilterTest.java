@@ -0,0 +1,73 @@
+package com.danbunnell.steptracker.common;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link MovingAverageFilter}.
+ */
+public class MovingAverageFilterTest {
+    @Test
+    public void filter_matchesWindowAverage() {
+        int windowSize = 30;
+        MovingAverageFilter filter = new MovingAverageFilter(windowSize);
+        float[] window = new float[windowSize];
+        Random random = new Random(1);
+
+        for (int i = 0; i < 1000; i++) {
+            float sample = random.nextFloat() * 20f - 10f;
+            window[i % windowSize] = sample;
+
+            double sum = 0;
+            for (float f : window) {
+                sum += f;
+            }
+
+            assertEquals(sum / windowSize, filter.filter(sample), 1e-5);
+        }
+    }
+
+    @Test
+    public void filter_doesNotDriftOverLongRuns() {
+        int windowSize = 30;
+        MovingAverageFilter filter = new MovingAverageFilter(windowSize);
+        Random random = new Random(2);
+
+        // Roughly five hours of 200 Hz samples around gravity
+        for (int i = 0; i < 200 * 60 * 60 * 5; i++) {
+            filter.filter(9.8f + random.nextFloat());
+        }
+
+        float last = 0;
+        for (int i = 0; i < windowSize; i++) {
+            last = filter.filter(1.25f);
+        }
+
+        assertEquals(1.25f, last, 1e-5);
+    }
+
+    @Test
+    public void bulkFilter_matchesPerSampleFilter() {
+        MovingAverageFilter single = new MovingAverageFilter(7);
+        MovingAverageFilter bulk = new MovingAverageFilter(7);
+        Random random = new Random(3);
+
+        float[] samples = new float[100];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = random.nextFloat();
+        }
+
+        float[] expected = new float[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            expected[i] = single.filter(samples[i]);
+        }
+
+        bulk.filter(samples, samples, 0, 40);
+        bulk.filter(samples, samples, 40, 60);
+
+        assertArrayEquals(expected, samples, 0f);
+    }
+}
@@ -0,0 +1,63 @@
+package com.danbunnell.steptracker.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SpscFloatRing}.
+ */
+public class SpscFloatRingTest {
+    @Test
+    public void offer_rejectsWhenFull() {
+        SpscFloatRing ring = new SpscFloatRing(3);
+        assertEquals(4, ring.capacity());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+
+        float[] out = new float[8];
+        assertEquals(2, ring.drain(out, 0, 2));
+        assertTrue(ring.offer(4));
+        assertTrue(ring.offer(5));
+
+        assertEquals(4, ring.drain(out, 2, 8));
+        assertArrayEquals(new float[] { 0, 1, 2, 3, 4, 5, 0, 0 }, out, 0f);
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void drain_preservesOrderAcrossThreads() throws InterruptedException {
+        final int count = 200000;
+        final SpscFloatRing ring = new SpscFloatRing(1024);
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    while (!ring.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        producer.start();
+
+        float[] out = new float[64];
+        int expected = 0;
+        while (expected < count) {
+            int length = ring.drain(out, 0, out.length);
+            if (length == 0) {
+                Thread.yield();
+            }
+            for (int i = 0; i < length; i++) {
+                assertEquals((float) expected++, out[i], 0f);
+            }
+        }
+
+        producer.join();
+        assertEquals(0, ring.size());
+    }
+}
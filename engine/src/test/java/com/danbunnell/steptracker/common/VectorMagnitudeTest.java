@@ -0,0 +1,100 @@
+package com.danbunnell.steptracker.common;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link VectorMagnitude}.
+ */
+public class VectorMagnitudeTest {
+    @Test
+    public void norm_isTheEuclideanLength() {
+        assertEquals(13f, VectorMagnitude.norm(3f, 4f, 12f), 0f);
+        assertEquals(13f, VectorMagnitude.norm(-3f, 4f, -12f), 0f);
+        assertEquals(0f, VectorMagnitude.norm(0f, 0f, 0f), 0f);
+    }
+
+    @Test
+    public void norm_doesNotDependOnOrientation() {
+        float g = 9.80665f;
+        float tilt = g / (float) Math.sqrt(3);
+
+        assertEquals(g, VectorMagnitude.norm(g, 0f, 0f), 1e-5f);
+        assertEquals(g, VectorMagnitude.norm(0f, -g, 0f), 1e-5f);
+        assertEquals(g, VectorMagnitude.norm(0f, 0f, g), 1e-5f);
+        assertEquals(g, VectorMagnitude.norm(tilt, tilt, tilt), 1e-5f);
+    }
+
+    @Test
+    public void norm_batchMatchesSingleVectors() {
+        Random random = new Random(3);
+        int length = 37;
+        float[] x = new float[length];
+        float[] y = new float[length];
+        float[] z = new float[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = random.nextFloat() * 40f - 20f;
+            y[i] = random.nextFloat() * 40f - 20f;
+            z[i] = random.nextFloat() * 40f - 20f;
+        }
+
+        float[] out = new float[length];
+        VectorMagnitude.norm(x, y, z, out, 5, 30);
+
+        for (int i = 0; i < length; i++) {
+            float expected = i >= 5 && i < 35 ? VectorMagnitude.norm(x[i], y[i], z[i]) : 0f;
+            assertEquals(expected, out[i], 0f);
+        }
+    }
+
+    @Test
+    public void normSquared_isTheSquareOfTheNorm() {
+        assertEquals(169f, VectorMagnitude.normSquared(3f, 4f, 12f), 0f);
+        assertEquals(169f, VectorMagnitude.normSquared(-3f, 4f, -12f), 0f);
+    }
+
+    @Test
+    public void exceeds_matchesComparingTheNorm() {
+        assertTrue(VectorMagnitude.exceeds(3f, 4f, 12f, 12.9f));
+        assertFalse(VectorMagnitude.exceeds(3f, 4f, 12f, 13f));
+        assertFalse(VectorMagnitude.exceeds(3f, 4f, 12f, 13.1f));
+
+        Random random = new Random(4);
+        for (int i = 0; i < 10000; i++) {
+            float x = random.nextFloat() * 40f - 20f;
+            float y = random.nextFloat() * 40f - 20f;
+            float z = random.nextFloat() * 40f - 20f;
+            float threshold = random.nextFloat() * 30f;
+
+            float norm = VectorMagnitude.norm(x, y, z);
+            if (Math.abs(norm - threshold) > 1e-4f) {
+                assertEquals(norm > threshold, VectorMagnitude.exceeds(x, y, z, threshold));
+            }
+        }
+    }
+
+    @Test
+    public void normSquared_batchMatchesSingleVectors() {
+        Random random = new Random(5);
+        int length = 37;
+        float[] x = new float[length];
+        float[] y = new float[length];
+        float[] z = new float[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = random.nextFloat() * 40f - 20f;
+            y[i] = random.nextFloat() * 40f - 20f;
+            z[i] = random.nextFloat() * 40f - 20f;
+        }
+
+        float[] out = new float[length];
+        VectorMagnitude.normSquared(x, y, z, out, 5, 30);
+
+        for (int i = 0; i < length; i++) {
+            float expected = i >= 5 && i < 35 ? VectorMagnitude.normSquared(x[i], y[i], z[i]) : 0f;
+            assertEquals(expected, out[i], 0f);
+        }
+    }
+}
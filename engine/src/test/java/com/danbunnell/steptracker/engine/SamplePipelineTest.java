@@ -0,0 +1,76 @@
+package com.danbunnell.steptracker.engine;
+
+import com.danbunnell.steptracker.common.MovingAverageFilter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SamplePipeline}.
+ */
+public class SamplePipelineTest {
+    @Test
+    public void flush_timesEachGridSampleIncludingAcrossAGap() {
+        SamplePipeline pipeline = new SamplePipeline(10, new MovingAverageFilter(1));
+        final List<Long> times = new ArrayList<>();
+        SampleSink sink = new SampleSink() {
+            @Override
+            public void onSamples(long[] timestampsNs, float[] magnitudes, float[] filteredMagnitudes, int length) {
+                for (int i = 0; i < length; i++) {
+                    times.add(timestampsNs[i]);
+                }
+            }
+        };
+
+        // Uneven delivery every 15 ms, then a gap long enough to restart the grid
+        long[] eventTimesMs = { 1000, 1015, 1030, 1045, 2000, 2010 };
+        for (long eventTimeMs : eventTimesMs) {
+            pipeline.add(eventTimeMs * 1000000, 0, 0, SamplePipeline.STANDARD_GRAVITY, sink);
+        }
+        pipeline.flush(sink);
+
+        long[] expectedMs = { 1000, 1010, 1020, 1030, 1040, 2000, 2010 };
+        assertEquals(expectedMs.length, times.size());
+        for (int i = 0; i < expectedMs.length; i++) {
+            assertEquals(expectedMs[i] * 1000000, (long) times.get(i));
+        }
+    }
+
+    @Test
+    public void add_removesGravityWhateverTheOrientation() {
+        SamplePipeline pipeline = new SamplePipeline(10, new MovingAverageFilter(1));
+        final List<Float> magnitudes = new ArrayList<>();
+        SampleSink sink = new SampleSink() {
+            @Override
+            public void onSamples(long[] timestampsNs, float[] sampleMagnitudes, float[] filteredMagnitudes, int length) {
+                for (int i = 0; i < length; i++) {
+                    magnitudes.add(sampleMagnitudes[i]);
+                }
+            }
+        };
+
+        // Half a second each lying flat, upright, on its side and tilted, with 1 m/s^2 of extra
+        // acceleration along gravity throughout
+        float g = SamplePipeline.STANDARD_GRAVITY + 1f;
+        float tilt = g / (float) Math.sqrt(3);
+        float[][] orientations = { { 0, 0, g }, { 0, g, 0 }, { -g, 0, 0 }, { tilt, -tilt, tilt } };
+
+        long timestampNs = 0;
+        for (float[] axes : orientations) {
+            for (int i = 0; i < 50; i++) {
+                pipeline.add(timestampNs, axes[0], axes[1], axes[2], sink);
+                timestampNs += 10000000;
+            }
+        }
+        pipeline.flush(sink);
+
+        assertEquals(200, magnitudes.size(), 1);
+        for (float magnitude : magnitudes) {
+            assertEquals(1f, magnitude, 1e-5f);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.danbunnell.steptracker.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link StepCounterReconciler}.
+ */
+public class StepCounterReconcilerTest {
+    private static final long BOOT_COUNT = 12;
+
+    private static final long UNKNOWN = StepCounterReconciler.UNKNOWN;
+
+    @Test
+    public void onReading_firstEverReadingSetsBaseline() {
+        StepCounterReconciler reconciler = new StepCounterReconciler();
+
+        assertEquals(0, reconciler.onReading(5000, 60000, BOOT_COUNT));
+        assertEquals(3, reconciler.onReading(5003, 61000, BOOT_COUNT));
+    }
+
+    @Test
+    public void onReading_backfillsStepsTakenWhileNotRunning() {
+        StepCounterReconciler reconciler = new StepCounterReconciler(5000, 60000, BOOT_COUNT);
+
+        // Same boot, an hour later
+        assertEquals(1200, reconciler.onReading(6200, 3660000, BOOT_COUNT));
+    }
+
+    @Test
+    public void onReading_countsWholeReadingAfterReboot() {
+        // Counter went backwards
+        assertEquals(300, new StepCounterReconciler(5000, 60000, BOOT_COUNT)
+                .onReading(300, 600000, BOOT_COUNT + 1));
+
+        // Counter is higher but uptime went backwards, with no boot count
+        assertEquals(8000, new StepCounterReconciler(5000, 9000000, UNKNOWN)
+                .onReading(8000, 600000, UNKNOWN));
+
+        // Counter and uptime are both higher but the device booted again
+        assertEquals(8000, new StepCounterReconciler(5000, 60000, BOOT_COUNT)
+                .onReading(8000, 9000000, BOOT_COUNT + 1));
+    }
+
+    @Test
+    public void onReading_backfillsDeltaAcrossAClockChangeWithoutAReboot() {
+        // The wall clock was set back two hours while the process was dead.  Only the uptime and
+        // boot count are consulted, so this is the same boot and only the delta is credited.
+        assertEquals(40, new StepCounterReconciler(5000, 60000, BOOT_COUNT)
+                .onReading(5040, 600000, BOOT_COUNT));
+
+        // Without a boot count, a higher uptime is taken for the same boot too
+        assertEquals(40, new StepCounterReconciler(5000, 60000, UNKNOWN)
+                .onReading(5040, 600000, UNKNOWN));
+    }
+
+    @Test
+    public void onReading_onlyChecksForARebootOnTheFirstReading() {
+        StepCounterReconciler reconciler = new StepCounterReconciler(5000, 60000, BOOT_COUNT);
+        assertEquals(10, reconciler.onReading(5010, 61000, BOOT_COUNT));
+        assertEquals(5, reconciler.onReading(5015, 62000, BOOT_COUNT));
+
+        // A counter reset is still recognized
+        assertEquals(7, reconciler.onReading(7, 63000, BOOT_COUNT));
+    }
+
+    @Test
+    public void getters_returnStateToSave() {
+        StepCounterReconciler reconciler = new StepCounterReconciler();
+        reconciler.onReading(42, 1000, BOOT_COUNT);
+
+        StepCounterReconciler restored = new StepCounterReconciler(
+                reconciler.getLastCounterValue(),
+                reconciler.getLastElapsedRealtimeMs(),
+                reconciler.getLastBootCount());
+
+        assertEquals(BOOT_COUNT, restored.getLastBootCount());
+        assertEquals(8, restored.onReading(50, 2000, BOOT_COUNT));
+    }
+}
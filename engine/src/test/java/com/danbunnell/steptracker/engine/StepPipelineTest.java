@@ -0,0 +1,94 @@
+package com.danbunnell.steptracker.engine;
+
+import com.danbunnell.steptracker.common.MovingAverageFilter;
+import com.danbunnell.steptracker.replay.ConfiguredPipelineFactory;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link StepPipeline}.
+ */
+public class StepPipelineTest {
+    private static final long SAMPLE_RATE_MS = 5;
+
+    @Test
+    public void add_countsStepsFromJitteredRawSamples() {
+        StepPipeline pipeline = new StepPipeline(
+                SAMPLE_RATE_MS,
+                new MovingAverageFilter(30),
+                new StreamingStepDetector(SAMPLE_RATE_MS, 2000));
+        Random random = new Random(7);
+
+        // Sixty seconds of a 2 Hz gait on a tilted phone, delivered at a jittery ~200 Hz
+        long timestampNs = 0;
+        while (timestampNs < 60000000000L) {
+            double t = timestampNs / 1e9;
+            float swing = (float) (4 * Math.sin(2 * Math.PI * 2 * t));
+            float vertical = SamplePipeline.STANDARD_GRAVITY + swing;
+
+            pipeline.add(timestampNs, 0.3f * vertical, 0.1f * swing, 0.95f * vertical);
+            timestampNs += 4000000 + random.nextInt(2000000);
+        }
+        pipeline.flush();
+
+        assertEquals(12000, pipeline.getSampleCount(), 2);
+        assertEquals(120, pipeline.getStepCount(), 2);
+    }
+
+    @Test
+    public void add_defaultConfigurationCountsWalkingInAnyOrientation() {
+        float tilt = (float) (1 / Math.sqrt(3));
+        float[][] gravityDirections = {
+                { 0, 0, 1 }, { 0, 1, 0 }, { 1, 0, 0 }, { tilt, tilt, tilt }, { 0.3f, 0.1f, 0.95f } };
+
+        for (float[] direction : gravityDirections) {
+            assertEquals(120, countSteps(direction, 4f), 2);
+        }
+    }
+
+    @Test
+    public void add_defaultConfigurationIgnoresSmallSwaysInAnyOrientation() {
+        float tilt = (float) (1 / Math.sqrt(3));
+        float[][] gravityDirections = { { 0, 0, 1 }, { tilt, tilt, tilt } };
+
+        for (float[] direction : gravityDirections) {
+            assertEquals(0, countSteps(direction, 1f));
+        }
+    }
+
+    /**
+     * Runs sixty seconds of a 2 Hz vertical swing through a pipeline built like the app's.
+     *
+     * @param gravityDirection the direction of gravity in the phone's frame
+     * @param swing            the amplitude of the swing in m/s^2
+     * @return                 the number of steps counted
+     */
+    private static long countSteps(float[] gravityDirection, float swing) {
+        StepPipeline pipeline = new ConfiguredPipelineFactory(SAMPLE_RATE_MS, DetectorConfiguration.DEFAULT)
+                .newPipeline();
+        float length = (float) Math.sqrt(gravityDirection[0] * gravityDirection[0]
+                + gravityDirection[1] * gravityDirection[1]
+                + gravityDirection[2] * gravityDirection[2]);
+        Random random = new Random(11);
+
+        long timestampNs = 0;
+        while (timestampNs < 60000000000L) {
+            double t = timestampNs / 1e9;
+            float vertical = SamplePipeline.STANDARD_GRAVITY + (float) (swing * Math.sin(2 * Math.PI * 2 * t));
+
+            pipeline.add(
+                    timestampNs,
+                    vertical * gravityDirection[0] / length,
+                    vertical * gravityDirection[1] / length,
+                    vertical * gravityDirection[2] / length);
+            timestampNs += 4000000 + random.nextInt(2000000);
+        }
+        pipeline.flush();
+
+        return pipeline.getStepCount();
+    }
+}
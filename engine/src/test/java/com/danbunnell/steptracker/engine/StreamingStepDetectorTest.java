@@ -0,0 +1,114 @@
+package com.danbunnell.steptracker.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link StreamingStepDetector}.
+ */
+public class StreamingStepDetectorTest {
+    private static final long SAMPLE_RATE_MS = 5;
+
+    private static final long DETECTION_WINDOW_MS = 2000;
+
+    @Test
+    public void add_countsEachStepOfANoisyWalk() {
+        StreamingStepDetector detector = new StreamingStepDetector(SAMPLE_RATE_MS, DETECTION_WINDOW_MS);
+        Random random = new Random(4);
+
+        // Ten seconds of a 2 Hz gait with a 4 m/s^2 swing and sensor noise
+        int steps = 0;
+        for (int i = 0; i < 2000; i++) {
+            float noise = (random.nextFloat() - 0.5f) * 0.4f;
+            steps += detector.add((float) (4 * Math.sin(2 * Math.PI * 2 * i / 200.0)) + noise);
+        }
+
+        assertEquals(20, steps, 1);
+    }
+
+    @Test
+    public void add_reportsStepShortlyAfterPeak() {
+        StreamingStepDetector detector = new StreamingStepDetector(SAMPLE_RATE_MS, DETECTION_WINDOW_MS);
+
+        int lastStepSample = -1;
+        for (int i = 0; i < 400; i++) {
+            if (detector.add((float) (4 * Math.sin(2 * Math.PI * 2 * i / 200.0))) > 0) {
+                lastStepSample = i;
+            }
+        }
+
+        // The last peak in the first two seconds is at sample 325
+        assertTrue(lastStepSample >= 325);
+        assertTrue((lastStepSample - 325) * SAMPLE_RATE_MS <= 50);
+    }
+
+    @Test
+    public void add_ignoresStillness() {
+        StreamingStepDetector detector = new StreamingStepDetector(SAMPLE_RATE_MS, DETECTION_WINDOW_MS);
+        Random random = new Random(5);
+
+        int steps = 0;
+        for (int i = 0; i < 2000; i++) {
+            steps += detector.add((random.nextFloat() - 0.5f) * 0.4f);
+        }
+
+        assertEquals(0, steps);
+    }
+
+    @Test
+    public void add_countsTheFirstStepOfAWalk() {
+        StreamingStepDetector detector = new StreamingStepDetector(SAMPLE_RATE_MS, DETECTION_WINDOW_MS);
+
+        // One stride up from rest and back, then stillness; there is no valley before the peak
+        int steps = 0;
+        for (int i = 0; i < 400; i++) {
+            float vector = i < 100 ? (float) (4 * Math.sin(2 * Math.PI * i / 200.0)) : 0f;
+            steps += detector.add(Math.max(0f, vector));
+        }
+
+        assertEquals(1, steps);
+    }
+
+    @Test
+    public void add_honorsConfiguredMinStepInterval() {
+        DetectorConfiguration defaults = DetectorConfiguration.DEFAULT;
+        DetectorConfiguration slow = new DetectorConfiguration(
+                defaults.getPeakToMeanCutoffRatio(),
+                defaults.getMinPeakToMeanBase(),
+                defaults.getMovingAverageWindowSize(),
+                DETECTION_WINDOW_MS,
+                defaults.getHysteresis(),
+                600);
+        StreamingStepDetector detector = new StreamingStepDetector(SAMPLE_RATE_MS, slow);
+
+        // Ten seconds of a 2 Hz gait; peaks 500 ms apart are closer than the interval allows
+        int steps = 0;
+        for (int i = 0; i < 2000; i++) {
+            steps += detector.add((float) (4 * Math.sin(2 * Math.PI * 2 * i / 200.0)));
+        }
+
+        assertEquals(10, steps, 1);
+    }
+
+    @Test
+    public void add_matchesWindowStepCounterOnAWalk() {
+        int windowSamples = (int) (DETECTION_WINDOW_MS / SAMPLE_RATE_MS);
+        StreamingStepDetector detector = new StreamingStepDetector(SAMPLE_RATE_MS, DETECTION_WINDOW_MS);
+        WindowStepCounter counter = new WindowStepCounter(windowSamples);
+
+        // Ten seconds of a 2 Hz gait starting from rest, five whole detection windows
+        int streamingSteps = 0;
+        int windowSteps = 0;
+        for (int i = 0; i < 5 * windowSamples; i++) {
+            float vector = (float) (4 * Math.sin(2 * Math.PI * 2 * i / 200.0));
+            streamingSteps += detector.add(vector);
+            windowSteps += counter.add(vector);
+        }
+
+        assertEquals(20, windowSteps);
+        assertEquals(windowSteps, streamingSteps);
+    }
+}
@@ -0,0 +1,80 @@
+package com.danbunnell.steptracker.engine;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link WindowStepCounter}.
+ */
+public class WindowStepCounterTest {
+    private static final int BUFFER_SIZE = 400;
+
+    @Test
+    public void getStepCount_countsWalkingPeaks() {
+        WindowStepCounter counter = new WindowStepCounter(BUFFER_SIZE);
+
+        // Two seconds at 200 Hz of a 2 Hz gait with a 4 m/s^2 swing
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            counter.add(WindowStepCounterTest.walkingSample(i));
+        }
+
+        assertEquals(4, counter.getStepCount());
+    }
+
+    @Test
+    public void getStepCount_doesNotAllocateAfterWarmUp() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        WindowStepCounter counter = new WindowStepCounter(BUFFER_SIZE);
+
+        int sample = 0;
+        for (int window = 0; window < 1000; window++) {
+            for (int i = 0; i < BUFFER_SIZE; i++) {
+                counter.add(WindowStepCounterTest.walkingSample(sample++));
+            }
+            counter.getStepCount();
+        }
+
+        int windows = 1000;
+
+        // The same loop without the counter, so the cost of the loop and of measuring is known
+        float sum = 0;
+        long baselineBefore = threadBean.getThreadAllocatedBytes(threadId);
+        for (int window = 0; window < windows; window++) {
+            for (int i = 0; i < BUFFER_SIZE; i++) {
+                sum += WindowStepCounterTest.walkingSample(sample + window * BUFFER_SIZE + i);
+            }
+        }
+        long baseline = threadBean.getThreadAllocatedBytes(threadId) - baselineBefore;
+
+        int steps = 0;
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int window = 0; window < windows; window++) {
+            for (int i = 0; i < BUFFER_SIZE; i++) {
+                counter.add(WindowStepCounterTest.walkingSample(sample++));
+            }
+            steps += counter.getStepCount();
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(4 * windows, steps);
+        assertFalse(Float.isNaN(sum));
+
+        // Even one small object per window would come to thousands of bytes
+        assertTrue("allocated " + (allocated - baseline) + " bytes", allocated - baseline < 256);
+    }
+
+    /**
+     * Generates a synthetic walking signal.
+     *
+     * @param index the sample index
+     * @return      the filtered magnitude at that sample
+     */
+    private static float walkingSample(int index) {
+        return (float) (4 * Math.sin(2 * Math.PI * 2 * index / 200.0 + 0.1));
+    }
+}
@@ -0,0 +1,118 @@
+package com.danbunnell.steptracker.gait;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link GaitTracker}.
+ */
+public class GaitTrackerTest {
+
+    /**
+     * the longest pause between steps of a bout, 2 s
+     */
+    private static final long MAX_STEP_INTERVAL_NS = 2000000000L;
+
+    /**
+     * half a second, a cadence of 120 steps per minute
+     */
+    private static final long STEP_NS = 500000000L;
+
+    @Test
+    public void snapshot_reportsCadenceAndVariabilityOverTheWindow() {
+        GaitTracker tracker = new GaitTracker(4, MAX_STEP_INTERVAL_NS, 3);
+
+        // Slow steps first, which leave the window as the even ones arrive
+        long timeNs = 0;
+        tracker.addStep(timeNs);
+        for (int i = 0; i < 3; i++) {
+            timeNs += 3 * STEP_NS;
+            tracker.addStep(timeNs);
+        }
+
+        for (int i = 0; i < 4; i++) {
+            timeNs += STEP_NS;
+            tracker.addStep(timeNs);
+        }
+
+        GaitSnapshot snapshot = tracker.snapshot();
+        assertEquals(4, snapshot.getIntervalCount());
+        assertEquals(120, snapshot.getCadenceStepsPerMinute(), 1e-9);
+        assertEquals(500, snapshot.getMeanStepIntervalMs(), 1e-9);
+        assertEquals(0, snapshot.getStepIntervalStdDevMs(), 1e-9);
+
+        // Alternating long and short steps
+        timeNs += STEP_NS + 100000000L;
+        tracker.addStep(timeNs);
+        timeNs += STEP_NS - 100000000L;
+        tracker.addStep(timeNs);
+
+        snapshot = tracker.snapshot();
+        assertEquals(120, snapshot.getCadenceStepsPerMinute(), 1e-9);
+        assertEquals(Math.sqrt(20000 / 3.0), snapshot.getStepIntervalStdDevMs(), 1e-6);
+        assertEquals(snapshot.getStepIntervalStdDevMs() / 500, snapshot.getStepIntervalVariation(), 1e-12);
+    }
+
+    @Test
+    public void advanceTo_endsTheBoutAfterALongPause() {
+        GaitTracker tracker = new GaitTracker(8, MAX_STEP_INTERVAL_NS, 3);
+
+        long timeNs = 0;
+        for (int i = 0; i < 5; i++) {
+            tracker.addStep(timeNs);
+            timeNs += STEP_NS;
+        }
+
+        GaitSnapshot snapshot = tracker.snapshot();
+        assertTrue(snapshot.isWalking());
+        assertEquals(5, snapshot.getBoutSteps());
+        assertEquals(2, snapshot.getBoutDurationS(), 1e-9);
+        assertEquals(1, snapshot.getBoutCount());
+
+        tracker.advanceTo(timeNs + MAX_STEP_INTERVAL_NS);
+        snapshot = tracker.snapshot();
+        assertFalse(snapshot.isWalking());
+        assertEquals(0, snapshot.getCadenceStepsPerMinute(), 0);
+        assertEquals(1, snapshot.getBoutCount());
+        assertEquals(2, snapshot.getWalkingTimeS(), 1e-9);
+    }
+
+    @Test
+    public void addStep_ignoresBoutsThatAreTooShort() {
+        GaitTracker tracker = new GaitTracker(8, MAX_STEP_INTERVAL_NS, 3);
+
+        // Two steps, a pause, then a four step bout
+        tracker.addStep(0);
+        tracker.addStep(STEP_NS);
+
+        long timeNs = 10 * STEP_NS;
+        for (int i = 0; i < 4; i++) {
+            tracker.addStep(timeNs);
+            timeNs += STEP_NS;
+        }
+        tracker.endBout();
+
+        GaitSnapshot snapshot = tracker.snapshot();
+        assertEquals(1, snapshot.getBoutCount());
+        assertEquals(1.5, snapshot.getWalkingTimeS(), 1e-9);
+        assertEquals(1.5, snapshot.getLongestBoutS(), 1e-9);
+    }
+
+    @Test
+    public void addStep_staysExactOverHoursOfSteps() {
+        GaitTracker tracker = new GaitTracker(16, MAX_STEP_INTERVAL_NS, 10);
+
+        // Ten hours at 120 steps per minute with a little jitter
+        long timeNs = 0;
+        for (int i = 0; i < 72000; i++) {
+            tracker.addStep(timeNs);
+            timeNs += STEP_NS + (i % 2 == 0 ? 1000000L : -1000000L);
+        }
+
+        GaitSnapshot snapshot = tracker.snapshot();
+        assertEquals(120, snapshot.getCadenceStepsPerMinute(), 1e-9);
+        assertEquals(Math.sqrt(16 / 15.0), snapshot.getStepIntervalStdDevMs(), 1e-9);
+        assertEquals(1, snapshot.getBoutCount());
+    }
+}
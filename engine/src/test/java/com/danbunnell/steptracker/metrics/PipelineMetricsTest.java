@@ -0,0 +1,70 @@
+package com.danbunnell.steptracker.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PipelineMetrics} and {@link LatencyHistogram}.
+ */
+public class PipelineMetricsTest {
+    @Test
+    public void disabled_recordsNothing() {
+        PipelineMetrics metrics = new PipelineMetrics();
+
+        long start = metrics.startTimer();
+        assertEquals(PipelineMetrics.DISABLED, start);
+        metrics.stopTimer(PipelineMetrics.Stage.STEP_DETECTION, start);
+        metrics.record(PipelineMetrics.Stage.SENSOR_DELIVERY, 1000);
+        metrics.increment(PipelineMetrics.Counter.SAMPLES, 5);
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.getHistogram(PipelineMetrics.Stage.STEP_DETECTION).getCount());
+        assertEquals(0, snapshot.getHistogram(PipelineMetrics.Stage.SENSOR_DELIVERY).getCount());
+        assertEquals(0, snapshot.getCount(PipelineMetrics.Counter.SAMPLES));
+    }
+
+    @Test
+    public void enabled_recordsStagesAndCounters() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        metrics.setEnabled(true);
+
+        long start = metrics.startTimer();
+        metrics.stopTimer(PipelineMetrics.Stage.STEP_DETECTION, start);
+        metrics.record(PipelineMetrics.Stage.SENSOR_DELIVERY, 3000);
+        metrics.increment(PipelineMetrics.Counter.SAMPLES, 5);
+        metrics.increment(PipelineMetrics.Counter.SAMPLES, 2);
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getHistogram(PipelineMetrics.Stage.STEP_DETECTION).getCount());
+        assertEquals(3000, snapshot.getHistogram(PipelineMetrics.Stage.SENSOR_DELIVERY).getMaxNs());
+        assertEquals(7, snapshot.getCount(PipelineMetrics.Counter.SAMPLES));
+        assertTrue(snapshot.toString().contains("SAMPLES: 7"));
+
+        metrics.reset();
+        assertEquals(0, metrics.snapshot().getCount(PipelineMetrics.Counter.SAMPLES));
+    }
+
+    @Test
+    public void histogram_bucketsByPowerOfTwo() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(0, LatencyHistogram.bucketOf(1));
+        assertEquals(1, LatencyHistogram.bucketOf(2));
+        assertEquals(1, LatencyHistogram.bucketOf(3));
+        assertEquals(10, LatencyHistogram.bucketOf(1024));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(5000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(149, snapshot.getMeanNs());
+        assertEquals(127, snapshot.getPercentileNs(50));
+        assertEquals(127, snapshot.getPercentileNs(99));
+        assertEquals(5000, snapshot.getPercentileNs(100));
+    }
+}
@@ -0,0 +1,68 @@
+package com.danbunnell.steptracker.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SensorTimingMonitor}.
+ */
+public class SensorTimingMonitorTest {
+
+    /**
+     * the requested period, 5 ms
+     */
+    private static final long PERIOD_NS = 5000000;
+
+    @Test
+    public void snapshot_reportsRateJitterAndLoss() {
+        SensorTimingMonitor monitor = new SensorTimingMonitor();
+        monitor.setExpectedPeriodNs(PERIOD_NS);
+
+        long timestampNs = 0;
+        for (int i = 0; i < 100; i++) {
+            monitor.add(timestampNs);
+            timestampNs += PERIOD_NS;
+        }
+
+        // Three samples lost, then one repeated and one from the past
+        timestampNs += 3 * PERIOD_NS;
+        monitor.add(timestampNs);
+        monitor.add(timestampNs);
+        monitor.add(timestampNs - PERIOD_NS);
+
+        SensorTimingSnapshot snapshot = monitor.snapshot();
+        assertEquals(100, snapshot.getIntervalCount());
+        assertEquals(1, snapshot.getGapCount());
+        assertEquals(3, snapshot.getLostSampleCount());
+        assertEquals(1, snapshot.getDuplicateCount());
+        assertEquals(1, snapshot.getOutOfOrderCount());
+        assertEquals(PERIOD_NS, snapshot.getMinIntervalNs());
+        assertEquals(4 * PERIOD_NS, snapshot.getMaxIntervalNs());
+        assertEquals(1.1, snapshot.getMedianPeriods(), 1e-9);
+        assertEquals(200 / 1.03, snapshot.getEffectiveRateHz(), 1e-6);
+        assertEquals(3 / 103.0, snapshot.getLossRatio(), 1e-9);
+        assertTrue(snapshot.getJitterNs() > 0);
+    }
+
+    @Test
+    public void setExpectedPeriodNs_startsAgainOnChange() {
+        SensorTimingMonitor monitor = new SensorTimingMonitor();
+        monitor.setExpectedPeriodNs(PERIOD_NS);
+        monitor.add(0);
+        monitor.add(PERIOD_NS);
+
+        monitor.setExpectedPeriodNs(PERIOD_NS);
+        assertEquals(1, monitor.snapshot().getIntervalCount());
+
+        // The first timestamp at the new rate does not form an interval with the last at the old
+        monitor.setExpectedPeriodNs(20 * PERIOD_NS);
+        monitor.add(30 * PERIOD_NS);
+        monitor.add(50 * PERIOD_NS);
+
+        SensorTimingSnapshot snapshot = monitor.snapshot();
+        assertEquals(1, snapshot.getIntervalCount());
+        assertEquals(0, snapshot.getGapCount());
+        assertEquals(10, snapshot.getRequestedRateHz(), 1e-9);
+    }
+}
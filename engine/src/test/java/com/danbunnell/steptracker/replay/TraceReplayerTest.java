@@ -0,0 +1,89 @@
+package com.danbunnell.steptracker.replay;
+
+import com.danbunnell.steptracker.common.MovingAverageFilter;
+import com.danbunnell.steptracker.engine.SamplePipeline;
+import com.danbunnell.steptracker.engine.StepPipeline;
+import com.danbunnell.steptracker.engine.StreamingStepDetector;
+import com.danbunnell.steptracker.trace.TraceWriter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link TraceReplayer}.
+ */
+public class TraceReplayerTest {
+    private static final long SAMPLE_RATE_MS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replayAll_countsStepsOfEachTraceInOrder() throws IOException {
+        List<File> files = new ArrayList<>();
+        for (int seconds = 10; seconds <= 60; seconds += 10) {
+            files.add(this.writeWalk(seconds));
+        }
+        files.add(this.folder.newFile("empty.trace"));
+
+        List<ReplayResult> results = newReplayer().replayAll(files);
+
+        assertEquals(files.size(), results.size());
+        for (int i = 0; i < 6; i++) {
+            ReplayResult result = results.get(i);
+            long seconds = (i + 1) * 10;
+
+            assertNull(result.getError());
+            assertEquals(files.get(i).getPath(), result.getName());
+            assertEquals(2 * seconds, result.getStepCount(), 2);
+            assertEquals(seconds * 1e9, result.getRecordedNs(), 1e7);
+            assertTrue(result.getSamplesPerSecond() > 0);
+        }
+
+        assertNotNull(results.get(6).getError());
+    }
+
+    private static TraceReplayer newReplayer() {
+        return new TraceReplayer(new StepPipelineFactory() {
+            @Override
+            public StepPipeline newPipeline() {
+                return new StepPipeline(
+                        SAMPLE_RATE_MS,
+                        new MovingAverageFilter(30),
+                        new StreamingStepDetector(SAMPLE_RATE_MS, 2000));
+            }
+        });
+    }
+
+    /**
+     * Writes a 2 Hz walk on a tilted phone, delivered at a jittery ~200 Hz.
+     */
+    private File writeWalk(int seconds) throws IOException {
+        File file = this.folder.newFile("walk" + seconds + ".trace");
+        Random random = new Random(seconds);
+
+        try (TraceWriter writer = new TraceWriter(new FileOutputStream(file).getChannel())) {
+            long timestampNs = 0;
+            while (timestampNs <= seconds * 1000000000L) {
+                double t = timestampNs / 1e9;
+                float swing = (float) (4 * Math.sin(2 * Math.PI * 2 * t));
+                float vertical = SamplePipeline.STANDARD_GRAVITY + swing;
+
+                writer.write(timestampNs, 0.3f * vertical, 0.1f * swing, 0.95f * vertical);
+                timestampNs += 4000000 + random.nextInt(2000000);
+            }
+        }
+
+        return file;
+    }
+}
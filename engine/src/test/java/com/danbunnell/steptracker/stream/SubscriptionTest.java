@@ -0,0 +1,280 @@
+package com.danbunnell.steptracker.stream;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SampleSubscription} and {@link StepSubscription}.
+ */
+public class SubscriptionTest {
+
+    /**
+     * the grid period of the test samples, in nanoseconds
+     */
+    private static final long PERIOD_NS = 5000000;
+
+    @Test
+    public void offer_deliversEverythingBufferedInOneBatch() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingSampleSubscriber subscriber = new RecordingSampleSubscriber();
+        SampleSubscription subscription = new SampleSubscription(subscriber, 8, OverflowPolicy.DROP_OLDEST, executor);
+
+        subscription.offer(new long[] { 100, 200 }, new float[] { 1, 2 }, new float[] { 10, 20 }, 2);
+        subscription.offer(new long[] { 300 }, new float[] { 3 }, new float[] { 30 }, 1);
+
+        // Only the first offer schedules a drain
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+
+        assertEquals(1, subscriber.batches);
+        assertEquals(Arrays.asList(100L, 200L, 300L), subscriber.timestampsNs);
+        assertEquals(asList(1, 2, 3), subscriber.magnitudes);
+        assertEquals(asList(10, 20, 30), subscriber.filteredMagnitudes);
+        assertEquals(3, subscription.getDeliveredCount());
+        assertEquals(0, subscription.getOverflowCount());
+    }
+
+    @Test
+    public void dropOldest_keepsTheNewestItems() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingSampleSubscriber subscriber = new RecordingSampleSubscriber();
+        SampleSubscription subscription = new SampleSubscription(subscriber, 4, OverflowPolicy.DROP_OLDEST, executor);
+
+        float[] values = { 0, 1, 2, 3, 4, 5 };
+        subscription.offer(timestamps(values), values, values, values.length);
+        executor.runAll();
+
+        assertEquals(asList(2, 3, 4, 5), subscriber.magnitudes);
+        assertEquals(Arrays.asList(2 * PERIOD_NS, 3 * PERIOD_NS, 4 * PERIOD_NS, 5 * PERIOD_NS), subscriber.timestampsNs);
+        assertEquals(2, subscription.getOverflowCount());
+    }
+
+    @Test
+    public void conflateLatest_replacesTheNewestSampleAndAddsSteps() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingSampleSubscriber samples = new RecordingSampleSubscriber();
+        SampleSubscription sampleSubscription = new SampleSubscription(samples, 2, OverflowPolicy.CONFLATE_LATEST, executor);
+
+        float[] values = { 0, 1, 2, 3 };
+        sampleSubscription.offer(timestamps(values), values, values, values.length);
+
+        final List<Integer> steps = new ArrayList<>();
+        StepSubscription stepSubscription = new StepSubscription(
+                new StepSubscriber() {
+                    @Override
+                    public void onSteps(int[] stepCounts, int length) {
+                        for (int i = 0; i < length; i++) {
+                            steps.add(stepCounts[i]);
+                        }
+                    }
+                },
+                2,
+                OverflowPolicy.CONFLATE_LATEST,
+                executor);
+
+        for (int i = 1; i <= 4; i++) {
+            stepSubscription.offer(i);
+        }
+
+        executor.runAll();
+
+        assertEquals(asList(0, 3), samples.magnitudes);
+
+        // The gap in the timestamps shows where samples were conflated
+        assertEquals(Arrays.asList(0L, 3 * PERIOD_NS), samples.timestampsNs);
+        assertEquals(2, sampleSubscription.getOverflowCount());
+
+        // No steps are lost: 3 and 4 are folded into the newest report
+        assertEquals(2, steps.size());
+        assertEquals(1, (int) steps.get(0));
+        assertEquals(9, (int) steps.get(1));
+    }
+
+    @Test(timeout = 5000)
+    public void block_waitsForTheSubscriberWithoutLosingItems() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> steps = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        StepSubscription subscription = new StepSubscription(
+                new StepSubscriber() {
+                    @Override
+                    public void onSteps(int[] stepCounts, int length) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+
+                        for (int i = 0; i < length; i++) {
+                            steps.add(stepCounts[i]);
+                        }
+
+                        if (steps.size() == 10) {
+                            done.countDown();
+                        }
+                    }
+                },
+                2,
+                OverflowPolicy.BLOCK,
+                executor);
+
+        final CountDownLatch published = new CountDownLatch(1);
+        final StepSubscription publishing = subscription;
+        Thread publisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10; i++) {
+                    publishing.offer(i);
+                }
+
+                published.countDown();
+            }
+        });
+        publisher.start();
+
+        // The subscriber is stalled, so the publisher cannot get through all ten
+        assertFalse(published.await(100, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        publisher.join();
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, (int) steps.get(i));
+        }
+        assertEquals(0, subscription.getOverflowCount());
+        executor.shutdown();
+    }
+
+    @Test(timeout = 5000)
+    public void close_releasesABlockedPublisher() throws InterruptedException {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingSampleSubscriber subscriber = new RecordingSampleSubscriber();
+        final SampleSubscription subscription = new SampleSubscription(subscriber, 1, OverflowPolicy.BLOCK, executor);
+
+        Thread publisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                float[] values = { 0, 1, 2 };
+                subscription.offer(timestamps(values), values, values, values.length);
+            }
+        });
+        publisher.start();
+
+        while (publisher.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+
+        subscription.close();
+        publisher.join();
+        executor.runAll();
+
+        assertTrue(subscription.isClosed());
+        assertTrue(subscriber.magnitudes.isEmpty());
+    }
+
+    /**
+     * Builds a list of floats from integers.
+     *
+     * @param values the values
+     * @return       the list
+     */
+    private static List<Float> asList(int... values) {
+        List<Float> result = new ArrayList<>();
+        for (int value : values) {
+            result.add((float) value);
+        }
+
+        return result;
+    }
+
+    /**
+     * Builds grid timestamps for samples whose values are their grid indices.
+     *
+     * @param values the sample values
+     * @return       the timestamps
+     */
+    private static long[] timestamps(float[] values) {
+        long[] result = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (long) values[i] * PERIOD_NS;
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs tasks only when asked to.
+     */
+    private static class ManualExecutor implements Executor {
+
+        /**
+         * the tasks waiting to run
+         */
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            this.tasks.add(task);
+        }
+
+        /**
+         * Runs every waiting task.
+         */
+        void runAll() {
+            while (!this.tasks.isEmpty()) {
+                this.tasks.remove().run();
+            }
+        }
+    }
+
+    /**
+     * Records the samples it receives.
+     */
+    private static class RecordingSampleSubscriber implements SampleSubscriber {
+
+        /**
+         * the grid timestamps received
+         */
+        final List<Long> timestampsNs = new ArrayList<>();
+
+        /**
+         * the raw magnitudes received
+         */
+        final List<Float> magnitudes = new ArrayList<>();
+
+        /**
+         * the filtered magnitudes received
+         */
+        final List<Float> filteredMagnitudes = new ArrayList<>();
+
+        /**
+         * the number of batches received
+         */
+        int batches = 0;
+
+        @Override
+        public void onSamples(long[] timestampsNs, float[] magnitudes, float[] filteredMagnitudes, int length) {
+            this.batches++;
+            for (int i = 0; i < length; i++) {
+                this.timestampsNs.add(timestampsNs[i]);
+                this.magnitudes.add(magnitudes[i]);
+                this.filteredMagnitudes.add(filteredMagnitudes[i]);
+            }
+        }
+    }
+}
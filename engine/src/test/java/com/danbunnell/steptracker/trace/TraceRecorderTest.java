@@ -0,0 +1,70 @@
+package com.danbunnell.steptracker.trace;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link TraceRecorder} and {@link TraceHistory}.
+ */
+public class TraceRecorderTest {
+
+    @Test
+    public void close_writesEverySampleRecorded() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TraceRecorder recorder = new TraceRecorder(new TraceWriter(Channels.newChannel(out)), 64);
+        recorder.start();
+
+        int recorded = 0;
+        for (int i = 0; i < 10000; i++) {
+            while (!recorder.record(i * 5000000L, i, -i, 0)) {
+                Thread.yield();
+            }
+            recorded++;
+        }
+        recorder.close();
+
+        long[] timestampsNs = new long[recorded];
+        float[] x = new float[recorded];
+        float[] y = new float[recorded];
+        float[] z = new float[recorded];
+        TraceReader reader = new TraceReader(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+        int total = 0;
+        int length;
+        while ((length = reader.read(timestampsNs, x, y, z, total, recorded - total)) > 0) {
+            total += length;
+        }
+
+        assertEquals(10000, total);
+        assertEquals(9999 * 5000000L, timestampsNs[9999]);
+        assertEquals(9999, x[9999], 0);
+        assertEquals(-9999, y[9999], 0);
+    }
+
+    @Test
+    public void dump_writesOnlyTheLastDuration() throws IOException {
+        TraceHistory history = new TraceHistory(1000, 5);
+
+        // Ten seconds at 200 Hz
+        for (int i = 0; i < 2000; i++) {
+            history.record(i * 5000000L, 0, 0, 9.8f);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int length = history.dump(Channels.newChannel(out));
+
+        TraceReader reader = new TraceReader(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+        long[] timestampsNs = new long[300];
+        int read = reader.read(timestampsNs, new float[300], new float[300], new float[300], 0, 300);
+
+        assertEquals(201, length);
+        assertEquals(201, read);
+        assertEquals(1799 * 5000000L, timestampsNs[0]);
+        assertEquals(1999 * 5000000L, timestampsNs[200]);
+    }
+}
@@ -0,0 +1,119 @@
+package com.danbunnell.steptracker.trace;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link TraceWriter} and {@link TraceReader}.
+ */
+public class TraceWriterTest {
+    private static final int SAMPLES = 12000;
+
+    @Test
+    public void read_returnsWrittenSamplesWithinQuantum() throws IOException {
+        Walk walk = new Walk(SAMPLES);
+        byte[] trace = encode(walk, SAMPLES);
+
+        Walk decoded = new Walk(0);
+        int length = decode(trace, decoded);
+
+        assertEquals(SAMPLES, length);
+        for (int i = 0; i < SAMPLES; i++) {
+            assertEquals(walk.timestampsNs[i] / 1000, decoded.timestampsNs[i] / 1000);
+            assertEquals(walk.x[i], decoded.x[i], TraceWriter.DEFAULT_QUANTUM);
+            assertEquals(walk.y[i], decoded.y[i], TraceWriter.DEFAULT_QUANTUM);
+            assertEquals(walk.z[i], decoded.z[i], TraceWriter.DEFAULT_QUANTUM);
+        }
+    }
+
+    @Test
+    public void write_isAboutTenTimesSmallerThanCsv() throws IOException {
+        Walk walk = new Walk(SAMPLES);
+        byte[] trace = encode(walk, SAMPLES);
+
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < SAMPLES; i++) {
+            csv.append(String.format(Locale.US, "%d,%f,%f,%f\n", walk.timestampsNs[i], walk.x[i], walk.y[i], walk.z[i]));
+        }
+
+        assertTrue("trace is " + trace.length + " bytes", trace.length * 8 < csv.length());
+    }
+
+    @Test
+    public void read_stopsAtLastCompleteSampleOfTruncatedTrace() throws IOException {
+        Walk walk = new Walk(100);
+        byte[] trace = encode(walk, 100);
+        byte[] truncated = Arrays.copyOf(trace, trace.length - 1);
+
+        assertEquals(99, decode(truncated, new Walk(0)));
+    }
+
+    @Test(expected = IOException.class)
+    public void constructor_rejectsOtherData() throws IOException {
+        new TraceReader(Channels.newChannel(new ByteArrayInputStream("t,x,y,z\n".getBytes("UTF-8"))));
+    }
+
+    private static byte[] encode(Walk walk, int length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TraceWriter writer = new TraceWriter(Channels.newChannel(out));
+        writer.write(walk.timestampsNs, walk.x, walk.y, walk.z, 0, length);
+        writer.close();
+        return out.toByteArray();
+    }
+
+    private static int decode(byte[] trace, Walk into) throws IOException {
+        TraceReader reader = new TraceReader(Channels.newChannel(new ByteArrayInputStream(trace)));
+        into.resize(SAMPLES);
+
+        int total = 0;
+        int length;
+        while ((length = reader.read(into.timestampsNs, into.x, into.y, into.z, total, 97)) > 0) {
+            total += length;
+        }
+        reader.close();
+        return total;
+    }
+
+    /**
+     * A jittery ~200 Hz walk on a tilted phone, starting at a realistic boot-relative timestamp.
+     */
+    private static class Walk {
+        long[] timestampsNs;
+        float[] x;
+        float[] y;
+        float[] z;
+
+        Walk(int length) {
+            this.resize(length);
+            Random random = new Random(3);
+            long timestampNs = 86400000000000L;
+
+            for (int i = 0; i < length; i++) {
+                double t = timestampNs / 1e9;
+                float swing = (float) (4 * Math.sin(2 * Math.PI * 2 * t) + random.nextGaussian() * 0.05);
+                float vertical = 9.80665f + swing;
+                this.timestampsNs[i] = timestampNs;
+                this.x[i] = 0.3f * vertical;
+                this.y[i] = 0.1f * swing;
+                this.z[i] = 0.95f * vertical;
+                timestampNs += 4000000 + random.nextInt(2000000);
+            }
+        }
+
+        void resize(int length) {
+            this.timestampsNs = new long[length];
+            this.x = new float[length];
+            this.y = new float[length];
+            this.z = new float[length];
+        }
+    }
+}
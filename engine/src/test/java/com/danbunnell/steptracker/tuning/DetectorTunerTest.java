@@ -0,0 +1,133 @@
+package com.danbunnell.steptracker.tuning;
+
+import com.danbunnell.steptracker.engine.DetectorConfiguration;
+import com.danbunnell.steptracker.engine.SamplePipeline;
+import com.danbunnell.steptracker.trace.TraceWriter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link DetectorTuner} and {@link TraceCorpus}.
+ */
+public class DetectorTunerTest {
+    private static final long SAMPLE_RATE_MS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void evaluateAll_findsConfigurationForGentleWalks() {
+        // Gentle walks peak below the default minimum peak height, so the default misses them
+        List<LabeledTrace> traces = new ArrayList<>();
+        for (int seconds = 20; seconds <= 40; seconds += 10) {
+            traces.add(walk(seconds, 1.2f).toLabeledTrace("walk" + seconds));
+        }
+        DetectorTuner tuner = new DetectorTuner(new TraceCorpus(traces), SAMPLE_RATE_MS);
+
+        TuningResult defaultResult = tuner.evaluate(DetectorConfiguration.DEFAULT);
+        List<TuningResult> results = tuner.evaluateAll(ParameterSpace.DEFAULT.grid(3));
+
+        assertEquals(729, results.size());
+        assertTrue(defaultResult.getRelativeError() > 0.5);
+        assertTrue(results.get(0).getRelativeError() < 0.05);
+        assertTrue(results.get(0).getConfiguration().getMinPeakToMeanBase() < 2.8f);
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).getAbsoluteError() <= results.get(i).getAbsoluteError());
+        }
+    }
+
+    @Test
+    public void load_decodesTracesListedInManifest() throws IOException {
+        Walk walk = walk(10, 4);
+        File traceFile = this.folder.newFile("walk.trace");
+        try (TraceWriter writer = new TraceWriter(new FileOutputStream(traceFile).getChannel())) {
+            writer.write(walk.timestampsNs, walk.x, walk.y, walk.z, 0, walk.length);
+        }
+
+        File manifest = this.folder.newFile("corpus.txt");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(manifest), "UTF-8")) {
+            writer.write("# ten second walk\n\nwalk.trace\t20\n");
+        }
+
+        TraceCorpus corpus = TraceCorpus.load(manifest);
+
+        assertEquals(1, corpus.getTraces().size());
+        assertEquals(20, corpus.getExpectedSteps());
+        assertEquals(walk.length, corpus.getTraces().get(0).getSampleCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void load_rejectsLineWithoutStepCount() throws IOException {
+        File manifest = this.folder.newFile("corpus.txt");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(manifest), "UTF-8")) {
+            writer.write("walk.trace\n");
+        }
+
+        TraceCorpus.load(manifest);
+    }
+
+    /**
+     * Generates a 2 Hz walk on a tilted phone, delivered at a jittery ~200 Hz.
+     */
+    private static Walk walk(int seconds, float amplitude) {
+        Walk walk = new Walk(seconds * 220);
+        Random random = new Random(seconds);
+
+        long timestampNs = 0;
+        while (timestampNs <= seconds * 1000000000L) {
+            double t = timestampNs / 1e9;
+            float swing = (float) (amplitude * Math.sin(2 * Math.PI * 2 * t));
+            float vertical = SamplePipeline.STANDARD_GRAVITY + swing;
+
+            int i = walk.length++;
+            walk.timestampsNs[i] = timestampNs;
+            walk.x[i] = 0.3f * vertical;
+            walk.y[i] = 0.1f * swing;
+            walk.z[i] = 0.95f * vertical;
+            timestampNs += 4000000 + random.nextInt(2000000);
+        }
+
+        walk.expectedSteps = 2 * seconds;
+        return walk;
+    }
+
+    private static class Walk {
+        final long[] timestampsNs;
+        final float[] x;
+        final float[] y;
+        final float[] z;
+        int length;
+        long expectedSteps;
+
+        Walk(int capacity) {
+            this.timestampsNs = new long[capacity];
+            this.x = new float[capacity];
+            this.y = new float[capacity];
+            this.z = new float[capacity];
+        }
+
+        LabeledTrace toLabeledTrace(String name) {
+            return new LabeledTrace(
+                    name,
+                    this.expectedSteps,
+                    Arrays.copyOf(this.timestampsNs, this.length),
+                    Arrays.copyOf(this.x, this.length),
+                    Arrays.copyOf(this.y, this.length),
+                    Arrays.copyOf(this.z, this.length));
+        }
+    }
+}